@@ -0,0 +1,245 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.channel;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.mac.IMAC;
+import com.oliveryasuna.crypto.util.Bytes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads bytes from a channel of authenticated records, which {@link AuthenticatedRecordWriter} writes.
+ * <p>
+ * Each record is verified, in constant time, as it arrives, and its bytes are released only once it is. A record that fails verification,
+ * e.g., because it was modified, dropped, reordered, or replayed, fails the read with an {@link IOException}, after which the reader is
+ * unusable. The end of the stream is reported only after the writer's closing record; an earlier end fails with an {@link EOFException}.
+ * <p>
+ * One record at a time is buffered, in a direct buffer allocated once per reader. The underlying channel must be in blocking mode. Readers
+ * are not thread-safe.
+ *
+ * @author Oliver Yasuna
+ */
+public class AuthenticatedRecordReader implements ReadableByteChannel {
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a reader.
+   *
+   * @param channel             The channel to read records from.
+   * @param mac                 The MAC to verify records with.
+   * @param maximumRecordLength The maximum number of bytes in a record, which must match the writer's.
+   */
+  public AuthenticatedRecordReader(final ReadableByteChannel channel, final IMAC mac, final int maximumRecordLength) {
+    super();
+
+    Arguments.requireNotNull(channel, "channel");
+    Arguments.requireNotNull(mac, "mac");
+    Arguments.requireGreaterOrSame(maximumRecordLength, 1, "maximumRecordLength");
+    Arguments.requireLessOrSame(maximumRecordLength, Integer.MAX_VALUE - Integer.BYTES - mac.getMacLength(), "maximumRecordLength");
+
+    this.channel = channel;
+    this.mac = mac;
+    this.maximumRecordLength = maximumRecordLength;
+
+    this.record = ByteBuffer.allocateDirect(Integer.BYTES + maximumRecordLength + mac.getMacLength());
+    this.sequenceNumberBuffer = ByteBuffer.allocate(Long.BYTES);
+    this.signedRecord = record.duplicate();
+    this.macInput = new ByteBuffer[] {sequenceNumberBuffer, signedRecord};
+    this.expectedTag = new byte[mac.getMacLength()];
+    this.tag = new byte[mac.getMacLength()];
+
+    // Nothing to release until the first record is read.
+    this.record.limit(0);
+  }
+
+  public AuthenticatedRecordReader(final ReadableByteChannel channel, final IMAC mac) {
+    this(channel, mac, AuthenticatedRecordWriter.DEFAULT_MAXIMUM_RECORD_LENGTH);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final ReadableByteChannel channel;
+
+  protected final IMAC mac;
+
+  protected final int maximumRecordLength;
+
+  /**
+   * The record being read. Once verified, its position and limit bound the bytes not yet released.
+   */
+  private final ByteBuffer record;
+
+  private final ByteBuffer sequenceNumberBuffer;
+
+  /**
+   * A view of {@link #record}'s length and bytes, for verifying.
+   */
+  private final ByteBuffer signedRecord;
+
+  private final ByteBuffer[] macInput;
+
+  private final byte[] expectedTag;
+
+  private final byte[] tag;
+
+  private long sequenceNumber;
+
+  private boolean ended;
+
+  private boolean failed;
+
+  private boolean open = true;
+
+  // ReadableByteChannel methods
+  //--------------------------------------------------
+
+  /**
+   * Reads verified bytes into a buffer, reading and verifying the next record if none are buffered.
+   *
+   * @param destination The buffer.
+   *
+   * @return The number of bytes read, or {@code -1}, after the closing record.
+   */
+  @Override
+  public int read(final ByteBuffer destination) throws IOException {
+    Arguments.requireNotNull(destination, "destination");
+
+    if(!open) {
+      throw new ClosedChannelException();
+    } else if(failed) {
+      throw new IOException("A previous record failed.");
+    }
+
+    if(!destination.hasRemaining()) {
+      return 0;
+    }
+
+    while(!record.hasRemaining()) {
+      if(ended) {
+        return -1;
+      }
+
+      failed = true;
+      readRecord();
+      failed = false;
+    }
+
+    final int length = Math.min(destination.remaining(), record.remaining());
+    final int recordLimit = record.limit();
+
+    record.limit(record.position() + length);
+    destination.put(record);
+    record.limit(recordLimit);
+
+    return length;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() throws IOException {
+    open = false;
+
+    channel.close();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private void readRecord() throws IOException {
+    record.clear().limit(Integer.BYTES);
+
+    fill();
+
+    final int length = record.getInt(0);
+
+    if(length < 0 || length > maximumRecordLength) {
+      throw new IOException("Record " + sequenceNumber + " has an invalid length: " + length + ".");
+    }
+
+    final int macLength = tag.length;
+
+    record.limit(Integer.BYTES + length + macLength);
+
+    fill();
+
+    sequenceNumberBuffer.clear();
+    sequenceNumberBuffer.putLong(sequenceNumber).flip();
+    signedRecord.limit(Integer.BYTES + length).position(0);
+
+    try {
+      mac.sign(macInput, expectedTag, 0);
+    } catch(final RuntimeException | IOException e) {
+      throw e;
+    } catch(final Exception e) {
+      throw new IOException("Failed to verify record.", e);
+    }
+
+    record.position(Integer.BYTES + length);
+    record.get(tag);
+
+    if(!Bytes.constantTimeEquals(expectedTag, 0, tag, 0, macLength)) {
+      throw new IOException("Record " + sequenceNumber + " failed verification.");
+    }
+
+    record.limit(Integer.BYTES + length).position(Integer.BYTES);
+
+    sequenceNumber++;
+    ended = (length == 0);
+  }
+
+  /**
+   * Reads from the channel until the record buffer is full to its limit.
+   */
+  private void fill() throws IOException {
+    while(record.hasRemaining()) {
+      if(channel.read(record) < 0) {
+        throw new EOFException("Stream ended before record " + sequenceNumber + " was complete.");
+      }
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getMaximumRecordLength() {
+    return maximumRecordLength;
+  }
+
+  /**
+   * Gets the sequence number of the next record.
+   *
+   * @return The sequence number.
+   */
+  public long getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+}
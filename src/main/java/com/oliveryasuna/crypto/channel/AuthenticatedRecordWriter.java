@@ -0,0 +1,218 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.channel;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.mac.IMAC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes bytes to a channel as authenticated records, which {@link AuthenticatedRecordReader} reads.
+ * <p>
+ * Each record is a 4-byte, big-endian length, then that many bytes, then a tag over the record's sequence number, length, and bytes. Binding
+ * the sequence number means that records cannot be dropped, reordered, or replayed without detection. Writes longer than the maximum record
+ * length are split into several records. Closing writes an empty record, so that truncation at a record boundary is detected, too.
+ * <p>
+ * Records are assembled in one direct buffer, allocated once per writer, and signed with {@link IMAC#sign(ByteBuffer[], byte[], int)}. The
+ * underlying channel must be in blocking mode. Writers are not thread-safe.
+ *
+ * @author Oliver Yasuna
+ */
+public class AuthenticatedRecordWriter implements WritableByteChannel {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final int DEFAULT_MAXIMUM_RECORD_LENGTH = 16 * 1024;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a writer.
+   *
+   * @param channel             The channel to write records to.
+   * @param mac                 The MAC to sign records with.
+   * @param maximumRecordLength The maximum number of bytes in a record, which must match the reader's.
+   */
+  public AuthenticatedRecordWriter(final WritableByteChannel channel, final IMAC mac, final int maximumRecordLength) {
+    super();
+
+    Arguments.requireNotNull(channel, "channel");
+    Arguments.requireNotNull(mac, "mac");
+    Arguments.requireGreaterOrSame(maximumRecordLength, 1, "maximumRecordLength");
+    Arguments.requireLessOrSame(maximumRecordLength, Integer.MAX_VALUE - Integer.BYTES - mac.getMacLength(), "maximumRecordLength");
+
+    this.channel = channel;
+    this.mac = mac;
+    this.maximumRecordLength = maximumRecordLength;
+
+    this.record = ByteBuffer.allocateDirect(Integer.BYTES + maximumRecordLength + mac.getMacLength());
+    this.sequenceNumberBuffer = ByteBuffer.allocate(Long.BYTES);
+    this.signedRecord = record.duplicate();
+    this.macInput = new ByteBuffer[] {sequenceNumberBuffer, signedRecord};
+    this.tag = new byte[mac.getMacLength()];
+  }
+
+  public AuthenticatedRecordWriter(final WritableByteChannel channel, final IMAC mac) {
+    this(channel, mac, DEFAULT_MAXIMUM_RECORD_LENGTH);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final WritableByteChannel channel;
+
+  protected final IMAC mac;
+
+  protected final int maximumRecordLength;
+
+  /**
+   * The record being written: length, bytes, and tag.
+   */
+  private final ByteBuffer record;
+
+  private final ByteBuffer sequenceNumberBuffer;
+
+  /**
+   * A view of {@link #record}'s length and bytes, for signing.
+   */
+  private final ByteBuffer signedRecord;
+
+  private final ByteBuffer[] macInput;
+
+  private final byte[] tag;
+
+  private long sequenceNumber;
+
+  private boolean open = true;
+
+  // WritableByteChannel methods
+  //--------------------------------------------------
+
+  /**
+   * Writes a buffer's remaining bytes as one or more records.
+   *
+   * @param source The buffer.
+   *
+   * @return The number of bytes written, which is all of them.
+   */
+  @Override
+  public int write(final ByteBuffer source) throws IOException {
+    Arguments.requireNotNull(source, "source");
+
+    if(!open) {
+      throw new ClosedChannelException();
+    }
+
+    final int length = source.remaining();
+
+    while(source.hasRemaining()) {
+      writeRecord(source, Math.min(source.remaining(), maximumRecordLength));
+    }
+
+    return length;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Writes the closing record, and closes the channel.
+   */
+  @Override
+  public void close() throws IOException {
+    if(!open) {
+      return;
+    }
+
+    open = false;
+
+    try {
+      writeRecord(ByteBuffer.allocate(0), 0);
+    } finally {
+      channel.close();
+    }
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private void writeRecord(final ByteBuffer source, final int length) throws IOException {
+    if(sequenceNumber == Long.MAX_VALUE) {
+      throw new IOException("Sequence number exhausted.");
+    }
+
+    final int sourceLimit = source.limit();
+
+    record.clear();
+    record.putInt(length);
+
+    source.limit(source.position() + length);
+    record.put(source);
+    source.limit(sourceLimit);
+
+    sequenceNumberBuffer.clear();
+    sequenceNumberBuffer.putLong(sequenceNumber).flip();
+    signedRecord.limit(record.position()).position(0);
+
+    sign();
+
+    record.put(tag).flip();
+
+    while(record.hasRemaining()) {
+      channel.write(record);
+    }
+
+    sequenceNumber++;
+  }
+
+  private void sign() throws IOException {
+    try {
+      mac.sign(macInput, tag, 0);
+    } catch(final RuntimeException | IOException e) {
+      throw e;
+    } catch(final Exception e) {
+      throw new IOException("Failed to sign record.", e);
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getMaximumRecordLength() {
+    return maximumRecordLength;
+  }
+
+  /**
+   * Gets the sequence number of the next record.
+   *
+   * @return The sequence number.
+   */
+  public long getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+}
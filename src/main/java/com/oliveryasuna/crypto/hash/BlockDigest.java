@@ -0,0 +1,258 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Base of Merkle-Damgard digests, e.g., SHA-1 and SHA-2, that buffer input into blocks and pad with a big-endian bit length.
+ * <p>
+ * Restoring one copies the state into the existing buffers, so it does not allocate, unlike cloning a {@link java.security.MessageDigest}.
+ *
+ * @author Oliver Yasuna
+ */
+abstract class BlockDigest implements Digest {
+
+  // Constructors
+  //--------------------------------------------------
+
+  protected BlockDigest(final int blockSize, final int outputSize, final int lengthSize) {
+    super();
+
+    this.blockSize = blockSize;
+    this.outputSize = outputSize;
+    this.lengthSize = lengthSize;
+
+    this.buffer = new byte[blockSize];
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final int blockSize;
+
+  /**
+   * Not {@code final}, so that variants sharing an implementation, e.g., SHA-224 and SHA-256, can be {@link #restore(Digest) restored} from each
+   * other.
+   */
+  private int outputSize;
+
+  /**
+   * The number of bytes used to encode the message length, in bits, in the final block.
+   */
+  private final int lengthSize;
+
+  private final byte[] buffer;
+
+  private int bufferLength;
+
+  private long byteCount;
+
+  // Abstract methods
+  //--------------------------------------------------
+
+  /**
+   * Compresses a block into the state.
+   *
+   * @param block  The block.
+   * @param offset The offset of the block.
+   */
+  protected abstract void processBlock(byte[] block, int offset);
+
+  /**
+   * Writes the leftmost {@link #outputSize()} bytes of the state.
+   *
+   * @param output The output.
+   * @param offset The offset in the output.
+   */
+  protected abstract void writeState(byte[] output, int offset);
+
+  protected abstract void resetState();
+
+  protected abstract void restoreState(BlockDigest other);
+
+  // Digest methods
+  //--------------------------------------------------
+
+  @Override
+  public final void update(final byte input) {
+    buffer[bufferLength++] = input;
+    byteCount++;
+
+    if(bufferLength == blockSize) {
+      processBlock(buffer, 0);
+
+      bufferLength = 0;
+    }
+  }
+
+  @Override
+  public final void update(final byte[] input, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    byteCount += length;
+
+    if(bufferLength > 0) {
+      final int fill = Math.min(length, blockSize - bufferLength);
+
+      System.arraycopy(input, offset, buffer, bufferLength, fill);
+
+      bufferLength += fill;
+      offset += fill;
+      length -= fill;
+
+      if(bufferLength < blockSize) {
+        return;
+      }
+
+      processBlock(buffer, 0);
+
+      bufferLength = 0;
+    }
+
+    // Compress whole blocks directly from the input.
+    while(length >= blockSize) {
+      processBlock(input, offset);
+
+      offset += blockSize;
+      length -= blockSize;
+    }
+
+    if(length > 0) {
+      System.arraycopy(input, offset, buffer, 0, length);
+
+      bufferLength = length;
+    }
+  }
+
+  /**
+   * Absorbs a buffer's remaining bytes, and advances its position to its limit.
+   * <p>
+   * Buffers without an accessible array, e.g., direct buffers, are read straight into the block buffer.
+   */
+  @Override
+  public final void update(final ByteBuffer input) {
+    if(input.hasArray()) {
+      update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+
+      input.position(input.limit());
+
+      return;
+    }
+
+    byteCount += input.remaining();
+
+    while(input.hasRemaining()) {
+      final int fill = Math.min(input.remaining(), blockSize - bufferLength);
+
+      input.get(buffer, bufferLength, fill);
+
+      bufferLength += fill;
+
+      if(bufferLength == blockSize) {
+        processBlock(buffer, 0);
+
+        bufferLength = 0;
+      }
+    }
+  }
+
+  @Override
+  public final void digest(final byte[] output, final int offset) {
+    Objects.checkFromIndexSize(offset, outputSize, output.length);
+
+    final long bitCount = (byteCount << 3);
+
+    buffer[bufferLength++] = (byte)0x80;
+
+    if(bufferLength > blockSize - lengthSize) {
+      Arrays.fill(buffer, bufferLength, blockSize, (byte)0);
+      processBlock(buffer, 0);
+
+      bufferLength = 0;
+    }
+
+    Arrays.fill(buffer, bufferLength, blockSize, (byte)0);
+
+    if(lengthSize > 8) {
+      // The high bits of a 128-bit length.
+      buffer[blockSize - 9] = (byte)(byteCount >>> 61);
+    }
+
+    for(int i = 0; i < 8; i++) {
+      buffer[blockSize - 1 - i] = (byte)(bitCount >>> (i << 3));
+    }
+
+    processBlock(buffer, 0);
+    writeState(output, offset);
+
+    reset();
+  }
+
+  @Override
+  public final void reset() {
+    Arrays.fill(buffer, (byte)0);
+
+    bufferLength = 0;
+    byteCount = 0L;
+
+    resetState();
+  }
+
+  @Override
+  public final void restore(final Digest other) {
+    if(other.getClass() != getClass()) {
+      throw new IllegalArgumentException("Digest class mismatch.");
+    }
+
+    final BlockDigest otherCasted = (BlockDigest)other;
+
+    System.arraycopy(otherCasted.buffer, 0, buffer, 0, blockSize);
+
+    outputSize = otherCasted.outputSize;
+    bufferLength = otherCasted.bufferLength;
+    byteCount = otherCasted.byteCount;
+
+    restoreState(otherCasted);
+  }
+
+  @Override
+  public final int blockSize() {
+    return blockSize;
+  }
+
+  @Override
+  public final int outputSize() {
+    return outputSize;
+  }
+
+  // Static helper methods
+  //--------------------------------------------------
+
+  protected static int readInt(final byte[] input, final int offset) {
+    return (input[offset] << 24) | ((input[offset + 1] & 0xff) << 16) | ((input[offset + 2] & 0xff) << 8) | (input[offset + 3] & 0xff);
+  }
+
+  protected static long readLong(final byte[] input, final int offset) {
+    return ((long)readInt(input, offset) << 32) | (readInt(input, offset + 4) & 0xffffffffL);
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Adapts a {@link HashFunction} that has no incremental implementation by buffering all input until {@link #digest(byte[], int)}.
+ *
+ * @author Oliver Yasuna
+ */
+final class BufferingDigest implements Digest {
+
+  // Constructors
+  //--------------------------------------------------
+
+  BufferingDigest(final HashFunction hashFunction) {
+    super();
+
+    this.hashFunction = hashFunction;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private HashFunction hashFunction;
+
+  private byte[] buffer = new byte[64];
+
+  private int bufferLength;
+
+  // Digest methods
+  //--------------------------------------------------
+
+  @Override
+  public void update(final byte input) {
+    ensureCapacity(1);
+
+    buffer[bufferLength++] = input;
+  }
+
+  @Override
+  public void update(final byte[] input, final int offset, final int length) {
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    ensureCapacity(length);
+
+    System.arraycopy(input, offset, buffer, bufferLength, length);
+
+    bufferLength += length;
+  }
+
+  @Override
+  public void digest(final byte[] output, final int offset) {
+    Objects.checkFromIndexSize(offset, outputSize(), output.length);
+
+    final byte[] hash;
+
+    try {
+      hash = hashFunction.compute(Arrays.copyOf(buffer, bufferLength));
+    } catch(final Exception e) {
+      throw new IllegalStateException(e);
+    }
+
+    System.arraycopy(hash, 0, output, offset, outputSize());
+
+    reset();
+  }
+
+  @Override
+  public void reset() {
+    Arrays.fill(buffer, 0, bufferLength, (byte)0);
+
+    bufferLength = 0;
+  }
+
+  @Override
+  public void restore(final Digest other) {
+    if(other.getClass() != getClass()) {
+      throw new IllegalArgumentException("Digest class mismatch.");
+    }
+
+    final BufferingDigest otherCasted = (BufferingDigest)other;
+
+    reset();
+
+    hashFunction = otherCasted.hashFunction;
+
+    ensureCapacity(otherCasted.bufferLength);
+
+    System.arraycopy(otherCasted.buffer, 0, buffer, 0, otherCasted.bufferLength);
+
+    bufferLength = otherCasted.bufferLength;
+  }
+
+  @Override
+  public BufferingDigest copy() {
+    final BufferingDigest copy = new BufferingDigest(hashFunction);
+
+    copy.restore(this);
+
+    return copy;
+  }
+
+  @Override
+  public int blockSize() {
+    return hashFunction.blockSize();
+  }
+
+  @Override
+  public int outputSize() {
+    return hashFunction.outputSize();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private void ensureCapacity(final int additional) {
+    if(bufferLength + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, bufferLength + additional));
+    }
+  }
+
+}
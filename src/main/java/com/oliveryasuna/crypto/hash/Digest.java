@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents the incremental state of a hash function.
+ * <p>
+ * Unlike {@link HashFunction}, a digest is mutable and not thread-safe. Its state can be copied into another digest of the same implementation
+ * with {@link #restore(Digest)}, which allows a partially-absorbed state, e.g., an HMAC's padded key, to be computed once and reused.
+ *
+ * @author Oliver Yasuna
+ * @see HashFunction#newDigest()
+ */
+public interface Digest {
+
+  /**
+   * Absorbs a byte.
+   *
+   * @param input The byte.
+   */
+  void update(byte input);
+
+  /**
+   * Absorbs a range of bytes.
+   *
+   * @param input  The bytes.
+   * @param offset The offset of the range.
+   * @param length The length of the range.
+   */
+  void update(byte[] input, int offset, int length);
+
+  /**
+   * Absorbs bytes.
+   *
+   * @param input The bytes.
+   */
+  default void update(final byte[] input) {
+    update(input, 0, input.length);
+  }
+
+  /**
+   * Absorbs a buffer's remaining bytes, and advances its position to its limit.
+   *
+   * @param input The buffer.
+   *
+   * @implSpec The default implementation reads buffers without an accessible array through a temporary array.
+   */
+  default void update(final ByteBuffer input) {
+    if(input.hasArray()) {
+      update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+
+      input.position(input.limit());
+
+      return;
+    }
+
+    final byte[] chunk = new byte[Math.min(input.remaining(), 4096)];
+
+    while(input.hasRemaining()) {
+      final int length = Math.min(input.remaining(), chunk.length);
+
+      input.get(chunk, 0, length);
+      update(chunk, 0, length);
+    }
+  }
+
+  /**
+   * Completes the hash, writes it to an output, and resets this digest.
+   *
+   * @param output The output.
+   * @param offset The offset in the output, which must have room for {@link #outputSize()} bytes.
+   */
+  void digest(byte[] output, int offset);
+
+  /**
+   * Completes the hash and resets this digest.
+   *
+   * @return The hash.
+   */
+  default byte[] digest() {
+    final byte[] output = new byte[outputSize()];
+
+    digest(output, 0);
+
+    return output;
+  }
+
+  /**
+   * Resets this digest to its initial state, clearing any buffered input.
+   */
+  void reset();
+
+  /**
+   * Copies the state of another digest into this one.
+   *
+   * @param other The other digest.
+   *
+   * @implSpec Must accept any digest of the same class, and must not modify it.
+   */
+  void restore(Digest other);
+
+  /**
+   * Creates a copy of this digest.
+   *
+   * @return The copy.
+   */
+  Digest copy();
+
+  /**
+   * Gets the block size in bytes.
+   *
+   * @return The block size in bytes.
+   */
+  int blockSize();
+
+  /**
+   * Gets the output size in bytes.
+   *
+   * @return The output size in bytes.
+   */
+  int outputSize();
+
+}
@@ -59,4 +59,17 @@ public interface HashFunction {
    */
   int outputSize();
 
+  /**
+   * Creates a new, incremental digest of this hash function.
+   * <p>
+   * The default implementation buffers all input and calls {@link #compute(byte[])}.
+   *
+   * @return The digest.
+   *
+   * @implSpec Digests created by the same hash function must be able to {@link Digest#restore(Digest) restore} from each other.
+   */
+  default Digest newDigest() throws Exception {
+    return new BufferingDigest(this);
+  }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Objects;
+
+/**
+ * Wraps {@link MessageDigest}.
+ * <p>
+ * {@link #restore(Digest)} and {@link #copy()} clone the wrapped {@link MessageDigest}, so they allocate.
+ *
+ * @author Oliver Yasuna
+ */
+final class JceDigest implements Digest {
+
+  // Constructors
+  //--------------------------------------------------
+
+  JceDigest(final MessageDigest messageDigest, final int blockSize) {
+    super();
+
+    this.messageDigest = messageDigest;
+    this.blockSize = blockSize;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private MessageDigest messageDigest;
+
+  private final int blockSize;
+
+  // Digest methods
+  //--------------------------------------------------
+
+  @Override
+  public void update(final byte input) {
+    messageDigest.update(input);
+  }
+
+  @Override
+  public void update(final byte[] input, final int offset, final int length) {
+    messageDigest.update(input, offset, length);
+  }
+
+  @Override
+  public void update(final ByteBuffer input) {
+    messageDigest.update(input);
+  }
+
+  @Override
+  public void digest(final byte[] output, final int offset) {
+    Objects.checkFromIndexSize(offset, outputSize(), output.length);
+
+    try {
+      messageDigest.digest(output, offset, outputSize());
+    } catch(final DigestException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void reset() {
+    messageDigest.reset();
+  }
+
+  @Override
+  public void restore(final Digest other) {
+    if(other.getClass() != getClass()) {
+      throw new IllegalArgumentException("Digest class mismatch.");
+    }
+
+    messageDigest = cloneMessageDigest(((JceDigest)other).messageDigest);
+  }
+
+  @Override
+  public JceDigest copy() {
+    return new JceDigest(cloneMessageDigest(messageDigest), blockSize);
+  }
+
+  @Override
+  public int blockSize() {
+    return blockSize;
+  }
+
+  @Override
+  public int outputSize() {
+    return messageDigest.getDigestLength();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private static MessageDigest cloneMessageDigest(final MessageDigest messageDigest) {
+    try {
+      return (MessageDigest)messageDigest.clone();
+    } catch(final CloneNotSupportedException e) {
+      throw new IllegalStateException("Not cloneable: " + messageDigest.getAlgorithm() + ".", e);
+    }
+  }
+
+}
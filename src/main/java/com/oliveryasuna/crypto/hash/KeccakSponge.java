@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import com.oliveryasuna.commons.language.Arguments;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The Keccak sponge over Keccak-f[1600] (FIPS 202), the core of SHA-3, SHAKE, cSHAKE, and KMAC.
+ * <p>
+ * Input is absorbed, then {@link #pad(byte) padded} with a domain suffix, then output is squeezed. Like {@link Digest}, a sponge is mutable and
+ * not thread-safe, and its state can be copied into another sponge with {@link #restore(KeccakSponge)}.
+ *
+ * @author Oliver Yasuna
+ */
+public final class KeccakSponge {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The width of the permutation in bytes.
+   */
+  public static final int WIDTH = 1600 / 8;
+
+  /**
+   * The domain suffix of SHA-3, including the first padding bit.
+   */
+  public static final byte SHA3_SUFFIX = 0x06;
+
+  /**
+   * The domain suffix of SHAKE, including the first padding bit.
+   */
+  public static final byte SHAKE_SUFFIX = 0x1f;
+
+  /**
+   * The domain suffix of cSHAKE, and thus KMAC, including the first padding bit.
+   */
+  public static final byte CSHAKE_SUFFIX = 0x04;
+
+  private static final int ROUNDS = 24;
+
+  private static final long[] ROUND_CONSTANTS = {
+      0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL, 0x8000000080008000L,
+      0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+      0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+      0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L,
+      0x8000000000008002L, 0x8000000000000080L, 0x000000000000800aL, 0x800000008000000aL,
+      0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+  };
+
+  private static final int[] ROTATIONS = {1, 3, 6, 10, 15, 21, 28, 36, 45, 55, 2, 14, 27, 41, 56, 8, 25, 43, 62, 18, 39, 61, 20, 44};
+
+  private static final int[] PI_LANES = {10, 7, 11, 17, 18, 3, 5, 16, 8, 21, 24, 4, 15, 23, 19, 13, 12, 2, 20, 14, 22, 9, 6, 1};
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a sponge.
+   *
+   * @param rate The rate in bytes, e.g., 168 for a capacity of 256 bits.
+   */
+  public KeccakSponge(final int rate) {
+    super();
+
+    Arguments.requireGreater(rate, 0, "rate");
+    Arguments.requireLess(rate, WIDTH, "rate");
+    Arguments.requireSame(rate % 8, 0, "rate");
+
+    this.rate = rate;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final long[] state = new long[25];
+
+  private final long[] columns = new long[5];
+
+  private int rate;
+
+  /**
+   * The offset, in bytes, into the rate portion of the state.
+   */
+  private int position;
+
+  private boolean squeezing;
+
+  // Methods
+  //--------------------------------------------------
+
+  public void absorb(final byte input) {
+    if(squeezing) {
+      throw new IllegalStateException("Already padded.");
+    }
+
+    state[position >>> 3] ^= ((input & 0xffL) << ((position & 7) << 3));
+
+    if(++position == rate) {
+      permute();
+
+      position = 0;
+    }
+  }
+
+  public void absorb(final byte[] input, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    if(squeezing) {
+      throw new IllegalStateException("Already padded.");
+    }
+
+    // Absorb up to a lane boundary byte by byte, then whole lanes.
+    while(length > 0 && (position & 7) != 0) {
+      absorb(input[offset++]);
+
+      length--;
+    }
+
+    while(length >= 8) {
+      long lane = 0L;
+
+      for(int i = 7; i >= 0; i--) {
+        lane = (lane << 8) | (input[offset + i] & 0xffL);
+      }
+
+      state[position >>> 3] ^= lane;
+      position += 8;
+
+      if(position == rate) {
+        permute();
+
+        position = 0;
+      }
+
+      offset += 8;
+      length -= 8;
+    }
+
+    while(length > 0) {
+      absorb(input[offset++]);
+
+      length--;
+    }
+  }
+
+  /**
+   * Absorbs zeros up to the next multiple of the rate, unless already there.
+   */
+  public void absorbZerosToRate() {
+    if(position != 0) {
+      if(squeezing) {
+        throw new IllegalStateException("Already padded.");
+      }
+
+      permute();
+
+      position = 0;
+    }
+  }
+
+  /**
+   * Pads the absorbed input, after which output can be squeezed.
+   *
+   * @param domainSuffix The domain suffix bits followed by the first padding bit, e.g., {@link #SHA3_SUFFIX}.
+   */
+  public void pad(final byte domainSuffix) {
+    if(squeezing) {
+      throw new IllegalStateException("Already padded.");
+    }
+
+    state[position >>> 3] ^= ((domainSuffix & 0xffL) << ((position & 7) << 3));
+    state[(rate - 1) >>> 3] ^= (0x80L << (((rate - 1) & 7) << 3));
+
+    permute();
+
+    position = 0;
+    squeezing = true;
+  }
+
+  public void squeeze(final byte[] output, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, output.length);
+
+    if(!squeezing) {
+      throw new IllegalStateException("Not padded.");
+    }
+
+    while(length > 0) {
+      if(position == rate) {
+        permute();
+
+        position = 0;
+      }
+
+      output[offset++] = (byte)(state[position >>> 3] >>> ((position & 7) << 3));
+      position++;
+      length--;
+    }
+  }
+
+  public void reset() {
+    Arrays.fill(state, 0L);
+    Arrays.fill(columns, 0L);
+
+    position = 0;
+    squeezing = false;
+  }
+
+  /**
+   * Copies the state of another sponge into this one.
+   *
+   * @param other The other sponge, which is not modified.
+   */
+  public void restore(final KeccakSponge other) {
+    Arguments.requireNotNull(other, "other");
+
+    System.arraycopy(other.state, 0, state, 0, state.length);
+
+    rate = other.rate;
+    position = other.position;
+    squeezing = other.squeezing;
+  }
+
+  public KeccakSponge copy() {
+    final KeccakSponge copy = new KeccakSponge(rate);
+
+    copy.restore(this);
+
+    return copy;
+  }
+
+  private void permute() {
+    final long[] a = state;
+    final long[] c = columns;
+
+    for(int round = 0; round < ROUNDS; round++) {
+      // Theta.
+      for(int x = 0; x < 5; x++) {
+        c[x] = a[x] ^ a[x + 5] ^ a[x + 10] ^ a[x + 15] ^ a[x + 20];
+      }
+
+      for(int x = 0; x < 5; x++) {
+        final long d = c[(x + 4) % 5] ^ Long.rotateLeft(c[(x + 1) % 5], 1);
+
+        for(int y = 0; y < 25; y += 5) {
+          a[x + y] ^= d;
+        }
+      }
+
+      // Rho and pi.
+      long current = a[1];
+
+      for(int t = 0; t < 24; t++) {
+        final int lane = PI_LANES[t];
+        final long temp = a[lane];
+
+        a[lane] = Long.rotateLeft(current, ROTATIONS[t]);
+        current = temp;
+      }
+
+      // Chi.
+      for(int y = 0; y < 25; y += 5) {
+        for(int x = 0; x < 5; x++) {
+          c[x] = a[x + y];
+        }
+
+        for(int x = 0; x < 5; x++) {
+          a[x + y] = c[x] ^ (~c[(x + 1) % 5] & c[(x + 2) % 5]);
+        }
+      }
+
+      // Iota.
+      a[0] ^= ROUND_CONSTANTS[round];
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getRate() {
+    return rate;
+  }
+
+}
@@ -66,4 +66,9 @@ public class MD5 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new JceDigest(MessageDigest.getInstance(ALGORITHM), BLOCK_SIZE);
+  }
+
 }
@@ -66,4 +66,9 @@ public class SHA1 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new SHA1Digest();
+  }
+
 }
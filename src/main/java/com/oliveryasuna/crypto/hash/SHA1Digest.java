@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+/**
+ * SHA-1 (FIPS 180-4).
+ *
+ * @author Oliver Yasuna
+ */
+final class SHA1Digest extends BlockDigest {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final int[] IV = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0};
+
+  // Constructors
+  //--------------------------------------------------
+
+  SHA1Digest() {
+    super(SHA1.BLOCK_SIZE, SHA1.OUTPUT_SIZE, 8);
+
+    resetState();
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final int[] state = new int[5];
+
+  private final int[] schedule = new int[80];
+
+  // BlockDigest methods
+  //--------------------------------------------------
+
+  @Override
+  protected void processBlock(final byte[] block, final int offset) {
+    final int[] w = schedule;
+
+    for(int t = 0; t < 16; t++) {
+      w[t] = readInt(block, offset + (t << 2));
+    }
+
+    for(int t = 16; t < 80; t++) {
+      w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+    }
+
+    int a = state[0];
+    int b = state[1];
+    int c = state[2];
+    int d = state[3];
+    int e = state[4];
+
+    for(int t = 0; t < 80; t++) {
+      final int f;
+      final int k;
+
+      if(t < 20) {
+        f = (b & c) | (~b & d);
+        k = 0x5a827999;
+      } else if(t < 40) {
+        f = b ^ c ^ d;
+        k = 0x6ed9eba1;
+      } else if(t < 60) {
+        f = (b & c) | (b & d) | (c & d);
+        k = 0x8f1bbcdc;
+      } else {
+        f = b ^ c ^ d;
+        k = 0xca62c1d6;
+      }
+
+      final int temp = Integer.rotateLeft(a, 5) + f + e + k + w[t];
+
+      e = d;
+      d = c;
+      c = Integer.rotateLeft(b, 30);
+      b = a;
+      a = temp;
+    }
+
+    state[0] += a;
+    state[1] += b;
+    state[2] += c;
+    state[3] += d;
+    state[4] += e;
+  }
+
+  @Override
+  protected void writeState(final byte[] output, final int offset) {
+    for(int i = 0; i < state.length; i++) {
+      final int word = state[i];
+      final int j = offset + (i << 2);
+
+      output[j] = (byte)(word >>> 24);
+      output[j + 1] = (byte)(word >>> 16);
+      output[j + 2] = (byte)(word >>> 8);
+      output[j + 3] = (byte)word;
+    }
+  }
+
+  @Override
+  protected void resetState() {
+    System.arraycopy(IV, 0, state, 0, IV.length);
+  }
+
+  @Override
+  protected void restoreState(final BlockDigest other) {
+    System.arraycopy(((SHA1Digest)other).state, 0, state, 0, state.length);
+  }
+
+  // Digest methods
+  //--------------------------------------------------
+
+  @Override
+  public SHA1Digest copy() {
+    final SHA1Digest copy = new SHA1Digest();
+
+    copy.restore(this);
+
+    return copy;
+  }
+
+}
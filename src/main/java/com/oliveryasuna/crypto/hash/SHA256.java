@@ -66,4 +66,9 @@ public class SHA256 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new SHA256Digest(SHA256Digest.SHA256_IV, OUTPUT_SIZE);
+  }
+
 }
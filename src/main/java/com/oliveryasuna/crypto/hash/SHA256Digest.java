@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+/**
+ * SHA-224 and SHA-256 (FIPS 180-4).
+ *
+ * @author Oliver Yasuna
+ */
+final class SHA256Digest extends BlockDigest {
+
+  // Static fields
+  //--------------------------------------------------
+
+  static final int[] SHA224_IV = {0xc1059ed8, 0x367cd507, 0x3070dd17, 0xf70e5939, 0xffc00b31, 0x68581511, 0x64f98fa7, 0xbefa4fa4};
+
+  static final int[] SHA256_IV = {0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19};
+
+  private static final int[] K = {
+      0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+      0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+      0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+      0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+      0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+      0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+      0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+      0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  // Constructors
+  //--------------------------------------------------
+
+  SHA256Digest(final int[] iv, final int outputSize) {
+    super(SHA256.BLOCK_SIZE, outputSize, 8);
+
+    this.iv = iv;
+
+    resetState();
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private int[] iv;
+
+  private final int[] state = new int[8];
+
+  private final int[] schedule = new int[64];
+
+  // BlockDigest methods
+  //--------------------------------------------------
+
+  @Override
+  protected void processBlock(final byte[] block, final int offset) {
+    final int[] w = schedule;
+
+    for(int t = 0; t < 16; t++) {
+      w[t] = readInt(block, offset + (t << 2));
+    }
+
+    for(int t = 16; t < 64; t++) {
+      final int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+      final int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+
+      w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+    }
+
+    int a = state[0];
+    int b = state[1];
+    int c = state[2];
+    int d = state[3];
+    int e = state[4];
+    int f = state[5];
+    int g = state[6];
+    int h = state[7];
+
+    for(int t = 0; t < 64; t++) {
+      final int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+      final int ch = (e & f) ^ (~e & g);
+      final int temp1 = h + s1 + ch + K[t] + w[t];
+      final int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+      final int maj = (a & b) ^ (a & c) ^ (b & c);
+      final int temp2 = s0 + maj;
+
+      h = g;
+      g = f;
+      f = e;
+      e = d + temp1;
+      d = c;
+      c = b;
+      b = a;
+      a = temp1 + temp2;
+    }
+
+    state[0] += a;
+    state[1] += b;
+    state[2] += c;
+    state[3] += d;
+    state[4] += e;
+    state[5] += f;
+    state[6] += g;
+    state[7] += h;
+  }
+
+  @Override
+  protected void writeState(final byte[] output, final int offset) {
+    for(int i = 0, length = outputSize(); i < length; i++) {
+      output[offset + i] = (byte)(state[i >>> 2] >>> (24 - ((i & 3) << 3)));
+    }
+  }
+
+  @Override
+  protected void resetState() {
+    System.arraycopy(iv, 0, state, 0, state.length);
+  }
+
+  @Override
+  protected void restoreState(final BlockDigest other) {
+    final SHA256Digest otherCasted = (SHA256Digest)other;
+
+    iv = otherCasted.iv;
+
+    System.arraycopy(otherCasted.state, 0, state, 0, state.length);
+  }
+
+  // Digest methods
+  //--------------------------------------------------
+
+  @Override
+  public SHA256Digest copy() {
+    final SHA256Digest copy = new SHA256Digest(iv, outputSize());
+
+    copy.restore(this);
+
+    return copy;
+  }
+
+}
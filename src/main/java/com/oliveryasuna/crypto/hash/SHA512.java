@@ -66,4 +66,9 @@ public class SHA512 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new SHA512Digest(SHA512Digest.SHA512_IV, OUTPUT_SIZE);
+  }
+
 }
@@ -66,4 +66,9 @@ public class SHA512_224 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new SHA512Digest(SHA512Digest.SHA512_224_IV, OUTPUT_SIZE);
+  }
+
 }
@@ -40,7 +40,7 @@ public class SHA512_256 implements HashFunction {
   // Static fields
   //--------------------------------------------------
 
-  public static final String ALGORITHM = "SHA-512/224";
+  public static final String ALGORITHM = "SHA-512/256";
 
   public static final int BLOCK_SIZE = 1024 / 8;
 
@@ -66,4 +66,9 @@ public class SHA512_256 implements HashFunction {
     return OUTPUT_SIZE;
   }
 
+  @Override
+  public Digest newDigest() throws Exception {
+    return new SHA512Digest(SHA512Digest.SHA512_256_IV, OUTPUT_SIZE);
+  }
+
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.jws;
+
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.hash.SHA384;
+import com.oliveryasuna.crypto.hash.SHA512;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The HMAC-based JWS algorithms (RFC 7518, section 3.2).
+ *
+ * @author Oliver Yasuna
+ */
+public enum JWSAlgorithm {
+
+  HS256(SHA256.getInstance()),
+
+  HS384(SHA384.getInstance()),
+
+  HS512(SHA512.getInstance());
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final JWSAlgorithm[] VALUES = values();
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the algorithm named by a range of ASCII bytes.
+   *
+   * @param name       The name.
+   * @param nameOffset The offset of the range.
+   * @param nameLength The length of the range.
+   *
+   * @return The algorithm, or {@code null}, if the name is not recognized.
+   */
+  public static JWSAlgorithm forName(final byte[] name, final int nameOffset, final int nameLength) {
+    for(final JWSAlgorithm algorithm : VALUES) {
+      if(Arrays.equals(algorithm.asciiName, 0, algorithm.asciiName.length, name, nameOffset, nameOffset + nameLength)) {
+        return algorithm;
+      }
+    }
+
+    return null;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  JWSAlgorithm(final HashFunction hashFunction) {
+    this.hashFunction = hashFunction;
+    this.asciiName = name().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final HashFunction hashFunction;
+
+  private final byte[] asciiName;
+
+  // Getters
+  //--------------------------------------------------
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+  /**
+   * Gets the minimum key length in bytes, which is the hash output size (RFC 7518, section 3.2).
+   *
+   * @return The minimum key length.
+   */
+  public int getMinimumKeyLength() {
+    return hashFunction.outputSize();
+  }
+
+}
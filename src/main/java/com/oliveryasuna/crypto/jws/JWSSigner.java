@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.jws;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.mac.HMAC;
+import com.oliveryasuna.crypto.mac.IMAC;
+import com.oliveryasuna.crypto.util.Base64URL;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Signs JWS compact serializations (RFC 7515) with an HMAC-based algorithm.
+ * <p>
+ * The encoded header is computed once, and tokens can be written into a caller's buffer, which does not allocate once the calling thread has
+ * signed with the same algorithm.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public class JWSSigner {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final int MAXIMUM_MAC_LENGTH = 64;
+
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAXIMUM_MAC_LENGTH]);
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a signer.
+   *
+   * @param algorithm The algorithm.
+   * @param mac       The MAC, whose length must be the algorithm's hash output size.
+   * @param keyId     The key ID to put in the header, or {@link KeyId#EMPTY}.
+   *                  It must be printable ASCII without quotation marks or backslashes.
+   */
+  public JWSSigner(final JWSAlgorithm algorithm, final IMAC mac, final KeyId keyId) {
+    super();
+
+    Arguments.requireNotNull(algorithm, "algorithm");
+    Arguments.requireNotNull(mac, "mac");
+    Arguments.requireTrue(mac.getMacLength() == algorithm.getHashFunction().outputSize(), "mac");
+    Arguments.requireNotNull(keyId, "keyId");
+    Arguments.requireTrue(isHeaderSafe(keyId.toString()), "keyId");
+
+    this.algorithm = algorithm;
+    this.mac = mac;
+    this.keyId = keyId;
+
+    this.encodedHeader = Base64URL.encode(header(algorithm, keyId).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  public JWSSigner(final JWSAlgorithm algorithm, final IMAC mac) {
+    this(algorithm, mac, KeyId.EMPTY);
+  }
+
+  /**
+   * Creates a signer with an HMAC.
+   *
+   * @param algorithm The algorithm.
+   * @param key       The key, which must be at least {@link JWSAlgorithm#getMinimumKeyLength()} bytes.
+   * @param keyId     The key ID to put in the header, or {@link KeyId#EMPTY}.
+   */
+  public JWSSigner(final JWSAlgorithm algorithm, final byte[] key, final KeyId keyId) throws Exception {
+    this(algorithm, new HMAC(requireKey(algorithm, key), algorithm.getHashFunction()), keyId);
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  private static boolean isHeaderSafe(final String value) {
+    for(int i = 0; i < value.length(); i++) {
+      final char character = value.charAt(i);
+
+      if(character < 0x20 || character > 0x7e || character == '"' || character == '\\') {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static String header(final JWSAlgorithm algorithm, final KeyId keyId) {
+    return ("{\"alg\":\"" + algorithm.name() + "\"" + (keyId.isEmpty() ? "" : ",\"kid\":\"" + keyId + "\"") + ",\"typ\":\"JWT\"}");
+  }
+
+  private static byte[] requireKey(final JWSAlgorithm algorithm, final byte[] key) {
+    Arguments.requireNotNull(algorithm, "algorithm");
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireGreaterOrSame(key.length, algorithm.getMinimumKeyLength(), "key.length");
+
+    return key;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final JWSAlgorithm algorithm;
+
+  protected final IMAC mac;
+
+  protected final KeyId keyId;
+
+  private final byte[] encodedHeader;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the length of the token for a payload length.
+   *
+   * @param payloadLength The payload length.
+   *
+   * @return The token length.
+   */
+  public int tokenLength(final int payloadLength) {
+    return (encodedHeader.length + 1 + Base64URL.encodedLength(payloadLength) + 1 + Base64URL.encodedLength(mac.getMacLength()));
+  }
+
+  /**
+   * Signs a range of a payload into a buffer.
+   *
+   * @param payload       The payload.
+   * @param payloadOffset The offset of the range.
+   * @param payloadLength The length of the range.
+   * @param token         The buffer, which must have room for {@link #tokenLength(int)} bytes.
+   * @param tokenOffset   The offset in the buffer.
+   *
+   * @return The token length.
+   */
+  public int sign(final byte[] payload, final int payloadOffset, final int payloadLength, final byte[] token, final int tokenOffset) throws Exception {
+    Arguments.requireNotNull(payload, "payload");
+    Arguments.requireNotNull(token, "token");
+    Objects.checkFromIndexSize(payloadOffset, payloadLength, payload.length);
+    Objects.checkFromIndexSize(tokenOffset, tokenLength(payloadLength), token.length);
+
+    int position = tokenOffset;
+
+    System.arraycopy(encodedHeader, 0, token, position, encodedHeader.length);
+    position += encodedHeader.length;
+    token[position++] = '.';
+    position += Base64URL.encode(payload, payloadOffset, payloadLength, token, position);
+
+    final byte[] tag = SCRATCH.get();
+    final int macLength = mac.getMacLength();
+
+    mac.sign(token, tokenOffset, position - tokenOffset, tag, 0);
+
+    token[position++] = '.';
+    position += Base64URL.encode(tag, 0, macLength, token, position);
+
+    return (position - tokenOffset);
+  }
+
+  public byte[] sign(final byte[] payload) throws Exception {
+    Arguments.requireNotNull(payload, "payload");
+
+    final byte[] token = new byte[tokenLength(payload.length)];
+
+    sign(payload, 0, payload.length, token, 0);
+
+    return token;
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public JWSAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public IMAC getMac() {
+    return mac;
+  }
+
+  public KeyId getKeyId() {
+    return keyId;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("algorithm", algorithm)
+        .append("mac", mac)
+        .append("keyId", keyId)
+        .toString();
+  }
+
+}
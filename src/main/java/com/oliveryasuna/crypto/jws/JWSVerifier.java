@@ -0,0 +1,516 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.jws;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.mac.IMAC;
+import com.oliveryasuna.crypto.mac.MACCache;
+import com.oliveryasuna.crypto.util.Base64URL;
+import com.oliveryasuna.crypto.util.Lease;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Verifies JWS compact serializations (RFC 7515) with an HMAC-based algorithm.
+ * <p>
+ * The header is decoded into a per-thread buffer and scanned for {@code alg} and {@code kid} without building a JSON tree. A token is rejected
+ * if its {@code alg} is not the verifier's algorithm, if it repeats {@code alg} or {@code kid}, or if it has a {@code crit} parameter. The
+ * signature is compared in constant time.
+ * <p>
+ * Only the signature is verified; claims, such as {@code exp}, are the caller's to check.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public class JWSVerifier {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The maximum length of a decoded header in bytes.
+   */
+  public static final int MAXIMUM_HEADER_LENGTH = 1024;
+
+  private static final int MAXIMUM_MAC_LENGTH = 64;
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a verifier that looks up the MAC for each token's {@code kid}.
+   * <p>
+   * Tokens without a {@code kid} are looked up with {@link KeyId#EMPTY}. Exceptions from the cache's loader, e.g., for an unknown key ID,
+   * propagate from {@link #verify(byte[], int, int)}.
+   *
+   * @param algorithm The algorithm.
+   * @param keys      The MACs by key ID.
+   */
+  public JWSVerifier(final JWSAlgorithm algorithm, final MACCache<KeyId, ? extends IMAC> keys) {
+    super();
+
+    Arguments.requireNotNull(algorithm, "algorithm");
+    Arguments.requireNotNull(keys, "keys");
+
+    this.algorithm = algorithm;
+    this.keys = keys;
+    this.mac = null;
+  }
+
+  /**
+   * Creates a verifier with a single MAC, which ignores {@code kid}.
+   *
+   * @param algorithm The algorithm.
+   * @param mac       The MAC, whose length must be the algorithm's hash output size.
+   */
+  public JWSVerifier(final JWSAlgorithm algorithm, final IMAC mac) {
+    super();
+
+    Arguments.requireNotNull(algorithm, "algorithm");
+    Arguments.requireNotNull(mac, "mac");
+    Arguments.requireTrue(mac.getMacLength() == algorithm.getHashFunction().outputSize(), "mac");
+
+    this.algorithm = algorithm;
+    this.keys = null;
+    this.mac = mac;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final JWSAlgorithm algorithm;
+
+  protected final MACCache<KeyId, ? extends IMAC> keys;
+
+  protected final IMAC mac;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Verifies a token.
+   *
+   * @param token The token.
+   *
+   * @return Whether the token is valid.
+   */
+  public boolean verify(final byte[] token) throws Exception {
+    Arguments.requireNotNull(token, "token");
+
+    return verify(token, 0, token.length);
+  }
+
+  /**
+   * Verifies a range of a token.
+   *
+   * @param token       The token.
+   * @param tokenOffset The offset of the range.
+   * @param tokenLength The length of the range.
+   *
+   * @return Whether the token is valid.
+   */
+  public boolean verify(final byte[] token, final int tokenOffset, final int tokenLength) throws Exception {
+    Arguments.requireNotNull(token, "token");
+    Objects.checkFromIndexSize(tokenOffset, tokenLength, token.length);
+
+    return (verifySignature(token, tokenOffset, tokenLength) >= 0);
+  }
+
+  /**
+   * Verifies a range of a token and decodes its payload into a buffer.
+   *
+   * @param token         The token.
+   * @param tokenOffset   The offset of the range.
+   * @param tokenLength   The length of the range.
+   * @param payload       The buffer, which must have room for the decoded payload.
+   * @param payloadOffset The offset in the buffer.
+   *
+   * @return The payload length, or {@code -1}, if the token is invalid.
+   */
+  public int verify(final byte[] token, final int tokenOffset, final int tokenLength, final byte[] payload, final int payloadOffset) throws Exception {
+    Arguments.requireNotNull(token, "token");
+    Arguments.requireNotNull(payload, "payload");
+    Objects.checkFromIndexSize(tokenOffset, tokenLength, token.length);
+
+    final int payloadEnd = verifySignature(token, tokenOffset, tokenLength);
+
+    if(payloadEnd < 0) {
+      return -1;
+    }
+
+    final int payloadStart = indexOf(token, tokenOffset, payloadEnd, (byte)'.') + 1;
+
+    return Base64URL.decode(token, payloadStart, payloadEnd - payloadStart, payload, payloadOffset);
+  }
+
+  /**
+   * Verifies a token and decodes its payload.
+   *
+   * @param token The token.
+   *
+   * @return The payload, or {@code null}, if the token is invalid.
+   */
+  public byte[] verifyPayload(final byte[] token) throws Exception {
+    Arguments.requireNotNull(token, "token");
+
+    final int payloadEnd = verifySignature(token, 0, token.length);
+
+    if(payloadEnd < 0) {
+      return null;
+    }
+
+    final int payloadStart = indexOf(token, 0, payloadEnd, (byte)'.') + 1;
+
+    return Base64URL.decode(Arrays.copyOfRange(token, payloadStart, payloadEnd));
+  }
+
+  /**
+   * Verifies the signature of a token.
+   *
+   * @return The index of the dot before the signature, or {@code -1}, if the token is invalid.
+   */
+  private int verifySignature(final byte[] token, final int offset, final int length) throws Exception {
+    final int end = offset + length;
+    final int headerEnd = indexOf(token, offset, end, (byte)'.');
+
+    if(headerEnd < 0) {
+      return -1;
+    }
+
+    final int payloadEnd = indexOf(token, headerEnd + 1, end, (byte)'.');
+
+    if(payloadEnd < 0 || indexOf(token, payloadEnd + 1, end, (byte)'.') >= 0) {
+      return -1;
+    }
+
+    final Scratch scratch = SCRATCH.get();
+
+    // Header.
+
+    final int headerLength = Base64URL.decodedLength(headerEnd - offset);
+
+    if(headerLength < 0 || headerLength > MAXIMUM_HEADER_LENGTH) {
+      return -1;
+    }
+
+    if(Base64URL.decode(token, offset, headerEnd - offset, scratch.header, 0) < 0 || !scratch.parseHeader(headerLength)) {
+      return -1;
+    }
+
+    if(JWSAlgorithm.forName(scratch.header, scratch.algorithmOffset, scratch.algorithmLength) != algorithm) {
+      return -1;
+    }
+
+    // Signature.
+
+    final int macLength = algorithm.getHashFunction().outputSize();
+
+    if(Base64URL.decodedLength(end - payloadEnd - 1) != macLength
+        || Base64URL.decode(token, payloadEnd + 1, end - payloadEnd - 1, scratch.signature, 0) != macLength) {
+      return -1;
+    }
+
+    if(this.mac != null) {
+      return verifyMac(this.mac, token, offset, payloadEnd, macLength, scratch);
+    }
+
+    // Lease the MAC, so that it is not destroyed while in use if it is evicted or invalidated concurrently.
+    try(final Lease<? extends IMAC> lease = keys.acquire(scratch.keyId(), KeyId::copy)) {
+      return verifyMac(lease.get(), token, offset, payloadEnd, macLength, scratch);
+    }
+  }
+
+  private static int verifyMac(final IMAC mac, final byte[] token, final int offset, final int payloadEnd, final int macLength,
+      final Scratch scratch) throws Exception {
+    if(mac.getMacLength() != macLength) {
+      return -1;
+    }
+
+    return (mac.verify(token, offset, payloadEnd - offset, scratch.signature, 0) ? payloadEnd : -1);
+  }
+
+  private static int indexOf(final byte[] bytes, final int from, final int to, final byte value) {
+    for(int i = from; i < to; i++) {
+      if(bytes[i] == value) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public JWSAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("algorithm", algorithm)
+        .append("keys", keys)
+        .append("mac", mac)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * Per-thread buffers, and the result of scanning a header.
+   */
+  private static final class Scratch {
+
+    private final byte[] header = new byte[MAXIMUM_HEADER_LENGTH];
+
+    private final byte[] signature = new byte[MAXIMUM_MAC_LENGTH];
+
+    private final KeyId probe = new KeyId();
+
+    private int algorithmOffset;
+
+    private int algorithmLength;
+
+    private int keyIdOffset;
+
+    private int keyIdLength;
+
+    private int position;
+
+    private int end;
+
+    private KeyId keyId() {
+      return (keyIdOffset < 0 ? KeyId.EMPTY : probe.set(header, keyIdOffset, keyIdLength));
+    }
+
+    /**
+     * Scans a JSON object for {@code alg} and {@code kid}.
+     *
+     * @return Whether the header is well-formed, has exactly one {@code alg}, at most one {@code kid}, and no {@code crit}.
+     */
+    private boolean parseHeader(final int length) {
+      algorithmOffset = -1;
+      keyIdOffset = -1;
+      position = 0;
+      end = length;
+
+      if(!expect('{')) {
+        return false;
+      }
+
+      skipWhitespace();
+
+      if(position < end && header[position] == '}') {
+        return false;
+      }
+
+      while(true) {
+        skipWhitespace();
+
+        final int nameStart = position + 1;
+
+        if(!skipString(false)) {
+          return false;
+        }
+
+        final int nameLength = position - 1 - nameStart;
+
+        if(!expect(':')) {
+          return false;
+        }
+
+        skipWhitespace();
+
+        final int valueStart = position + 1;
+
+        if(is(nameStart, nameLength, "alg")) {
+          if(algorithmOffset >= 0 || !skipString(false)) {
+            return false;
+          }
+
+          algorithmOffset = valueStart;
+          algorithmLength = position - 1 - valueStart;
+        } else if(is(nameStart, nameLength, "kid")) {
+          if(keyIdOffset >= 0 || !skipString(false)) {
+            return false;
+          }
+
+          keyIdOffset = valueStart;
+          keyIdLength = position - 1 - valueStart;
+        } else if(is(nameStart, nameLength, "crit") || !skipValue()) {
+          return false;
+        }
+
+        skipWhitespace();
+
+        if(position >= end) {
+          return false;
+        }
+
+        final byte next = header[position++];
+
+        if(next == '}') {
+          skipWhitespace();
+
+          return (position == end && algorithmOffset >= 0);
+        } else if(next != ',') {
+          return false;
+        }
+      }
+    }
+
+    private boolean is(final int offset, final int length, final String name) {
+      if(length != name.length()) {
+        return false;
+      }
+
+      for(int i = 0; i < length; i++) {
+        if(header[offset + i] != name.charAt(i)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    private void skipWhitespace() {
+      while(position < end) {
+        final byte character = header[position];
+
+        if(character != ' ' && character != '\t' && character != '\n' && character != '\r') {
+          return;
+        }
+
+        position++;
+      }
+    }
+
+    private boolean expect(final char character) {
+      skipWhitespace();
+
+      if(position >= end || header[position] != character) {
+        return false;
+      }
+
+      position++;
+
+      return true;
+    }
+
+    /**
+     * Skips a string, leaving the position after its closing quotation mark.
+     *
+     * @param allowEscapes Whether escapes are allowed. Names, {@code alg}, and {@code kid} are compared raw, so they may not have escapes.
+     */
+    private boolean skipString(final boolean allowEscapes) {
+      if(position >= end || header[position] != '"') {
+        return false;
+      }
+
+      position++;
+
+      while(position < end) {
+        final byte character = header[position++];
+
+        if(character == '"') {
+          return true;
+        } else if(character == '\\') {
+          if(!allowEscapes) {
+            return false;
+          }
+
+          position++;
+        } else if(character >= 0 && character < 0x20) {
+          return false;
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Skips any JSON value, including nested objects and arrays.
+     */
+    private boolean skipValue() {
+      int depth = 0;
+
+      do {
+        skipWhitespace();
+
+        if(position >= end) {
+          return false;
+        }
+
+        final byte character = header[position];
+
+        if(character == '"') {
+          if(!skipString(true)) {
+            return false;
+          }
+        } else if(character == '{' || character == '[') {
+          depth++;
+          position++;
+        } else if(character == '}' || character == ']') {
+          if(depth == 0) {
+            return false;
+          }
+
+          depth--;
+          position++;
+        } else if(character == ',' || character == ':') {
+          if(depth == 0) {
+            return false;
+          }
+
+          position++;
+        } else {
+          // A number or literal.
+          final int start = position;
+
+          while(position < end && isLiteralCharacter(header[position])) {
+            position++;
+          }
+
+          if(position == start) {
+            return false;
+          }
+        }
+      } while(depth > 0);
+
+      return true;
+    }
+
+    private static boolean isLiteralCharacter(final byte character) {
+      return ((character >= '0' && character <= '9') || (character >= 'a' && character <= 'z') || character == '-' || character == '+'
+          || character == '.' || character == 'E');
+    }
+
+  }
+
+}
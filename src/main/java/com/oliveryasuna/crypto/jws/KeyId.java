@@ -0,0 +1,166 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.jws;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A JWS key ID ({@code kid}), compared by its bytes.
+ * <p>
+ * A token without a {@code kid} has the {@linkplain #EMPTY empty} key ID.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public final class KeyId {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final KeyId EMPTY = new KeyId(new byte[0], 0, 0);
+
+  // Static methods
+  //--------------------------------------------------
+
+  public static KeyId of(final String value) {
+    Arguments.requireNotNull(value, "value");
+
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+    return new KeyId(bytes, 0, bytes.length);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  public KeyId(final byte[] bytes, final int offset, final int length) {
+    super();
+
+    Arguments.requireNotNull(bytes, "bytes");
+    Objects.checkFromIndexSize(offset, length, bytes.length);
+
+    this.bytes = Arrays.copyOfRange(bytes, offset, offset + length);
+    this.offset = 0;
+    this.length = length;
+    this.hash = hash(this.bytes, 0, length);
+  }
+
+  /**
+   * Creates a probe over a reused buffer.
+   */
+  KeyId() {
+    super();
+
+    this.bytes = new byte[0];
+    this.offset = 0;
+    this.length = 0;
+    this.hash = 0;
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  private static int hash(final byte[] bytes, final int offset, final int length) {
+    int hash = 1;
+
+    for(int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+
+    return hash;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  // Not final only for probes, which never escape the thread that uses them.
+
+  private byte[] bytes;
+
+  private int offset;
+
+  private int length;
+
+  private int hash;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Points this probe at a range of a buffer.
+   */
+  KeyId set(final byte[] bytes, final int offset, final int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+    this.hash = hash(bytes, offset, length);
+
+    return this;
+  }
+
+  /**
+   * Copies this key ID, e.g., to store a probe.
+   *
+   * @return The copy.
+   */
+  public KeyId copy() {
+    return (length == 0 ? EMPTY : new KeyId(bytes, offset, length));
+  }
+
+  public boolean isEmpty() {
+    return (length == 0);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public byte[] getBytes() {
+    return Arrays.copyOfRange(bytes, offset, offset + length);
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean equals(final Object object) {
+    if(this == object) return true;
+    if(object == null || getClass() != object.getClass()) return false;
+
+    final KeyId objectCasted = (KeyId)object;
+
+    return (hash == objectCasted.hash
+        && Arrays.equals(bytes, offset, offset + length, objectCasted.bytes, objectCasted.offset, objectCasted.offset + objectCasted.length));
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return new String(bytes, offset, length, StandardCharsets.UTF_8);
+  }
+
+}
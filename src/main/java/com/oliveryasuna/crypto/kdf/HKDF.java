@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.kdf;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.mac.HMAC;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * HMAC-based Extract-and-Expand Key Derivation Function (RFC 5869).
+ * <p>
+ * An instance holds the pseudorandom key, i.e., the result of the extract step, as an {@link HMAC}, so it can expand any number of keys
+ * without re-extracting or re-computing the HMAC's padded keys. Expanding writes directly into a caller's buffer and does not allocate once the
+ * calling thread has expanded with the same info length.
+ *
+ * @author Oliver Yasuna
+ */
+public class HKDF implements Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The maximum number of hash-sized blocks an expansion can produce.
+   */
+  public static final int MAXIMUM_BLOCKS = 255;
+
+  /**
+   * Per-thread buffers holding {@code T(i - 1) || info || i}.
+   */
+  private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][] {new byte[128]});
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Performs the extract step.
+   *
+   * @param salt                The salt, or {@code null}, or empty, which is equivalent to a hash-sized array of zeros.
+   * @param inputKeyingMaterial The input keying material.
+   * @param hashFunction        The hash function.
+   *
+   * @return An instance keyed by the pseudorandom key.
+   */
+  public static HKDF extract(final byte[] salt, final byte[] inputKeyingMaterial, final HashFunction hashFunction) throws Exception {
+    Arguments.requireNotNull(inputKeyingMaterial, "inputKeyingMaterial");
+    Arguments.requireNotNull(hashFunction, "hashFunction");
+
+    final byte[] saltOrZeros = (salt != null && salt.length > 0 ? salt : new byte[hashFunction.outputSize()]);
+
+    return new HKDF(new HMAC(saltOrZeros, hashFunction).sign(inputKeyingMaterial), hashFunction);
+  }
+
+  /**
+   * Performs both steps.
+   *
+   * @param salt                The salt, or {@code null}.
+   * @param inputKeyingMaterial The input keying material.
+   * @param info                The context and application specific information, or {@code null}.
+   * @param length              The length of the output keying material.
+   * @param hashFunction        The hash function.
+   *
+   * @return The output keying material.
+   */
+  public static byte[] derive(final byte[] salt, final byte[] inputKeyingMaterial, final byte[] info, final int length,
+      final HashFunction hashFunction) throws Exception {
+    final HKDF hkdf = extract(salt, inputKeyingMaterial, hashFunction);
+
+    try {
+      return hkdf.expand(info, length);
+    } finally {
+      hkdf.destroy();
+    }
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates an instance from an existing pseudorandom key, skipping the extract step.
+   *
+   * @param pseudorandomKey The pseudorandom key, at least as long as the hash function's output. Zeroed by {@link #destroy()}.
+   * @param hashFunction    The hash function.
+   */
+  public HKDF(final byte[] pseudorandomKey, final HashFunction hashFunction) throws Exception {
+    super();
+
+    Arguments.requireNotNull(pseudorandomKey, "pseudorandomKey");
+    Arguments.requireNotNull(hashFunction, "hashFunction");
+    Arguments.requireGreaterOrSame(pseudorandomKey.length, hashFunction.outputSize(), "pseudorandomKey");
+
+    this.hmac = new HMAC(pseudorandomKey, hashFunction);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final HMAC hmac;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Performs the expand step.
+   *
+   * @param info   The context and application specific information, or {@code null}.
+   * @param length The length of the output keying material.
+   *
+   * @return The output keying material.
+   */
+  public byte[] expand(final byte[] info, final int length) {
+    final byte[] output = new byte[length];
+
+    expand(info, output, 0, length);
+
+    return output;
+  }
+
+  /**
+   * Performs the expand step into a caller's buffer.
+   *
+   * @param info   The context and application specific information, or {@code null}.
+   * @param output The buffer to write the output keying material to.
+   * @param offset The offset in the buffer.
+   * @param length The length of the output keying material, at most {@link #MAXIMUM_BLOCKS} times the hash function's output size.
+   */
+  public void expand(final byte[] info, final byte[] output, int offset, int length) {
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, output.length);
+
+    final int hashLength = hmac.getMacLength();
+
+    Arguments.requireLessOrSame(length, MAXIMUM_BLOCKS * hashLength, "length");
+
+    final int infoLength = (info != null ? info.length : 0);
+    final byte[] block = scratch(hashLength + infoLength + 1);
+
+    // Lay out T(i - 1) || info || i once; only T and i change per block.
+    if(infoLength > 0) {
+      System.arraycopy(info, 0, block, hashLength, infoLength);
+    }
+
+    try {
+      for(int i = 1; length > 0; i++) {
+        block[hashLength + infoLength] = (byte)i;
+
+        // T(0) is empty.
+        final int blockOffset = (i == 1 ? hashLength : 0);
+        final int blockLength = hashLength + infoLength + 1 - blockOffset;
+
+        if(length >= hashLength) {
+          hmac.sign(block, blockOffset, blockLength, output, offset, hashLength);
+
+          if(length > hashLength) {
+            System.arraycopy(output, offset, block, 0, hashLength);
+          }
+
+          offset += hashLength;
+          length -= hashLength;
+        } else {
+          hmac.sign(block, blockOffset, blockLength, block, 0, hashLength);
+
+          System.arraycopy(block, 0, output, offset, length);
+
+          length = 0;
+        }
+      }
+    } finally {
+      // T(i) is key material.
+      Arrays.fill(block, 0, hashLength, (byte)0);
+    }
+  }
+
+  private static byte[] scratch(final int length) {
+    final byte[][] holder = SCRATCH.get();
+
+    if(holder[0].length < length) {
+      holder[0] = new byte[Math.max(length, holder[0].length << 1)];
+    }
+
+    return holder[0];
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the pseudorandom key.
+   */
+  @Override
+  public void destroy() {
+    hmac.destroy();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return hmac.isDestroyed();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  /**
+   * Gets the HMAC keyed by the pseudorandom key.
+   *
+   * @return The HMAC.
+   */
+  public HMAC getHMAC() {
+    return hmac;
+  }
+
+  public HashFunction getHashFunction() {
+    return hmac.getHashFunction();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("hashFunction", hmac.getHashFunction())
+        .toString();
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.kdf;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.mac.HMAC;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Password-Based Key Derivation Function 2 with HMAC (RFC 8018).
+ * <p>
+ * The password-keyed {@link HMAC} computes its padded-key midstates once, and the iteration loop signs into reused buffers, so it does not
+ * allocate. When the output spans more than one hash-sized block, blocks are derived in parallel.
+ *
+ * @author Oliver Yasuna
+ */
+public class PBKDF2 implements Destroyable {
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Derives a key.
+   *
+   * @param password     The password. Not modified.
+   * @param salt         The salt.
+   * @param iterations   The iteration count.
+   * @param length       The length of the derived key.
+   * @param hashFunction The hash function.
+   *
+   * @return The derived key.
+   */
+  public static byte[] derive(final byte[] password, final byte[] salt, final int iterations, final int length, final HashFunction hashFunction)
+      throws Exception {
+    Arguments.requireNotNull(password, "password");
+
+    final PBKDF2 pbkdf2 = new PBKDF2(password.clone(), hashFunction);
+
+    try {
+      return pbkdf2.derive(salt, iterations, length);
+    } finally {
+      pbkdf2.destroy();
+    }
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates an instance for a password.
+   *
+   * @param password     The password. Zeroed by {@link #destroy()}.
+   * @param hashFunction The hash function.
+   */
+  public PBKDF2(final byte[] password, final HashFunction hashFunction) throws Exception {
+    this(new HMAC(password, hashFunction));
+  }
+
+  /**
+   * Creates an instance for a password-keyed HMAC.
+   *
+   * @param hmac The HMAC.
+   */
+  public PBKDF2(final HMAC hmac) {
+    super();
+
+    Arguments.requireNotNull(hmac, "hmac");
+
+    this.hmac = hmac;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final HMAC hmac;
+
+  // Methods
+  //--------------------------------------------------
+
+  public byte[] derive(final byte[] salt, final int iterations, final int length) {
+    final byte[] output = new byte[length];
+
+    derive(salt, iterations, output, 0, length);
+
+    return output;
+  }
+
+  /**
+   * Derives a key into a caller's buffer.
+   *
+   * @param salt       The salt.
+   * @param iterations The iteration count.
+   * @param output     The buffer to write the derived key to.
+   * @param offset     The offset in the buffer.
+   * @param length     The length of the derived key.
+   */
+  public void derive(final byte[] salt, final int iterations, final byte[] output, final int offset, final int length) {
+    Arguments.requireNotNull(salt, "salt");
+    Arguments.requireGreater(iterations, 0, "iterations");
+    Arguments.requireNotNull(output, "output");
+    Arguments.requireGreater(length, 0, "length");
+    Objects.checkFromIndexSize(offset, length, output.length);
+
+    final int hashLength = hmac.getMacLength();
+    final int blockCount = (length + hashLength - 1) / hashLength;
+
+    if(blockCount == 1) {
+      deriveBlock(salt, iterations, 1, output, offset, length);
+    } else {
+      // Blocks are independent and write to disjoint ranges.
+      IntStream.rangeClosed(1, blockCount)
+          .parallel()
+          .forEach(index -> {
+            final int blockOffset = (index - 1) * hashLength;
+
+            deriveBlock(salt, iterations, index, output, offset + blockOffset, Math.min(hashLength, length - blockOffset));
+          });
+    }
+  }
+
+  /**
+   * Computes {@code T_index = U_1 ^ U_2 ^ ... ^ U_iterations}.
+   */
+  private void deriveBlock(final byte[] salt, final int iterations, final int index, final byte[] output, final int offset, final int length) {
+    final int hashLength = hmac.getMacLength();
+
+    // U_1 = PRF(P, S || INT(i))
+    final byte[] u = Arrays.copyOf(salt, Math.max(salt.length + 4, hashLength));
+
+    u[salt.length] = (byte)(index >>> 24);
+    u[salt.length + 1] = (byte)(index >>> 16);
+    u[salt.length + 2] = (byte)(index >>> 8);
+    u[salt.length + 3] = (byte)index;
+
+    hmac.sign(u, 0, salt.length + 4, u, 0, hashLength);
+
+    final byte[] t = Arrays.copyOf(u, hashLength);
+
+    // U_j = PRF(P, U_{j-1}), in place.
+    for(int j = 1; j < iterations; j++) {
+      hmac.sign(u, 0, hashLength, u, 0, hashLength);
+
+      for(int k = 0; k < hashLength; k++) {
+        t[k] ^= u[k];
+      }
+    }
+
+    System.arraycopy(t, 0, output, offset, length);
+
+    Arrays.fill(u, (byte)0);
+    Arrays.fill(t, (byte)0);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the password.
+   */
+  @Override
+  public void destroy() {
+    hmac.destroy();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return hmac.isDestroyed();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public HMAC getHMAC() {
+    return hmac;
+  }
+
+  public HashFunction getHashFunction() {
+    return hmac.getHashFunction();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("hashFunction", hmac.getHashFunction())
+        .toString();
+  }
+
+}
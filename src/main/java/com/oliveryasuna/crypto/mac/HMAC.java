@@ -19,24 +19,35 @@
 package com.oliveryasuna.crypto.mac;
 
 import com.oliveryasuna.commons.language.Arguments;
-import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.hash.Digest;
 import com.oliveryasuna.crypto.hash.HashFunction;
 import com.oliveryasuna.crypto.util.Bytes;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import javax.security.auth.Destroyable;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Represents a Hash-Based Message Authentication Code system.
  * <p>
  * HMAC is a MAC implementation backed by a cryptographic hash function.
+ * <p>
+ * The hash function's states after absorbing the inner and outer padded keys are computed once, so signing only hashes the message and the
+ * inner hash. Signing into a caller's buffer, e.g., {@link #sign(byte[], int, int, byte[], int, int)}, does not allocate once the calling thread
+ * has signed with the same hash function, as long as its digests restore states without allocating, as the SHA-1 and SHA-2 digests do.
+ * <p>
+ * Once {@link #destroy() destroyed}, the key and padded keys are zeroed and the instance can no longer sign.
  *
  * @author Oliver Yasuna
  */
-@Immutable
-public class HMAC implements IMAC {
+public class HMAC implements IMAC, Destroyable {
 
   // Static fields
   //--------------------------------------------------
@@ -45,6 +56,11 @@ public class HMAC implements IMAC {
 
   public static final byte INNER_PADDING_BYTE = 0x36;
 
+  /**
+   * Per-thread digests and buffers, shared by all instances.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
   // Constructors
   //--------------------------------------------------
 
@@ -61,6 +77,9 @@ public class HMAC implements IMAC {
 
     this.outerPaddedKey = paddedKeys[0];
     this.innerPaddedKey = paddedKeys[1];
+
+    this.outerState = computeState(outerPaddedKey);
+    this.innerState = computeState(innerPaddedKey);
   }
 
   // Constructor helper methods
@@ -81,6 +100,14 @@ public class HMAC implements IMAC {
     return new byte[][] {outerPaddedKey, innerPaddedKey};
   }
 
+  private Digest computeState(final byte[] paddedKey) throws Exception {
+    final Digest state = hashFunction.newDigest();
+
+    state.update(paddedKey);
+
+    return state;
+  }
+
   private byte[] computeBlockSizedKey(final byte[] key, final HashFunction hashFunction) throws Exception {
     final int blockSize = hashFunction.blockSize();
 
@@ -106,6 +133,22 @@ public class HMAC implements IMAC {
 
   protected final HashFunction hashFunction;
 
+  /**
+   * The hash function's state after absorbing {@link #outerPaddedKey}.
+   * <p>
+   * Only ever read, via {@link Digest#restore(Digest)}.
+   */
+  private final Digest outerState;
+
+  /**
+   * The hash function's state after absorbing {@link #innerPaddedKey}.
+   * <p>
+   * Only ever read, via {@link Digest#restore(Digest)}.
+   */
+  private final Digest innerState;
+
+  private volatile boolean destroyed;
+
   // IMAC methods
   //--------------------------------------------------
 
@@ -113,17 +156,235 @@ public class HMAC implements IMAC {
   public byte[] sign(final byte[] message) throws Exception {
     Arguments.requireNotNull(message, "message");
 
-    return hashFunction.compute(Bytes.concatenate(outerPaddedKey, hashFunction.compute(Bytes.concatenate(innerPaddedKey, message))));
+    final byte[] tag = new byte[getMacLength()];
+
+    sign(message, 0, message.length, tag, 0, tag.length);
+
+    return tag;
   }
 
+  /**
+   * Verifies the authenticity of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
   @Override
   public boolean verify(final byte[] message, final byte[] tag) throws Exception {
     Arguments.requireNotNull(message, "message");
     Arguments.requireNotNull(tag, "tag");
 
-    final byte[] expectedTag = sign(message);
+    if(tag.length != getMacLength()) {
+      return false;
+    }
+
+    return verify(message, 0, message.length, tag, 0, tag.length);
+  }
+
+  @Override
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    sign(message, messageOffset, messageLength, tag, tagOffset, getMacLength());
+  }
+
+  @Override
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    return verify(message, messageOffset, messageLength, tag, tagOffset, getMacLength());
+  }
+
+  /**
+   * Signs a message given as consecutive parts into a caller's buffer, absorbing each part directly.
+   */
+  @Override
+  public void sign(final byte[][] messages, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(messages, "messages");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    final Scratch scratch = SCRATCH.get();
+    final Digest digest = begin(scratch);
+
+    for(final byte[] message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+
+      digest.update(message, 0, message.length);
+    }
+
+    System.arraycopy(finish(scratch, digest), 0, tag, tagOffset, getMacLength());
+  }
+
+  /**
+   * Signs a message given as consecutive buffers into a caller's buffer, absorbing each buffer directly.
+   * <p>
+   * Each buffer's remaining bytes are signed, and its position is advanced to its limit.
+   */
+  @Override
+  public void sign(final ByteBuffer[] messages, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(messages, "messages");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    for(final ByteBuffer message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+    }
+
+    final Scratch scratch = SCRATCH.get();
+    final Digest digest = begin(scratch);
+
+    for(final ByteBuffer message : messages) {
+      digest.update(message);
+    }
+
+    System.arraycopy(finish(scratch, digest), 0, tag, tagOffset, getMacLength());
+  }
+
+  @Override
+  public int getMacLength() {
+    return hashFunction.outputSize();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   * <p>
+   * If {@code tagLength} is less than {@link #getMacLength()}, the tag is truncated to its leftmost bytes (RFC 2104, section 5), but to no less
+   * than {@link TruncatedHMAC#minimumTagLength(HashFunction)}.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to. May be the message.
+   * @param tagOffset     The offset in the buffer.
+   * @param tagLength     The number of tag bytes to write.
+   */
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset,
+      final int tagLength) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, tagLength, tag.length);
+    Arguments.requireGreaterOrSame(tagLength, TruncatedHMAC.minimumTagLength(hashFunction), "tagLength");
+    Arguments.requireLessOrSame(tagLength, getMacLength(), "tagLength");
+
+    final byte[] output = compute(message, messageOffset, messageLength);
+
+    System.arraycopy(output, 0, tag, tagOffset, tagLength);
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a, possibly truncated, tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The tag.
+   * @param tagOffset     The offset of the tag.
+   * @param tagLength     The length of the tag, at least {@link TruncatedHMAC#minimumTagLength(HashFunction)}.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset,
+      final int tagLength) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, tagLength, tag.length);
+    Arguments.requireGreaterOrSame(tagLength, TruncatedHMAC.minimumTagLength(hashFunction), "tagLength");
+    Arguments.requireLessOrSame(tagLength, getMacLength(), "tagLength");
+
+    final byte[] output = compute(message, messageOffset, messageLength);
+
+    return Bytes.constantTimeEquals(output, 0, tag, tagOffset, tagLength);
+  }
+
+  /**
+   * Computes the full tag into the calling thread's scratch buffer.
+   *
+   * @return The scratch buffer, whose first {@link #getMacLength()} bytes are the tag.
+   */
+  private byte[] compute(final byte[] message, final int messageOffset, final int messageLength) {
+    final Scratch scratch = SCRATCH.get();
+    final Digest digest = begin(scratch);
+
+    digest.update(message, messageOffset, messageLength);
+
+    return finish(scratch, digest);
+  }
+
+  /**
+   * Gets the calling thread's working digest, restored to {@link #innerState}.
+   */
+  private Digest begin(final Scratch scratch) {
+    requireNotDestroyed();
+
+    return scratch.digest(hashFunction, innerState);
+  }
+
+  /**
+   * Completes the inner hash, and computes the outer hash into the calling thread's scratch buffer.
+   *
+   * @return The scratch buffer, whose first {@link #getMacLength()} bytes are the tag.
+   */
+  private byte[] finish(final Scratch scratch, final Digest digest) {
+    final int macLength = getMacLength();
+    final byte[] innerHash = scratch.innerHash(macLength);
+    final byte[] output = scratch.output(macLength);
+
+    digest.digest(innerHash, 0);
+
+    digest.restore(outerState);
+    digest.update(innerHash, 0, macLength);
+    digest.digest(output, 0);
+
+    // The midstates are read without a lock, so a concurrent destroy may have reset them mid-read. If so, the output is garbage and must not
+    // escape the scratch buffer. The fence keeps the midstate reads above from being reordered after the check.
+    VarHandle.loadLoadFence();
+    requireNotDestroyed();
+
+    return output;
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the key and padded keys.
+   * <p>
+   * Note that the key is the array passed to the constructor, not a copy.
+   * <p>
+   * Operations in flight on other threads fail with an {@link IllegalStateException}, rather than output a tag computed from zeroed state.
+   */
+  @Override
+  public void destroy() {
+    destroyed = true;
+
+    // Publish the flag before any state is cleared, so that a reader who sees cleared state also sees the flag.
+    VarHandle.storeStoreFence();
+
+    Arrays.fill(key, (byte)0);
+    Arrays.fill(outerPaddedKey, (byte)0);
+    Arrays.fill(innerPaddedKey, (byte)0);
+
+    outerState.reset();
+    innerState.reset();
+  }
 
-    return Arrays.equals(expectedTag, tag);
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+  protected final void requireNotDestroyed() {
+    if(destroyed) {
+      throw new IllegalStateException("Destroyed.");
+    }
   }
 
   // Getters
@@ -179,4 +440,54 @@ public class HMAC implements IMAC {
         .toString();
   }
 
+  // Nested
+  //--------------------------------------------------
+
+  private static final class Scratch {
+
+    private Scratch() {
+      super();
+    }
+
+    /**
+     * Working digests, keyed by hash function.
+     */
+    private final Map<HashFunction, Digest> digests = new IdentityHashMap<>();
+
+    private byte[] innerHash = new byte[64];
+
+    private byte[] output = new byte[64];
+
+    private Digest digest(final HashFunction hashFunction, final Digest state) {
+      Digest digest = digests.get(hashFunction);
+
+      if(digest == null) {
+        digest = state.copy();
+
+        digests.put(hashFunction, digest);
+      } else {
+        digest.restore(state);
+      }
+
+      return digest;
+    }
+
+    private byte[] innerHash(final int length) {
+      if(innerHash.length < length) {
+        innerHash = new byte[length];
+      }
+
+      return innerHash;
+    }
+
+    private byte[] output(final int length) {
+      if(output.length < length) {
+        output = new byte[length];
+      }
+
+      return output;
+    }
+
+  }
+
 }
@@ -18,6 +18,13 @@
 
 package com.oliveryasuna.crypto.mac;
 
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Represents a Message Authentication Code system.
  *
@@ -44,4 +51,166 @@ public interface IMAC {
    */
   boolean verify(byte[] message, byte[] tag) throws Exception;
 
+  /**
+   * Gets the length of the tags this MAC produces.
+   *
+   * @return The tag length in bytes.
+   *
+   * @implSpec The return value must never change. The default implementation signs an empty message, so that implementations predating this
+   *     method keep working; implementations should override it, as signing may be costly or, e.g., for a one-time key, not repeatable.
+   */
+  default int getMacLength() {
+    try {
+      return sign(new byte[0]).length;
+    } catch(final Exception e) {
+      throw new IllegalStateException("Could not determine the MAC length.", e);
+    }
+  }
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to.
+   * @param tagOffset     The offset in the buffer, which must have room for {@link #getMacLength()} bytes.
+   *
+   * @implSpec The default implementation copies the range and calls {@link #sign(byte[])}. Implementations should override it to avoid
+   *     allocating.
+   */
+  default void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset)
+      throws Exception {
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    final byte[] computed = sign(Arrays.copyOfRange(message, messageOffset, messageOffset + messageLength));
+
+    System.arraycopy(computed, 0, tag, tagOffset, computed.length);
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a tag, in constant time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer holding the tag.
+   * @param tagOffset     The offset of the tag, which is {@link #getMacLength()} bytes long.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   *
+   * @implSpec The default implementation copies the range and calls {@link #sign(byte[])}. Implementations should override it to avoid
+   *     allocating.
+   */
+  default boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset)
+      throws Exception {
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    final byte[] computed = sign(Arrays.copyOfRange(message, messageOffset, messageOffset + messageLength));
+
+    return Bytes.constantTimeEquals(computed, 0, tag, tagOffset, computed.length);
+  }
+
+  /**
+   * Signs a message given as consecutive parts, e.g., a header, body, and trailer, as if they were concatenated.
+   *
+   * @param messages The parts.
+   *
+   * @return The tag.
+   */
+  default byte[] sign(final byte[]... messages) throws Exception {
+    final byte[] tag = new byte[getMacLength()];
+
+    sign(messages, tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Signs a message given as consecutive parts into a caller's buffer.
+   *
+   * @param messages  The parts.
+   * @param tag       The buffer to write the tag to.
+   * @param tagOffset The offset in the buffer, which must have room for {@link #getMacLength()} bytes.
+   *
+   * @implSpec The default implementation concatenates the parts. Implementations should override it to avoid copying.
+   */
+  default void sign(final byte[][] messages, final byte[] tag, final int tagOffset) throws Exception {
+    Arguments.requireNotNull(messages, "messages");
+
+    int length = 0;
+
+    for(final byte[] message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+
+      length = Math.addExact(length, message.length);
+    }
+
+    final byte[] concatenated = new byte[length];
+    int position = 0;
+
+    for(final byte[] message : messages) {
+      System.arraycopy(message, 0, concatenated, position, message.length);
+
+      position += message.length;
+    }
+
+    sign(concatenated, 0, length, tag, tagOffset);
+  }
+
+  /**
+   * Signs a message given as consecutive buffers, e.g., a header, body, and trailer, as if they were concatenated.
+   * <p>
+   * Each buffer's remaining bytes are signed, and its position is advanced to its limit.
+   *
+   * @param messages The buffers.
+   *
+   * @return The tag.
+   */
+  default byte[] sign(final ByteBuffer... messages) throws Exception {
+    final byte[] tag = new byte[getMacLength()];
+
+    sign(messages, tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Signs a message given as consecutive buffers into a caller's buffer.
+   * <p>
+   * Each buffer's remaining bytes are signed, and its position is advanced to its limit.
+   *
+   * @param messages  The buffers.
+   * @param tag       The buffer to write the tag to.
+   * @param tagOffset The offset in the buffer, which must have room for {@link #getMacLength()} bytes.
+   *
+   * @implSpec The default implementation concatenates the buffers. Implementations should override it to avoid copying.
+   */
+  default void sign(final ByteBuffer[] messages, final byte[] tag, final int tagOffset) throws Exception {
+    Arguments.requireNotNull(messages, "messages");
+
+    int length = 0;
+
+    for(final ByteBuffer message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+
+      length = Math.addExact(length, message.remaining());
+    }
+
+    final byte[] concatenated = new byte[length];
+    int position = 0;
+
+    for(final ByteBuffer message : messages) {
+      final int remaining = message.remaining();
+
+      message.get(concatenated, position, remaining);
+
+      position += remaining;
+    }
+
+    sign(concatenated, 0, length, tag, tagOffset);
+  }
+
 }
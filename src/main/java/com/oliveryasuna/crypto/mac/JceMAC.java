@@ -19,22 +19,43 @@
 package com.oliveryasuna.crypto.mac;
 
 import com.oliveryasuna.commons.language.Arguments;
-import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.util.Bytes;
 
 import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Wraps {@link Mac}.
+ * <p>
+ * The wrapped {@link Mac} is stateful, so access to it is synchronized.
+ * <p>
+ * A key with a raw encoding, e.g., a {@link javax.crypto.spec.SecretKeySpec}, is copied into a key this instance can zero, and the {@link Mac}
+ * is initialized with the copy. Once {@link #destroy() destroyed}, the copy is zeroed and the {@link Mac} is re-initialized with a zero key,
+ * which overwrites the key state it derived, e.g., HMAC's padded keys. The key passed to the constructor is the caller's to destroy, if it
+ * supports it; {@link javax.crypto.spec.SecretKeySpec} does not.
  *
  * @author Oliver Yasuna.
  */
-@Immutable
-public class JceMAC implements IMAC {
+public class JceMAC implements IMAC, Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * Per-thread buffers for computed tags being verified.
+   */
+  private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][] {new byte[64]});
 
   // Constructors
   //--------------------------------------------------
@@ -68,7 +89,15 @@ public class JceMAC implements IMAC {
   //--------------------------------------------------
 
   private void initMac() throws InvalidKeyException {
-    mac.init(key);
+    final byte[] encoded = ("RAW".equalsIgnoreCase(key.getFormat()) ? key.getEncoded() : null);
+
+    if(encoded != null) {
+      ownedKey = new OwnedKey(encoded, key.getAlgorithm());
+
+      mac.init(ownedKey);
+    } else {
+      mac.init(key);
+    }
   }
 
   // Fields
@@ -76,8 +105,15 @@ public class JceMAC implements IMAC {
 
   private final Key key;
 
+  /**
+   * The copy of a raw {@link #key} that {@link #mac} was initialized with, or {@code null}.
+   */
+  private OwnedKey ownedKey;
+
   private final Mac mac;
 
+  private volatile boolean destroyed;
+
   // IMAC methods
   //--------------------------------------------------
 
@@ -85,7 +121,11 @@ public class JceMAC implements IMAC {
   public byte[] sign(final byte[] message) {
     Arguments.requireNotNull(message, "message");
 
-    return mac.doFinal(message);
+    synchronized(mac) {
+      requireNotDestroyed();
+
+      return mac.doFinal(message);
+    }
   }
 
   @Override
@@ -95,7 +135,169 @@ public class JceMAC implements IMAC {
 
     final byte[] expectedTag = sign(message);
 
-    return Arrays.equals(expectedTag, tag);
+    return MessageDigest.isEqual(expectedTag, tag);
+  }
+
+  @Override
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    synchronized(mac) {
+      requireNotDestroyed();
+
+      mac.update(message, messageOffset, messageLength);
+
+      doFinal(tag, tagOffset);
+    }
+  }
+
+  /**
+   * Signs a message given as consecutive parts into a caller's buffer, updating the {@link Mac} with each part directly.
+   */
+  @Override
+  public void sign(final byte[][] messages, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(messages, "messages");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    // Checked before updating, so that a failure does not leave the Mac part-way through a message.
+    for(final byte[] message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+    }
+
+    synchronized(mac) {
+      requireNotDestroyed();
+
+      for(final byte[] message : messages) {
+        mac.update(message);
+      }
+
+      doFinal(tag, tagOffset);
+    }
+  }
+
+  /**
+   * Signs a message given as consecutive buffers into a caller's buffer, updating the {@link Mac} with each buffer directly.
+   * <p>
+   * Each buffer's remaining bytes are signed, and its position is advanced to its limit.
+   */
+  @Override
+  public void sign(final ByteBuffer[] messages, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(messages, "messages");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    for(final ByteBuffer message : messages) {
+      Arguments.requireNotNull(message, "messages[i]");
+    }
+
+    synchronized(mac) {
+      requireNotDestroyed();
+
+      for(final ByteBuffer message : messages) {
+        mac.update(message);
+      }
+
+      doFinal(tag, tagOffset);
+    }
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer holding the tag.
+   * @param tagOffset     The offset of the tag, which is {@link #getMacLength()} bytes long.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, getMacLength(), tag.length);
+
+    final byte[][] holder = SCRATCH.get();
+
+    if(holder[0].length < getMacLength()) {
+      holder[0] = new byte[getMacLength()];
+    }
+
+    sign(message, messageOffset, messageLength, holder[0], 0);
+
+    return Bytes.constantTimeEquals(holder[0], 0, tag, tagOffset, getMacLength());
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the copy of the key and re-initializes the {@link Mac} with a zero key, and, if supported, destroys the key.
+   * <p>
+   * If the key had no raw encoding, or the {@link Mac} rejects a zero key of the same length, the {@link Mac} is only reset, so its key state is
+   * left to the garbage collector.
+   */
+  @Override
+  public void destroy() {
+    synchronized(mac) {
+      destroyed = true;
+
+      mac.reset();
+
+      if(ownedKey != null) {
+        final OwnedKey zeroKey = new OwnedKey(new byte[ownedKey.length()], ownedKey.getAlgorithm());
+
+        try {
+          mac.init(zeroKey);
+        } catch(final InvalidKeyException e) {
+          // E.g., a weak key check; the key state stays in the Mac.
+        }
+
+        ownedKey.destroy();
+      }
+    }
+
+    if(key instanceof Destroyable && !((Destroyable)key).isDestroyed()) {
+      try {
+        ((Destroyable)key).destroy();
+      } catch(final DestroyFailedException e) {
+        // Not all keys support destruction, e.g., SecretKeySpec.
+      }
+    }
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private void requireNotDestroyed() {
+    if(destroyed) {
+      throw new IllegalStateException("Destroyed.");
+    }
+  }
+
+  /**
+   * Completes the {@link Mac} into a buffer whose room has already been checked.
+   * <p>
+   * Must be called while synchronized on {@link #mac}.
+   */
+  private void doFinal(final byte[] tag, final int tagOffset) {
+    try {
+      mac.doFinal(tag, tagOffset);
+    } catch(final ShortBufferException e) {
+      // Checked by callers.
+      throw new IllegalStateException(e);
+    }
   }
 
   // Getters
@@ -109,6 +311,7 @@ public class JceMAC implements IMAC {
     return mac.getAlgorithm();
   }
 
+  @Override
   public int getMacLength() {
     return mac.getMacLength();
   }
@@ -116,4 +319,60 @@ public class JceMAC implements IMAC {
   // Object methods
   //--------------------------------------------------
 
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * A raw secret key whose bytes can be zeroed, unlike {@link javax.crypto.spec.SecretKeySpec}'s.
+   */
+  private static final class OwnedKey implements SecretKey {
+
+    private static final long serialVersionUID = 1L;
+
+    private OwnedKey(final byte[] bytes, final String algorithm) {
+      super();
+
+      this.bytes = bytes;
+      this.algorithm = algorithm;
+    }
+
+    private final byte[] bytes;
+
+    private final String algorithm;
+
+    private volatile boolean destroyed;
+
+    private int length() {
+      return bytes.length;
+    }
+
+    @Override
+    public String getAlgorithm() {
+      return algorithm;
+    }
+
+    @Override
+    public String getFormat() {
+      return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+      return bytes.clone();
+    }
+
+    @Override
+    public void destroy() {
+      destroyed = true;
+
+      Arrays.fill(bytes, (byte)0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+      return destroyed;
+    }
+
+  }
+
 }
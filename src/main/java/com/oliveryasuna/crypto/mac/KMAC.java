@@ -0,0 +1,332 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.KeccakSponge;
+import com.oliveryasuna.crypto.util.Bytes;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.nio.charset.StandardCharsets;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * KECCAK Message Authentication Code (NIST SP 800-185).
+ * <p>
+ * The sponge's state after absorbing the function name, customization string, and key is computed once, so signing only absorbs the message
+ * and squeezes the tag. Signing into a caller's buffer does not allocate once the calling thread has signed with a KMAC.
+ *
+ * @author Oliver Yasuna
+ * @see KMAC128
+ * @see KMAC256
+ */
+public abstract class KMAC implements IMAC, Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] FUNCTION_NAME = "KMAC".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Per-thread working sponges, shared by all instances, and buffers for computed tags being verified.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  // Static helper methods
+  //--------------------------------------------------
+
+  /**
+   * Absorbs {@code left_encode(value)}.
+   */
+  private static void absorbLeftEncoded(final KeccakSponge sponge, final long value) {
+    final int length = encodedLength(value);
+
+    sponge.absorb((byte)length);
+    absorbBigEndian(sponge, value, length);
+  }
+
+  /**
+   * Absorbs {@code right_encode(value)}.
+   */
+  private static void absorbRightEncoded(final KeccakSponge sponge, final long value) {
+    final int length = encodedLength(value);
+
+    absorbBigEndian(sponge, value, length);
+    sponge.absorb((byte)length);
+  }
+
+  /**
+   * Absorbs {@code encode_string(string)}.
+   */
+  private static void absorbEncodedString(final KeccakSponge sponge, final byte[] string) {
+    absorbLeftEncoded(sponge, (long)string.length << 3);
+    sponge.absorb(string, 0, string.length);
+  }
+
+  private static void absorbBigEndian(final KeccakSponge sponge, final long value, final int length) {
+    for(int i = length - 1; i >= 0; i--) {
+      sponge.absorb((byte)(value >>> (i << 3)));
+    }
+  }
+
+  private static int encodedLength(final long value) {
+    return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 7) >>> 3);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a KMAC instance.
+   *
+   * @param rate          The sponge's rate in bytes.
+   * @param key           The key.
+   * @param outputLength  The tag length in bytes.
+   * @param customization The customization string, which may be empty.
+   */
+  protected KMAC(final int rate, final byte[] key, final int outputLength, final byte[] customization) {
+    super();
+
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireGreater(outputLength, 0, "outputLength");
+    Arguments.requireNotNull(customization, "customization");
+
+    this.outputLength = outputLength;
+    this.customization = customization.clone();
+
+    this.keyedState = computeKeyedState(rate, key);
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  private KeccakSponge computeKeyedState(final int rate, final byte[] key) {
+    final KeccakSponge sponge = new KeccakSponge(rate);
+
+    // bytepad(encode_string("KMAC") || encode_string(S), rate)
+    absorbLeftEncoded(sponge, rate);
+    absorbEncodedString(sponge, FUNCTION_NAME);
+    absorbEncodedString(sponge, customization);
+    sponge.absorbZerosToRate();
+
+    // bytepad(encode_string(K), rate)
+    absorbLeftEncoded(sponge, rate);
+    absorbEncodedString(sponge, key);
+    sponge.absorbZerosToRate();
+
+    return sponge;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final int outputLength;
+
+  protected final byte[] customization;
+
+  /**
+   * The sponge's state after absorbing the function name, customization string, and key.
+   * <p>
+   * Only ever read, via {@link KeccakSponge#restore(KeccakSponge)}.
+   */
+  private final KeccakSponge keyedState;
+
+  private volatile boolean destroyed;
+
+  // IMAC methods
+  //--------------------------------------------------
+
+  @Override
+  public byte[] sign(final byte[] message) {
+    Arguments.requireNotNull(message, "message");
+
+    final byte[] tag = new byte[outputLength];
+
+    sign(message, 0, message.length, tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Verifies the authenticity of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final byte[] tag) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+
+    if(tag.length != outputLength) {
+      return false;
+    }
+
+    return verify(message, 0, message.length, tag, 0);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Resets the keyed state.
+   */
+  @Override
+  public void destroy() {
+    destroyed = true;
+
+    // Publish the flag before the keyed state is cleared, so that a reader who sees the cleared state also sees the flag.
+    VarHandle.storeStoreFence();
+
+    keyedState.reset();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to.
+   * @param tagOffset     The offset in the buffer, which must have room for {@link #getOutputLength()} bytes.
+   */
+  @Override
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, outputLength, tag.length);
+
+    if(destroyed) {
+      throw new IllegalStateException("Destroyed.");
+    }
+
+    final KeccakSponge sponge = SCRATCH.get().sponge;
+
+    sponge.restore(keyedState);
+
+    // A concurrent destroy may have reset the keyed state mid-restore, so check again before anything is squeezed. The fence keeps the reads
+    // above from being reordered after the check.
+    VarHandle.loadLoadFence();
+
+    if(destroyed) {
+      sponge.reset();
+
+      throw new IllegalStateException("Destroyed.");
+    }
+    sponge.absorb(message, messageOffset, messageLength);
+    absorbRightEncoded(sponge, (long)outputLength << 3);
+    sponge.pad(KeccakSponge.CSHAKE_SUFFIX);
+    sponge.squeeze(tag, tagOffset, outputLength);
+    sponge.reset();
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer holding the tag.
+   * @param tagOffset     The offset of the tag, which is {@link #getOutputLength()} bytes long.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, outputLength, tag.length);
+
+    final byte[] expectedTag = SCRATCH.get().tag(outputLength);
+
+    sign(message, messageOffset, messageLength, expectedTag, 0);
+
+    return Bytes.constantTimeEquals(expectedTag, 0, tag, tagOffset, outputLength);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getOutputLength() {
+    return outputLength;
+  }
+
+  @Override
+  public int getMacLength() {
+    return outputLength;
+  }
+
+  public byte[] getCustomization() {
+    return customization.clone();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("outputLength", outputLength)
+        .append("customization", customization)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  private static final class Scratch {
+
+    private Scratch() {
+      super();
+    }
+
+    /**
+     * Restoring copies the rate, so one sponge serves both KMAC128 and KMAC256.
+     */
+    private final KeccakSponge sponge = new KeccakSponge(KMAC128.RATE);
+
+    private byte[] tag = new byte[64];
+
+    private byte[] tag(final int length) {
+      if(tag.length < length) {
+        tag = new byte[length];
+      }
+
+      return tag;
+    }
+
+  }
+
+}
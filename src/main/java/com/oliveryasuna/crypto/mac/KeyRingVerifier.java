@@ -0,0 +1,288 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Bytes;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifies tags against an ordered ring of keys, e.g., the current and previous keys during a rotation.
+ * <p>
+ * If a {@link Hint} names the key a message was signed with, that key is tried first. If it does not match, e.g., as the hint is stale, or
+ * there is no hint, every other key is tried, without stopping at the first match, so that the time taken does not reveal which key matched.
+ * If several keys match, the first, i.e., the most likely, is selected.
+ * Either way, each candidate's tag is computed into one per-thread buffer and compared in constant time.
+ * <p>
+ * Hits are counted per key, so that a key that no longer verifies anything can be retired. The keys are fixed, but the counts are not, and a
+ * verifier {@linkplain #rotate(IMAC, int) rotated} from this one shares the counts of the keys it keeps.
+ *
+ * @author Oliver Yasuna
+ */
+public class KeyRingVerifier {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1][0]);
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a verifier.
+   *
+   * @param keys The keys, most likely first, e.g., newest first. All must have the same MAC length.
+   * @param hint Reads the index of the likely key from a message.
+   */
+  public KeyRingVerifier(final List<? extends IMAC> keys, final Hint hint) {
+    this(keys, hint, null);
+  }
+
+  public KeyRingVerifier(final List<? extends IMAC> keys) {
+    this(keys, Hint.NONE);
+  }
+
+  private KeyRingVerifier(final List<? extends IMAC> keys, final Hint hint, final LongAdder[] hitCounts) {
+    super();
+
+    Arguments.requireNotNull(keys, "keys");
+    Arguments.requireFalse(keys.isEmpty(), "keys");
+    Arguments.requireNotNull(hint, "hint");
+
+    final IMAC[] macs = keys.toArray(new IMAC[0]);
+
+    for(final IMAC mac : macs) {
+      Arguments.requireNotNull(mac, "keys[i]");
+      Arguments.requireTrue(mac.getMacLength() == macs[0].getMacLength(), "keys");
+    }
+
+    this.keys = macs;
+    this.hint = hint;
+    this.macLength = macs[0].getMacLength();
+    this.hitCounts = (hitCounts != null ? hitCounts : newHitCounts(macs.length));
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  private static LongAdder[] newHitCounts(final int length) {
+    final LongAdder[] hitCounts = new LongAdder[length];
+
+    for(int i = 0; i < length; i++) {
+      hitCounts[i] = new LongAdder();
+    }
+
+    return hitCounts;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final IMAC[] keys;
+
+  protected final Hint hint;
+
+  protected final int macLength;
+
+  private final LongAdder[] hitCounts;
+
+  private final LongAdder missCount = new LongAdder();
+
+  // Methods
+  //--------------------------------------------------
+
+  public boolean verify(final byte[] message, final byte[] tag) throws Exception {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+
+    if(tag.length != macLength) {
+      missCount.increment();
+
+      return false;
+    }
+
+    return (verify(message, 0, message.length, tag, 0) >= 0);
+  }
+
+  /**
+   * Verifies a range of a message.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The tag.
+   * @param tagOffset     The offset of the tag.
+   *
+   * @return The index of the key that verified the message, or {@code -1}, if none did.
+   */
+  public int verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) throws Exception {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, macLength, tag.length);
+
+    final byte[][] scratch = SCRATCH.get();
+
+    if(scratch[0].length < macLength) {
+      scratch[0] = new byte[macLength];
+    }
+
+    final byte[] computed = scratch[0];
+    final int hinted = hint.keyIndex(message, messageOffset, messageLength);
+
+    // One more than the index of the first key that matched, or 0.
+    int matched = 0;
+
+    if(hinted >= 0 && hinted < keys.length) {
+      keys[hinted].sign(message, messageOffset, messageLength, computed, 0);
+
+      if(Bytes.constantTimeEquals(computed, 0, tag, tagOffset, macLength)) {
+        matched = hinted + 1;
+      }
+    }
+
+    if(matched == 0) {
+      for(int i = 0; i < keys.length; i++) {
+        if(i == hinted) {
+          continue;
+        }
+
+        keys[i].sign(message, messageOffset, messageLength, computed, 0);
+
+        // All ones, if the tags are equal and nothing has matched yet.
+        final int mask = -(Bytes.constantTimeEquals(computed, 0, tag, tagOffset, macLength) ? 1 : 0) & ((matched - 1) >> 31);
+
+        matched = (matched & ~mask) | ((i + 1) & mask);
+      }
+    }
+
+    if(matched == 0) {
+      missCount.increment();
+
+      return -1;
+    }
+
+    hitCounts[matched - 1].increment();
+
+    return (matched - 1);
+  }
+
+  /**
+   * Creates a verifier with a new key first, keeping the hit counts of the keys it keeps.
+   *
+   * @param key         The new key.
+   * @param maximumKeys The maximum number of keys to keep, including the new key. The oldest keys are dropped.
+   *
+   * @return The verifier.
+   */
+  public KeyRingVerifier rotate(final IMAC key, final int maximumKeys) {
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireGreaterOrSame(maximumKeys, 1, "maximumKeys");
+
+    final int length = Math.min(keys.length + 1, maximumKeys);
+    final List<IMAC> rotatedKeys = new ArrayList<>(length);
+    final LongAdder[] rotatedHitCounts = new LongAdder[length];
+
+    rotatedKeys.add(key);
+    rotatedHitCounts[0] = new LongAdder();
+
+    for(int i = 1; i < length; i++) {
+      rotatedKeys.add(keys[i - 1]);
+      rotatedHitCounts[i] = hitCounts[i - 1];
+    }
+
+    return new KeyRingVerifier(rotatedKeys, hint, rotatedHitCounts);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public List<IMAC> getKeys() {
+    return List.of(keys);
+  }
+
+  public int getMacLength() {
+    return macLength;
+  }
+
+  /**
+   * Gets the number of messages a key has verified.
+   *
+   * @param index The index of the key.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount(final int index) {
+    Objects.checkIndex(index, hitCounts.length);
+
+    return hitCounts[index].sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("keys", keys)
+        .append("hint", hint)
+        .append("macLength", macLength)
+        .append("hitCounts", hitCounts)
+        .append("missCount", missCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * Reads which key a message was likely signed with, e.g., from a key ID byte in its header.
+   */
+  @FunctionalInterface
+  public interface Hint {
+
+    /**
+     * A hint that never names a key, so that every key is tried.
+     */
+    Hint NONE = (message, messageOffset, messageLength) -> -1;
+
+    /**
+     * Reads the index of the likely key from a range of a message.
+     *
+     * @param message       The message.
+     * @param messageOffset The offset of the range.
+     * @param messageLength The length of the range.
+     *
+     * @return The index of the key, or a negative value, if unknown. If the index is out of range, every key is tried.
+     */
+    int keyIndex(byte[] message, int messageOffset, int messageLength);
+
+  }
+
+}
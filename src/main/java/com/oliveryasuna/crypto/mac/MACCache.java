@@ -0,0 +1,421 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Lease;
+import com.oliveryasuna.crypto.util.RefCounted;
+import com.oliveryasuna.crypto.util.SegmentedLRUMap;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded, concurrent cache of ready-to-use MACs, keyed by key identifier.
+ * <p>
+ * The cache is a {@link SegmentedLRUMap}, so it is split into segments, each guarded by its own lock and evicting in least-recently-used
+ * order. Entries may also expire a fixed duration after they were loaded.
+ * <p>
+ * A MAC {@link #acquire(Object) acquired} through a {@link Lease} is reference-counted: once it has been evicted, expired, or invalidated, and
+ * every lease on it has been closed, it is {@link Destroyable#destroy() destroyed} if it supports it, e.g., {@link HMAC} and {@link JceMAC},
+ * which zeroes its key material. A MAC returned by {@link #get(Object)} or {@link #getIfPresent(Object)} may be held indefinitely by the caller,
+ * so the cache never destroys it, not even once it is evicted; its key material stays in memory until it is garbage-collected. Use leases
+ * where key material must be zeroed.
+ *
+ * @param <K> The type of key identifiers.
+ * @param <M> The type of MACs.
+ *
+ * @author Oliver Yasuna
+ */
+public class MACCache<K, M extends IMAC> {
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a cache.
+   *
+   * @param maximumSize      The maximum number of MACs to hold.
+   * @param expireAfterWrite How long a MAC is held after it is loaded, or {@code null}, if MACs do not expire.
+   * @param loader           Loads the MAC for a key identifier on a miss.
+   */
+  public MACCache(final int maximumSize, final Duration expireAfterWrite, final Loader<K, M> loader) {
+    super();
+
+    Arguments.requireGreater(maximumSize, 0, "maximumSize");
+    if(expireAfterWrite != null) {
+      Arguments.requireFalse(expireAfterWrite.isZero(), "expireAfterWrite");
+      Arguments.requireFalse(expireAfterWrite.isNegative(), "expireAfterWrite");
+    }
+    Arguments.requireNotNull(loader, "loader");
+
+    this.entries = new SegmentedLRUMap<>(maximumSize);
+    this.expireAfterWriteNanoseconds = (expireAfterWrite != null ? expireAfterWrite.toNanos() : 0L);
+    this.loader = loader;
+  }
+
+  public MACCache(final int maximumSize, final Loader<K, M> loader) {
+    this(maximumSize, null, loader);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final SegmentedLRUMap<K, CachedMAC<M>> entries;
+
+  private final long expireAfterWriteNanoseconds;
+
+  private final Loader<K, M> loader;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the MAC for a key identifier, loading it if it is absent or expired.
+   * <p>
+   * The cache will not destroy the MAC; prefer {@link #acquire(Object)}.
+   *
+   * @param keyId The key identifier.
+   *
+   * @return The MAC.
+   */
+  public M get(final K keyId) throws Exception {
+    return get(keyId, UnaryOperator.identity());
+  }
+
+  /**
+   * Gets the MAC for a key identifier, loading it if it is absent or expired, looking it up with a probe.
+   * <p>
+   * This allows a lookup without allocating a key identifier, e.g., with a mutable probe wrapping a range of a reused buffer. Only on a miss is
+   * the key identifier to store created.
+   * <p>
+   * The cache will not destroy the MAC; prefer {@link #acquire(Object, UnaryOperator)}.
+   *
+   * @param probe        The probe, which must be equal to, and have the same hash code as, the key identifier it creates.
+   * @param keyIdFactory Creates the key identifier to store from the probe.
+   *
+   * @return The MAC.
+   */
+  public M get(final K probe, final UnaryOperator<K> keyIdFactory) throws Exception {
+    return lookUp(probe, keyIdFactory, RefCounted::escape);
+  }
+
+  /**
+   * Leases the MAC for a key identifier, loading it if it is absent or expired.
+   * <p>
+   * The MAC is not destroyed before the lease is closed, even if it is evicted, expired, or invalidated in the meantime.
+   *
+   * @param keyId The key identifier.
+   *
+   * @return The lease, which must be closed.
+   */
+  public Lease<M> acquire(final K keyId) throws Exception {
+    return acquire(keyId, UnaryOperator.identity());
+  }
+
+  /**
+   * Leases the MAC for a key identifier, loading it if it is absent or expired, looking it up with a probe.
+   *
+   * @param probe        The probe, which must be equal to, and have the same hash code as, the key identifier it creates.
+   * @param keyIdFactory Creates the key identifier to store from the probe.
+   *
+   * @return The lease, which must be closed.
+   *
+   * @see #get(Object, UnaryOperator)
+   */
+  public Lease<M> acquire(final K probe, final UnaryOperator<K> keyIdFactory) throws Exception {
+    return lookUp(probe, keyIdFactory, RefCounted::lease);
+  }
+
+  /**
+   * Looks up the MAC for a key identifier, loading it if it is absent or expired.
+   *
+   * @param share Leases the MAC, or lets it escape. Called under the segment's lock, while the cache still holds its reference.
+   */
+  private <R> R lookUp(final K probe, final UnaryOperator<K> keyIdFactory, final Function<RefCounted<M>, R> share) throws Exception {
+    Arguments.requireNotNull(probe, "probe");
+    Arguments.requireNotNull(keyIdFactory, "keyIdFactory");
+
+    final SegmentedLRUMap.Segment<K, CachedMAC<M>> segment = entries.segmentFor(probe);
+    final List<CachedMAC<M>> removed = new ArrayList<>(0);
+    final long generation;
+
+    try {
+      synchronized(segment) {
+        final CachedMAC<M> entry = segment.get(probe);
+
+        if(entry != null) {
+          if(!isExpired(entry)) {
+            hitCount.increment();
+
+            return share.apply(entry.mac);
+          }
+
+          segment.remove(probe);
+          removed.add(entry);
+          evictionCount.increment();
+        }
+
+        generation = segment.getGeneration();
+      }
+
+      missCount.increment();
+
+      final K keyId = keyIdFactory.apply(probe);
+
+      // Load outside of the lock, so that a slow loader does not block the segment.
+      final M mac = loader.load(keyId);
+
+      if(mac == null) {
+        throw new IllegalStateException("Loader returned null for key ID: " + keyId + ".");
+      }
+
+      final CachedMAC<M> loaded = new CachedMAC<>(mac, expireAfterWriteNanoseconds != 0L ? System.nanoTime() + expireAfterWriteNanoseconds : 0L);
+
+      synchronized(segment) {
+        final CachedMAC<M> raced = segment.get(keyId);
+
+        if(raced != null && !isExpired(raced)) {
+          // Another thread loaded the same key first; keep theirs. Ours was never shared, so dropping the cache's reference destroys it.
+          removed.add(loaded);
+
+          return share.apply(raced.mac);
+        }
+
+        if(!segment.putIfCurrent(keyId, loaded, generation)) {
+          // The key was invalidated, e.g., rotated, while it loaded, so ours may be stale: share it, but do not cache it.
+          removed.add(loaded);
+
+          return share.apply(loaded.mac);
+        }
+
+        final int evicted = removed.size();
+
+        segment.drainEvicted(removed);
+        evictionCount.add(removed.size() - evicted);
+
+        return share.apply(loaded.mac);
+      }
+    } finally {
+      releaseAll(removed);
+    }
+  }
+
+  /**
+   * Gets the MAC for a key identifier, if it is cached and not expired.
+   * <p>
+   * The cache will not destroy the MAC.
+   *
+   * @param keyId The key identifier.
+   *
+   * @return The MAC, or {@code null}.
+   */
+  public M getIfPresent(final K keyId) {
+    Arguments.requireNotNull(keyId, "keyId");
+
+    final SegmentedLRUMap.Segment<K, CachedMAC<M>> segment = entries.segmentFor(keyId);
+
+    synchronized(segment) {
+      final CachedMAC<M> entry = segment.get(keyId);
+
+      if(entry == null || isExpired(entry)) {
+        missCount.increment();
+
+        return null;
+      }
+
+      hitCount.increment();
+
+      return entry.mac.escape();
+    }
+  }
+
+  /**
+   * Removes the MAC for a key identifier, e.g., after the key was rotated.
+   * <p>
+   * The MAC is destroyed once every lease on it has been closed.
+   *
+   * @param keyId The key identifier.
+   */
+  public void invalidate(final K keyId) {
+    Arguments.requireNotNull(keyId, "keyId");
+
+    final SegmentedLRUMap.Segment<K, CachedMAC<M>> segment = entries.segmentFor(keyId);
+    final CachedMAC<M> entry;
+
+    synchronized(segment) {
+      entry = segment.invalidate(keyId);
+    }
+
+    if(entry != null) {
+      entry.mac.release();
+    }
+  }
+
+  /**
+   * Removes all MACs.
+   */
+  public void invalidateAll() {
+    final List<CachedMAC<M>> removed = new ArrayList<>();
+
+    for(final SegmentedLRUMap.Segment<K, CachedMAC<M>> segment : entries.segments()) {
+      synchronized(segment) {
+        removed.addAll(segment.values());
+        segment.invalidateAll();
+      }
+    }
+
+    releaseAll(removed);
+  }
+
+  /**
+   * Removes all expired MACs.
+   * <p>
+   * Expired MACs are otherwise only removed when they are next accessed or evicted.
+   */
+  public void cleanUp() {
+    final List<CachedMAC<M>> removed = new ArrayList<>();
+
+    for(final SegmentedLRUMap.Segment<K, CachedMAC<M>> segment : entries.segments()) {
+      synchronized(segment) {
+        final Iterator<CachedMAC<M>> iterator = segment.values().iterator();
+
+        while(iterator.hasNext()) {
+          final CachedMAC<M> entry = iterator.next();
+
+          if(isExpired(entry)) {
+            iterator.remove();
+            removed.add(entry);
+            evictionCount.increment();
+          }
+        }
+      }
+    }
+
+    releaseAll(removed);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private boolean isExpired(final CachedMAC<M> entry) {
+    return (entry.expiresAtNanoseconds != 0L && System.nanoTime() - entry.expiresAtNanoseconds >= 0L);
+  }
+
+  /**
+   * Drops the cache's references on removed entries.
+   */
+  private static <M> void releaseAll(final List<CachedMAC<M>> entries) {
+    for(final CachedMAC<M> entry : entries) {
+      entry.mac.release();
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getMaximumSize() {
+    return entries.getMaximumSize();
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Gets the number of MACs removed due to size or expiry.
+   * <p>
+   * Does not include invalidated MACs.
+   *
+   * @return The number of evictions.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("maximumSize", entries.getMaximumSize())
+        .append("expireAfterWriteNanoseconds", expireAfterWriteNanoseconds)
+        .append("hitCount", hitCount)
+        .append("missCount", missCount)
+        .append("evictionCount", evictionCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * Loads the MAC for a key identifier, e.g., by fetching the key and constructing an {@link HMAC}.
+   * <p>
+   * The cache takes ownership of the MAC returned: unless it escapes through {@link #get(Object)} or {@link #getIfPresent(Object)}, the cache
+   * destroys it once it is removed and no longer leased. A loader must therefore return a new MAC, not one that is used elsewhere.
+   *
+   * @param <K> The type of key identifiers.
+   * @param <M> The type of MACs.
+   */
+  @FunctionalInterface
+  public interface Loader<K, M extends IMAC> {
+
+    M load(K keyId) throws Exception;
+
+  }
+
+  /**
+   * A cached MAC, which holds the cache's reference from when it is created until it is removed.
+   */
+  private static final class CachedMAC<M> {
+
+    private CachedMAC(final M mac, final long expiresAtNanoseconds) {
+      super();
+
+      this.mac = new RefCounted<>(mac);
+      this.expiresAtNanoseconds = expiresAtNanoseconds;
+    }
+
+    private final RefCounted<M> mac;
+
+    private final long expiresAtNanoseconds;
+
+  }
+
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Bytes;
+
+import javax.security.auth.Destroyable;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Poly1305 (RFC 8439), a fast one-time authenticator.
+ * <p>
+ * A key must only ever authenticate one message. To authenticate many messages with one long-term key, use {@link Poly1305AES}, which derives
+ * a per-message key from a nonce.
+ * <p>
+ * Computing does not allocate; arithmetic is on five 26-bit limbs held in {@code long}s.
+ *
+ * @author Oliver Yasuna
+ */
+public class Poly1305 implements IMAC, Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final int KEY_SIZE = 256 / 8;
+
+  public static final int TAG_SIZE = 128 / 8;
+
+  private static final long LIMB_MASK = 0x3ffffffL;
+
+  /**
+   * Per-thread buffers for computed tags being verified.
+   */
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[TAG_SIZE]);
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Computes a tag.
+   *
+   * @param r             The buffer holding r, the 16-byte multiplier, which is clamped.
+   * @param rOffset       The offset of r.
+   * @param s             The buffer holding s, the 16-byte addend.
+   * @param sOffset       The offset of s.
+   * @param message       The message.
+   * @param messageOffset The offset of the message.
+   * @param messageLength The length of the message.
+   * @param tag           The buffer to write the tag to.
+   * @param tagOffset     The offset in the buffer.
+   */
+  static void compute(final byte[] r, final int rOffset, final byte[] s, final int sOffset, final byte[] message, final int messageOffset,
+      final int messageLength, final byte[] tag, final int tagOffset) {
+    final long rLow = Bytes.readLongLE(r, rOffset) & 0x0ffffffc0fffffffL;
+    final long rHigh = Bytes.readLongLE(r, rOffset + 8) & 0x0ffffffc0ffffffcL;
+
+    final long r0 = rLow & LIMB_MASK;
+    final long r1 = (rLow >>> 26) & LIMB_MASK;
+    final long r2 = ((rLow >>> 52) | (rHigh << 12)) & LIMB_MASK;
+    final long r3 = (rHigh >>> 14) & LIMB_MASK;
+    final long r4 = (rHigh >>> 40);
+
+    final long s1 = r1 * 5;
+    final long s2 = r2 * 5;
+    final long s3 = r3 * 5;
+    final long s4 = r4 * 5;
+
+    long h0 = 0L;
+    long h1 = 0L;
+    long h2 = 0L;
+    long h3 = 0L;
+    long h4 = 0L;
+
+    final int end = messageOffset + messageLength;
+
+    for(int i = messageOffset; i < end; i += TAG_SIZE) {
+      final long low;
+      final long high;
+      final long highBit;
+
+      if(end - i >= TAG_SIZE) {
+        low = Bytes.readLongLE(message, i);
+        high = Bytes.readLongLE(message, i + 8);
+        highBit = (1L << 24);
+      } else {
+        // Pad the last, partial block with a one byte, instead of setting the high bit.
+        long partialLow = 0L;
+        long partialHigh = 0L;
+        final int remaining = end - i;
+
+        for(int j = 0; j <= remaining; j++) {
+          final long b = (j < remaining ? message[i + j] & 0xffL : 1L);
+
+          if(j < 8) {
+            partialLow |= (b << (j << 3));
+          } else {
+            partialHigh |= (b << ((j - 8) << 3));
+          }
+        }
+
+        low = partialLow;
+        high = partialHigh;
+        highBit = 0L;
+      }
+
+      h0 += low & LIMB_MASK;
+      h1 += (low >>> 26) & LIMB_MASK;
+      h2 += ((low >>> 52) | (high << 12)) & LIMB_MASK;
+      h3 += (high >>> 14) & LIMB_MASK;
+      h4 += (high >>> 40) | highBit;
+
+      final long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+      long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+      long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+      long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+      long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+      long carry = d0 >>> 26;
+
+      h0 = d0 & LIMB_MASK;
+      d1 += carry;
+      carry = d1 >>> 26;
+      h1 = d1 & LIMB_MASK;
+      d2 += carry;
+      carry = d2 >>> 26;
+      h2 = d2 & LIMB_MASK;
+      d3 += carry;
+      carry = d3 >>> 26;
+      h3 = d3 & LIMB_MASK;
+      d4 += carry;
+      carry = d4 >>> 26;
+      h4 = d4 & LIMB_MASK;
+      h0 += carry * 5;
+      carry = h0 >>> 26;
+      h0 &= LIMB_MASK;
+      h1 += carry;
+    }
+
+    // Fully carry h.
+    long carry = h1 >>> 26;
+
+    h1 &= LIMB_MASK;
+    h2 += carry;
+    carry = h2 >>> 26;
+    h2 &= LIMB_MASK;
+    h3 += carry;
+    carry = h3 >>> 26;
+    h3 &= LIMB_MASK;
+    h4 += carry;
+    carry = h4 >>> 26;
+    h4 &= LIMB_MASK;
+    h0 += carry * 5;
+    carry = h0 >>> 26;
+    h0 &= LIMB_MASK;
+    h1 += carry;
+
+    // Compute h - p, and select it in constant time if it is not negative.
+    long g0 = h0 + 5;
+    carry = g0 >>> 26;
+    g0 &= LIMB_MASK;
+    long g1 = h1 + carry;
+    carry = g1 >>> 26;
+    g1 &= LIMB_MASK;
+    long g2 = h2 + carry;
+    carry = g2 >>> 26;
+    g2 &= LIMB_MASK;
+    long g3 = h3 + carry;
+    carry = g3 >>> 26;
+    g3 &= LIMB_MASK;
+    final long g4 = h4 + carry - (1L << 26);
+
+    final long selectG = (g4 >>> 63) - 1L;
+
+    h0 = (h0 & ~selectG) | (g0 & selectG);
+    h1 = (h1 & ~selectG) | (g1 & selectG);
+    h2 = (h2 & ~selectG) | (g2 & selectG);
+    h3 = (h3 & ~selectG) | (g3 & selectG);
+    h4 = (h4 & ~selectG) | (g4 & selectG);
+
+    // Add s, modulo 2^128.
+    final long hLow = h0 | (h1 << 26) | (h2 << 52);
+    final long hHigh = (h2 >>> 12) | (h3 << 14) | (h4 << 40);
+    final long sLow = Bytes.readLongLE(s, sOffset);
+    final long sHigh = Bytes.readLongLE(s, sOffset + 8);
+
+    final long tagLow = hLow + sLow;
+    final long tagCarry = ((hLow & sLow) | ((hLow | sLow) & ~tagLow)) >>> 63;
+    final long tagHigh = hHigh + sHigh + tagCarry;
+
+    Bytes.writeLongLE(tagLow, tag, tagOffset);
+    Bytes.writeLongLE(tagHigh, tag, tagOffset + 8);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a Poly1305 instance.
+   *
+   * @param key The one-time, 256-bit key, i.e., r followed by s.
+   */
+  public Poly1305(final byte[] key) {
+    super();
+
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireSame(key.length, KEY_SIZE, "key");
+
+    this.key = key.clone();
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final byte[] key;
+
+  private volatile boolean destroyed;
+
+  // IMAC methods
+  //--------------------------------------------------
+
+  @Override
+  public byte[] sign(final byte[] message) {
+    Arguments.requireNotNull(message, "message");
+
+    final byte[] tag = new byte[TAG_SIZE];
+
+    sign(message, 0, message.length, tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Verifies the authenticity of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final byte[] tag) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+
+    if(tag.length != TAG_SIZE) {
+      return false;
+    }
+
+    return verify(message, 0, message.length, tag, 0);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  @Override
+  public void destroy() {
+    destroyed = true;
+
+    // Publish the flag before the key is cleared, so that a reader who sees the cleared key also sees the flag.
+    VarHandle.storeStoreFence();
+
+    Arrays.fill(key, (byte)0);
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to.
+   * @param tagOffset     The offset in the buffer, which must have room for {@link #TAG_SIZE} bytes.
+   */
+  @Override
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, TAG_SIZE, tag.length);
+
+    if(destroyed) {
+      throw new IllegalStateException("Destroyed.");
+    }
+
+    compute(key, 0, key, TAG_SIZE, message, messageOffset, messageLength, tag, tagOffset);
+
+    // A concurrent destroy may have zeroed the key mid-computation, so the tag is only kept if the flag is still clear. The fence keeps the key
+    // reads above from being reordered after the check.
+    VarHandle.loadLoadFence();
+
+    if(destroyed) {
+      Arrays.fill(tag, tagOffset, tagOffset + TAG_SIZE, (byte)0);
+
+      throw new IllegalStateException("Destroyed.");
+    }
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer holding the tag.
+   * @param tagOffset     The offset of the tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, TAG_SIZE, tag.length);
+
+    // Compare as two words, so that nothing is allocated.
+    final long expectedLow = Bytes.readLongLE(tag, tagOffset);
+    final long expectedHigh = Bytes.readLongLE(tag, tagOffset + 8);
+
+    final byte[] scratch = SCRATCH.get();
+
+    sign(message, messageOffset, messageLength, scratch, 0);
+
+    return (((Bytes.readLongLE(scratch, 0) ^ expectedLow) | (Bytes.readLongLE(scratch, 8) ^ expectedHigh)) == 0L);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  @Override
+  public int getMacLength() {
+    return TAG_SIZE;
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Bytes;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.Destroyable;
+import java.lang.invoke.VarHandle;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Poly1305-AES, which authenticates many messages with one long-term key by deriving each message's Poly1305 key from a unique nonce.
+ * <p>
+ * The nonce must never repeat for the same key, e.g., a message sequence number.
+ *
+ * @author Oliver Yasuna
+ * @see Poly1305
+ */
+public class Poly1305AES implements Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The key size, i.e., a 128-bit AES key followed by the 128-bit r.
+   */
+  public static final int KEY_SIZE = 256 / 8;
+
+  public static final int NONCE_SIZE = 128 / 8;
+
+  public static final int TAG_SIZE = Poly1305.TAG_SIZE;
+
+  private static final String CIPHER_TRANSFORMATION = "AES/ECB/NoPadding";
+
+  /**
+   * Per-thread buffers for the encrypted nonce, i.e., s, followed by a computed tag being verified.
+   */
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[NONCE_SIZE + TAG_SIZE]);
+
+  // Constructors
+  //--------------------------------------------------
+
+  public Poly1305AES(final byte[] key) throws GeneralSecurityException {
+    super();
+
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireSame(key.length, KEY_SIZE, "key");
+
+    this.r = Arrays.copyOfRange(key, 16, KEY_SIZE);
+
+    this.cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+    this.cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, 16, "AES"));
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final byte[] r;
+
+  private final Cipher cipher;
+
+  private volatile boolean destroyed;
+
+  // Methods
+  //--------------------------------------------------
+
+  public byte[] sign(final byte[] nonce, final byte[] message) {
+    Arguments.requireNotNull(nonce, "nonce");
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireSame(nonce.length, NONCE_SIZE, "nonce");
+
+    final byte[] tag = new byte[TAG_SIZE];
+
+    sign(nonce, 0, message, 0, message.length, tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   *
+   * @param nonce         The buffer holding the nonce.
+   * @param nonceOffset   The offset of the nonce, which is {@link #NONCE_SIZE} bytes long.
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to.
+   * @param tagOffset     The offset in the buffer, which must have room for {@link #TAG_SIZE} bytes.
+   */
+  public void sign(final byte[] nonce, final int nonceOffset, final byte[] message, final int messageOffset, final int messageLength,
+      final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(nonce, "nonce");
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(nonceOffset, NONCE_SIZE, nonce.length);
+    Objects.checkFromIndexSize(messageOffset, messageLength, message.length);
+    Objects.checkFromIndexSize(tagOffset, TAG_SIZE, tag.length);
+
+    final byte[] scratch = SCRATCH.get();
+
+    encryptNonce(nonce, nonceOffset, scratch);
+
+    Poly1305.compute(r, 0, scratch, 0, message, messageOffset, messageLength, tag, tagOffset);
+
+    if(!isIntact()) {
+      Arrays.fill(tag, tagOffset, tagOffset + TAG_SIZE, (byte)0);
+
+      throw new IllegalStateException("Destroyed.");
+    }
+  }
+
+  /**
+   * Verifies the authenticity of a message given a nonce and tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param nonce   The nonce.
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  public boolean verify(final byte[] nonce, final byte[] message, final byte[] tag) {
+    Arguments.requireNotNull(nonce, "nonce");
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+    Arguments.requireSame(nonce.length, NONCE_SIZE, "nonce");
+
+    if(tag.length != TAG_SIZE) {
+      return false;
+    }
+
+    final byte[] scratch = SCRATCH.get();
+
+    encryptNonce(nonce, 0, scratch);
+
+    Poly1305.compute(r, 0, scratch, 0, message, 0, message.length, scratch, NONCE_SIZE);
+
+    if(!isIntact()) {
+      throw new IllegalStateException("Destroyed.");
+    }
+
+    return (((Bytes.readLongLE(scratch, NONCE_SIZE) ^ Bytes.readLongLE(tag, 0))
+        | (Bytes.readLongLE(scratch, NONCE_SIZE + 8) ^ Bytes.readLongLE(tag, 8))) == 0L);
+  }
+
+  /**
+   * Checks, after r was read outside of the lock, that a concurrent destroy did not zero it mid-read. The fence keeps the reads from being
+   * reordered after the check.
+   */
+  private boolean isIntact() {
+    VarHandle.loadLoadFence();
+
+    return !destroyed;
+  }
+
+  private void encryptNonce(final byte[] nonce, final int nonceOffset, final byte[] output) {
+    synchronized(cipher) {
+      if(destroyed) {
+        throw new IllegalStateException("Destroyed.");
+      }
+
+      try {
+        cipher.doFinal(nonce, nonceOffset, NONCE_SIZE, output, 0);
+      } catch(final GeneralSecurityException e) {
+        // The cipher is initialized and the input is exactly one block.
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes r.
+   * <p>
+   * The AES key schedule is held by the JCE provider and cannot be zeroed.
+   */
+  @Override
+  public void destroy() {
+    synchronized(cipher) {
+      destroyed = true;
+
+      // Publish the flag before r is cleared, so that a reader who sees the cleared r also sees the flag.
+      VarHandle.storeStoreFence();
+
+      Arrays.fill(r, (byte)0);
+    }
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Bytes;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * SipHash, a fast, short-input pseudorandom function, used as a MAC with 64-bit tags.
+ * <p>
+ * Computing does not allocate; see {@link #hash(byte[], int, int)}.
+ *
+ * @author Oliver Yasuna
+ * @see SipHash24
+ * @see SipHash13
+ */
+public class SipHash implements IMAC, Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final int KEY_SIZE = 128 / 8;
+
+  public static final int TAG_SIZE = 64 / 8;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a SipHash-c-d instance.
+   *
+   * @param key                The 128-bit key.
+   * @param compressionRounds  The number of rounds per message word, i.e., c.
+   * @param finalizationRounds The number of finalization rounds, i.e., d.
+   */
+  public SipHash(final byte[] key, final int compressionRounds, final int finalizationRounds) {
+    super();
+
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireSame(key.length, KEY_SIZE, "key");
+    Arguments.requireGreater(compressionRounds, 0, "compressionRounds");
+    Arguments.requireGreater(finalizationRounds, 0, "finalizationRounds");
+
+    this.k0 = Bytes.readLongLE(key, 0);
+    this.k1 = Bytes.readLongLE(key, 8);
+
+    this.compressionRounds = compressionRounds;
+    this.finalizationRounds = finalizationRounds;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private long k0;
+
+  private long k1;
+
+  protected final int compressionRounds;
+
+  protected final int finalizationRounds;
+
+  private volatile boolean destroyed;
+
+  // IMAC methods
+  //--------------------------------------------------
+
+  @Override
+  public byte[] sign(final byte[] message) {
+    Arguments.requireNotNull(message, "message");
+
+    final byte[] tag = new byte[TAG_SIZE];
+
+    Bytes.writeLongLE(hash(message, 0, message.length), tag, 0);
+
+    return tag;
+  }
+
+  /**
+   * Verifies the authenticity of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final byte[] tag) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+
+    if(tag.length != TAG_SIZE) {
+      return false;
+    }
+
+    return ((hash(message, 0, message.length) ^ Bytes.readLongLE(tag, 0)) == 0L);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  @Override
+  public void destroy() {
+    destroyed = true;
+
+    // Publish the flag before the key is cleared, so that a reader who sees the cleared key also sees the flag.
+    VarHandle.storeStoreFence();
+
+    k0 = 0L;
+    k1 = 0L;
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return destroyed;
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Computes the 64-bit tag of a range of a message.
+   * <p>
+   * The tag, as bytes, is this value in little-endian order.
+   *
+   * @param message The message.
+   * @param offset  The offset of the range.
+   * @param length  The length of the range.
+   *
+   * @return The tag.
+   */
+  public long hash(final byte[] message, final int offset, final int length) {
+    Arguments.requireNotNull(message, "message");
+    Objects.checkFromIndexSize(offset, length, message.length);
+
+    final long key0 = k0;
+    final long key1 = k1;
+
+    // A concurrent destroy may have zeroed the key between the reads, so check once they are done. The fence keeps the reads above from being
+    // reordered after the check.
+    VarHandle.loadLoadFence();
+
+    if(destroyed) {
+      throw new IllegalStateException("Destroyed.");
+    }
+
+    long v0 = key0 ^ 0x736f6d6570736575L;
+    long v1 = key1 ^ 0x646f72616e646f6dL;
+    long v2 = key0 ^ 0x6c7967656e657261L;
+    long v3 = key1 ^ 0x7465646279746573L;
+
+    final int end = offset + (length & ~7);
+
+    for(int i = offset; i <= end; i += 8) {
+      final long m;
+
+      if(i < end) {
+        m = Bytes.readLongLE(message, i);
+      } else {
+        // The last word holds the remaining bytes and the length's low byte.
+        long last = ((long)length << 56);
+
+        for(int j = 0, remaining = (length & 7); j < remaining; j++) {
+          last |= ((message[end + j] & 0xffL) << (j << 3));
+        }
+
+        m = last;
+      }
+
+      v3 ^= m;
+
+      for(int round = 0; round < compressionRounds; round++) {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13);
+        v1 ^= v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16);
+        v3 ^= v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21);
+        v3 ^= v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17);
+        v1 ^= v2;
+        v2 = Long.rotateLeft(v2, 32);
+      }
+
+      v0 ^= m;
+    }
+
+    v2 ^= 0xff;
+
+    for(int round = 0; round < finalizationRounds; round++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+
+    return (v0 ^ v1 ^ v2 ^ v3);
+  }
+
+  /**
+   * Computes the tag of a range of a message into a caller's buffer.
+   *
+   * @param message   The message.
+   * @param offset    The offset of the range.
+   * @param length    The length of the range.
+   * @param tag       The buffer to write the tag to.
+   * @param tagOffset The offset in the buffer, which must have room for {@link #TAG_SIZE} bytes.
+   */
+  @Override
+  public void sign(final byte[] message, final int offset, final int length, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, TAG_SIZE, tag.length);
+
+    Bytes.writeLongLE(hash(message, offset, length), tag, tagOffset);
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message   The message.
+   * @param offset    The offset of the range.
+   * @param length    The length of the range.
+   * @param tag       The buffer holding the tag.
+   * @param tagOffset The offset of the tag, which is {@link #TAG_SIZE} bytes long.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final int offset, final int length, final byte[] tag, final int tagOffset) {
+    Arguments.requireNotNull(tag, "tag");
+    Objects.checkFromIndexSize(tagOffset, TAG_SIZE, tag.length);
+
+    return ((hash(message, offset, length) ^ Bytes.readLongLE(tag, tagOffset)) == 0L);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getCompressionRounds() {
+    return compressionRounds;
+  }
+
+  public int getFinalizationRounds() {
+    return finalizationRounds;
+  }
+
+  @Override
+  public int getMacLength() {
+    return TAG_SIZE;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean equals(final Object object) {
+    if(this == object) return true;
+    if(object == null || getClass() != object.getClass()) return false;
+
+    final SipHash objectCasted = (SipHash)object;
+
+    return new EqualsBuilder()
+        .append(k0, objectCasted.k0)
+        .append(k1, objectCasted.k1)
+        .append(compressionRounds, objectCasted.compressionRounds)
+        .append(finalizationRounds, objectCasted.finalizationRounds)
+        .isEquals();
+  }
+
+  @Override
+  public int hashCode() {
+    return new HashCodeBuilder(17, 37)
+        .append(k0)
+        .append(k1)
+        .append(compressionRounds)
+        .append(finalizationRounds)
+        .toHashCode();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("compressionRounds", compressionRounds)
+        .append("finalizationRounds", finalizationRounds)
+        .toString();
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+
+/**
+ * An HMAC whose tags are truncated to their leftmost bytes, e.g., HMAC-SHA256-128 (RFC 2104, section 5).
+ * <p>
+ * The tag length must be at least half of the hash function's output size, and at least 80 bits.
+ *
+ * @author Oliver Yasuna
+ */
+public class TruncatedHMAC implements IMAC, Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final int MINIMUM_TAG_LENGTH = 80 / 8;
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the minimum tag length for a hash function.
+   *
+   * @param hashFunction The hash function.
+   *
+   * @return The minimum tag length in bytes.
+   */
+  public static int minimumTagLength(final HashFunction hashFunction) {
+    Arguments.requireNotNull(hashFunction, "hashFunction");
+
+    return Math.min(Math.max(MINIMUM_TAG_LENGTH, (hashFunction.outputSize() + 1) / 2), hashFunction.outputSize());
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  public TruncatedHMAC(final HMAC hmac, final int tagLength) {
+    super();
+
+    Arguments.requireNotNull(hmac, "hmac");
+    Arguments.requireGreaterOrSame(tagLength, minimumTagLength(hmac.getHashFunction()), "tagLength");
+    Arguments.requireLessOrSame(tagLength, hmac.getMacLength(), "tagLength");
+
+    this.hmac = hmac;
+    this.tagLength = tagLength;
+  }
+
+  public TruncatedHMAC(final byte[] key, final HashFunction hashFunction, final int tagLength) throws Exception {
+    this(new HMAC(key, hashFunction), tagLength);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final HMAC hmac;
+
+  protected final int tagLength;
+
+  // IMAC methods
+  //--------------------------------------------------
+
+  @Override
+  public byte[] sign(final byte[] message) {
+    Arguments.requireNotNull(message, "message");
+
+    final byte[] tag = new byte[tagLength];
+
+    hmac.sign(message, 0, message.length, tag, 0, tagLength);
+
+    return tag;
+  }
+
+  /**
+   * Verifies the authenticity of a message given a truncated tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message The message.
+   * @param tag     The tag.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final byte[] tag) {
+    Arguments.requireNotNull(message, "message");
+    Arguments.requireNotNull(tag, "tag");
+
+    if(tag.length != tagLength) {
+      return false;
+    }
+
+    return hmac.verify(message, 0, message.length, tag, 0, tagLength);
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Signs a range of a message into a caller's buffer.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer to write the tag to, which must have room for {@link #getTagLength()} bytes.
+   * @param tagOffset     The offset in the buffer.
+   */
+  @Override
+  public void sign(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    hmac.sign(message, messageOffset, messageLength, tag, tagOffset, tagLength);
+  }
+
+  /**
+   * Verifies the authenticity of a range of a message given a truncated tag.
+   * <p>
+   * The comparison is constant-time.
+   *
+   * @param message       The message.
+   * @param messageOffset The offset of the range.
+   * @param messageLength The length of the range.
+   * @param tag           The buffer holding the tag.
+   * @param tagOffset     The offset of the tag, which is {@link #getTagLength()} bytes long.
+   *
+   * @return {@code true}, if the message is authentic; otherwise, {@code false}.
+   */
+  @Override
+  public boolean verify(final byte[] message, final int messageOffset, final int messageLength, final byte[] tag, final int tagOffset) {
+    return hmac.verify(message, messageOffset, messageLength, tag, tagOffset, tagLength);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  @Override
+  public void destroy() {
+    hmac.destroy();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return hmac.isDestroyed();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public HMAC getHMAC() {
+    return hmac;
+  }
+
+  public int getTagLength() {
+    return tagLength;
+  }
+
+  @Override
+  public int getMacLength() {
+    return tagLength;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean equals(final Object object) {
+    if(this == object) return true;
+    if(object == null || getClass() != object.getClass()) return false;
+
+    final TruncatedHMAC objectCasted = (TruncatedHMAC)object;
+
+    return new EqualsBuilder()
+        .append(hmac, objectCasted.hmac)
+        .append(tagLength, objectCasted.tagLength)
+        .isEquals();
+  }
+
+  @Override
+  public int hashCode() {
+    return new HashCodeBuilder(17, 37)
+        .append(hmac)
+        .append(tagLength)
+        .toHashCode();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("hmac", hmac)
+        .append("tagLength", tagLength)
+        .toString();
+  }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits failed password attempts per user, to slow brute-force guessing.
+ * <p>
+ * Failures are counted in fixed windows: once a user has the maximum number of failures in a window, attempts are refused until the window
+ * ends, after which the count decays to zero. A success resets the count.
+ * <p>
+ * To be safe against parallel guesses, an attempt should be {@link #tryAcquire(long) acquired}, which counts it as a failure up front, and
+ * {@link #recordSuccess(long) refunded} if the password was right. Checking {@link #isAllowed(long)} and then recording the outcome lets
+ * every guess in flight through.
+ * <p>
+ * The limiter is lock-free. Users are hashed into a fixed-size, open-addressed table of atomic longs, whose slots hold a user and a packed
+ * window start and failure count, so checking and recording do not allocate. Slots of idle users are reused. A slot with failures in the
+ * current window is never taken over, as that would forget them; if every slot a user could use is such a slot, the limiter fails closed, and
+ * refuses that user's attempts until one becomes idle.
+ *
+ * @author Oliver Yasuna
+ */
+public class AttemptLimiter {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The number of slots a user can be in.
+   */
+  private static final int PROBES = 8;
+
+  private static final int FAILURES_BITS = 20;
+
+  private static final long FAILURES_MASK = (1L << FAILURES_BITS) - 1;
+
+  /**
+   * Marks a slot that holds no user. Users that hash to it are stored as {@code 1}, sharing that slot's user.
+   */
+  private static final long EMPTY = 0L;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a limiter.
+   *
+   * @param maximumFailures The number of failures in a window after which attempts are refused.
+   * @param window          The length of a window.
+   * @param capacity        The number of users to track, at least.
+   * @param clock           Supplies the current time, in epoch milliseconds.
+   */
+  public AttemptLimiter(final int maximumFailures, final Duration window, final int capacity, final LongSupplier clock) {
+    super();
+
+    Arguments.requireGreater(maximumFailures, 0, "maximumFailures");
+    Arguments.requireLess(maximumFailures, FAILURES_MASK, "maximumFailures");
+    Arguments.requireNotNull(window, "window");
+    Arguments.requireFalse(window.isZero(), "window");
+    Arguments.requireFalse(window.isNegative(), "window");
+    Arguments.requireGreater(capacity, 0, "capacity");
+    Arguments.requireLessOrSame(capacity, 1 << 29, "capacity");
+    Arguments.requireNotNull(clock, "clock");
+
+    this.maximumFailures = maximumFailures;
+    this.windowMilliseconds = window.toMillis();
+    this.clock = clock;
+
+    final int slots = Integer.highestOneBit(Math.max(PROBES, capacity * 2) - 1) << 1;
+
+    this.users = new AtomicLongArray(slots);
+    this.states = new AtomicLongArray(slots);
+    this.mask = slots - 1;
+  }
+
+  public AttemptLimiter(final int maximumFailures, final Duration window, final int capacity) {
+    this(maximumFailures, window, capacity, System::currentTimeMillis);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final int maximumFailures;
+
+  protected final long windowMilliseconds;
+
+  private final LongSupplier clock;
+
+  /**
+   * The hashed user in each slot, or {@link #EMPTY}.
+   */
+  private final AtomicLongArray users;
+
+  /**
+   * The window start, in epoch milliseconds, shifted above the failure count, in each slot. Zero, if idle.
+   */
+  private final AtomicLongArray states;
+
+  private final int mask;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Checks whether a user may attempt a password.
+   * <p>
+   * The check is not atomic with recording the outcome; use {@link #tryAcquire(long)} to limit parallel attempts.
+   *
+   * @param userId The user.
+   *
+   * @return {@code false}, if the user has reached the maximum number of failures in the current window, or cannot be tracked.
+   */
+  public boolean isAllowed(final long userId) {
+    final long user = hash(userId);
+    final long now = clock.getAsLong();
+    boolean claimable = false;
+
+    for(int probe = 0, slot = (int)user & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+      final long slotUser = users.get(slot);
+
+      if(slotUser == user) {
+        final long state = states.get(slot);
+
+        return (!isActive(state, now) || (state & FAILURES_MASK) < maximumFailures);
+      } else if(slotUser == EMPTY || !isActive(states.get(slot), now)) {
+        claimable = true;
+      }
+    }
+
+    return claimable;
+  }
+
+  /**
+   * Atomically checks whether a user may attempt a password, and if so, counts the attempt as a failure.
+   * <p>
+   * If the password turns out to be right, {@link #recordSuccess(long)} refunds the attempt.
+   *
+   * @param userId The user.
+   *
+   * @return {@code false}, if the user has reached the maximum number of failures in the current window, or cannot be tracked.
+   */
+  public boolean tryAcquire(final long userId) {
+    final long user = hash(userId);
+    final long now = clock.getAsLong();
+    final int slot = claim(user, now);
+
+    if(slot < 0) {
+      return false;
+    }
+
+    while(true) {
+      final long state = states.get(slot);
+      final long updated;
+
+      if(!isActive(state, now)) {
+        updated = (now << FAILURES_BITS) | 1L;
+      } else if((state & FAILURES_MASK) < maximumFailures) {
+        updated = state + 1L;
+      } else {
+        return false;
+      }
+
+      if(states.compareAndSet(slot, state, updated)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Records a failed attempt.
+   * <p>
+   * Does nothing if the user cannot be tracked, in which case {@link #isAllowed(long)} refuses them anyway.
+   *
+   * @param userId The user.
+   */
+  public void recordFailure(final long userId) {
+    final long user = hash(userId);
+    final long now = clock.getAsLong();
+    final int slot = claim(user, now);
+
+    if(slot < 0) {
+      return;
+    }
+
+    while(true) {
+      final long state = states.get(slot);
+      final long updated = (isActive(state, now)
+          ? state + ((state & FAILURES_MASK) < FAILURES_MASK ? 1L : 0L)
+          : (now << FAILURES_BITS) | 1L);
+
+      if(states.compareAndSet(slot, state, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Records a successful attempt, which resets the user's failures, including an attempt {@link #tryAcquire(long) acquired} for it.
+   *
+   * @param userId The user.
+   */
+  public void recordSuccess(final long userId) {
+    final long user = hash(userId);
+
+    for(int probe = 0, slot = (int)user & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+      if(users.get(slot) == user) {
+        states.set(slot, 0L);
+
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gets a user's failures in the current window.
+   *
+   * @param userId The user.
+   *
+   * @return The number of failures.
+   */
+  public int getFailures(final long userId) {
+    final long user = hash(userId);
+    final long now = clock.getAsLong();
+
+    for(int probe = 0, slot = (int)user & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+      if(users.get(slot) == user) {
+        final long state = states.get(slot);
+
+        return (isActive(state, now) ? (int)(state & FAILURES_MASK) : 0);
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Finds the user's slot, or takes one that is empty or idle.
+   *
+   * @return The slot, or {@code -1}, if every slot the user could use holds another user's failures in the current window.
+   */
+  private int claim(final long user, final long now) {
+    retry:
+    while(true) {
+      int idle = -1;
+
+      for(int probe = 0, slot = (int)user & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+        final long slotUser = users.get(slot);
+
+        if(slotUser == user) {
+          return slot;
+        } else if(slotUser == EMPTY) {
+          if(users.compareAndSet(slot, EMPTY, user)) {
+            return slot;
+          }
+
+          // Lost the race for the slot; it may have been taken by the same user, so start over.
+          continue retry;
+        } else if(idle == -1 && !isActive(states.get(slot), now)) {
+          idle = slot;
+        }
+      }
+
+      if(idle < 0) {
+        // Never take over a slot with failures in the current window, or colliding users could wipe out a lockout.
+        return -1;
+      }
+
+      final long slotUser = users.get(idle);
+
+      // An idle state counts as no failures, so it need not be reset.
+      if(slotUser != user && !isActive(states.get(idle), now) && users.compareAndSet(idle, slotUser, user)) {
+        return idle;
+      }
+    }
+  }
+
+  private boolean isActive(final long state, final long now) {
+    return (state != 0L && now - (state >>> FAILURES_BITS) < windowMilliseconds);
+  }
+
+  private static long hash(final long userId) {
+    // A bijection, so distinct users only collide in slots, except the one that hashes to EMPTY.
+    long hash = userId;
+
+    hash ^= (hash >>> 33);
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= (hash >>> 33);
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= (hash >>> 33);
+
+    return (hash == EMPTY ? 1L : hash);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getMaximumFailures() {
+    return maximumFailures;
+  }
+
+  public Duration getWindow() {
+    return Duration.ofMillis(windowMilliseconds);
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("maximumFailures", maximumFailures)
+        .append("windowMilliseconds", windowMilliseconds)
+        .append("slots", mask + 1)
+        .toString();
+  }
+
+}
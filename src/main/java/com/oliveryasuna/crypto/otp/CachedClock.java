@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A coarse clock, in milliseconds since the Unix epoch, that is read from an atomic field and updated by a single daemon thread.
+ * <p>
+ * Reading it neither calls the system clock nor allocates, so it suits hot paths, e.g., as a {@link TOTP}'s clock. It lags the source clock by
+ * up to its resolution, which should be small next to a TOTP time step. It never goes backwards, and if reading the source clock fails, it keeps
+ * its last time and tries again at the next update.
+ *
+ * @author Oliver Yasuna
+ */
+public class CachedClock implements LongSupplier, AutoCloseable {
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a clock and starts updating it.
+   *
+   * @param resolution How often to read the source clock.
+   * @param source     The source clock.
+   */
+  public CachedClock(final Duration resolution, final LongSupplier source) {
+    super();
+
+    Arguments.requireNotNull(resolution, "resolution");
+    Arguments.requireGreater(resolution.toMillis(), 0L, "resolution");
+    Arguments.requireNotNull(source, "source");
+
+    this.resolution = resolution;
+    this.source = source;
+    this.epochMilliseconds = new AtomicLong(source.getAsLong());
+
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "cached-clock");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+
+    scheduler.scheduleAtFixedRate(this::update, resolution.toMillis(), resolution.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a clock of the system clock and starts updating it.
+   *
+   * @param resolution How often to read the system clock.
+   */
+  public CachedClock(final Duration resolution) {
+    this(resolution, System::currentTimeMillis);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final Duration resolution;
+
+  private final LongSupplier source;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final AtomicLong epochMilliseconds;
+
+  private final LongAdder failureCount = new LongAdder();
+
+  // LongSupplier methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the time as of the last update.
+   *
+   * @return The time, in milliseconds since the Unix epoch.
+   */
+  @Override
+  public long getAsLong() {
+    return epochMilliseconds.get();
+  }
+
+  // AutoCloseable methods
+  //--------------------------------------------------
+
+  /**
+   * Stops updating the clock.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Reads the source clock now, e.g., in tests that advance a deterministic source.
+   */
+  public void tick() {
+    // Never go backwards, e.g., if the system clock is adjusted, or a caller's tick races the scheduled one.
+    epochMilliseconds.accumulateAndGet(source.getAsLong(), Math::max);
+  }
+
+  /**
+   * Ticks on schedule. A task that throws is never run again, which would freeze the clock, so failures are counted instead.
+   */
+  private void update() {
+    try {
+      tick();
+    } catch(final RuntimeException e) {
+      failureCount.increment();
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public Duration getResolution() {
+    return resolution;
+  }
+
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("resolution", resolution)
+        .append("epochMilliseconds", epochMilliseconds)
+        .append("failureCount", failureCount)
+        .toString();
+  }
+
+}
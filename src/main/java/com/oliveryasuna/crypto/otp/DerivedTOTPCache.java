@@ -0,0 +1,272 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.util.Lease;
+import com.oliveryasuna.crypto.util.RefCounted;
+import com.oliveryasuna.crypto.util.SegmentedLRUMap;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, concurrent cache of users' derived {@link TOTP}s, which hold their HMACs' precomputed pad states, for one set of TOTP
+ * parameters.
+ * <p>
+ * Entries are keyed by user ID and key epoch, as each user's epoch is their own, as {@link OTPKeyDeriver} describes. When a user's epoch is
+ * incremented, the entry for the old one should be {@link #invalidate(long, long) invalidated}, or it lingers until evicted.
+ * <p>
+ * The cache is a {@link SegmentedLRUMap}, so it is split into segments, each guarded by its own lock and evicting in least-recently-used
+ * order. A miss derives the TOTP with an {@link OTPKeyDeriver}, which costs two more hash compressions than a hit and some allocation.
+ * <p>
+ * A TOTP {@link #acquire(long) acquired} through a {@link Lease} is {@link TOTP#destroy() destroyed}, which zeroes its derived key, once it
+ * has been evicted or invalidated and every lease on it has been closed. A TOTP returned by {@link #get(long)} may be held indefinitely by the
+ * caller, so the cache never destroys it.
+ *
+ * @author Oliver Yasuna
+ */
+public class DerivedTOTPCache {
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a cache.
+   *
+   * @param deriver     The key deriver.
+   * @param length      The password length.
+   * @param timeStep    The time step.
+   * @param startTime   The start time.
+   * @param maximumSize The maximum number of users' TOTPs to hold.
+   */
+  public DerivedTOTPCache(final OTPKeyDeriver deriver, final int length, final Duration timeStep, final Instant startTime,
+      final int maximumSize) {
+    super();
+
+    Arguments.requireNotNull(deriver, "deriver");
+    Arguments.requireGreaterOrSame(length, 0, "length");
+    Arguments.requireLessOrSame(length, HOTP.MAXIMUM_LENGTH, "length");
+    Arguments.requireNotNull(timeStep, "timeStep");
+    Arguments.requireFalse(timeStep.isZero(), "timeStep");
+    Arguments.requireFalse(timeStep.isNegative(), "timeStep");
+    Arguments.requireNotNull(startTime, "startTime");
+    Arguments.requireGreater(maximumSize, 0, "maximumSize");
+
+    this.deriver = deriver;
+    this.length = length;
+    this.timeStep = timeStep;
+    this.startTime = startTime;
+    this.entries = new SegmentedLRUMap<>(maximumSize);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final OTPKeyDeriver deriver;
+
+  private final int length;
+
+  private final Duration timeStep;
+
+  private final Instant startTime;
+
+  private final SegmentedLRUMap<UserEpoch, RefCounted<TOTP>> entries;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Gets a user's TOTP, deriving it on a miss.
+   * <p>
+   * The cache will not destroy the TOTP; prefer {@link #acquire(long, long)}. Not for a {@link TOTPBatchVerifier.Loader}, as a batch verifier
+   * caches and destroys the TOTPs it loads; derive them with the {@link OTPKeyDeriver} instead.
+   *
+   * @param userId The user ID.
+   * @param epoch  The user's key epoch.
+   *
+   * @return The TOTP.
+   */
+  public TOTP get(final long userId, final long epoch) throws Exception {
+    return lookUp(userId, epoch, RefCounted::escape);
+  }
+
+  /**
+   * Leases a user's TOTP, deriving it on a miss.
+   * <p>
+   * The TOTP is not destroyed before the lease is closed, even if it is evicted or invalidated in the meantime.
+   *
+   * @param userId The user ID.
+   * @param epoch  The user's key epoch.
+   *
+   * @return The lease, which must be closed.
+   */
+  public Lease<TOTP> acquire(final long userId, final long epoch) throws Exception {
+    return lookUp(userId, epoch, RefCounted::lease);
+  }
+
+  /**
+   * Looks up a user's TOTP, deriving it on a miss.
+   *
+   * @param share Leases the TOTP, or lets it escape. Called under the segment's lock, while the cache still holds its reference.
+   */
+  private <R> R lookUp(final long userId, final long epoch, final Function<RefCounted<TOTP>, R> share) throws Exception {
+    final UserEpoch key = new UserEpoch(userId, epoch);
+    final SegmentedLRUMap.Segment<UserEpoch, RefCounted<TOTP>> segment = entries.segmentFor(key);
+
+    synchronized(segment) {
+      final RefCounted<TOTP> totp = segment.get(key);
+
+      if(totp != null) {
+        hitCount.increment();
+
+        return share.apply(totp);
+      }
+    }
+
+    missCount.increment();
+
+    // Derive outside of the lock, so that misses do not serialize.
+    final RefCounted<TOTP> derived = new RefCounted<>(deriver.deriveTOTP(userId, epoch, length, timeStep, startTime));
+    final List<RefCounted<TOTP>> removed = new ArrayList<>(1);
+
+    try {
+      synchronized(segment) {
+        final RefCounted<TOTP> raced = segment.get(key);
+
+        if(raced != null) {
+          // Another thread derived it first; keep theirs. Ours was never shared, so dropping the cache's reference destroys it.
+          removed.add(derived);
+
+          return share.apply(raced);
+        }
+
+        segment.put(key, derived);
+        segment.drainEvicted(removed);
+
+        return share.apply(derived);
+      }
+    } finally {
+      for(final RefCounted<TOTP> totp : removed) {
+        totp.release();
+      }
+    }
+  }
+
+  /**
+   * Removes a user's cached TOTP for an epoch, e.g., once the user's epoch has been incremented.
+   * <p>
+   * The TOTP is destroyed once every lease on it has been closed.
+   *
+   * @param userId The user ID.
+   * @param epoch  The user's key epoch.
+   */
+  public void invalidate(final long userId, final long epoch) {
+    final UserEpoch key = new UserEpoch(userId, epoch);
+    final SegmentedLRUMap.Segment<UserEpoch, RefCounted<TOTP>> segment = entries.segmentFor(key);
+    final RefCounted<TOTP> totp;
+
+    synchronized(segment) {
+      totp = segment.remove(key);
+    }
+
+    if(totp != null) {
+      totp.release();
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("length", length)
+        .append("timeStep", timeStep)
+        .append("startTime", startTime)
+        .append("hitCount", hitCount)
+        .append("missCount", missCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * A cache key.
+   */
+  private static final class UserEpoch {
+
+    private UserEpoch(final long userId, final long epoch) {
+      super();
+
+      this.userId = userId;
+      this.epoch = epoch;
+    }
+
+    private final long userId;
+
+    private final long epoch;
+
+    @Override
+    public boolean equals(final Object object) {
+      if(this == object) return true;
+      if(object == null || getClass() != object.getClass()) return false;
+
+      final UserEpoch objectCasted = (UserEpoch)object;
+
+      return new EqualsBuilder()
+          .append(userId, objectCasted.userId)
+          .append(epoch, objectCasted.epoch)
+          .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder(17, 37)
+          .append(userId)
+          .append(epoch)
+          .toHashCode();
+    }
+
+  }
+
+}
@@ -19,17 +19,17 @@
 package com.oliveryasuna.crypto.otp;
 
 import com.oliveryasuna.commons.language.Arguments;
-import com.oliveryasuna.commons.language.marker.Immutable;
 import com.oliveryasuna.crypto.hash.HashFunction;
 import com.oliveryasuna.crypto.mac.HMAC;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
-import java.nio.ByteBuffer;
+import javax.security.auth.Destroyable;
+import java.util.Objects;
+import java.util.stream.IntStream;
 
-@Immutable
-public class HOTP {
+public class HOTP implements Destroyable {
 
   // Static fields
   //--------------------------------------------------
@@ -40,6 +40,53 @@ public class HOTP {
   //                                 length = 0, 1,  2,   3,     4,      5,       6,         7,          8
   private static final int[] LENGTH_POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
 
+  /**
+   * The maximum password length in digits.
+   */
+  public static final int MAXIMUM_LENGTH = LENGTH_POWERS.length - 1;
+
+  /**
+   * The ASCII digits of {@code 00} to {@code 99}, two bytes each.
+   */
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+
+  static {
+    for(int i = 0; i < 100; i++) {
+      DIGIT_PAIRS[2 * i] = (byte)('0' + i / 10);
+      DIGIT_PAIRS[2 * i + 1] = (byte)('0' + i % 10);
+    }
+  }
+
+  /**
+   * The length of a counter in bytes.
+   */
+  protected static final int COUNTER_LENGTH = Long.BYTES;
+
+  /**
+   * The number of candidate counters searched per task when {@linkplain #resynchronize(int[], long, int) resynchronizing}.
+   */
+  private static final int RESYNCHRONIZATION_CHUNK_SIZE = 256;
+
+  /**
+   * The number of candidate counters above which resynchronization is split across cores.
+   */
+  private static final int RESYNCHRONIZATION_PARALLEL_THRESHOLD = 4 * RESYNCHRONIZATION_CHUNK_SIZE;
+
+  /**
+   * The number of consecutive passwords computed per task by {@link #computeRange(long, int, int[], int)}.
+   */
+  private static final int RANGE_CHUNK_SIZE = 4_096;
+
+  /**
+   * The number of passwords above which a range is split across cores.
+   */
+  private static final int RANGE_PARALLEL_THRESHOLD = 4 * RANGE_CHUNK_SIZE;
+
+  /**
+   * Per-thread buffers holding a counter, then the HMAC of it.
+   */
+  private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][] {new byte[COUNTER_LENGTH + 64]});
+
   // Constructors
   //--------------------------------------------------
 
@@ -79,18 +126,389 @@ public class HOTP {
   public int compute(final long counter) throws Exception {
     Arguments.requireGreaterOrSame(counter, 0, "counter");
 
-    final ByteBuffer buffer = ByteBuffer.allocate(LENGTH_POWERS.length - 1);
+    return compute(counter, scratch());
+  }
+
+  /**
+   * Computes the passwords for consecutive counters, e.g., to print a list for an offline device.
+   * <p>
+   * Each password is computed from the HMAC's precomputed pad states without allocating. Ranges above a threshold are split into chunks that are
+   * computed in parallel.
+   *
+   * @param fromCounter  The first counter.
+   * @param count        The number of counters.
+   * @param output       The output, for the passwords in counter order.
+   * @param outputOffset The offset in the output.
+   */
+  public void computeRange(final long fromCounter, final int count, final int[] output, final int outputOffset) {
+    Arguments.requireGreaterOrSame(fromCounter, 0, "fromCounter");
+    Arguments.requireGreaterOrSame(count, 0, "count");
+    Arguments.requireLessOrSame(fromCounter, Long.MAX_VALUE - count, "fromCounter");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(outputOffset, count, output.length);
+
+    if(count <= RANGE_PARALLEL_THRESHOLD) {
+      computeRange(fromCounter, count, output, outputOffset, scratch());
+
+      return;
+    }
+
+    final int chunks = (count + RANGE_CHUNK_SIZE - 1) / RANGE_CHUNK_SIZE;
+
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(chunk -> {
+          final int from = chunk * RANGE_CHUNK_SIZE;
+
+          computeRange(fromCounter + from, Math.min(RANGE_CHUNK_SIZE, count - from), output, outputOffset + from, scratch());
+        });
+  }
+
+  public void computeRange(final long fromCounter, final int count, final int[] output) {
+    computeRange(fromCounter, count, output, 0);
+  }
+
+  private void computeRange(final long fromCounter, final int count, final int[] output, final int outputOffset, final byte[] scratch) {
+    for(int i = 0; i < count; i++) {
+      output[outputOffset + i] = compute(fromCounter + i, scratch);
+    }
+  }
+
+  /**
+   * Verifies a password against a counter and the counters after it.
+   * <p>
+   * Every counter in the window is computed and compared, in constant time, so the time taken does not reveal which counter, if any,
+   * matched.
+   * <p>
+   * Named apart from {@link TOTP}'s {@code verify} methods, which take a time, so that a time cannot be passed as a counter by mistake.
+   *
+   * @param password  The password.
+   * @param counter   The first counter to try, e.g., the counter after the last one that matched.
+   * @param lookAhead The number of counters after {@code counter} to also try.
+   *
+   * @return The lowest matching counter, or {@code -1}, if none match.
+   */
+  public long verifyCounter(final int password, final long counter, final int lookAhead) {
+    Arguments.requireGreaterOrSame(counter, 0, "counter");
+    Arguments.requireGreaterOrSame(lookAhead, 0, "lookAhead");
+    Arguments.requireLessOrSame(counter, Long.MAX_VALUE - lookAhead, "counter");
+
+    final byte[] scratch = scratch();
+    long matched = -1L;
+
+    for(long candidate = counter; candidate <= counter + lookAhead; candidate++) {
+      matched = match(password, candidate, scratch, matched);
+    }
+
+    return matched;
+  }
+
+  /**
+   * Verifies a password, as {@link #verifyCounter(int, long, int)} does, unless the user has too many recent failures, and records the
+   * outcome.
+   *
+   * @param password       The password.
+   * @param counter        The first counter to try.
+   * @param lookAhead      The number of counters after {@code counter} to also try.
+   * @param userId         The user the password is for.
+   * @param attemptLimiter The limiter of failed attempts.
+   *
+   * @return The lowest matching counter, or {@code -1}, if none match, or the user may not attempt a password.
+   */
+  public long verifyCounter(final int password, final long counter, final int lookAhead, final long userId,
+      final AttemptLimiter attemptLimiter) {
+    Arguments.requireNotNull(attemptLimiter, "attemptLimiter");
+
+    // Count the attempt as a failure before verifying, so that parallel guesses cannot all get through before any is recorded.
+    if(!attemptLimiter.tryAcquire(userId)) {
+      return -1L;
+    }
+
+    final long matched = verifyCounter(password, counter, lookAhead);
+
+    if(matched >= 0) {
+      attemptLimiter.recordSuccess(userId);
+    }
+
+    return matched;
+  }
+
+  /**
+   * Resynchronizes a counter from consecutive passwords (RFC 4226, section 7.4), e.g., for a token that has drifted far ahead.
+   * <p>
+   * Each counter in the window is computed once, from the HMAC's precomputed pad states. Windows above a threshold are split into chunks that
+   * are searched in parallel.
+   *
+   * @param passwords The consecutive passwords, at least two.
+   * @param counter   The first counter to try, e.g., the counter after the last one that matched.
+   * @param lookAhead The number of counters after {@code counter} to also try as the first password's counter.
+   *
+   * @return The lowest counter of the first password, such that the following counters match the following passwords, or {@code -1}, if
+   *     none match. The next counter to expect is this plus the number of passwords.
+   */
+  public long resynchronize(final int[] passwords, final long counter, final int lookAhead) {
+    Arguments.requireNotNull(passwords, "passwords");
+    Arguments.requireGreaterOrSame(passwords.length, 2, "passwords.length");
+    Arguments.requireGreaterOrSame(counter, 0, "counter");
+    Arguments.requireGreaterOrSame(lookAhead, 0, "lookAhead");
+    Arguments.requireLessOrSame(counter, Long.MAX_VALUE - lookAhead - passwords.length, "counter");
+
+    final int candidates = lookAhead + 1;
+
+    if(candidates <= RESYNCHRONIZATION_PARALLEL_THRESHOLD) {
+      return search(passwords, counter, candidates);
+    }
+
+    final int chunks = (candidates + RESYNCHRONIZATION_CHUNK_SIZE - 1) / RESYNCHRONIZATION_CHUNK_SIZE;
+
+    return IntStream.range(0, chunks)
+        .parallel()
+        .mapToLong(chunk -> {
+          final int from = chunk * RESYNCHRONIZATION_CHUNK_SIZE;
+
+          return search(passwords, counter + from, Math.min(RESYNCHRONIZATION_CHUNK_SIZE, candidates - from));
+        })
+        .filter(matched -> matched >= 0)
+        .min()
+        .orElse(-1L);
+  }
+
+  /**
+   * Searches consecutive candidate counters, computing each counter's password once.
+   */
+  private long search(final int[] passwords, final long counter, final int candidates) {
+    final byte[] scratch = scratch();
+    final int[] computed = new int[candidates + passwords.length - 1];
+
+    for(int i = 0; i < computed.length; i++) {
+      computed[i] = compute(counter + i, scratch);
+    }
+
+    candidates:
+    for(int i = 0; i < candidates; i++) {
+      for(int j = 0; j < passwords.length; j++) {
+        if(computed[i + j] != passwords[j]) {
+          continue candidates;
+        }
+      }
+
+      return (counter + i);
+    }
+
+    return -1L;
+  }
+
+  /**
+   * Formats a password as ASCII digits, zero-padded to this HOTP's length, into a caller's buffer.
+   *
+   * @param password The password.
+   * @param output   The output.
+   * @param offset   The offset in the output.
+   *
+   * @return The number of bytes written, i.e., the length.
+   */
+  public int formatInto(final int password, final byte[] output, final int offset) {
+    Arguments.requireGreaterOrSame(password, 0, "password");
+    Arguments.requireLess(password, modDivisor, "password");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, output.length);
+
+    int remaining = password;
+    int position = offset + length;
+
+    while(position - offset >= 2) {
+      final int pair = 2 * (remaining % 100);
+
+      remaining /= 100;
+
+      output[--position] = DIGIT_PAIRS[pair + 1];
+      output[--position] = DIGIT_PAIRS[pair];
+    }
+
+    if(position > offset) {
+      output[offset] = (byte)('0' + remaining);
+    }
+
+    return length;
+  }
+
+  /**
+   * Formats a password as digits, zero-padded to this HOTP's length, into a caller's buffer.
+   *
+   * @param password The password.
+   * @param output   The output.
+   * @param offset   The offset in the output.
+   *
+   * @return The number of characters written, i.e., the length.
+   */
+  public int formatInto(final int password, final char[] output, final int offset) {
+    Arguments.requireGreaterOrSame(password, 0, "password");
+    Arguments.requireLess(password, modDivisor, "password");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, output.length);
+
+    int remaining = password;
+    int position = offset + length;
+
+    while(position - offset >= 2) {
+      final int pair = 2 * (remaining % 100);
+
+      remaining /= 100;
+
+      output[--position] = (char)DIGIT_PAIRS[pair + 1];
+      output[--position] = (char)DIGIT_PAIRS[pair];
+    }
+
+    if(position > offset) {
+      output[offset] = (char)('0' + remaining);
+    }
+
+    return length;
+  }
+
+  /**
+   * Parses a password of exactly this HOTP's length in ASCII digits, e.g., as entered by a user.
+   *
+   * @param text The text.
+   *
+   * @return The password, or {@code -1}, if the text is not a password.
+   */
+  public int parseCode(final CharSequence text) {
+    Arguments.requireNotNull(text, "text");
+
+    if(text.length() != length) {
+      return -1;
+    }
+
+    int password = 0;
+
+    for(int i = 0; i < length; i++) {
+      final int digit = text.charAt(i) - '0';
+
+      if(digit < 0 || digit > 9) {
+        return -1;
+      }
+
+      password = 10 * password + digit;
+    }
+
+    return password;
+  }
+
+  /**
+   * Compares text, e.g., as entered by a user, to a password, zero-padded to this HOTP's length, in constant time.
+   * <p>
+   * The time taken depends only on this HOTP's length, not on the text or how much of it matches. A password out of range never matches.
+   *
+   * @param text     The text.
+   * @param password The password, e.g., computed for the expected counter.
+   *
+   * @return {@code true}, if the text is the password; otherwise, {@code false}.
+   */
+  public boolean matches(final CharSequence text, final int password) {
+    Arguments.requireNotNull(text, "text");
+
+    final int textLength = text.length();
+    int difference = textLength ^ length;
+    int remaining = password;
+
+    for(int i = length - 1; i >= 0; i--) {
+      // Only the lengths decide the branch; positions past the text compare NUL, which is never a digit.
+      final int character = (i < textLength ? text.charAt(i) : 0);
+
+      difference |= character ^ ('0' + remaining % 10);
+      remaining /= 10;
+    }
+
+    // Zero, only if the password is in range, as a negative one would compare characters below '0', e.g., "00000/" for -1.
+    final int outOfRange = ~((~password & (password - modDivisor)) >> 31);
+
+    return ((difference | remaining | outOfRange) == 0);
+  }
+
+  /**
+   * Computes the password for a counter and, if it matches and nothing has matched yet, selects the counter, in constant time.
+   *
+   * @param password The password.
+   * @param counter  The counter.
+   * @param scratch  The scratch buffer, from {@link #scratch()}.
+   * @param matched  The counter already selected, or {@code -1}.
+   *
+   * @return The counter selected.
+   */
+  protected final long match(final int password, final long counter, final byte[] scratch, final long matched) {
+    final int difference = compute(counter, scratch) ^ password;
+
+    // All ones, if the passwords are equal.
+    final long equal = ~(long)((difference | -difference) >> 31);
+    // All ones, if nothing has matched yet.
+    final long unmatched = matched >> 63;
+    final long select = equal & unmatched;
+
+    return ((matched & ~select) | (counter & select));
+  }
+
+  /**
+   * Gets the calling thread's scratch buffer, sized for this HOTP.
+   *
+   * @return The scratch buffer.
+   */
+  protected final byte[] scratch() {
+    final byte[][] holder = SCRATCH.get();
+    final int length = COUNTER_LENGTH + hmac.getMacLength();
+
+    if(holder[0].length < length) {
+      holder[0] = new byte[length];
+    }
 
-    buffer.putLong(counter);
+    return holder[0];
+  }
 
-    final byte[] hash = hmac.sign(buffer.array());
+  /**
+   * Computes the password for a counter without allocating.
+   * <p>
+   * The counter is written to the scratch buffer, signed from the HMAC's precomputed pad states into the scratch buffer, and dynamically
+   * truncated (RFC 4226, section 5.3) in place.
+   *
+   * @param counter The counter, which must not be negative.
+   * @param scratch The scratch buffer, from {@link #scratch()}.
+   *
+   * @return The password.
+   */
+  protected final int compute(final long counter, final byte[] scratch) {
+    for(int i = COUNTER_LENGTH - 1, shift = 0; i >= 0; i--, shift += 8) {
+      scratch[i] = (byte)(counter >>> shift);
+    }
 
-    final int offset = hash[hash.length - 1] & 0xf;
-    final int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16) | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+    final int hashLength = hmac.getMacLength();
+
+    hmac.sign(scratch, 0, COUNTER_LENGTH, scratch, COUNTER_LENGTH);
+
+    final int offset = COUNTER_LENGTH + (scratch[COUNTER_LENGTH + hashLength - 1] & 0xf);
+    final int binary = ((scratch[offset] & 0x7f) << 24) | ((scratch[offset + 1] & 0xff) << 16) | ((scratch[offset + 2] & 0xff) << 8)
+        | (scratch[offset + 3] & 0xff);
 
     return (binary % modDivisor);
   }
 
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the key and destroys the HMAC, after which passwords can no longer be computed.
+   * <p>
+   * Note that the key is the array passed to the constructor, not a copy.
+   */
+  @Override
+  public void destroy() {
+    hmac.destroy();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return hmac.isDestroyed();
+  }
+
   // Getters
   //--------------------------------------------------
 
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-memory {@link UsedCodeStore} of bounded size.
+ * <p>
+ * Entries are held in lock-striped, open-addressed tables of primitive arrays, so marking a step does not allocate. Expired entries are
+ * reused in place, and purged from a stripe when it fills.
+ * <p>
+ * If a stripe is full of unexpired entries, this store fails closed: {@link #markUsed(long, long, long)} returns {@code false}, so the
+ * password is rejected, rather than forgetting a step that could then be replayed. Such rejections are counted by
+ * {@link #getOverflowCount()}, and mean the store is too small for the rate of accepted passwords.
+ *
+ * @author Oliver Yasuna
+ */
+public class InMemoryUsedCodeStore implements UsedCodeStore {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * Marks a slot that has never been used. Expiry times are positive.
+   */
+  private static final long EMPTY = 0L;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a store.
+   *
+   * @param maximumSize The number of unexpired entries to hold, at least.
+   * @param clock       Supplies the current time, in epoch milliseconds.
+   */
+  public InMemoryUsedCodeStore(final int maximumSize, final LongSupplier clock) {
+    super();
+
+    Arguments.requireGreaterOrSame(maximumSize, 1, "maximumSize");
+    Arguments.requireLessOrSame(maximumSize, 1 << 28, "maximumSize");
+    Arguments.requireNotNull(clock, "clock");
+
+    this.clock = clock;
+
+    final int stripeCount = Math.min(Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1,
+        Integer.highestOneBit(maximumSize));
+
+    this.stripes = new Stripe[stripeCount];
+    this.stripeMask = stripeCount - 1;
+
+    // Each stripe holds up to 3/4 of its capacity, to keep probe sequences short.
+    final int stripeMaximumSize = (maximumSize + stripeCount - 1) / stripeCount;
+    final int stripeCapacity = Integer.highestOneBit(Math.max(4, stripeMaximumSize * 4 / 3 + 1) - 1) << 1;
+
+    for(int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(stripeCapacity);
+    }
+  }
+
+  public InMemoryUsedCodeStore(final int maximumSize) {
+    this(maximumSize, System::currentTimeMillis);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final LongSupplier clock;
+
+  private final Stripe[] stripes;
+
+  private final int stripeMask;
+
+  private final LongAdder overflowCount = new LongAdder();
+
+  // UsedCodeStore methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean markUsed(final long userId, final long step, final long expiresAtEpochMilliseconds) {
+    Arguments.requireGreater(expiresAtEpochMilliseconds, EMPTY, "expiresAtEpochMilliseconds");
+
+    final long hash = hash(userId, step);
+    final Stripe stripe = stripes[(int)(hash >>> 32) & stripeMask];
+    final int result;
+
+    synchronized(stripe) {
+      result = stripe.mark(userId, step, expiresAtEpochMilliseconds, (int)hash, clock.getAsLong());
+    }
+
+    if(result == Stripe.FULL) {
+      overflowCount.increment();
+    }
+
+    return (result == Stripe.MARKED);
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private static long hash(final long userId, final long step) {
+    long hash = userId * 0x9e3779b97f4a7c15L + step;
+
+    hash ^= (hash >>> 33);
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= (hash >>> 33);
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= (hash >>> 33);
+
+    return hash;
+  }
+
+  /**
+   * Gets the number of unexpired entries.
+   *
+   * @return The size.
+   */
+  public int size() {
+    final long now = clock.getAsLong();
+    int size = 0;
+
+    for(final Stripe stripe : stripes) {
+      synchronized(stripe) {
+        size += stripe.size(now);
+      }
+    }
+
+    return size;
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  /**
+   * Gets the number of steps that were rejected because a stripe was full.
+   *
+   * @return The overflow count.
+   */
+  public long getOverflowCount() {
+    return overflowCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("stripes", stripes.length)
+        .append("overflowCount", overflowCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * An open-addressed table with linear probing, guarded by its own monitor.
+   */
+  private static final class Stripe {
+
+    private static final int MARKED = 0;
+
+    private static final int ALREADY_USED = 1;
+
+    private static final int FULL = 2;
+
+    private Stripe(final int capacity) {
+      super();
+
+      this.mask = capacity - 1;
+      this.maximumOccupied = capacity / 4 * 3;
+
+      this.userIds = new long[capacity];
+      this.steps = new long[capacity];
+      this.expiries = new long[capacity];
+
+      this.spareUserIds = new long[capacity];
+      this.spareSteps = new long[capacity];
+      this.spareExpiries = new long[capacity];
+    }
+
+    private final int mask;
+
+    private final int maximumOccupied;
+
+    private long[] userIds;
+
+    private long[] steps;
+
+    private long[] expiries;
+
+    /**
+     * Tables to purge into, swapped with the live tables, so that purging does not allocate.
+     */
+    private long[] spareUserIds;
+
+    private long[] spareSteps;
+
+    private long[] spareExpiries;
+
+    /**
+     * The number of slots that are not {@link #EMPTY}, including expired ones.
+     */
+    private int occupied;
+
+    private int mark(final long userId, final long step, final long expiresAt, final int hash, final long now) {
+      int reusable = -1;
+      int slot = hash & mask;
+
+      while(expiries[slot] != EMPTY) {
+        if(expiries[slot] <= now) {
+          if(reusable < 0) {
+            reusable = slot;
+          }
+        } else if(userIds[slot] == userId && steps[slot] == step) {
+          return ALREADY_USED;
+        }
+
+        slot = (slot + 1) & mask;
+      }
+
+      if(reusable < 0) {
+        if(occupied >= maximumOccupied) {
+          purge(now);
+
+          if(occupied >= maximumOccupied) {
+            return FULL;
+          }
+
+          // Purging moved entries, so find the empty slot again. The key is known to be absent.
+          slot = hash & mask;
+
+          while(expiries[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+          }
+        }
+
+        occupied++;
+        reusable = slot;
+      }
+
+      userIds[reusable] = userId;
+      steps[reusable] = step;
+      expiries[reusable] = expiresAt;
+
+      return MARKED;
+    }
+
+    /**
+     * Rehashes unexpired entries into the spare tables, and swaps them in.
+     */
+    private void purge(final long now) {
+      Arrays.fill(spareExpiries, EMPTY);
+
+      int purgedOccupied = 0;
+
+      for(int i = 0; i <= mask; i++) {
+        if(expiries[i] == EMPTY || expiries[i] <= now) {
+          continue;
+        }
+
+        int slot = (int)hash(userIds[i], steps[i]) & mask;
+
+        while(spareExpiries[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+
+        spareUserIds[slot] = userIds[i];
+        spareSteps[slot] = steps[i];
+        spareExpiries[slot] = expiries[i];
+        purgedOccupied++;
+      }
+
+      long[] swap = userIds;
+      userIds = spareUserIds;
+      spareUserIds = swap;
+
+      swap = steps;
+      steps = spareSteps;
+      spareSteps = swap;
+
+      swap = expiries;
+      expiries = spareExpiries;
+      spareExpiries = swap;
+
+      occupied = purgedOccupied;
+    }
+
+    private int size(final long now) {
+      int size = 0;
+
+      for(final long expiry : expiries) {
+        if(expiry != EMPTY && expiry > now) {
+          size++;
+        }
+      }
+
+      return size;
+    }
+
+  }
+
+}
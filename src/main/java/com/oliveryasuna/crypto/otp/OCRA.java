@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.mac.HMAC;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.stream.IntStream;
+
+/**
+ * An OCRA (RFC 6287) challenge-response function: a compiled {@link OCRASuite} and a key.
+ * <p>
+ * Computing signs an {@link OCRADataInput} from the HMAC's precomputed pad states into a per-thread buffer, and truncates it as {@link HOTP}
+ * does, so it does not allocate once the calling thread has computed with the same hash function.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public class OCRA {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * Calculated {@code Math.pow(10, digits)}.
+   */
+  private static final long[] DIGIT_POWERS = {
+      1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L, 10_000_000_000L
+  };
+
+  /**
+   * The number of items verified per task in a batch.
+   */
+  private static final int BATCH_CHUNK_SIZE = 64;
+
+  /**
+   * Per-thread buffers for the HMAC of DataInput.
+   */
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Verifies a batch of responses in parallel.
+   * <p>
+   * DataInput is only read, so the same {@link OCRADataInput} may appear more than once, but must not be modified during the call.
+   *
+   * @param ocras     The OCRAs, e.g., of each user's key.
+   * @param inputs    The DataInputs, of each OCRA's suite.
+   * @param responses The responses.
+   *
+   * @return Whether each response is correct.
+   */
+  public static boolean[] verify(final OCRA[] ocras, final OCRADataInput[] inputs, final int[] responses) {
+    Arguments.requireNotNull(ocras, "ocras");
+    Arguments.requireNotNull(inputs, "inputs");
+    Arguments.requireNotNull(responses, "responses");
+    Arguments.requireSame(inputs.length, ocras.length, "inputs.length");
+    Arguments.requireSame(responses.length, ocras.length, "responses.length");
+
+    final boolean[] results = new boolean[ocras.length];
+    final int chunks = (ocras.length + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(chunk -> {
+          for(int i = chunk * BATCH_CHUNK_SIZE; i < Math.min(ocras.length, (chunk + 1) * BATCH_CHUNK_SIZE); i++) {
+            results[i] = ocras[i].verify(responses[i], inputs[i]);
+          }
+        });
+
+    return results;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  public OCRA(final OCRASuite suite, final byte[] key) throws Exception {
+    super();
+
+    Arguments.requireNotNull(suite, "suite");
+    Arguments.requireNotNull(key, "key");
+
+    this.suite = suite;
+    this.modDivisor = DIGIT_POWERS[suite.getDigits()];
+    this.hmac = new HMAC(key, suite.getHashFunction());
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final OCRASuite suite;
+
+  protected final long modDivisor;
+
+  protected final HMAC hmac;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Computes the response to DataInput.
+   *
+   * @param input The DataInput, of this OCRA's suite.
+   *
+   * @return The response.
+   */
+  public int compute(final OCRADataInput input) {
+    Arguments.requireNotNull(input, "input");
+    // Compared by suite string, as equals() would allocate.
+    Arguments.requireTrue(input.getSuite() == suite || input.getSuite().getSuite().equals(suite.getSuite()), "input.suite");
+
+    final byte[] scratch = SCRATCH.get();
+    final int hashLength = hmac.getMacLength();
+
+    hmac.sign(input.message, 0, input.message.length, scratch, 0);
+
+    final int offset = (scratch[hashLength - 1] & 0xf);
+    final int binary = ((scratch[offset] & 0x7f) << 24) | ((scratch[offset + 1] & 0xff) << 16) | ((scratch[offset + 2] & 0xff) << 8)
+        | (scratch[offset + 3] & 0xff);
+
+    return (int)(binary % modDivisor);
+  }
+
+  /**
+   * Verifies a response to DataInput, in constant time.
+   *
+   * @param response The response.
+   * @param input    The DataInput, of this OCRA's suite.
+   *
+   * @return {@code true}, if the response is correct; otherwise, {@code false}.
+   */
+  public boolean verify(final int response, final OCRADataInput input) {
+    return ((compute(input) ^ response) == 0);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public OCRASuite getSuite() {
+    return suite;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("suite", suite)
+        .toString();
+  }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A reusable buffer of an {@link OCRASuite}'s DataInput (RFC 6287, section 5.1), i.e., the message an {@link OCRA} signs.
+ * <p>
+ * Each setter writes a field directly into the buffer, in its final encoding, so assembling DataInput creates no strings or arrays. Fields
+ * keep their values until set again. Not thread-safe: use one per thread, e.g., per request handler.
+ *
+ * @author Oliver Yasuna
+ */
+public final class OCRADataInput {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The number of bytes needed to hold a 128-digit decimal question: {@code ceil(128 * log2(10) / 8)}, which is 54.
+   */
+  private static final int NUMERIC_QUESTION_LENGTH = 54;
+
+  // Constructors
+  //--------------------------------------------------
+
+  OCRADataInput(final OCRASuite suite, final byte[] message) {
+    super();
+
+    this.suite = suite;
+    this.message = message;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final OCRASuite suite;
+
+  /**
+   * The suite, then a zero byte, then the data inputs.
+   */
+  final byte[] message;
+
+  /**
+   * Holds a numeric question while it is converted.
+   */
+  private final byte[] scratch = new byte[NUMERIC_QUESTION_LENGTH];
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Sets the counter, if the suite has one.
+   *
+   * @param counter The counter.
+   */
+  public void setCounter(final long counter) {
+    Arguments.requireTrue(suite.counterOffset >= 0, "suite.counter");
+
+    writeLong(counter, suite.counterOffset);
+  }
+
+  /**
+   * Sets the question, i.e., the challenge, in the suite's format.
+   *
+   * @param question The question, at most twice the suite's maximum question length, so that mutual challenge-response can concatenate the
+   *                 client's and server's questions (RFC 6287, section 7.3).
+   *
+   * @throws IllegalArgumentException If the question is too long, or has characters not of the suite's format.
+   */
+  public void setQuestion(final CharSequence question) {
+    Arguments.requireNotNull(question, "question");
+    Arguments.requireLessOrSame(question.length(), 2 * suite.getMaximumQuestionLength(), "question.length");
+
+    final int offset = suite.questionOffset;
+
+    Arrays.fill(message, offset, offset + OCRASuite.QUESTION_LENGTH, (byte)0);
+
+    switch(suite.getQuestionFormat()) {
+      case ALPHANUMERIC:
+        for(int i = 0; i < question.length(); i++) {
+          final char character = question.charAt(i);
+
+          Arguments.requireLess(character, 0x80, "question");
+
+          message[offset + i] = (byte)character;
+        }
+
+        break;
+      case NUMERIC:
+        setNumericQuestion(question, offset);
+
+        break;
+      case HEXADECIMAL:
+        for(int i = 0; i < question.length(); i++) {
+          writeNibble(offset, i, hexValue(question.charAt(i)));
+        }
+
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Writes a decimal question as the hexadecimal digits of its value, without leading zeros, left-aligned (RFC 6287, appendix A).
+   */
+  private void setNumericQuestion(final CharSequence question, final int offset) {
+    final int last = NUMERIC_QUESTION_LENGTH - 1;
+
+    Arrays.fill(scratch, 0, NUMERIC_QUESTION_LENGTH, (byte)0);
+
+    // Multiply-and-add into a big-endian byte array.
+    for(int i = 0; i < question.length(); i++) {
+      final int digit = question.charAt(i) - '0';
+
+      Arguments.requireTrue(digit >= 0 && digit <= 9, "question");
+
+      int carry = digit;
+
+      for(int j = last; j >= 0; j--) {
+        final int value = (scratch[j] & 0xff) * 10 + carry;
+
+        scratch[j] = (byte)value;
+        carry = value >>> 8;
+      }
+    }
+
+    int first = 0;
+
+    while(first < 2 * NUMERIC_QUESTION_LENGTH && nibble(scratch, first) == 0) {
+      first++;
+    }
+
+    for(int i = first; i < 2 * NUMERIC_QUESTION_LENGTH; i++) {
+      writeNibble(offset, i - first, nibble(scratch, i));
+    }
+  }
+
+  /**
+   * Sets the hash of the password, i.e., the PIN, if the suite has one.
+   *
+   * @param passwordHash       The password's hash, with the suite's password hash function.
+   * @param passwordHashOffset The offset of the hash.
+   */
+  public void setPasswordHash(final byte[] passwordHash, final int passwordHashOffset) {
+    Arguments.requireTrue(suite.passwordOffset >= 0, "suite.passwordHashFunction");
+    Arguments.requireNotNull(passwordHash, "passwordHash");
+
+    final int length = suite.getPasswordHashFunction().outputSize();
+
+    Objects.checkFromIndexSize(passwordHashOffset, length, passwordHash.length);
+
+    System.arraycopy(passwordHash, passwordHashOffset, message, suite.passwordOffset, length);
+  }
+
+  public void setPasswordHash(final byte[] passwordHash) {
+    Arguments.requireNotNull(passwordHash, "passwordHash");
+    Arguments.requireTrue(suite.passwordOffset < 0 || passwordHash.length == suite.getPasswordHashFunction().outputSize(), "passwordHash.length");
+
+    setPasswordHash(passwordHash, 0);
+  }
+
+  /**
+   * Sets the session information, if the suite has it.
+   *
+   * @param session       The session information, of the suite's session length.
+   * @param sessionOffset The offset of the session information.
+   */
+  public void setSession(final byte[] session, final int sessionOffset) {
+    Arguments.requireTrue(suite.sessionOffset >= 0, "suite.sessionLength");
+    Arguments.requireNotNull(session, "session");
+    Objects.checkFromIndexSize(sessionOffset, suite.getSessionLength(), session.length);
+
+    System.arraycopy(session, sessionOffset, message, suite.sessionOffset, suite.getSessionLength());
+  }
+
+  /**
+   * Sets the timestamp, if the suite has one.
+   *
+   * @param timestamp The number of time steps since the Unix epoch, e.g., from {@link OCRASuite#computeTimestamp(long)}.
+   */
+  public void setTimestamp(final long timestamp) {
+    Arguments.requireTrue(suite.timestampOffset >= 0, "suite.timeStep");
+
+    writeLong(timestamp, suite.timestampOffset);
+  }
+
+  private void writeLong(final long value, final int offset) {
+    for(int i = OCRASuite.LONG_LENGTH - 1, shift = 0; i >= 0; i--, shift += 8) {
+      message[offset + i] = (byte)(value >>> shift);
+    }
+  }
+
+  private void writeNibble(final int offset, final int index, final int value) {
+    message[offset + (index >>> 1)] |= (byte)((index & 1) == 0 ? value << 4 : value);
+  }
+
+  private static int nibble(final byte[] bytes, final int index) {
+    return ((bytes[index >>> 1] >>> ((index & 1) == 0 ? 4 : 0)) & 0xf);
+  }
+
+  private static int hexValue(final char character) {
+    if(character >= '0' && character <= '9') {
+      return (character - '0');
+    } else if(character >= 'a' && character <= 'f') {
+      return (character - 'a' + 10);
+    } else if(character >= 'A' && character <= 'F') {
+      return (character - 'A' + 10);
+    }
+
+    throw new IllegalArgumentException("question has a non-hexadecimal character.");
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public OCRASuite getSuite() {
+    return suite;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    // DataInput may hold a password hash.
+    return new ToStringBuilder(this)
+        .append("suite", suite)
+        .toString();
+  }
+
+}
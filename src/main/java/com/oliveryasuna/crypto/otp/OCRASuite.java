@@ -0,0 +1,419 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.hash.SHA512;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compiled OCRA suite (RFC 6287, section 6), e.g., {@code OCRA-1:HOTP-SHA256-8:C-QN08-PSHA1}.
+ * <p>
+ * The suite string is parsed once, into the hash function, password length, and the layout of the DataInput message that {@link OCRA}s sign.
+ * DataInput is assembled in an {@link OCRADataInput}, a reusable buffer laid out for this suite.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public final class OCRASuite {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final String ALGORITHM = "OCRA-1";
+
+  /**
+   * The length of a counter or timestamp in bytes.
+   */
+  static final int LONG_LENGTH = Long.BYTES;
+
+  /**
+   * The length of the question field in bytes, to which questions are padded.
+   */
+  static final int QUESTION_LENGTH = 128;
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Parses and compiles a suite.
+   *
+   * @param suite The suite, e.g., {@code OCRA-1:HOTP-SHA1-6:QN08}.
+   *
+   * @return The compiled suite.
+   *
+   * @throws IllegalArgumentException If the suite is malformed or unsupported.
+   */
+  public static OCRASuite parse(final String suite) {
+    Arguments.requireNotNull(suite, "suite");
+
+    final String[] parts = suite.split(":", -1);
+
+    if(parts.length != 3 || !ALGORITHM.equals(parts[0])) {
+      throw invalid(suite);
+    }
+
+    final String[] cryptoFunction = parts[1].split("-", -1);
+
+    if(cryptoFunction.length != 3 || !"HOTP".equals(cryptoFunction[0])) {
+      throw invalid(suite);
+    }
+
+    final HashFunction hashFunction = hashFunction(cryptoFunction[1]);
+    final int digits = parseNumber(cryptoFunction[2], 4, 10, suite);
+
+    if(hashFunction == null) {
+      throw invalid(suite);
+    }
+
+    boolean counter = false;
+    QuestionFormat questionFormat = null;
+    int maximumQuestionLength = 0;
+    HashFunction passwordHashFunction = null;
+    int sessionLength = 0;
+    long timeStepMilliseconds = 0L;
+    // C, Q, P, S, and T must appear in order.
+    int order = 0;
+
+    for(final String input : parts[2].split("-", -1)) {
+      if(input.equals("C") && order < 1) {
+        counter = true;
+        order = 1;
+      } else if(input.length() == 4 && input.charAt(0) == 'Q' && order < 2) {
+        questionFormat = QuestionFormat.forCode(input.charAt(1));
+        maximumQuestionLength = parseNumber(input.substring(2), 4, 64, suite);
+        order = 2;
+
+        if(questionFormat == null) {
+          throw invalid(suite);
+        }
+      } else if(input.startsWith("P") && order == 2) {
+        passwordHashFunction = hashFunction(input.substring(1));
+        order = 3;
+
+        if(passwordHashFunction == null) {
+          throw invalid(suite);
+        }
+      } else if(input.length() == 4 && input.charAt(0) == 'S' && order >= 2 && order < 4) {
+        sessionLength = parseNumber(input.substring(1), 1, 512, suite);
+        order = 4;
+      } else if(input.length() >= 3 && input.charAt(0) == 'T' && order >= 2 && order < 5) {
+        final long units = parseNumber(input.substring(1, input.length() - 1), 1, 59, suite);
+
+        switch(input.charAt(input.length() - 1)) {
+          case 'S':
+            timeStepMilliseconds = units * 1_000L;
+            break;
+          case 'M':
+            timeStepMilliseconds = units * 60_000L;
+            break;
+          case 'H':
+            timeStepMilliseconds = units * 3_600_000L;
+            break;
+          default:
+            throw invalid(suite);
+        }
+
+        order = 5;
+      } else {
+        throw invalid(suite);
+      }
+    }
+
+    if(questionFormat == null) {
+      throw invalid(suite);
+    }
+
+    return new OCRASuite(suite, hashFunction, digits, counter, questionFormat, maximumQuestionLength, passwordHashFunction, sessionLength,
+        timeStepMilliseconds);
+  }
+
+  private static HashFunction hashFunction(final String name) {
+    switch(name) {
+      case "SHA1":
+        return SHA1.getInstance();
+      case "SHA256":
+        return SHA256.getInstance();
+      case "SHA512":
+        return SHA512.getInstance();
+      default:
+        return null;
+    }
+  }
+
+  private static int parseNumber(final String string, final int minimum, final int maximum, final String suite) {
+    final int number;
+
+    try {
+      number = Integer.parseInt(string);
+    } catch(final NumberFormatException e) {
+      throw invalid(suite);
+    }
+
+    if(number < minimum || number > maximum || string.charAt(0) == '+') {
+      throw invalid(suite);
+    }
+
+    return number;
+  }
+
+  private static IllegalArgumentException invalid(final String suite) {
+    return new IllegalArgumentException("Invalid or unsupported OCRA suite: " + suite + ".");
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OCRASuite(final String suite, final HashFunction hashFunction, final int digits, final boolean counter,
+      final QuestionFormat questionFormat, final int maximumQuestionLength, final HashFunction passwordHashFunction, final int sessionLength,
+      final long timeStepMilliseconds) {
+    super();
+
+    this.suite = suite;
+    this.suiteBytes = suite.getBytes(StandardCharsets.US_ASCII);
+    this.hashFunction = hashFunction;
+    this.digits = digits;
+    this.counter = counter;
+    this.questionFormat = questionFormat;
+    this.maximumQuestionLength = maximumQuestionLength;
+    this.passwordHashFunction = passwordHashFunction;
+    this.sessionLength = sessionLength;
+    this.timeStepMilliseconds = timeStepMilliseconds;
+
+    // The suite, then a zero byte, then each data input in order.
+    int offset = suiteBytes.length + 1;
+
+    this.counterOffset = (counter ? offset : -1);
+    offset += (counter ? LONG_LENGTH : 0);
+
+    this.questionOffset = offset;
+    offset += QUESTION_LENGTH;
+
+    this.passwordOffset = (passwordHashFunction != null ? offset : -1);
+    offset += (passwordHashFunction != null ? passwordHashFunction.outputSize() : 0);
+
+    this.sessionOffset = (sessionLength != 0 ? offset : -1);
+    offset += sessionLength;
+
+    this.timestampOffset = (timeStepMilliseconds != 0L ? offset : -1);
+    offset += (timeStepMilliseconds != 0L ? LONG_LENGTH : 0);
+
+    this.messageLength = offset;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final String suite;
+
+  private final byte[] suiteBytes;
+
+  private final HashFunction hashFunction;
+
+  private final int digits;
+
+  private final boolean counter;
+
+  private final QuestionFormat questionFormat;
+
+  private final int maximumQuestionLength;
+
+  private final HashFunction passwordHashFunction;
+
+  private final int sessionLength;
+
+  private final long timeStepMilliseconds;
+
+  // Layout of DataInput; -1 for absent fields.
+
+  final int counterOffset;
+
+  final int questionOffset;
+
+  final int passwordOffset;
+
+  final int sessionOffset;
+
+  final int timestampOffset;
+
+  final int messageLength;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Creates a DataInput buffer for this suite, to be reused for many computations by one thread at a time.
+   *
+   * @return The DataInput buffer.
+   */
+  public OCRADataInput newDataInput() {
+    final byte[] message = new byte[messageLength];
+
+    System.arraycopy(suiteBytes, 0, message, 0, suiteBytes.length);
+
+    return new OCRADataInput(this, message);
+  }
+
+  /**
+   * Computes the timestamp, i.e., the number of time steps since the Unix epoch, at a time.
+   *
+   * @param epochMilliseconds The time.
+   *
+   * @return The timestamp.
+   */
+  public long computeTimestamp(final long epochMilliseconds) {
+    Arguments.requireTrue(timeStepMilliseconds != 0L, "timeStep");
+    Arguments.requireGreaterOrSame(epochMilliseconds, 0L, "epochMilliseconds");
+
+    return (epochMilliseconds / timeStepMilliseconds);
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public String getSuite() {
+    return suite;
+  }
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+  public int getDigits() {
+    return digits;
+  }
+
+  public boolean hasCounter() {
+    return counter;
+  }
+
+  public QuestionFormat getQuestionFormat() {
+    return questionFormat;
+  }
+
+  public int getMaximumQuestionLength() {
+    return maximumQuestionLength;
+  }
+
+  /**
+   * Gets the hash function of the password (PIN), if the suite has one.
+   *
+   * @return The hash function, or {@code null}.
+   */
+  public HashFunction getPasswordHashFunction() {
+    return passwordHashFunction;
+  }
+
+  /**
+   * Gets the length of the session information, if the suite has it.
+   *
+   * @return The length in bytes, or {@code 0}.
+   */
+  public int getSessionLength() {
+    return sessionLength;
+  }
+
+  /**
+   * Gets the time step of timestamps, if the suite has them.
+   *
+   * @return The time step in milliseconds, or {@code 0}.
+   */
+  public long getTimeStepMilliseconds() {
+    return timeStepMilliseconds;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean equals(final Object object) {
+    if(this == object) return true;
+    if(object == null || getClass() != object.getClass()) return false;
+
+    final OCRASuite objectCasted = (OCRASuite)object;
+
+    return new EqualsBuilder()
+        .append(suite, objectCasted.suite)
+        .isEquals();
+  }
+
+  @Override
+  public int hashCode() {
+    return new HashCodeBuilder(17, 37)
+        .append(suite)
+        .toHashCode();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("suite", suite)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * The format of challenge questions.
+   */
+  public enum QuestionFormat {
+
+    /**
+     * ASCII characters, written as is.
+     */
+    ALPHANUMERIC('A'),
+
+    /**
+     * Decimal digits, written as the number's hexadecimal digits, left-aligned.
+     */
+    NUMERIC('N'),
+
+    /**
+     * Hexadecimal digits, written as is, left-aligned.
+     */
+    HEXADECIMAL('H');
+
+    private static QuestionFormat forCode(final char code) {
+      for(final QuestionFormat format : values()) {
+        if(format.code == code) {
+          return format;
+        }
+      }
+
+      return null;
+    }
+
+    QuestionFormat(final char code) {
+      this.code = code;
+    }
+
+    private final char code;
+
+  }
+
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.hash.SHA512;
+import com.oliveryasuna.crypto.util.Base32;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * An {@code otpauth} URI, as used to enroll OTP secrets, e.g.,
+ * {@code otpauth://totp/Example:alice@example.com?secret=JBSWY3DPEHPK3PXP&issuer=Example}.
+ * <p>
+ * Parsing scans the URI once, without regular expressions, and decodes the secret directly from it.
+ *
+ * @author Oliver Yasuna
+ */
+@Immutable
+public final class OTPAuthURI {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final String SCHEME = "otpauth://";
+
+  private static final int DEFAULT_DIGITS = 6;
+
+  private static final Duration DEFAULT_PERIOD = Duration.ofSeconds(30L);
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Parses a URI.
+   *
+   * @param uri The URI.
+   *
+   * @return The parsed URI.
+   *
+   * @throws IllegalArgumentException If the URI is malformed.
+   */
+  public static OTPAuthURI parse(final CharSequence uri) {
+    Arguments.requireNotNull(uri, "uri");
+
+    final int length = uri.length();
+
+    if(!regionMatches(uri, 0, SCHEME)) {
+      throw invalid(uri);
+    }
+
+    final int typeEnd = indexOf(uri, '/', SCHEME.length(), length);
+
+    if(typeEnd < 0) {
+      throw invalid(uri);
+    }
+
+    final Type type;
+
+    if(typeEnd - SCHEME.length() == 4 && regionMatches(uri, SCHEME.length(), "totp")) {
+      type = Type.TOTP;
+    } else if(typeEnd - SCHEME.length() == 4 && regionMatches(uri, SCHEME.length(), "hotp")) {
+      type = Type.HOTP;
+    } else {
+      throw invalid(uri);
+    }
+
+    final int labelEnd = indexOf(uri, '?', typeEnd + 1, length);
+    final String label = percentDecode(uri, typeEnd + 1, (labelEnd < 0 ? length : labelEnd));
+
+    byte[] secret = null;
+    String issuer = null;
+    HashFunction hashFunction = SHA1.getInstance();
+    int digits = DEFAULT_DIGITS;
+    Duration period = DEFAULT_PERIOD;
+    long counter = -1L;
+
+    try {
+      for(int start = (labelEnd < 0 ? length : labelEnd + 1); start < length; ) {
+        int end = indexOf(uri, '&', start, length);
+
+        end = (end < 0 ? length : end);
+
+        final int separator = indexOf(uri, '=', start, end);
+
+        if(separator < 0) {
+          throw invalid(uri);
+        }
+
+        final int valueStart = separator + 1;
+
+        switch(uri.subSequence(start, separator).toString()) {
+          case "secret":
+            if(indexOf(uri, '%', valueStart, end) < 0) {
+              secret = Base32.decode(uri, valueStart, end);
+            } else {
+              // Percent-encoded padding.
+              final String encoded = percentDecode(uri, valueStart, end);
+
+              secret = Base32.decode(encoded, 0, encoded.length());
+            }
+
+            if(secret == null) {
+              throw invalid(uri);
+            }
+
+            break;
+          case "issuer":
+            issuer = percentDecode(uri, valueStart, end);
+
+            break;
+          case "algorithm":
+            hashFunction = hashFunction(uri.subSequence(valueStart, end).toString());
+
+            if(hashFunction == null) {
+              throw invalid(uri);
+            }
+
+            break;
+          case "digits":
+            digits = Integer.parseInt(uri, valueStart, end, 10);
+
+            break;
+          case "period":
+            period = Duration.ofSeconds(Long.parseLong(uri, valueStart, end, 10));
+
+            break;
+          case "counter":
+            counter = Long.parseLong(uri, valueStart, end, 10);
+
+            break;
+          default:
+            // Ignore unknown parameters, e.g., "image".
+            break;
+        }
+
+        start = end + 1;
+      }
+
+      if(secret == null || (type == Type.HOTP && counter < 0L)) {
+        throw invalid(uri);
+      }
+
+      return new OTPAuthURI(type, label, issuer, secret, hashFunction, digits, period, Math.max(counter, 0L));
+    } catch(final NumberFormatException e) {
+      throw invalid(uri);
+    }
+  }
+
+  /**
+   * Creates a URI for a TOTP, whose start time must be the Unix epoch.
+   *
+   * @param totp   The TOTP.
+   * @param label  The label, e.g., {@code "Example:alice@example.com"}.
+   * @param issuer The issuer, or {@code null}.
+   *
+   * @return The URI.
+   */
+  public static OTPAuthURI of(final TOTP totp, final String label, final String issuer) {
+    Arguments.requireNotNull(totp, "totp");
+    Arguments.requireTrue(Instant.EPOCH.equals(totp.getStartTime()), "totp.startTime");
+
+    return new OTPAuthURI(Type.TOTP, label, issuer, totp.getKey(), totp.getHashFunction(), totp.getLength(), totp.getTimeStep(), 0L);
+  }
+
+  /**
+   * Creates a URI for an HOTP.
+   *
+   * @param hotp    The HOTP.
+   * @param label   The label, e.g., {@code "Example:alice@example.com"}.
+   * @param issuer  The issuer, or {@code null}.
+   * @param counter The next counter.
+   *
+   * @return The URI.
+   */
+  public static OTPAuthURI of(final HOTP hotp, final String label, final String issuer, final long counter) {
+    Arguments.requireNotNull(hotp, "hotp");
+
+    return new OTPAuthURI(Type.HOTP, label, issuer, hotp.getKey(), hotp.getHashFunction(), hotp.getLength(), DEFAULT_PERIOD, counter);
+  }
+
+  private static HashFunction hashFunction(final String algorithm) {
+    switch(algorithm) {
+      case "SHA1":
+        return SHA1.getInstance();
+      case "SHA256":
+        return SHA256.getInstance();
+      case "SHA512":
+        return SHA512.getInstance();
+      default:
+        return null;
+    }
+  }
+
+  private static String algorithm(final HashFunction hashFunction) {
+    if(hashFunction.equals(SHA1.getInstance())) {
+      return "SHA1";
+    } else if(hashFunction.equals(SHA256.getInstance())) {
+      return "SHA256";
+    } else if(hashFunction.equals(SHA512.getInstance())) {
+      return "SHA512";
+    }
+
+    return null;
+  }
+
+  private static boolean regionMatches(final CharSequence sequence, final int offset, final String lowerCase) {
+    if(sequence.length() - offset < lowerCase.length()) {
+      return false;
+    }
+
+    for(int i = 0; i < lowerCase.length(); i++) {
+      if(Character.toLowerCase(sequence.charAt(offset + i)) != lowerCase.charAt(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static int indexOf(final CharSequence sequence, final char character, final int start, final int end) {
+    for(int i = start; i < end; i++) {
+      if(sequence.charAt(i) == character) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private static String percentDecode(final CharSequence sequence, final int start, final int end) {
+    if(indexOf(sequence, '%', start, end) < 0) {
+      return sequence.subSequence(start, end).toString();
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(end - start);
+
+    for(int i = start; i < end; i++) {
+      final char character = sequence.charAt(i);
+
+      if(character == '%') {
+        if(i + 2 >= end) {
+          throw new NumberFormatException("Truncated percent-encoding.");
+        }
+
+        bytes.write(Integer.parseInt(sequence, i + 1, i + 3, 16));
+
+        i += 2;
+      } else {
+        bytes.writeBytes(String.valueOf(character).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  private static void percentEncode(final String string, final boolean keepColons, final StringBuilder builder) {
+    for(final byte b : string.getBytes(StandardCharsets.UTF_8)) {
+      if((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-' || b == '.' || b == '_' || b == '~'
+          || (keepColons && b == ':')) {
+        builder.append((char)b);
+      } else {
+        builder.append('%').append(HEX_DIGITS[(b >>> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+      }
+    }
+  }
+
+  private static IllegalArgumentException invalid(final CharSequence uri) {
+    // The URI is not included, as it contains a secret.
+    return new IllegalArgumentException("Invalid otpauth URI of length " + uri.length() + ".");
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a URI.
+   *
+   * @param type         The type.
+   * @param label        The label, e.g., {@code "Example:alice@example.com"}.
+   * @param issuer       The issuer, or {@code null}.
+   * @param secret       The secret.
+   * @param hashFunction The hash function: SHA-1, SHA-256, or SHA-512.
+   * @param digits       The password length.
+   * @param period       The time step, for TOTPs, in whole seconds.
+   * @param counter      The next counter, for HOTPs.
+   */
+  public OTPAuthURI(final Type type, final String label, final String issuer, final byte[] secret, final HashFunction hashFunction,
+      final int digits, final Duration period, final long counter) {
+    super();
+
+    Arguments.requireNotNull(type, "type");
+    Arguments.requireNotNull(label, "label");
+    Arguments.requireNotNull(secret, "secret");
+    Arguments.requireNotNull(hashFunction, "hashFunction");
+    Arguments.requireTrue(algorithm(hashFunction) != null, "hashFunction");
+    Arguments.requireGreater(digits, 0, "digits");
+    Arguments.requireLessOrSame(digits, 8, "digits");
+    Arguments.requireNotNull(period, "period");
+    Arguments.requireGreater(period.getSeconds(), 0L, "period");
+    Arguments.requireTrue(period.getNano() == 0, "period");
+    Arguments.requireGreaterOrSame(counter, 0L, "counter");
+
+    this.type = type;
+    this.label = label;
+    this.issuer = issuer;
+    this.secret = secret.clone();
+    this.hashFunction = hashFunction;
+    this.digits = digits;
+    this.period = period;
+    this.counter = counter;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final Type type;
+
+  private final String label;
+
+  private final String issuer;
+
+  private final byte[] secret;
+
+  private final HashFunction hashFunction;
+
+  private final int digits;
+
+  private final Duration period;
+
+  private final long counter;
+
+  // Methods
+  //--------------------------------------------------
+
+  public HOTP toHOTP() throws Exception {
+    return new HOTP(digits, secret.clone(), hashFunction);
+  }
+
+  public TOTP toTOTP() throws Exception {
+    return new TOTP(digits, period, Instant.EPOCH, secret.clone(), hashFunction);
+  }
+
+  /**
+   * Builds the URI, omitting parameters with default values.
+   *
+   * @return The URI.
+   */
+  public String toURIString() {
+    final StringBuilder builder = new StringBuilder(64 + label.length() + 2 * secret.length)
+        .append(SCHEME)
+        .append(type == Type.TOTP ? "totp" : "hotp")
+        .append('/');
+
+    percentEncode(label, true, builder);
+
+    builder.append("?secret=").append(new String(Base32.encode(secret), StandardCharsets.US_ASCII));
+
+    if(issuer != null) {
+      builder.append("&issuer=");
+
+      percentEncode(issuer, false, builder);
+    }
+
+    if(!hashFunction.equals(SHA1.getInstance())) {
+      builder.append("&algorithm=").append(algorithm(hashFunction));
+    }
+
+    if(digits != DEFAULT_DIGITS) {
+      builder.append("&digits=").append(digits);
+    }
+
+    if(type == Type.TOTP && !period.equals(DEFAULT_PERIOD)) {
+      builder.append("&period=").append(period.getSeconds());
+    }
+
+    if(type == Type.HOTP) {
+      builder.append("&counter=").append(counter);
+    }
+
+    return builder.toString();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public String getIssuer() {
+    return issuer;
+  }
+
+  public byte[] getSecret() {
+    return secret.clone();
+  }
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+  public int getDigits() {
+    return digits;
+  }
+
+  public Duration getPeriod() {
+    return period;
+  }
+
+  public long getCounter() {
+    return counter;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public boolean equals(final Object object) {
+    if(this == object) return true;
+    if(object == null || getClass() != object.getClass()) return false;
+
+    final OTPAuthURI objectCasted = (OTPAuthURI)object;
+
+    return new EqualsBuilder()
+        .append(type, objectCasted.type)
+        .append(label, objectCasted.label)
+        .append(issuer, objectCasted.issuer)
+        .append(secret, objectCasted.secret)
+        .append(hashFunction, objectCasted.hashFunction)
+        .append(digits, objectCasted.digits)
+        .append(period, objectCasted.period)
+        .append(counter, objectCasted.counter)
+        .isEquals();
+  }
+
+  @Override
+  public int hashCode() {
+    return new HashCodeBuilder(17, 37)
+        .append(type)
+        .append(label)
+        .append(issuer)
+        .append(hashFunction)
+        .append(digits)
+        .append(period)
+        .append(counter)
+        .toHashCode();
+  }
+
+  @Override
+  public String toString() {
+    // The secret is omitted.
+    return new ToStringBuilder(this)
+        .append("type", type)
+        .append("label", label)
+        .append("issuer", issuer)
+        .append("hashFunction", hashFunction)
+        .append("digits", digits)
+        .append("period", period)
+        .append("counter", counter)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  public enum Type {
+
+    HOTP,
+
+    TOTP
+
+  }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.mac.HMAC;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.Destroyable;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Derives per-user OTP keys from a master key, so that they need not be stored.
+ * <p>
+ * A user's key is {@code HMAC(masterKey, userId || epoch)}, with both as big-endian 64-bit integers, and as long as the hash function's output.
+ * The epoch lets a user's key be replaced, e.g., on re-enrollment, by incrementing it; it must be stored or otherwise known per user.
+ * Derivation needs only the master key, so any number of verifiers can derive the same keys without shared state.
+ * <p>
+ * Derived OTPs use the same hash function as derivation. Destroying the deriver zeroes the master key, but not the keys it has derived.
+ *
+ * @author Oliver Yasuna
+ */
+public class OTPKeyDeriver implements Destroyable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final int MESSAGE_LENGTH = 2 * Long.BYTES;
+
+  /**
+   * Per-thread buffers holding a user ID, then an epoch.
+   */
+  private static final ThreadLocal<byte[]> MESSAGE = ThreadLocal.withInitial(() -> new byte[MESSAGE_LENGTH]);
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a deriver.
+   *
+   * @param masterKey    The master key, which should be at least as long as the hash function's output.
+   * @param hashFunction The hash function.
+   */
+  public OTPKeyDeriver(final byte[] masterKey, final HashFunction hashFunction) throws Exception {
+    super();
+
+    this.hmac = new HMAC(masterKey, hashFunction);
+    this.hashFunction = hashFunction;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final HMAC hmac;
+
+  private final HashFunction hashFunction;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Derives a user's key into a caller's buffer.
+   *
+   * @param userId    The user ID.
+   * @param epoch     The user's key epoch.
+   * @param key       The buffer to write the key to.
+   * @param keyOffset The offset in {@code key} to write at.
+   */
+  public void deriveKey(final long userId, final long epoch, final byte[] key, final int keyOffset) {
+    final byte[] message = MESSAGE.get();
+
+    for(int i = 0; i < Long.BYTES; i++) {
+      message[i] = (byte)(userId >>> (56 - 8 * i));
+      message[Long.BYTES + i] = (byte)(epoch >>> (56 - 8 * i));
+    }
+
+    hmac.sign(message, 0, MESSAGE_LENGTH, key, keyOffset);
+  }
+
+  /**
+   * Derives a user's key.
+   *
+   * @param userId The user ID.
+   * @param epoch  The user's key epoch.
+   *
+   * @return The key.
+   */
+  public byte[] deriveKey(final long userId, final long epoch) {
+    final byte[] key = new byte[getKeyLength()];
+
+    deriveKey(userId, epoch, key, 0);
+
+    return key;
+  }
+
+  /**
+   * Derives a user's HOTP.
+   *
+   * @param userId The user ID.
+   * @param epoch  The user's key epoch.
+   * @param length The password length.
+   *
+   * @return The HOTP.
+   */
+  public HOTP deriveHOTP(final long userId, final long epoch, final int length) throws Exception {
+    return new HOTP(length, deriveKey(userId, epoch), hashFunction);
+  }
+
+  /**
+   * Derives a user's TOTP.
+   *
+   * @param userId    The user ID.
+   * @param epoch     The user's key epoch.
+   * @param length    The password length.
+   * @param timeStep  The time step.
+   * @param startTime The start time.
+   *
+   * @return The TOTP.
+   */
+  public TOTP deriveTOTP(final long userId, final long epoch, final int length, final Duration timeStep, final Instant startTime) throws Exception {
+    return new TOTP(length, timeStep, startTime, deriveKey(userId, epoch), hashFunction);
+  }
+
+  // Destroyable methods
+  //--------------------------------------------------
+
+  /**
+   * Zeroes the master key and destroys the HMAC, after which keys can no longer be derived.
+   * <p>
+   * Note that the master key is the array passed to the constructor, not a copy.
+   */
+  @Override
+  public void destroy() {
+    hmac.destroy();
+  }
+
+  @Override
+  public boolean isDestroyed() {
+    return hmac.isDestroyed();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  /**
+   * Gets the length of derived keys.
+   *
+   * @return The length in bytes.
+   */
+  public int getKeyLength() {
+    return hmac.getMacLength();
+  }
+
+  public HashFunction getHashFunction() {
+    return hashFunction;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("hashFunction", hashFunction)
+        .toString();
+  }
+
+}
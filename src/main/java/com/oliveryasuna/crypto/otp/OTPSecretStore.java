@@ -0,0 +1,404 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.*;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Stores OTP secrets off-heap, encrypted, in fixed-width records looked up by numeric ID.
+ * <p>
+ * Records live in a memory-mapped file, so a restart only maps it again, or in a direct buffer. Each record holds a secret's parameters and
+ * its key, encrypted with AES-GCM under a master key, with the record's ID and parameters as additional authenticated data, so records cannot
+ * be modified or moved to another ID undetected. No {@link HOTP}, {@link TOTP}, or HMAC state is held on the heap; it is created only when a
+ * record is loaded, e.g., by a {@link TOTPBatchVerifier.Loader} whose cache bounds how many exist at once.
+ * <p>
+ * IDs are record indices, from zero to the capacity, exclusive.
+ *
+ * @author Oliver Yasuna
+ */
+public class OTPSecretStore implements AutoCloseable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  public static final int MAXIMUM_KEY_LENGTH = 64;
+
+  /**
+   * The hash functions a record can name, by index.
+   */
+  private static final HashFunction[] HASH_FUNCTIONS = {
+      SHA1.getInstance(), SHA224.getInstance(), SHA256.getInstance(), SHA384.getInstance(), SHA512.getInstance(), SHA512_224.getInstance(),
+      SHA512_256.getInstance()
+  };
+
+  private static final int MAGIC = 0x4f545053;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 64;
+
+  private static final int RECORD_SIZE = 128;
+
+  // Record layout.
+
+  private static final int STATE_OFFSET = 0;
+
+  private static final int HASH_FUNCTION_OFFSET = 1;
+
+  private static final int LENGTH_OFFSET = 2;
+
+  private static final int KEY_LENGTH_OFFSET = 3;
+
+  private static final int TIME_STEP_OFFSET = 4;
+
+  private static final int START_TIME_OFFSET = 12;
+
+  private static final int NONCE_OFFSET = 20;
+
+  private static final int NONCE_LENGTH = 12;
+
+  private static final int CIPHERTEXT_OFFSET = NONCE_OFFSET + NONCE_LENGTH;
+
+  private static final int TAG_LENGTH = 16;
+
+  private static final byte EMPTY = 0;
+
+  private static final byte PRESENT = 1;
+
+  private static final int LOCK_STRIPES = 64;
+
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Opens, or creates, a store in a memory-mapped file.
+   *
+   * @param file      The file.
+   * @param capacity  The number of records.
+   * @param masterKey The AES key that encrypts the secrets.
+   */
+  public OTPSecretStore(final Path file, final int capacity, final SecretKey masterKey) throws IOException {
+    this(map(file, capacity), capacity, masterKey);
+  }
+
+  /**
+   * Creates a store in a direct buffer, which lasts only as long as this store.
+   *
+   * @param capacity  The number of records.
+   * @param masterKey The AES key that encrypts the secrets.
+   */
+  public OTPSecretStore(final int capacity, final SecretKey masterKey) throws IOException {
+    this(ByteBuffer.allocateDirect(size(capacity)), capacity, masterKey);
+  }
+
+  private OTPSecretStore(final ByteBuffer records, final int capacity, final SecretKey masterKey) throws IOException {
+    super();
+
+    Arguments.requireNotNull(masterKey, "masterKey");
+
+    this.records = records;
+    this.capacity = capacity;
+    this.masterKey = masterKey;
+
+    for(int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+
+    if(records.getInt(0) == 0) {
+      records.putInt(0, MAGIC);
+      records.putInt(4, VERSION);
+      records.putInt(8, capacity);
+      records.putInt(12, RECORD_SIZE);
+    } else if(records.getInt(0) != MAGIC || records.getInt(4) != VERSION || records.getInt(8) != capacity
+        || records.getInt(12) != RECORD_SIZE) {
+      throw new IOException("Not a secret store with capacity " + capacity + ".");
+    }
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  private static int size(final int capacity) {
+    Arguments.requireGreater(capacity, 0, "capacity");
+    Arguments.requireLessOrSame(capacity, (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE, "capacity");
+
+    return (HEADER_SIZE + capacity * RECORD_SIZE);
+  }
+
+  private static MappedByteBuffer map(final Path file, final int capacity) throws IOException {
+    Arguments.requireNotNull(file, "file");
+
+    final int size = size(capacity);
+
+    try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if(channel.size() != 0 && channel.size() != size) {
+        throw new IOException("Not a secret store with capacity " + capacity + ": " + file + ".");
+      }
+
+      // The mapping outlives the channel.
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  /**
+   * The header, then the records. Only ever accessed with absolute methods, or through per-thread views.
+   */
+  private final ByteBuffer records;
+
+  private final int capacity;
+
+  private final SecretKey masterKey;
+
+  private final Object[] locks = new Object[LOCK_STRIPES];
+
+  private final ThreadLocal<ByteBuffer> views = new ThreadLocal<>();
+
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<>();
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  // AutoCloseable methods
+  //--------------------------------------------------
+
+  /**
+   * Flushes a memory-mapped store to its file.
+   */
+  @Override
+  public void close() {
+    if(records instanceof MappedByteBuffer) {
+      ((MappedByteBuffer)records).force();
+    }
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Stores a secret.
+   *
+   * @param id           The ID.
+   * @param key          The key, at most {@link #MAXIMUM_KEY_LENGTH} bytes. Not retained.
+   * @param hashFunction The hash function, which must be a SHA-1 or SHA-2 variant.
+   * @param length       The password length.
+   * @param timeStep     The TOTP time step.
+   * @param startTime    The TOTP start time.
+   */
+  public void put(final long id, final byte[] key, final HashFunction hashFunction, final int length, final Duration timeStep,
+      final Instant startTime) throws GeneralSecurityException {
+    Arguments.requireNotNull(key, "key");
+    Arguments.requireLessOrSame(key.length, MAXIMUM_KEY_LENGTH, "key.length");
+    Arguments.requireNotNull(hashFunction, "hashFunction");
+    Arguments.requireGreaterOrSame(length, 0, "length");
+    Arguments.requireLessOrSame(length, Byte.MAX_VALUE, "length");
+    Arguments.requireNotNull(timeStep, "timeStep");
+    Arguments.requireNotNull(startTime, "startTime");
+
+    final int hashFunctionIndex = Arrays.asList(HASH_FUNCTIONS).indexOf(hashFunction);
+
+    Arguments.requireGreaterOrSame(hashFunctionIndex, 0, "hashFunction");
+
+    final byte[] record = new byte[RECORD_SIZE];
+    final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+    recordBuffer.put(STATE_OFFSET, PRESENT);
+    recordBuffer.put(HASH_FUNCTION_OFFSET, (byte)hashFunctionIndex);
+    recordBuffer.put(LENGTH_OFFSET, (byte)length);
+    recordBuffer.put(KEY_LENGTH_OFFSET, (byte)key.length);
+    recordBuffer.putLong(TIME_STEP_OFFSET, timeStep.toMillis());
+    recordBuffer.putLong(START_TIME_OFFSET, startTime.toEpochMilli());
+
+    final byte[] nonce = new byte[NONCE_LENGTH];
+
+    secureRandom.nextBytes(nonce);
+    System.arraycopy(nonce, 0, record, NONCE_OFFSET, NONCE_LENGTH);
+
+    final Cipher cipher = cipher(Cipher.ENCRYPT_MODE, id, record, nonce);
+
+    cipher.doFinal(key, 0, key.length, record, CIPHERTEXT_OFFSET);
+
+    synchronized(lock(id)) {
+      view(id).put(record);
+    }
+  }
+
+  /**
+   * Removes a secret.
+   *
+   * @param id The ID.
+   */
+  public void remove(final long id) {
+    synchronized(lock(id)) {
+      view(id).put(new byte[RECORD_SIZE]);
+    }
+  }
+
+  /**
+   * Loads a secret as a TOTP.
+   *
+   * @param id The ID.
+   *
+   * @return The TOTP, or {@code null}, if there is no secret.
+   *
+   * @throws GeneralSecurityException If the record fails authentication.
+   */
+  public TOTP loadTOTP(final long id) throws Exception {
+    final byte[] record = read(id);
+
+    if(record == null) {
+      return null;
+    }
+
+    final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+    return new TOTP(record[LENGTH_OFFSET], Duration.ofMillis(recordBuffer.getLong(TIME_STEP_OFFSET)),
+        Instant.ofEpochMilli(recordBuffer.getLong(START_TIME_OFFSET)), decrypt(id, record), HASH_FUNCTIONS[record[HASH_FUNCTION_OFFSET]]);
+  }
+
+  /**
+   * Loads a secret as an HOTP, ignoring its time parameters.
+   *
+   * @param id The ID.
+   *
+   * @return The HOTP, or {@code null}, if there is no secret.
+   *
+   * @throws GeneralSecurityException If the record fails authentication.
+   */
+  public HOTP loadHOTP(final long id) throws Exception {
+    final byte[] record = read(id);
+
+    if(record == null) {
+      return null;
+    }
+
+    return new HOTP(record[LENGTH_OFFSET], decrypt(id, record), HASH_FUNCTIONS[record[HASH_FUNCTION_OFFSET]]);
+  }
+
+  private byte[] read(final long id) throws GeneralSecurityException {
+    final byte[] record = new byte[RECORD_SIZE];
+
+    synchronized(lock(id)) {
+      view(id).get(record);
+    }
+
+    if(record[STATE_OFFSET] == EMPTY) {
+      return null;
+    } else if(record[STATE_OFFSET] != PRESENT || (record[KEY_LENGTH_OFFSET] & 0xff) > MAXIMUM_KEY_LENGTH
+        || (record[HASH_FUNCTION_OFFSET] & 0xff) >= HASH_FUNCTIONS.length) {
+      throw new GeneralSecurityException("Record " + id + " is corrupt.");
+    }
+
+    return record;
+  }
+
+  private byte[] decrypt(final long id, final byte[] record) throws GeneralSecurityException {
+    final byte[] nonce = Arrays.copyOfRange(record, NONCE_OFFSET, NONCE_OFFSET + NONCE_LENGTH);
+    final Cipher cipher = cipher(Cipher.DECRYPT_MODE, id, record, nonce);
+    final byte[] key = new byte[record[KEY_LENGTH_OFFSET]];
+
+    cipher.doFinal(record, CIPHERTEXT_OFFSET, key.length + TAG_LENGTH, key, 0);
+
+    return key;
+  }
+
+  /**
+   * Initializes the calling thread's cipher, with the record's ID and parameters as additional authenticated data.
+   */
+  private Cipher cipher(final int mode, final long id, final byte[] record, final byte[] nonce) throws GeneralSecurityException {
+    Cipher cipher = ciphers.get();
+
+    if(cipher == null) {
+      cipher = Cipher.getInstance(TRANSFORMATION);
+
+      ciphers.set(cipher);
+    }
+
+    cipher.init(mode, masterKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+    cipher.updateAAD(ByteBuffer.allocate(Long.BYTES).putLong(0, id).array());
+    cipher.updateAAD(record, 0, NONCE_OFFSET);
+
+    return cipher;
+  }
+
+  /**
+   * Gets the calling thread's view of the records, positioned at a record.
+   */
+  private ByteBuffer view(final long id) {
+    Arguments.requireGreaterOrSame(id, 0, "id");
+    Arguments.requireLess(id, capacity, "id");
+
+    ByteBuffer view = views.get();
+
+    if(view == null) {
+      view = records.duplicate();
+
+      views.set(view);
+    }
+
+    final int offset = HEADER_SIZE + (int)id * RECORD_SIZE;
+
+    view.limit(offset + RECORD_SIZE).position(offset);
+
+    return view;
+  }
+
+  private Object lock(final long id) {
+    return locks[(int)(id & (LOCK_STRIPES - 1))];
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("capacity", capacity)
+        .append("mapped", records instanceof MappedByteBuffer)
+        .toString();
+  }
+
+}
@@ -19,7 +19,6 @@
 package com.oliveryasuna.crypto.otp;
 
 import com.oliveryasuna.commons.language.Arguments;
-import com.oliveryasuna.commons.language.marker.Immutable;
 import com.oliveryasuna.crypto.hash.HashFunction;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -27,26 +26,67 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.function.LongSupplier;
 
-@Immutable
 public class TOTP extends HOTP {
 
+  // Static methods
+  //--------------------------------------------------
+
+  private static Instant now(final LongSupplier clock) {
+    Arguments.requireNotNull(clock, "clock");
+
+    return Instant.ofEpochMilli(clock.getAsLong());
+  }
+
   // Constructors
   //--------------------------------------------------
 
-  public TOTP(final int length, final Duration timeStep, final Instant startTime, final byte[] key, final HashFunction hashFunction) throws Exception {
+  /**
+   * Creates a TOTP.
+   *
+   * @param length       The password length.
+   * @param timeStep     The time step.
+   * @param startTime    The start time.
+   * @param key          The key.
+   * @param hashFunction The hash function.
+   * @param clock        The clock, in milliseconds since the Unix epoch, for methods that use the current time, e.g., a {@link CachedClock}.
+   */
+  public TOTP(final int length, final Duration timeStep, final Instant startTime, final byte[] key, final HashFunction hashFunction,
+      final LongSupplier clock) throws Exception {
     super(length, key, hashFunction);
 
     Arguments.requireNotNull(timeStep, "timeStep");
     Arguments.requireFalse(timeStep.isZero(), "timeStep");
     Arguments.requireFalse(timeStep.isNegative(), "timeStep");
     Arguments.requireNotNull(startTime, "startTime");
+    Arguments.requireNotNull(clock, "clock");
 
     this.timeStep = timeStep;
     this.timeStepMilliseconds = timeStep.toMillis();
 
     this.startTime = startTime;
     this.startTimeMilliseconds = startTime.toEpochMilli();
+
+    this.clock = clock;
+  }
+
+  public TOTP(final int length, final Duration timeStep, final Instant startTime, final byte[] key, final HashFunction hashFunction) throws Exception {
+    this(length, timeStep, startTime, key, hashFunction, System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a TOTP that starts at the current time, according to its clock.
+   *
+   * @param length       The password length.
+   * @param timeStep     The time step.
+   * @param key          The key.
+   * @param hashFunction The hash function.
+   * @param clock        The clock, in milliseconds since the Unix epoch.
+   */
+  public TOTP(final int length, final Duration timeStep, final byte[] key, final HashFunction hashFunction, final LongSupplier clock)
+      throws Exception {
+    this(length, timeStep, now(clock), key, hashFunction, clock);
   }
 
   public TOTP(final int length, final Duration timeStep, final byte[] key, final HashFunction hashFunction) throws Exception {
@@ -64,6 +104,8 @@ public class TOTP extends HOTP {
 
   protected final long startTimeMilliseconds;
 
+  protected final LongSupplier clock;
+
   // HOTP methods
   //--------------------------------------------------
 
@@ -72,20 +114,188 @@ public class TOTP extends HOTP {
     return super.compute(computeCounter(epochMilliseconds));
   }
 
+  /**
+   * Computes the passwords for consecutive time steps, starting with the step at a time.
+   *
+   * @param fromEpochMilliseconds The time of the first step.
+   * @param count                 The number of steps.
+   * @param output                The output, for the passwords in step order.
+   * @param outputOffset          The offset in the output.
+   */
+  @Override
+  public void computeRange(final long fromEpochMilliseconds, final int count, final int[] output, final int outputOffset) {
+    Arguments.requireGreaterOrSame(fromEpochMilliseconds, startTimeMilliseconds, "fromEpochMilliseconds");
+
+    super.computeRange(computeCounter(fromEpochMilliseconds), count, output, outputOffset);
+  }
+
+  @Override
+  public void computeRange(final long fromEpochMilliseconds, final int count, final int[] output) {
+    computeRange(fromEpochMilliseconds, count, output, 0);
+  }
+
   // Methods
   //--------------------------------------------------
 
+  /**
+   * Computes the passwords for consecutive time steps, starting with the step at a time.
+   *
+   * @param from   The time of the first step.
+   * @param count  The number of steps.
+   * @param output The output, for the passwords in step order.
+   */
+  public void computeRange(final Instant from, final int count, final int[] output) {
+    Arguments.requireNotNull(from, "from");
+
+    computeRange(from.toEpochMilli(), count, output, 0);
+  }
+
+  /**
+   * Computes the password for the current time, according to this TOTP's clock.
+   *
+   * @return The password.
+   */
+  public int compute() throws Exception {
+    return compute(clock.getAsLong());
+  }
+
   public int compute(final Instant time) throws Exception {
     Arguments.requireNotNull(time, "time");
-    Arguments.requireGreaterOrSame(time, getStartTime(), "time");
 
-    return compute(time.toEpochMilli());
+    final long epochMilliseconds = time.toEpochMilli();
+
+    Arguments.requireGreaterOrSame(epochMilliseconds, startTimeMilliseconds, "time");
+
+    return compute(epochMilliseconds);
+  }
+
+  /**
+   * Verifies a password against the time step at a time and the steps around it, to allow for clock drift.
+   * <p>
+   * Every step in the window is computed and compared, in constant time, so the time taken does not reveal which step, if any, matched. The
+   * current step is preferred, then earlier steps, then later steps. Comparing the matched step to {@link #computeCounter(long)} gives the
+   * drift.
+   *
+   * @param password          The password.
+   * @param epochMilliseconds The time.
+   * @param backSteps         The number of steps before the current step to also try.
+   * @param forwardSteps      The number of steps after the current step to also try.
+   *
+   * @return The matching step, or {@code -1}, if none match.
+   */
+  public long verify(final int password, final long epochMilliseconds, final int backSteps, final int forwardSteps) {
+    Arguments.requireGreaterOrSame(epochMilliseconds, startTimeMilliseconds, "epochMilliseconds");
+    Arguments.requireGreaterOrSame(backSteps, 0, "backSteps");
+    Arguments.requireGreaterOrSame(forwardSteps, 0, "forwardSteps");
+
+    final long counter = computeCounter(epochMilliseconds);
+    final byte[] scratch = scratch();
+
+    long matched = match(password, counter, scratch, -1L);
+
+    for(long step = counter - 1; step >= counter - backSteps && step >= 0; step--) {
+      matched = match(password, step, scratch, matched);
+    }
+
+    for(long step = counter + 1; step <= counter + forwardSteps; step++) {
+      matched = match(password, step, scratch, matched);
+    }
+
+    return matched;
+  }
+
+  /**
+   * Verifies a password, as {@link #verify(int, long, int, int)} does, at the current time, according to this TOTP's clock.
+   *
+   * @param password     The password.
+   * @param backSteps    The number of steps before the current step to also try.
+   * @param forwardSteps The number of steps after the current step to also try.
+   *
+   * @return The matching step, or {@code -1}, if none match.
+   */
+  public long verify(final int password, final int backSteps, final int forwardSteps) {
+    return verify(password, clock.getAsLong(), backSteps, forwardSteps);
+  }
+
+  /**
+   * Verifies a password, as {@link #verify(int, long, int, int)} does, and atomically marks its step as used, so that it is accepted at most
+   * once (RFC 6238, section 5.2).
+   *
+   * @param password          The password.
+   * @param epochMilliseconds The time.
+   * @param backSteps         The number of steps before the current step to also try.
+   * @param forwardSteps      The number of steps after the current step to also try.
+   * @param userId            The user the password is for.
+   * @param usedCodeStore     The store of used steps.
+   *
+   * @return The matching step, or {@code -1}, if none match, or it was already used.
+   */
+  public long verify(final int password, final long epochMilliseconds, final int backSteps, final int forwardSteps, final long userId,
+      final UsedCodeStore usedCodeStore) {
+    Arguments.requireNotNull(usedCodeStore, "usedCodeStore");
+
+    final long step = verify(password, epochMilliseconds, backSteps, forwardSteps);
+
+    if(step < 0) {
+      return -1L;
+    }
+
+    // The step is accepted until it falls out of the window behind the current step.
+    final long expiresAtEpochMilliseconds = startTimeMilliseconds + (step + backSteps + 1) * timeStepMilliseconds;
+
+    return (usedCodeStore.markUsed(userId, step, expiresAtEpochMilliseconds) ? step : -1L);
   }
 
-  private long computeCounter(final long epochMilliseconds) {
+  /**
+   * Verifies a password, as {@link #verify(int, long, int, int)} does, unless the user has too many recent failures, and records the outcome.
+   *
+   * @param password          The password.
+   * @param epochMilliseconds The time.
+   * @param backSteps         The number of steps before the current step to also try.
+   * @param forwardSteps      The number of steps after the current step to also try.
+   * @param userId            The user the password is for.
+   * @param attemptLimiter    The limiter of failed attempts.
+   *
+   * @return The matching step, or {@code -1}, if none match, or the user may not attempt a password.
+   */
+  public long verify(final int password, final long epochMilliseconds, final int backSteps, final int forwardSteps, final long userId,
+      final AttemptLimiter attemptLimiter) {
+    Arguments.requireNotNull(attemptLimiter, "attemptLimiter");
+
+    // Count the attempt as a failure before verifying, so that parallel guesses cannot all get through before any is recorded.
+    if(!attemptLimiter.tryAcquire(userId)) {
+      return -1L;
+    }
+
+    final long step = verify(password, epochMilliseconds, backSteps, forwardSteps);
+
+    if(step >= 0) {
+      attemptLimiter.recordSuccess(userId);
+    }
+
+    return step;
+  }
+
+  /**
+   * Computes the time step, i.e., the HOTP counter, at a time.
+   *
+   * @param epochMilliseconds The time.
+   *
+   * @return The time step.
+   */
+  public long computeCounter(final long epochMilliseconds) {
     return ((epochMilliseconds - startTimeMilliseconds) / timeStepMilliseconds);
   }
 
+  /**
+   * Computes the current time step, according to this TOTP's clock.
+   *
+   * @return The time step.
+   */
+  public long currentCounter() {
+    return computeCounter(clock.getAsLong());
+  }
+
   // Getters
   //--------------------------------------------------
 
@@ -97,6 +307,10 @@ public class TOTP extends HOTP {
     return startTime;
   }
 
+  public LongSupplier getClock() {
+    return clock;
+  }
+
   // Object methods
   //--------------------------------------------------
 
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.hash.HashFunction;
+import com.oliveryasuna.crypto.util.Lease;
+import com.oliveryasuna.crypto.util.RefCounted;
+import com.oliveryasuna.crypto.util.SegmentedLRUMap;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Verifies batches of TOTP passwords for many secrets in parallel.
+ * <p>
+ * Each secret is identified by a numeric handle, and its {@link TOTP}, which holds the HMAC's precomputed pad states, is cached across
+ * batches in a {@link SegmentedLRUMap}. A batch is ordered by hash function and password length, and then split into chunks that are verified
+ * in parallel, so that each chunk mostly works with one kind of digest.
+ * <p>
+ * The verifier owns the TOTPs it loads. Each is {@link TOTP#destroy() destroyed}, which zeroes its key, once it has been evicted or
+ * invalidated and no batch still uses it.
+ * <p>
+ * Results are reported as one byte per password: the matched step's offset from the current step, i.e., the clock drift, or
+ * {@link #REJECTED}, {@link #UNKNOWN}, or {@link #LOAD_FAILED}.
+ *
+ * @author Oliver Yasuna
+ */
+public class TOTPBatchVerifier {
+
+  // Static fields
+  //--------------------------------------------------
+
+  /**
+   * The result for a password that does not match.
+   */
+  public static final byte REJECTED = Byte.MIN_VALUE;
+
+  /**
+   * The result for a password whose secret is unknown, i.e., the loader returned {@code null}.
+   */
+  public static final byte UNKNOWN = Byte.MIN_VALUE + 1;
+
+  /**
+   * The result for a password whose secret could not be loaded, as the loader threw an exception, e.g., as its store was unavailable.
+   */
+  public static final byte LOAD_FAILED = Byte.MIN_VALUE + 2;
+
+  /**
+   * The maximum number of steps before or after the current step that can be tried, so that offsets do not collide with the results above.
+   */
+  public static final int MAXIMUM_STEPS = -(LOAD_FAILED + 1);
+
+  private static final int CHUNK_SIZE = 64;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a verifier.
+   *
+   * @param maximumSize  The maximum number of secrets' TOTPs to cache.
+   * @param backSteps    The number of steps before the current step to also try.
+   * @param forwardSteps The number of steps after the current step to also try.
+   * @param loader       Loads the TOTP for a handle on a miss.
+   */
+  public TOTPBatchVerifier(final int maximumSize, final int backSteps, final int forwardSteps, final Loader loader) {
+    super();
+
+    Arguments.requireGreater(maximumSize, 0, "maximumSize");
+    Arguments.requireGreaterOrSame(backSteps, 0, "backSteps");
+    Arguments.requireLessOrSame(backSteps, MAXIMUM_STEPS, "backSteps");
+    Arguments.requireGreaterOrSame(forwardSteps, 0, "forwardSteps");
+    Arguments.requireLessOrSame(forwardSteps, MAXIMUM_STEPS, "forwardSteps");
+    Arguments.requireNotNull(loader, "loader");
+
+    this.backSteps = backSteps;
+    this.forwardSteps = forwardSteps;
+    this.loader = loader;
+    this.totps = new SegmentedLRUMap<>(maximumSize);
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final int backSteps;
+
+  protected final int forwardSteps;
+
+  private final Loader loader;
+
+  private final SegmentedLRUMap<Long, RefCounted<TOTP>> totps;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Verifies a batch of passwords.
+   *
+   * @param handles           The secrets' handles.
+   * @param passwords         The passwords.
+   * @param epochMilliseconds The times the passwords were entered.
+   *
+   * @return The results, in the same order: each matched step's offset from the current step, or {@link #REJECTED}, {@link #UNKNOWN}, or
+   *     {@link #LOAD_FAILED}.
+   */
+  public byte[] verify(final long[] handles, final int[] passwords, final long[] epochMilliseconds) {
+    Arguments.requireNotNull(handles, "handles");
+    Arguments.requireNotNull(passwords, "passwords");
+    Arguments.requireNotNull(epochMilliseconds, "epochMilliseconds");
+    Arguments.requireSame(passwords.length, handles.length, "passwords.length");
+    Arguments.requireSame(epochMilliseconds.length, handles.length, "epochMilliseconds.length");
+
+    final int length = handles.length;
+    // Leased, so that a TOTP evicted by another batch is not destroyed while this one uses it.
+    final Lease<?>[] leases = new Lease<?>[length];
+    final TOTP[] totps = new TOTP[length];
+    final byte[] results = new byte[length];
+
+    try {
+      IntStream.range(0, length).parallel().forEach(i -> {
+        final Lease<TOTP> lease;
+
+        try {
+          lease = get(handles[i]);
+        } catch(final Exception e) {
+          results[i] = LOAD_FAILED;
+
+          return;
+        }
+
+        if(lease == null) {
+          results[i] = UNKNOWN;
+        } else {
+          leases[i] = lease;
+          totps[i] = lease.get();
+        }
+      });
+
+      final int[] order = group(totps);
+
+      IntStream.range(0, (length + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+        for(int i = chunk * CHUNK_SIZE; i < Math.min(length, (chunk + 1) * CHUNK_SIZE); i++) {
+          final int index = order[i];
+
+          if(totps[index] != null) {
+            results[index] = verify(totps[index], passwords[index], epochMilliseconds[index]);
+          }
+        }
+      });
+    } finally {
+      for(final Lease<?> lease : leases) {
+        if(lease != null) {
+          lease.close();
+        }
+      }
+    }
+
+    return results;
+  }
+
+  private byte verify(final TOTP totp, final int password, final long epochMilliseconds) {
+    if(epochMilliseconds < totp.startTimeMilliseconds) {
+      return REJECTED;
+    }
+
+    final long step = totp.verify(password, epochMilliseconds, backSteps, forwardSteps);
+
+    return (step < 0 ? REJECTED : (byte)(step - totp.computeCounter(epochMilliseconds)));
+  }
+
+  /**
+   * Orders indices by hash function and password length, with a counting sort.
+   *
+   * @return The ordered indices, with unknown secrets first.
+   */
+  private static int[] group(final TOTP[] totps) {
+    final Map<Group, Integer> groupIds = new HashMap<>();
+    final int[] groups = new int[totps.length];
+
+    for(int i = 0; i < totps.length; i++) {
+      groups[i] = (totps[i] == null ? 0 : groupIds.computeIfAbsent(new Group(totps[i]), group -> groupIds.size() + 1));
+    }
+
+    final int[] offsets = new int[groupIds.size() + 2];
+
+    for(final int group : groups) {
+      offsets[group + 1]++;
+    }
+
+    for(int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+
+    final int[] order = new int[totps.length];
+
+    for(int i = 0; i < totps.length; i++) {
+      order[offsets[groups[i]]++] = i;
+    }
+
+    return order;
+  }
+
+  /**
+   * Leases the TOTP for a handle, loading it on a miss.
+   * <p>
+   * A TOTP loaded while the handle's segment had an entry {@link #invalidate(long) invalidated} is used, as its load began first, but not
+   * cached, as it may be stale; it is destroyed once the lease is closed.
+   *
+   * @return The lease, which must be closed, or {@code null}, if the secret is unknown.
+   */
+  private Lease<TOTP> get(final long handle) throws Exception {
+    final SegmentedLRUMap.Segment<Long, RefCounted<TOTP>> segment = totps.segmentFor(handle);
+    final long generation;
+
+    synchronized(segment) {
+      final RefCounted<TOTP> totp = segment.get(handle);
+
+      if(totp != null) {
+        hitCount.increment();
+
+        return totp.lease();
+      }
+
+      generation = segment.getGeneration();
+    }
+
+    missCount.increment();
+
+    // Load outside of the lock, so that a slow loader does not block the segment.
+    final TOTP loaded = loader.load(handle);
+
+    if(loaded == null) {
+      return null;
+    }
+
+    final RefCounted<TOTP> totp = new RefCounted<>(loaded);
+    final List<RefCounted<TOTP>> removed = new ArrayList<>(1);
+
+    try {
+      synchronized(segment) {
+        final RefCounted<TOTP> raced = segment.get(handle);
+
+        if(raced != null) {
+          // Another thread loaded it first; keep theirs. Ours was never shared, so dropping the cache's reference destroys it.
+          removed.add(totp);
+
+          return raced.lease();
+        }
+
+        if(!segment.putIfCurrent(handle, totp, generation)) {
+          // Not cached, so the cache's reference is dropped at once, and the TOTP is destroyed when the lease is closed.
+          removed.add(totp);
+        }
+
+        segment.drainEvicted(removed);
+
+        return totp.lease();
+      }
+    } finally {
+      for(final RefCounted<TOTP> dropped : removed) {
+        dropped.release();
+      }
+    }
+  }
+
+  /**
+   * Removes a secret's cached TOTP, e.g., after its secret changes.
+   * <p>
+   * The TOTP is destroyed once no batch uses it.
+   *
+   * @param handle The handle.
+   */
+  public void invalidate(final long handle) {
+    final SegmentedLRUMap.Segment<Long, RefCounted<TOTP>> segment = totps.segmentFor(handle);
+    final RefCounted<TOTP> totp;
+
+    synchronized(segment) {
+      totp = segment.invalidate(handle);
+    }
+
+    if(totp != null) {
+      totp.release();
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getBackSteps() {
+    return backSteps;
+  }
+
+  public int getForwardSteps() {
+    return forwardSteps;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("backSteps", backSteps)
+        .append("forwardSteps", forwardSteps)
+        .append("hitCount", hitCount)
+        .append("missCount", missCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * Loads the TOTP for a secret's handle, e.g., by fetching its key and parameters.
+   * <p>
+   * A {@link TOTPBatchVerifier} takes ownership of the TOTPs it loads and destroys them, so its loader must return a new TOTP on each call,
+   * not one shared with, e.g., a {@link DerivedTOTPCache}.
+   */
+  @FunctionalInterface
+  public interface Loader {
+
+    /**
+     * Loads a TOTP.
+     *
+     * @param handle The secret's handle.
+     *
+     * @return The TOTP, or {@code null}, if the secret is unknown.
+     */
+    TOTP load(long handle) throws Exception;
+
+  }
+
+  private static final class Group {
+
+    private Group(final TOTP totp) {
+      super();
+
+      this.hashFunction = totp.getHashFunction();
+      this.length = totp.getLength();
+    }
+
+    private final HashFunction hashFunction;
+
+    private final int length;
+
+    @Override
+    public boolean equals(final Object object) {
+      if(this == object) return true;
+      if(object == null || getClass() != object.getClass()) return false;
+
+      final Group objectCasted = (Group)object;
+
+      return new EqualsBuilder()
+          .append(hashFunction, objectCasted.hashFunction)
+          .append(length, objectCasted.length)
+          .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder(17, 37)
+          .append(hashFunction)
+          .append(length)
+          .toHashCode();
+    }
+
+  }
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputes the passwords of recently active secrets shortly before each TOTP time step begins, so that verifying them during the step is a
+ * table lookup.
+ * <p>
+ * Secrets become active when they are verified, and are evicted once idle for a number of steps. At most a maximum number are active; others
+ * are verified live. Each step's table holds, for every active secret, sorted by handle, the passwords of the steps in the verification
+ * window. Tables are built off to the side and published whole, so verifications never see a partial table.
+ * <p>
+ * All secrets must share the time step and start time. Secrets whose TOTPs do not are verified live. Secrets that are rotated or revoked must
+ * be {@link #invalidate(long) invalidated}, or their old passwords are accepted for as long as they stay active.
+ *
+ * @author Oliver Yasuna
+ */
+public class TOTPPrecomputer implements AutoCloseable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final Table EMPTY_TABLE = new Table(-1L, new long[0], new int[0]);
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a precomputer. Call {@link #start(Duration)} to precompute on a schedule.
+   *
+   * @param timeStep      The time step of every secret.
+   * @param startTime     The start time of every secret.
+   * @param backSteps     The number of steps before the current step to also try.
+   * @param forwardSteps  The number of steps after the current step to also try.
+   * @param maximumActive The maximum number of active secrets.
+   * @param idleSteps     The number of steps a secret can go unverified before it is no longer active.
+   * @param loader        Loads the TOTP for a handle.
+   */
+  public TOTPPrecomputer(final Duration timeStep, final Instant startTime, final int backSteps, final int forwardSteps, final int maximumActive,
+      final int idleSteps, final TOTPBatchVerifier.Loader loader) {
+    super();
+
+    Arguments.requireNotNull(timeStep, "timeStep");
+    Arguments.requireFalse(timeStep.isZero(), "timeStep");
+    Arguments.requireFalse(timeStep.isNegative(), "timeStep");
+    Arguments.requireNotNull(startTime, "startTime");
+    Arguments.requireGreaterOrSame(backSteps, 0, "backSteps");
+    Arguments.requireGreaterOrSame(forwardSteps, 0, "forwardSteps");
+    Arguments.requireGreater(maximumActive, 0, "maximumActive");
+    Arguments.requireGreater(idleSteps, 0, "idleSteps");
+    Arguments.requireNotNull(loader, "loader");
+
+    this.timeStepMilliseconds = timeStep.toMillis();
+    this.startTimeMilliseconds = startTime.toEpochMilli();
+    this.backSteps = backSteps;
+    this.forwardSteps = forwardSteps;
+    this.windowSize = backSteps + 1 + forwardSteps;
+    this.maximumActive = maximumActive;
+    this.idleSteps = idleSteps;
+    this.loader = loader;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  protected final long timeStepMilliseconds;
+
+  protected final long startTimeMilliseconds;
+
+  protected final int backSteps;
+
+  protected final int forwardSteps;
+
+  private final int windowSize;
+
+  protected final int maximumActive;
+
+  protected final int idleSteps;
+
+  private final TOTPBatchVerifier.Loader loader;
+
+  private final Map<Long, Active> active = new ConcurrentHashMap<>();
+
+  /**
+   * The number of slots for active secrets that are taken, which is reserved before a secret is added to {@link #active}, so that it never
+   * exceeds the maximum.
+   */
+  private final AtomicInteger reservedCount = new AtomicInteger();
+
+  /**
+   * Incremented by each invalidation, so that a TOTP loaded before one is not made active after it.
+   */
+  private volatile long invalidationCount;
+
+  /**
+   * The table for the current step, or the previous one.
+   */
+  private volatile Table currentTable = EMPTY_TABLE;
+
+  /**
+   * The table for the next step, once precomputed.
+   */
+  private volatile Table nextTable = EMPTY_TABLE;
+
+  private final LongAdder tableHitCount = new LongAdder();
+
+  private final LongAdder tableMissCount = new LongAdder();
+
+  private ScheduledExecutorService scheduler;
+
+  // AutoCloseable methods
+  //--------------------------------------------------
+
+  /**
+   * Stops precomputing.
+   */
+  @Override
+  public synchronized void close() {
+    if(scheduler != null) {
+      scheduler.shutdownNow();
+
+      scheduler = null;
+    }
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Starts precomputing each step's table on a daemon thread, a lead time before the step begins.
+   *
+   * @param lead How long before each step to precompute, which should comfortably exceed the time precomputing takes.
+   */
+  public synchronized void start(final Duration lead) {
+    Arguments.requireNotNull(lead, "lead");
+    Arguments.requireFalse(lead.isNegative(), "lead");
+    Arguments.requireLess(lead.toMillis(), timeStepMilliseconds, "lead");
+    Arguments.requireTrue(scheduler == null, "scheduler");
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "totp-precomputer");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+
+    schedule(scheduler, lead.toMillis());
+  }
+
+  private void schedule(final ScheduledExecutorService scheduler, final long leadMilliseconds) {
+    final long now = System.currentTimeMillis();
+    final long nextStep = computeCounter(now + leadMilliseconds) + 1;
+    final long delay = Math.max(0L, startTimeMilliseconds + nextStep * timeStepMilliseconds - leadMilliseconds - now);
+
+    scheduler.schedule(() -> {
+      try {
+        precompute(nextStep);
+      } finally {
+        if(!scheduler.isShutdown()) {
+          schedule(scheduler, leadMilliseconds);
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Evicts idle secrets, and precomputes the table for a step.
+   *
+   * @param step The step, normally the next one.
+   */
+  public void precompute(final long step) {
+    for(final Active secret : active.values()) {
+      if(secret.lastActiveStep < step - idleSteps) {
+        deactivate(secret);
+      }
+    }
+
+    final Active[] secrets = active.values().toArray(new Active[0]);
+
+    Arrays.sort(secrets, (secret1, secret2) -> Long.compare(secret1.handle, secret2.handle));
+
+    final long[] handles = new long[secrets.length];
+    final int[] passwords = new int[secrets.length * windowSize];
+
+    IntStream.range(0, secrets.length).parallel().forEach(row -> {
+      final TOTP totp = secrets[row].totp;
+      final byte[] scratch = totp.scratch();
+
+      handles[row] = secrets[row].handle;
+
+      for(int k = 0; k < windowSize; k++) {
+        final long counter = step - backSteps + k;
+
+        // Steps before the start time are never matched, so any value will do.
+        passwords[row * windowSize + k] = (counter < 0 ? -1 : totp.compute(counter, scratch));
+      }
+    });
+
+    synchronized(this) {
+      // Secrets invalidated while the table was computed are dropped from it, as invalidate() could not.
+      Table table = new Table(step, handles, passwords);
+
+      for(final Active secret : secrets) {
+        if(active.get(secret.handle) != secret) {
+          table = table.without(secret.handle);
+        }
+      }
+
+      if(nextTable.step < step) {
+        currentTable = nextTable;
+        nextTable = table;
+      } else if(nextTable.step == step) {
+        nextTable = table;
+      }
+    }
+  }
+
+  /**
+   * Verifies a password, from the precomputed table if possible, and marks the secret active.
+   * <p>
+   * The comparison is constant-time, and prefers the current step, then earlier steps, then later steps, as
+   * {@link TOTP#verify(int, long, int, int)} does.
+   *
+   * @param handle            The secret's handle.
+   * @param password          The password.
+   * @param epochMilliseconds The time.
+   *
+   * @return The matching step, or {@code -1}, if none match, or the secret is unknown.
+   */
+  public long verify(final long handle, final int password, final long epochMilliseconds) throws Exception {
+    Arguments.requireGreaterOrSame(epochMilliseconds, startTimeMilliseconds, "epochMilliseconds");
+
+    final long step = computeCounter(epochMilliseconds);
+    final Table next = nextTable;
+    final Table table = (next.step == step ? next : currentTable);
+
+    if(table.step == step) {
+      final int row = Arrays.binarySearch(table.handles, handle);
+
+      if(row >= 0) {
+        final Active secret = active.get(handle);
+
+        if(secret != null) {
+          secret.lastActiveStep = step;
+        }
+
+        tableHitCount.increment();
+
+        return match(table.passwords, row * windowSize, password, step);
+      }
+    }
+
+    tableMissCount.increment();
+
+    final TOTP totp = activate(handle, step);
+
+    return (totp == null ? -1L : totp.verify(password, epochMilliseconds, backSteps, forwardSteps));
+  }
+
+  /**
+   * Forgets a secret, e.g., once it is rotated or revoked, so that it is no longer active, and its passwords are dropped from the precomputed
+   * tables. Its next verification loads it again, so the loader must already return its new TOTP, or none.
+   *
+   * @param handle The secret's handle.
+   */
+  public synchronized void invalidate(final long handle) {
+    invalidationCount++;
+
+    final Active secret = active.get(handle);
+
+    if(secret != null) {
+      deactivate(secret);
+    }
+
+    currentTable = currentTable.without(handle);
+    nextTable = nextTable.without(handle);
+  }
+
+  /**
+   * Compares a password to a row of the table, in constant time.
+   */
+  private long match(final int[] passwords, final int offset, final int password, final long step) {
+    long matched = select(passwords[offset + backSteps], password, step, -1L);
+
+    for(int k = backSteps - 1; k >= 0; k--) {
+      matched = select(passwords[offset + k], password, step - backSteps + k, matched);
+    }
+
+    for(int k = backSteps + 1; k < windowSize; k++) {
+      matched = select(passwords[offset + k], password, step - backSteps + k, matched);
+    }
+
+    // Steps before the start time are never matched.
+    return (matched >= 0 ? matched : -1L);
+  }
+
+  private static long select(final int expected, final int password, final long step, final long matched) {
+    final int difference = expected ^ password;
+    final long equal = ~(long)((difference | -difference) >> 31);
+    final long select = equal & (matched >> 63);
+
+    return ((matched & ~select) | (step & select));
+  }
+
+  /**
+   * Gets the TOTP for a handle, making it active if there is room.
+   *
+   * @return The TOTP, or {@code null}, if it is unknown.
+   */
+  private TOTP activate(final long handle, final long step) throws Exception {
+    final Active secret = active.get(handle);
+
+    if(secret != null) {
+      secret.lastActiveStep = step;
+
+      return secret.totp;
+    }
+
+    final long invalidations = invalidationCount;
+    final TOTP totp = loader.load(handle);
+
+    if(totp != null && totp.timeStepMilliseconds == timeStepMilliseconds && totp.startTimeMilliseconds == startTimeMilliseconds && reserve()) {
+      final Active loaded = new Active(handle, totp, step);
+
+      if(active.putIfAbsent(handle, loaded) != null) {
+        reservedCount.decrementAndGet();
+      } else if(invalidationCount != invalidations) {
+        // An invalidation may have raced the load, so this TOTP may be stale.
+        deactivate(loaded);
+      }
+    }
+
+    return totp;
+  }
+
+  /**
+   * Reserves a slot for an active secret.
+   *
+   * @return Whether there was room.
+   */
+  private boolean reserve() {
+    int reserved;
+
+    do {
+      reserved = reservedCount.get();
+
+      if(reserved >= maximumActive) {
+        return false;
+      }
+    } while(!reservedCount.compareAndSet(reserved, reserved + 1));
+
+    return true;
+  }
+
+  /**
+   * Removes an active secret, and frees its slot, unless it was already removed.
+   */
+  private void deactivate(final Active secret) {
+    if(active.remove(secret.handle, secret)) {
+      reservedCount.decrementAndGet();
+    }
+  }
+
+  private long computeCounter(final long epochMilliseconds) {
+    return ((epochMilliseconds - startTimeMilliseconds) / timeStepMilliseconds);
+  }
+
+  /**
+   * Gets the number of active secrets.
+   *
+   * @return The number of active secrets.
+   */
+  public int activeCount() {
+    return active.size();
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public long getTableHitCount() {
+    return tableHitCount.sum();
+  }
+
+  public long getTableMissCount() {
+    return tableMissCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("timeStepMilliseconds", timeStepMilliseconds)
+        .append("startTimeMilliseconds", startTimeMilliseconds)
+        .append("backSteps", backSteps)
+        .append("forwardSteps", forwardSteps)
+        .append("maximumActive", maximumActive)
+        .append("idleSteps", idleSteps)
+        .append("tableHitCount", tableHitCount)
+        .append("tableMissCount", tableMissCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  private static final class Active {
+
+    private Active(final long handle, final TOTP totp, final long lastActiveStep) {
+      super();
+
+      this.handle = handle;
+      this.totp = totp;
+      this.lastActiveStep = lastActiveStep;
+    }
+
+    private final long handle;
+
+    private final TOTP totp;
+
+    private volatile long lastActiveStep;
+
+  }
+
+  /**
+   * The passwords of a step's window for each active secret, in rows of the window size, ordered by handle.
+   */
+  private static final class Table {
+
+    private Table(final long step, final long[] handles, final int[] passwords) {
+      super();
+
+      this.step = step;
+      this.handles = handles;
+      this.passwords = passwords;
+    }
+
+    private final long step;
+
+    private final long[] handles;
+
+    private final int[] passwords;
+
+    /**
+     * Gets this table without a secret's row.
+     *
+     * @return The table, or this one, if it has no row for the secret.
+     */
+    private Table without(final long handle) {
+      final int row = Arrays.binarySearch(handles, handle);
+
+      if(row < 0) {
+        return this;
+      }
+
+      final int windowSize = (passwords.length / handles.length);
+      final long[] keptHandles = new long[handles.length - 1];
+      final int[] keptPasswords = new int[passwords.length - windowSize];
+
+      System.arraycopy(handles, 0, keptHandles, 0, row);
+      System.arraycopy(handles, row + 1, keptHandles, row, keptHandles.length - row);
+      System.arraycopy(passwords, 0, keptPasswords, 0, row * windowSize);
+      System.arraycopy(passwords, (row + 1) * windowSize, keptPasswords, row * windowSize, keptPasswords.length - row * windowSize);
+
+      return new Table(step, keptHandles, keptPasswords);
+    }
+
+  }
+
+}
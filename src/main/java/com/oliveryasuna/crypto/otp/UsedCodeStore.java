@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+/**
+ * Records which time steps' passwords each user has used, so that a password is accepted at most once (RFC 6238, section 5.2).
+ * <p>
+ * Implementations may be local, e.g., {@link InMemoryUsedCodeStore}, or backed by a shared, external store. Either way, {@link #markUsed(long,
+ * long, long)} must be atomic: of any number of concurrent calls with the same user and step, exactly one may succeed.
+ *
+ * @author Oliver Yasuna
+ * @see TOTP#verify(int, long, int, int, long, UsedCodeStore)
+ */
+public interface UsedCodeStore {
+
+  /**
+   * Marks a user's time step as used, unless it already is.
+   *
+   * @param userId                     The user.
+   * @param step                       The time step.
+   * @param expiresAtEpochMilliseconds The time after which the step can no longer be accepted, so need no longer be remembered.
+   *
+   * @return {@code true}, if the step was marked; {@code false}, if it was already used, or cannot be recorded.
+   */
+  boolean markUsed(long userId, long step, long expiresAtEpochMilliseconds);
+
+}
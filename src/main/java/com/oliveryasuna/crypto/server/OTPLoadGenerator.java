@@ -0,0 +1,364 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.server;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.marker.Immutable;
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.otp.DerivedTOTPCache;
+import com.oliveryasuna.crypto.otp.OTPKeyDeriver;
+import com.oliveryasuna.crypto.otp.TOTP;
+import com.oliveryasuna.crypto.util.Keys;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Drives an {@link OTPVerificationServer} at a fixed rate and reports throughput and latency percentiles.
+ * <p>
+ * Requests are sent on schedule whether or not earlier ones have completed, and latency is measured from each request's scheduled time, so
+ * that a stalled server shows up in the percentiles rather than lowering the rate.
+ * <p>
+ * {@link #main(String[])} runs an embedded server for a synthetic population of users against itself, for end-to-end numbers on the local
+ * machine.
+ *
+ * @author Oliver Yasuna
+ */
+public class OTPLoadGenerator {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(30L);
+
+  private static final double[] REPORTED_PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+  /**
+   * The latency of a request that has not completed.
+   */
+  private static final long INCOMPLETE = Long.MIN_VALUE;
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Runs an embedded server and drives it.
+   *
+   * @param args The rate in requests per second (default 1000), the duration in seconds (default 10), and the number of users (default
+   *             10000).
+   */
+  public static void main(final String[] args) throws Exception {
+    final int requestsPerSecond = (args.length > 0 ? Integer.parseInt(args[0]) : 1_000);
+    final int seconds = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+    final int users = (args.length > 2 ? Integer.parseInt(args[2]) : 10_000);
+
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(Keys.generate("HmacSHA256"), SHA1.getInstance());
+    final DerivedTOTPCache totps = new DerivedTOTPCache(deriver, 6, Duration.ofSeconds(30L), Instant.EPOCH, users);
+
+    try(final OTPVerificationServer server = new OTPVerificationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        id -> totps.get(id, 0L), null, 1, 1)) {
+      // Passwords are computed up front, so that the generator does not compete with the server for them.
+      final String[] paths = new String[users];
+      final char[] code = new char[6];
+
+      for(int user = 0; user < users; user++) {
+        final TOTP totp = totps.get(user, 0L);
+
+        totp.formatInto(totp.compute(), code, 0);
+
+        paths[user] = "/totp?id=" + user + "&code=" + new String(code);
+      }
+
+      final URI baseUri = URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+      final Report report = new OTPLoadGenerator(baseUri, requestsPerSecond, Duration.ofSeconds(seconds), i -> paths[(int)(i % users)]).run();
+
+      System.out.println(report.format());
+    }
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a generator.
+   *
+   * @param baseUri           The server's base URI, e.g., {@code http://127.0.0.1:8080}.
+   * @param requestsPerSecond The rate.
+   * @param duration          How long to send requests for.
+   * @param requests          The path and query of each request, by index, e.g., {@code /totp?id=1&code=123456}.
+   */
+  public OTPLoadGenerator(final URI baseUri, final int requestsPerSecond, final Duration duration, final LongFunction<String> requests) {
+    super();
+
+    Arguments.requireNotNull(baseUri, "baseUri");
+    Arguments.requireGreater(requestsPerSecond, 0, "requestsPerSecond");
+    Arguments.requireNotNull(duration, "duration");
+    Arguments.requireGreater(duration.toMillis(), 0L, "duration");
+    Arguments.requireLessOrSame(requestsPerSecond * duration.toMillis() / 1_000L, (long)Integer.MAX_VALUE, "requestsPerSecond");
+    Arguments.requireNotNull(requests, "requests");
+
+    this.baseUri = baseUri;
+    this.requestsPerSecond = requestsPerSecond;
+    this.duration = duration;
+    this.requests = requests;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final URI baseUri;
+
+  private final int requestsPerSecond;
+
+  private final Duration duration;
+
+  private final LongFunction<String> requests;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Sends the requests and waits for their responses.
+   *
+   * @return The report.
+   */
+  public Report run() throws InterruptedException {
+    final int count = (int)Math.max(1L, requestsPerSecond * duration.toMillis() / 1_000L);
+    final long intervalNanoseconds = 1_000_000_000L / requestsPerSecond;
+    // By request, so that each is written by one callback, and read, once they are published, without waiting for the others.
+    final AtomicLongArray latencies = new AtomicLongArray(count);
+    final LongAdder acceptedCount = new LongAdder();
+    final LongAdder rejectedCount = new LongAdder();
+    final LongAdder errorCount = new LongAdder();
+    final CountDownLatch completed = new CountDownLatch(count);
+
+    for(int i = 0; i < count; i++) {
+      latencies.set(i, INCOMPLETE);
+    }
+
+    final ExecutorService executor = OTPVerificationServer.newExecutor("otp-load-generator");
+
+    try {
+      final HttpClient client = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .executor(executor)
+          .build();
+
+      final long start = System.nanoTime();
+
+      for(int i = 0; i < count; i++) {
+        final int index = i;
+        final long scheduled = start + i * intervalNanoseconds;
+        final long delay = scheduled - System.nanoTime();
+
+        if(delay > 0L) {
+          LockSupport.parkNanos(delay);
+        }
+
+        final HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(requests.apply(i))).GET().build();
+
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, throwable) -> {
+              latencies.set(index, System.nanoTime() - scheduled);
+
+              if(throwable != null) {
+                errorCount.increment();
+              } else if(response.statusCode() == 200) {
+                acceptedCount.increment();
+              } else if(response.statusCode() == 403) {
+                rejectedCount.increment();
+              } else {
+                errorCount.increment();
+              }
+
+              completed.countDown();
+            });
+      }
+
+      completed.await(COMPLETION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+      final long elapsed = System.nanoTime() - start;
+      // Requests still outstanding after the timeout count as errors, and only the latencies already written are reported.
+      final long outstanding = completed.getCount();
+      final long[] completedLatencies = new long[count];
+      int completedCount = 0;
+
+      for(int i = 0; i < count; i++) {
+        final long latency = latencies.get(i);
+
+        if(latency != INCOMPLETE) {
+          completedLatencies[completedCount++] = latency;
+        }
+      }
+
+      return new Report(count, acceptedCount.sum(), rejectedCount.sum(), errorCount.sum() + outstanding, Duration.ofNanos(elapsed),
+          Arrays.copyOf(completedLatencies, completedCount));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("baseUri", baseUri)
+        .append("requestsPerSecond", requestsPerSecond)
+        .append("duration", duration)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * The outcome of a run.
+   */
+  @Immutable
+  public static final class Report {
+
+    private Report(final long requestCount, final long acceptedCount, final long rejectedCount, final long errorCount, final Duration elapsed,
+        final long[] latencies) {
+      super();
+
+      Arrays.sort(latencies);
+
+      this.requestCount = requestCount;
+      this.acceptedCount = acceptedCount;
+      this.rejectedCount = rejectedCount;
+      this.errorCount = errorCount;
+      this.elapsed = elapsed;
+      this.latencies = latencies;
+    }
+
+    private final long requestCount;
+
+    private final long acceptedCount;
+
+    private final long rejectedCount;
+
+    private final long errorCount;
+
+    private final Duration elapsed;
+
+    /**
+     * Sorted, in nanoseconds.
+     */
+    private final long[] latencies;
+
+    /**
+     * Gets the completed requests per second.
+     *
+     * @return The throughput.
+     */
+    public double getThroughput() {
+      return (latencies.length / (elapsed.toNanos() / 1e9));
+    }
+
+    /**
+     * Gets a latency percentile, by the nearest-rank method.
+     *
+     * @param percentile The percentile, e.g., {@code 99.9}.
+     *
+     * @return The latency, or {@link Duration#ZERO}, if no requests completed.
+     */
+    public Duration getLatency(final double percentile) {
+      Arguments.requireTrue(percentile > 0.0 && percentile <= 100.0, "percentile");
+
+      if(latencies.length == 0) {
+        return Duration.ZERO;
+      }
+
+      final int rank = (int)Math.ceil(percentile / 100.0 * latencies.length);
+
+      return Duration.ofNanos(latencies[Math.max(rank, 1) - 1]);
+    }
+
+    /**
+     * Formats the report for humans.
+     *
+     * @return The formatted report.
+     */
+    public String format() {
+      final StringBuilder builder = new StringBuilder()
+          .append(String.format("requests: %d (accepted %d, rejected %d, errors %d)%n", requestCount, acceptedCount, rejectedCount, errorCount))
+          .append(String.format("elapsed: %.3f s, throughput: %.1f requests/s%n", elapsed.toNanos() / 1e9, getThroughput()));
+
+      for(final double percentile : REPORTED_PERCENTILES) {
+        // E.g., "p50" and "p99.9".
+        final String label = (percentile == Math.rint(percentile) ? String.valueOf((long)percentile) : String.valueOf(percentile));
+
+        builder.append(String.format("p%s: %.3f ms%n", label, getLatency(percentile).toNanos() / 1e6));
+      }
+
+      return builder.append(String.format("max: %.3f ms", getLatency(100.0).toNanos() / 1e6)).toString();
+    }
+
+    public long getRequestCount() {
+      return requestCount;
+    }
+
+    public long getAcceptedCount() {
+      return acceptedCount;
+    }
+
+    public long getRejectedCount() {
+      return rejectedCount;
+    }
+
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    public Duration getElapsed() {
+      return elapsed;
+    }
+
+    @Override
+    public String toString() {
+      return new ToStringBuilder(this)
+          .append("requestCount", requestCount)
+          .append("acceptedCount", acceptedCount)
+          .append("rejectedCount", rejectedCount)
+          .append("errorCount", errorCount)
+          .append("elapsed", elapsed)
+          .append("throughput", getThroughput())
+          .toString();
+    }
+
+  }
+
+}
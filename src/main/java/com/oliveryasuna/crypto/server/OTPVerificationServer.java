@@ -0,0 +1,363 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.server;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.crypto.otp.HOTP;
+import com.oliveryasuna.crypto.otp.TOTP;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embeddable HTTP server that verifies OTPs, e.g., to measure the library end to end with an {@link OTPLoadGenerator}.
+ * <p>
+ * Endpoints, for {@code GET} or {@code POST}:
+ * <ul>
+ *   <li>{@code /totp?id=<id>&code=<code>} verifies a TOTP password at the TOTP's {@linkplain TOTP#getClock() clock}'s current time, and
+ *   responds with the matching step.</li>
+ *   <li>{@code /hotp?id=<id>&code=<code>&counter=<counter>} verifies an HOTP password against a counter and the counters after it, and
+ *   responds with the matching counter.</li>
+ * </ul>
+ * Responses are plain text, with status {@code 200} for a match, {@code 403} for a mismatch, {@code 404} for an unknown ID, {@code 400}
+ * for a malformed request, and {@code 500} if loading or verifying fails, e.g., as a secret store is unavailable.
+ * <p>
+ * Requests are handled on virtual threads when the runtime has them, or on a thread pool.
+ *
+ * @author Oliver Yasuna
+ */
+public class OTPVerificationServer implements AutoCloseable {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final int OK = 200;
+
+  private static final int BAD_REQUEST = 400;
+
+  private static final int FORBIDDEN = 403;
+
+  private static final int NOT_FOUND = 404;
+
+  private static final int METHOD_NOT_ALLOWED = 405;
+
+  private static final int INTERNAL_SERVER_ERROR = 500;
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Creates an executor of a virtual thread per task, if the runtime has them, or else of a pool of daemon threads.
+   * <p>
+   * Virtual threads are looked up reflectively, as this library targets Java 11.
+   *
+   * @param name The name of pooled threads.
+   *
+   * @return The executor.
+   */
+  static ExecutorService newExecutor(final String name) {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch(final ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors(), runnable -> {
+        final Thread thread = new Thread(runnable, name);
+
+        thread.setDaemon(true);
+
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Finds a query parameter's value.
+   *
+   * @return The start and end of the value, as {@code start << 32 | end}, or {@code -1}, if it is absent.
+   */
+  private static long find(final String query, final String name) {
+    for(int start = 0; start < query.length(); ) {
+      int end = query.indexOf('&', start);
+
+      end = (end < 0 ? query.length() : end);
+
+      if(query.startsWith(name, start) && start + name.length() < end && query.charAt(start + name.length()) == '=') {
+        return ((long)(start + name.length() + 1) << 32 | end);
+      }
+
+      start = end + 1;
+    }
+
+    return -1L;
+  }
+
+  private static long parseLong(final String query, final String name) {
+    final long range = find(query, name);
+
+    if(range < 0) {
+      throw new NumberFormatException("Missing " + name + ".");
+    }
+
+    return Long.parseLong(query, (int)(range >>> 32), (int)range, 10);
+  }
+
+  private static int parseCode(final String query, final HOTP hotp) {
+    final long range = find(query, "code");
+
+    if(range < 0) {
+      return -1;
+    }
+
+    return hotp.parseCode(query.subSequence((int)(range >>> 32), (int)range));
+  }
+
+  private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+    final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+
+    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+    exchange.sendResponseHeaders(status, bytes.length);
+
+    try(final OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a server and starts it.
+   *
+   * @param address      The address to bind, e.g., a loopback address with port {@code 0}, for an ephemeral port.
+   * @param totps        Loads the TOTP of an ID, or {@code null}, to disable the TOTP endpoint.
+   * @param hotps        Loads the HOTP of an ID, or {@code null}, to disable the HOTP endpoint.
+   * @param backSteps    The number of TOTP steps before the current step to also try.
+   * @param forwardSteps The number of TOTP steps after the current step, and HOTP counters after the given counter, to also try.
+   */
+  public OTPVerificationServer(final InetSocketAddress address, final Loader<? extends TOTP> totps, final Loader<? extends HOTP> hotps,
+      final int backSteps, final int forwardSteps) throws IOException {
+    super();
+
+    Arguments.requireNotNull(address, "address");
+    Arguments.requireGreaterOrSame(backSteps, 0, "backSteps");
+    Arguments.requireGreaterOrSame(forwardSteps, 0, "forwardSteps");
+
+    this.totps = totps;
+    this.hotps = hotps;
+    this.backSteps = backSteps;
+    this.forwardSteps = forwardSteps;
+
+    this.executor = newExecutor("otp-verification-server");
+    this.server = HttpServer.create(address, 0);
+
+    if(totps != null) {
+      server.createContext("/totp", exchange -> handle(exchange, true));
+    }
+
+    if(hotps != null) {
+      server.createContext("/hotp", exchange -> handle(exchange, false));
+    }
+
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final Loader<? extends TOTP> totps;
+
+  private final Loader<? extends HOTP> hotps;
+
+  private final int backSteps;
+
+  private final int forwardSteps;
+
+  private final ExecutorService executor;
+
+  private final HttpServer server;
+
+  private final LongAdder acceptedCount = new LongAdder();
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  private final LongAdder errorCount = new LongAdder();
+
+  // AutoCloseable methods
+  //--------------------------------------------------
+
+  /**
+   * Stops the server, without waiting for requests in progress.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  // Methods
+  //--------------------------------------------------
+
+  private void handle(final HttpExchange exchange, final boolean totp) throws IOException {
+    try {
+      final String method = exchange.getRequestMethod();
+
+      if(!"GET".equals(method) && !"POST".equals(method)) {
+        respond(exchange, METHOD_NOT_ALLOWED, "method not allowed\n");
+
+        return;
+      }
+
+      final String query = exchange.getRequestURI().getRawQuery();
+
+      if(query == null) {
+        respond(exchange, BAD_REQUEST, "malformed\n");
+
+        return;
+      }
+
+      final long id;
+      final HOTP hotp;
+
+      try {
+        id = parseLong(query, "id");
+        hotp = (totp ? totps.load(id) : hotps.load(id));
+      } catch(final NumberFormatException e) {
+        respond(exchange, BAD_REQUEST, "malformed\n");
+
+        return;
+      }
+
+      if(hotp == null) {
+        respond(exchange, NOT_FOUND, "unknown\n");
+
+        return;
+      }
+
+      final int password = parseCode(query, hotp);
+
+      if(password < 0) {
+        respond(exchange, BAD_REQUEST, "malformed\n");
+
+        return;
+      }
+
+      final long matched;
+
+      try {
+        matched = (totp
+            ? ((TOTP)hotp).verify(password, backSteps, forwardSteps)
+            : hotp.verifyCounter(password, parseLong(query, "counter"), forwardSteps));
+      } catch(final IllegalArgumentException e) {
+        respond(exchange, BAD_REQUEST, "malformed\n");
+
+        return;
+      }
+
+      if(matched < 0) {
+        rejectedCount.increment();
+
+        respond(exchange, FORBIDDEN, "rejected\n");
+      } else {
+        acceptedCount.increment();
+
+        respond(exchange, OK, matched + "\n");
+      }
+    } catch(final IOException e) {
+      throw e;
+    } catch(final Exception e) {
+      // A failure is not an unknown ID, so it is neither reported nor counted as one.
+      errorCount.increment();
+
+      respond(exchange, INTERNAL_SERVER_ERROR, "error\n");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  /**
+   * Gets the bound address, e.g., to find an ephemeral port.
+   *
+   * @return The address.
+   */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  public long getAcceptedCount() {
+    return acceptedCount.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("address", server.getAddress())
+        .append("backSteps", backSteps)
+        .append("forwardSteps", forwardSteps)
+        .append("acceptedCount", acceptedCount)
+        .append("rejectedCount", rejectedCount)
+        .append("errorCount", errorCount)
+        .toString();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * Loads the OTP of an ID, e.g., from an {@link com.oliveryasuna.crypto.otp.OTPSecretStore} or a
+   * {@link com.oliveryasuna.crypto.otp.DerivedTOTPCache}.
+   *
+   * @param <T> The type of OTP.
+   */
+  @FunctionalInterface
+  public interface Loader<T extends HOTP> {
+
+    /**
+     * Loads an OTP.
+     *
+     * @param id The ID.
+     *
+     * @return The OTP, or {@code null}, if the ID is unknown.
+     */
+    T load(long id) throws Exception;
+
+  }
+
+}
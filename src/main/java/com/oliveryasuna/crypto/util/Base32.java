@@ -0,0 +1,434 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.util;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.exception.UnsupportedInstantiationException;
+import com.oliveryasuna.commons.language.marker.Utility;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Table-driven Base32 (RFC 4648, section 6) over byte ranges, buffers, and character sequences, as used for OTP secrets.
+ * <p>
+ * Encoding writes no padding. Decoding accepts upper- and lower-case letters and optional padding.
+ *
+ * @author Oliver Yasuna
+ */
+@Utility
+public final class Base32 {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".getBytes();
+
+  /**
+   * Maps an ASCII character to its 5-bit value, or {@code -1}.
+   */
+  private static final byte[] VALUES = new byte[128];
+
+  private static final byte PADDING = '=';
+
+  static {
+    Arrays.fill(VALUES, (byte)-1);
+
+    for(int i = 0; i < ALPHABET.length; i++) {
+      VALUES[ALPHABET[i]] = (byte)i;
+      VALUES[Character.toLowerCase(ALPHABET[i])] = (byte)i;
+    }
+  }
+
+  // Static utility methods
+  //--------------------------------------------------
+
+  public static int encodedLength(final int length) {
+    Arguments.requireGreaterOrSame(length, 0, "length");
+
+    return (int)(((long)length * 8 + 4) / 5);
+  }
+
+  /**
+   * Gets the decoded length of an unpadded encoded length.
+   *
+   * @param encodedLength The encoded length.
+   *
+   * @return The decoded length, or {@code -1}, if no input encodes to the length.
+   */
+  public static int decodedLength(final int encodedLength) {
+    Arguments.requireGreaterOrSame(encodedLength, 0, "encodedLength");
+
+    switch(encodedLength & 7) {
+      case 1:
+      case 3:
+      case 6:
+        return -1;
+      default:
+        return (int)((long)encodedLength * 5 / 8);
+    }
+  }
+
+  /**
+   * Encodes a range of bytes.
+   *
+   * @param input        The input.
+   * @param offset       The offset of the range.
+   * @param length       The length of the range.
+   * @param output       The output, which must have room for {@link #encodedLength(int)} bytes.
+   * @param outputOffset The offset in the output.
+   *
+   * @return The number of bytes written.
+   */
+  public static int encode(final byte[] input, int offset, final int length, final byte[] output, final int outputOffset) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, input.length);
+    Objects.checkFromIndexSize(outputOffset, encodedLength(length), output.length);
+
+    final int end = offset + length - length % 5;
+    int position = outputOffset;
+
+    while(offset < end) {
+      final long bits = ((input[offset] & 0xffL) << 32) | ((input[offset + 1] & 0xffL) << 24) | ((input[offset + 2] & 0xffL) << 16)
+          | ((input[offset + 3] & 0xffL) << 8) | (input[offset + 4] & 0xffL);
+
+      for(int shift = 35; shift >= 0; shift -= 5) {
+        output[position++] = ALPHABET[(int)(bits >>> shift) & 0x1f];
+      }
+
+      offset += 5;
+    }
+
+    int buffer = 0;
+    int bits = 0;
+
+    while(offset < end + length % 5) {
+      buffer = (buffer << 8) | (input[offset++] & 0xff);
+      bits += 8;
+
+      while(bits >= 5) {
+        bits -= 5;
+        output[position++] = ALPHABET[(buffer >>> bits) & 0x1f];
+      }
+    }
+
+    if(bits > 0) {
+      output[position++] = ALPHABET[(buffer << (5 - bits)) & 0x1f];
+    }
+
+    return (position - outputOffset);
+  }
+
+  public static byte[] encode(final byte[] input) {
+    Arguments.requireNotNull(input, "input");
+
+    final byte[] output = new byte[encodedLength(input.length)];
+
+    encode(input, 0, input.length, output, 0);
+
+    return output;
+  }
+
+  /**
+   * Encodes the remaining bytes of a buffer into another, advancing both.
+   *
+   * @param input  The input.
+   * @param output The output, which must have room for {@link #encodedLength(int)} bytes.
+   *
+   * @return The number of bytes written.
+   */
+  public static int encode(final ByteBuffer input, final ByteBuffer output) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+
+    final int length = input.remaining();
+    final int encodedLength = encodedLength(length);
+
+    if(output.remaining() < encodedLength) {
+      throw new IndexOutOfBoundsException("output has " + output.remaining() + " bytes remaining; " + encodedLength + " are needed.");
+    }
+
+    if(input.hasArray() && output.hasArray() && !output.isReadOnly()) {
+      encode(input.array(), input.arrayOffset() + input.position(), length, output.array(), output.arrayOffset() + output.position());
+    } else {
+      int buffer = 0;
+      int bits = 0;
+      int position = output.position();
+
+      for(int i = input.position(); i < input.limit(); i++) {
+        buffer = (buffer << 8) | (input.get(i) & 0xff);
+        bits += 8;
+
+        while(bits >= 5) {
+          bits -= 5;
+          output.put(position++, ALPHABET[(buffer >>> bits) & 0x1f]);
+        }
+      }
+
+      if(bits > 0) {
+        output.put(position, ALPHABET[(buffer << (5 - bits)) & 0x1f]);
+      }
+    }
+
+    input.position(input.limit());
+    output.position(output.position() + encodedLength);
+
+    return encodedLength;
+  }
+
+  /**
+   * Decodes a range of bytes.
+   * <p>
+   * Non-alphabet characters, misplaced padding, and non-zero trailing bits are rejected.
+   *
+   * @param input        The input.
+   * @param offset       The offset of the range.
+   * @param length       The length of the range.
+   * @param output       The output, which must have room for {@link #decodedLength(int)} bytes of the unpadded input.
+   * @param outputOffset The offset in the output.
+   *
+   * @return The number of bytes written, or {@code -1}, if the input is invalid.
+   */
+  public static int decode(final byte[] input, int offset, final int length, final byte[] output, final int outputOffset) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    final int unpaddedLength = unpaddedLength(input, offset, length);
+    final int decodedLength = (unpaddedLength < 0 ? -1 : decodedLength(unpaddedLength));
+
+    if(decodedLength < 0) {
+      return -1;
+    }
+
+    Objects.checkFromIndexSize(outputOffset, decodedLength, output.length);
+
+    final int end = offset + (unpaddedLength & ~7);
+    int position = outputOffset;
+    long invalid = 0L;
+
+    while(offset < end) {
+      long bits = 0L;
+
+      for(int i = 0; i < 8; i++) {
+        bits = (bits << 5) | value(input[offset + i]);
+      }
+
+      // A negative value sets every high bit.
+      invalid |= bits;
+
+      output[position++] = (byte)(bits >>> 32);
+      output[position++] = (byte)(bits >>> 24);
+      output[position++] = (byte)(bits >>> 16);
+      output[position++] = (byte)(bits >>> 8);
+      output[position++] = (byte)bits;
+
+      offset += 8;
+    }
+
+    int buffer = 0;
+    int bits = 0;
+
+    for(int i = 0; i < (unpaddedLength & 7); i++) {
+      final int value = value(input[offset + i]);
+
+      invalid |= value;
+      buffer = (buffer << 5) | (value & 0x1f);
+      bits += 5;
+
+      if(bits >= 8) {
+        bits -= 8;
+        output[position++] = (byte)(buffer >>> bits);
+      }
+    }
+
+    return (invalid < 0L || (buffer & ((1 << bits) - 1)) != 0 ? -1 : position - outputOffset);
+  }
+
+  /**
+   * Decodes bytes.
+   *
+   * @param input The input.
+   *
+   * @return The decoded bytes, or {@code null}, if the input is invalid.
+   */
+  public static byte[] decode(final byte[] input) {
+    Arguments.requireNotNull(input, "input");
+
+    final int unpaddedLength = unpaddedLength(input, 0, input.length);
+
+    if(unpaddedLength < 0 || decodedLength(unpaddedLength) < 0) {
+      return null;
+    }
+
+    final byte[] output = new byte[decodedLength(unpaddedLength)];
+
+    return (decode(input, 0, input.length, output, 0) < 0 ? null : output);
+  }
+
+  /**
+   * Decodes the remaining bytes of a buffer into another, advancing both only if the input is valid.
+   *
+   * @param input  The input.
+   * @param output The output, which must have room for {@link #decodedLength(int)} bytes of the unpadded input.
+   *
+   * @return The number of bytes written, or {@code -1}, if the input is invalid.
+   */
+  public static int decode(final ByteBuffer input, final ByteBuffer output) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+
+    final int start = input.position();
+    final int unpaddedLength = unpaddedLength(input.remaining(), i -> input.get(start + i));
+    final int decodedLength = (unpaddedLength < 0 ? -1 : decodedLength(unpaddedLength));
+
+    if(decodedLength < 0) {
+      return -1;
+    }
+
+    if(output.remaining() < decodedLength) {
+      throw new IndexOutOfBoundsException("output has " + output.remaining() + " bytes remaining; " + decodedLength + " are needed.");
+    }
+
+    final int written;
+
+    if(input.hasArray() && output.hasArray() && !output.isReadOnly()) {
+      written = decode(input.array(), input.arrayOffset() + start, input.remaining(), output.array(), output.arrayOffset() + output.position());
+    } else {
+      written = decode(unpaddedLength, i -> input.get(start + i), output);
+    }
+
+    if(written >= 0) {
+      input.position(input.limit());
+      output.position(output.position() + written);
+    }
+
+    return written;
+  }
+
+  /**
+   * Decodes a range of characters, e.g., a secret in an {@code otpauth} URI, without copying it to a string.
+   *
+   * @param input The input.
+   * @param start The start of the range, inclusive.
+   * @param end   The end of the range, exclusive.
+   *
+   * @return The decoded bytes, or {@code null}, if the input is invalid.
+   */
+  public static byte[] decode(final CharSequence input, final int start, final int end) {
+    Arguments.requireNotNull(input, "input");
+    Objects.checkFromToIndex(start, end, input.length());
+
+    final int unpaddedLength = unpaddedLength(end - start, i -> (input.charAt(start + i) < 0x80 ? (byte)input.charAt(start + i) : -1));
+
+    if(unpaddedLength < 0 || decodedLength(unpaddedLength) < 0) {
+      return null;
+    }
+
+    final byte[] output = new byte[decodedLength(unpaddedLength)];
+
+    return (decode(unpaddedLength, i -> (input.charAt(start + i) < 0x80 ? (byte)input.charAt(start + i) : -1), ByteBuffer.wrap(output)) < 0
+        ? null
+        : output);
+  }
+
+  /**
+   * Decodes unpadded input one character at a time into a buffer, at its position, without advancing it.
+   */
+  private static int decode(final int length, final CharacterSource input, final ByteBuffer output) {
+    int position = output.position();
+    int invalid = 0;
+    int buffer = 0;
+    int bits = 0;
+
+    for(int i = 0; i < length; i++) {
+      final int value = value(input.get(i));
+
+      invalid |= value;
+      buffer = (buffer << 5) | (value & 0x1f);
+      bits += 5;
+
+      if(bits >= 8) {
+        bits -= 8;
+        output.put(position++, (byte)(buffer >>> bits));
+        buffer &= (1 << bits) - 1;
+      }
+    }
+
+    return (invalid < 0 || buffer != 0 ? -1 : position - output.position());
+  }
+
+  /**
+   * Gets the length of input without its padding.
+   *
+   * @return The length, or {@code -1}, if the padding is invalid.
+   */
+  private static int unpaddedLength(final int length, final CharacterSource input) {
+    int unpaddedLength = length;
+
+    while(unpaddedLength > 0 && input.get(unpaddedLength - 1) == PADDING) {
+      unpaddedLength--;
+    }
+
+    return checkPadding(length, unpaddedLength);
+  }
+
+  private static int unpaddedLength(final byte[] input, final int offset, final int length) {
+    int unpaddedLength = length;
+
+    while(unpaddedLength > 0 && input[offset + unpaddedLength - 1] == PADDING) {
+      unpaddedLength--;
+    }
+
+    return checkPadding(length, unpaddedLength);
+  }
+
+  /**
+   * Checks that input is either unpadded or padded to a multiple of eight characters.
+   */
+  private static int checkPadding(final int length, final int unpaddedLength) {
+    return (unpaddedLength == length || ((length & 7) == 0 && length - unpaddedLength < 8) ? unpaddedLength : -1);
+  }
+
+  private static int value(final byte character) {
+    return (character >= 0 ? VALUES[character] : -1);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private Base32() {
+    super();
+
+    throw new UnsupportedInstantiationException();
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  @FunctionalInterface
+  private interface CharacterSource {
+
+    byte get(int index);
+
+  }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.util;
+
+import com.oliveryasuna.commons.language.Arguments;
+import com.oliveryasuna.commons.language.exception.UnsupportedInstantiationException;
+import com.oliveryasuna.commons.language.marker.Utility;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Table-driven, unpadded Base64URL (RFC 4648, section 5) over byte ranges.
+ * <p>
+ * Unlike {@link java.util.Base64}, encoding and decoding read from and write to ranges of caller's buffers, so they do not allocate.
+ *
+ * @author Oliver Yasuna
+ */
+@Utility
+public final class Base64URL {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes();
+
+  /**
+   * Maps an ASCII character to its 6-bit value, or {@code -1}.
+   */
+  private static final byte[] VALUES = new byte[128];
+
+  static {
+    Arrays.fill(VALUES, (byte)-1);
+
+    for(int i = 0; i < ALPHABET.length; i++) {
+      VALUES[ALPHABET[i]] = (byte)i;
+    }
+  }
+
+  // Static utility methods
+  //--------------------------------------------------
+
+  public static int encodedLength(final int length) {
+    Arguments.requireGreaterOrSame(length, 0, "length");
+
+    return (int)(((long)length * 4 + 2) / 3);
+  }
+
+  /**
+   * Gets the decoded length of an encoded length.
+   *
+   * @param encodedLength The encoded length.
+   *
+   * @return The decoded length, or {@code -1}, if no input encodes to the length.
+   */
+  public static int decodedLength(final int encodedLength) {
+    Arguments.requireGreaterOrSame(encodedLength, 0, "encodedLength");
+
+    if((encodedLength & 3) == 1) {
+      return -1;
+    }
+
+    return (int)((long)encodedLength * 3 / 4);
+  }
+
+  /**
+   * Encodes a range of bytes.
+   *
+   * @param input        The input.
+   * @param offset       The offset of the range.
+   * @param length       The length of the range.
+   * @param output       The output, which must have room for {@link #encodedLength(int)} bytes.
+   * @param outputOffset The offset in the output.
+   *
+   * @return The number of bytes written.
+   */
+  public static int encode(final byte[] input, int offset, final int length, final byte[] output, final int outputOffset) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    final int encodedLength = encodedLength(length);
+
+    Objects.checkFromIndexSize(outputOffset, encodedLength, output.length);
+
+    final int end = offset + length - length % 3;
+    int position = outputOffset;
+
+    while(offset < end) {
+      final int bits = ((input[offset] & 0xff) << 16) | ((input[offset + 1] & 0xff) << 8) | (input[offset + 2] & 0xff);
+
+      output[position++] = ALPHABET[bits >>> 18];
+      output[position++] = ALPHABET[(bits >>> 12) & 0x3f];
+      output[position++] = ALPHABET[(bits >>> 6) & 0x3f];
+      output[position++] = ALPHABET[bits & 0x3f];
+
+      offset += 3;
+    }
+
+    switch(length % 3) {
+      case 1: {
+        final int bits = (input[offset] & 0xff);
+
+        output[position++] = ALPHABET[bits >>> 2];
+        output[position++] = ALPHABET[(bits << 4) & 0x3f];
+
+        break;
+      }
+      case 2: {
+        final int bits = ((input[offset] & 0xff) << 8) | (input[offset + 1] & 0xff);
+
+        output[position++] = ALPHABET[bits >>> 10];
+        output[position++] = ALPHABET[(bits >>> 4) & 0x3f];
+        output[position++] = ALPHABET[(bits << 2) & 0x3f];
+
+        break;
+      }
+      default:
+        break;
+    }
+
+    return (position - outputOffset);
+  }
+
+  public static byte[] encode(final byte[] input) {
+    Arguments.requireNotNull(input, "input");
+
+    final byte[] output = new byte[encodedLength(input.length)];
+
+    encode(input, 0, input.length, output, 0);
+
+    return output;
+  }
+
+  /**
+   * Decodes a range of bytes.
+   * <p>
+   * Padding, non-alphabet characters, and non-zero trailing bits are rejected.
+   *
+   * @param input        The input.
+   * @param offset       The offset of the range.
+   * @param length       The length of the range.
+   * @param output       The output, which must have room for {@link #decodedLength(int)} bytes.
+   * @param outputOffset The offset in the output.
+   *
+   * @return The number of bytes written, or {@code -1}, if the input is invalid.
+   */
+  public static int decode(final byte[] input, int offset, final int length, final byte[] output, final int outputOffset) {
+    Arguments.requireNotNull(input, "input");
+    Arguments.requireNotNull(output, "output");
+    Objects.checkFromIndexSize(offset, length, input.length);
+
+    final int decodedLength = decodedLength(length);
+
+    if(decodedLength < 0) {
+      return -1;
+    }
+
+    Objects.checkFromIndexSize(outputOffset, decodedLength, output.length);
+
+    final int end = offset + (length & ~3);
+    int position = outputOffset;
+    int invalid = 0;
+    int trailing = 0;
+
+    while(offset < end) {
+      final int bits = (value(input[offset]) << 18) | (value(input[offset + 1]) << 12) | (value(input[offset + 2]) << 6) | value(input[offset + 3]);
+
+      // A negative value sets the sign bit.
+      invalid |= bits;
+
+      output[position++] = (byte)(bits >>> 16);
+      output[position++] = (byte)(bits >>> 8);
+      output[position++] = (byte)bits;
+
+      offset += 4;
+    }
+
+    switch(length & 3) {
+      case 2: {
+        final int bits = (value(input[offset]) << 6) | value(input[offset + 1]);
+
+        invalid |= bits;
+        trailing = bits & 0xf;
+
+        output[position++] = (byte)(bits >>> 4);
+
+        break;
+      }
+      case 3: {
+        final int bits = (value(input[offset]) << 12) | (value(input[offset + 1]) << 6) | value(input[offset + 2]);
+
+        invalid |= bits;
+        trailing = bits & 0x3;
+
+        output[position++] = (byte)(bits >>> 10);
+        output[position++] = (byte)(bits >>> 2);
+
+        break;
+      }
+      default:
+        break;
+    }
+
+    return (invalid < 0 || trailing != 0 ? -1 : position - outputOffset);
+  }
+
+  /**
+   * Decodes bytes.
+   *
+   * @param input The input.
+   *
+   * @return The decoded bytes, or {@code null}, if the input is invalid.
+   */
+  public static byte[] decode(final byte[] input) {
+    Arguments.requireNotNull(input, "input");
+
+    final int decodedLength = decodedLength(input.length);
+
+    if(decodedLength < 0) {
+      return null;
+    }
+
+    final byte[] output = new byte[decodedLength];
+
+    return (decode(input, 0, input.length, output, 0) < 0 ? null : output);
+  }
+
+  private static int value(final byte character) {
+    return (character >= 0 ? VALUES[character] : -1);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private Base64URL() {
+    super();
+
+    throw new UnsupportedInstantiationException();
+  }
+
+}
@@ -23,6 +23,7 @@ import com.oliveryasuna.commons.language.exception.UnsupportedInstantiationExcep
 import com.oliveryasuna.commons.language.marker.Utility;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 @Utility
 public final class Bytes {
@@ -70,6 +71,63 @@ public final class Bytes {
     return result;
   }
 
+  /**
+   * Compares two ranges of bytes in time that depends only on the length.
+   *
+   * @param array1  The first array.
+   * @param offset1 The offset in the first array.
+   * @param array2  The second array.
+   * @param offset2 The offset in the second array.
+   * @param length  The number of bytes to compare.
+   *
+   * @return {@code true}, if the ranges are equal; otherwise, {@code false}.
+   */
+  public static boolean constantTimeEquals(final byte[] array1, final int offset1, final byte[] array2, final int offset2, final int length) {
+    Arguments.requireNotNull(array1, "array1");
+    Arguments.requireNotNull(array2, "array2");
+    Objects.checkFromIndexSize(offset1, length, array1.length);
+    Objects.checkFromIndexSize(offset2, length, array2.length);
+
+    int difference = 0;
+
+    for(int i = 0; i < length; i++) {
+      difference |= (array1[offset1 + i] ^ array2[offset2 + i]);
+    }
+
+    return (difference == 0);
+  }
+
+  /**
+   * Reads a little-endian {@code long}.
+   *
+   * @param input  The bytes.
+   * @param offset The offset of the eight bytes to read.
+   *
+   * @return The value.
+   */
+  public static long readLongLE(final byte[] input, final int offset) {
+    long value = 0L;
+
+    for(int i = 7; i >= 0; i--) {
+      value = (value << 8) | (input[offset + i] & 0xffL);
+    }
+
+    return value;
+  }
+
+  /**
+   * Writes a {@code long} in little-endian order.
+   *
+   * @param value  The value.
+   * @param output The bytes.
+   * @param offset The offset of the eight bytes to write.
+   */
+  public static void writeLongLE(final long value, final byte[] output, final int offset) {
+    for(int i = 0; i < 8; i++) {
+      output[offset + i] = (byte)(value >>> (i << 3));
+    }
+  }
+
   public static byte[] toHex(final byte[] bytes) {
     Arguments.requireNotNull(bytes, "bytes");
 
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.util;
+
+/**
+ * A lease on a {@link RefCounted} value, which keeps it from being destroyed until the lease is closed.
+ * <p>
+ * A lease is meant to be used by a single thread, e.g., in a try-with-resources statement.
+ *
+ * @param <V> The type of values.
+ *
+ * @author Oliver Yasuna
+ */
+public final class Lease<V> implements AutoCloseable {
+
+  // Constructors
+  //--------------------------------------------------
+
+  Lease(final RefCounted<V> shared) {
+    super();
+
+    this.shared = shared;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final RefCounted<V> shared;
+
+  private boolean closed;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the value.
+   *
+   * @return The value.
+   */
+  public V get() {
+    if(closed) {
+      throw new IllegalStateException("Closed.");
+    }
+
+    return shared.get();
+  }
+
+  // AutoCloseable methods
+  //--------------------------------------------------
+
+  /**
+   * Releases the value, destroying it if its owner has dropped it and this was its last lease.
+   * <p>
+   * Closing a lease more than once has no further effect.
+   */
+  @Override
+  public void close() {
+    if(!closed) {
+      closed = true;
+
+      shared.release();
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.util;
+
+import com.oliveryasuna.commons.language.Arguments;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A value shared by an owner, e.g., a cache, and {@link Lease}s on it, which is {@link Destroyable#destroy() destroyed}, if it supports it,
+ * once the owner and every lease have released it.
+ * <p>
+ * A value handed out without a lease is marked as escaped, and is never destroyed, as its holders cannot be tracked.
+ *
+ * @param <V> The type of values.
+ *
+ * @author Oliver Yasuna
+ */
+public final class RefCounted<V> {
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a shared value, holding the owner's reference.
+   *
+   * @param value The value.
+   */
+  public RefCounted(final V value) {
+    super();
+
+    Arguments.requireNotNull(value, "value");
+
+    this.value = value;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final V value;
+
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  private volatile boolean escaped;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Leases the value.
+   * <p>
+   * The owner must still hold its reference, e.g., by leasing under the same lock it releases under, so that a destroyed value is never leased.
+   *
+   * @return The lease, which must be closed.
+   */
+  public Lease<V> lease() {
+    references.incrementAndGet();
+
+    return new Lease<>(this);
+  }
+
+  /**
+   * Hands out the value without a lease, so that it is never destroyed.
+   *
+   * @return The value.
+   */
+  public V escape() {
+    escaped = true;
+
+    return value;
+  }
+
+  /**
+   * Releases a reference, destroying the value if it was the last one and the value has not escaped.
+   * <p>
+   * The owner calls this once, when it drops the value; leases call it when closed.
+   */
+  public void release() {
+    if(references.decrementAndGet() == 0 && !escaped && value instanceof Destroyable && !((Destroyable)value).isDestroyed()) {
+      try {
+        ((Destroyable)value).destroy();
+      } catch(final DestroyFailedException e) {
+        // Best effort.
+      }
+    }
+  }
+
+  V get() {
+    return value;
+  }
+
+  // Object methods
+  //--------------------------------------------------
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("references", references)
+        .append("escaped", escaped)
+        .toString();
+  }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.util;
+
+import com.oliveryasuna.commons.language.Arguments;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded map split into segments, each a least-recently-used map that callers guard with its own lock.
+ * <p>
+ * Every access to a segment, as returned by {@link #segmentFor(Object)}, must be synchronized on it. Values evicted to keep a segment within
+ * its capacity are held until {@link Segment#drainEvicted(Collection) drained}, so that callers can dispose of them outside of the lock, or
+ * {@link Segment#discardEvicted() discarded}; a caller that puts must do either.
+ *
+ * @param <K> The type of keys.
+ * @param <V> The type of values.
+ *
+ * @author Oliver Yasuna
+ */
+public final class SegmentedLRUMap<K, V> {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final int DEFAULT_MAXIMUM_SEGMENT_COUNT = 16;
+
+  // Constructors
+  //--------------------------------------------------
+
+  /**
+   * Creates a map.
+   *
+   * @param maximumSize         The maximum number of entries, across all segments.
+   * @param maximumSegmentCount The maximum number of segments, a power of two.
+   */
+  public SegmentedLRUMap(final int maximumSize, final int maximumSegmentCount) {
+    super();
+
+    Arguments.requireGreater(maximumSize, 0, "maximumSize");
+    Arguments.requireGreater(maximumSegmentCount, 0, "maximumSegmentCount");
+    Arguments.requireSame(Integer.bitCount(maximumSegmentCount), 1, "maximumSegmentCount");
+
+    this.maximumSize = maximumSize;
+
+    final int segmentCount = Math.min(maximumSegmentCount, Integer.highestOneBit(maximumSize));
+
+    this.segments = createSegments(segmentCount, maximumSize);
+    this.segmentMask = (segmentCount - 1);
+  }
+
+  public SegmentedLRUMap(final int maximumSize) {
+    this(maximumSize, DEFAULT_MAXIMUM_SEGMENT_COUNT);
+  }
+
+  // Constructor helper methods
+  //--------------------------------------------------
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <K, V> Segment<K, V>[] createSegments(final int segmentCount, final int maximumSize) {
+    final Segment<K, V>[] segments = new Segment[segmentCount];
+
+    for(int i = 0; i < segmentCount; i++) {
+      // Distribute the remainder so that the capacities sum to the maximum size.
+      segments[i] = new Segment<>(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+    }
+
+    return segments;
+  }
+
+  // Fields
+  //--------------------------------------------------
+
+  private final int maximumSize;
+
+  private final Segment<K, V>[] segments;
+
+  private final int segmentMask;
+
+  // Methods
+  //--------------------------------------------------
+
+  /**
+   * Gets the segment a key belongs in.
+   *
+   * @param key The key.
+   *
+   * @return The segment.
+   */
+  public Segment<K, V> segmentFor(final Object key) {
+    int hash = key.hashCode();
+
+    // Spread the high bits, as segment selection only uses the low bits.
+    hash ^= (hash >>> 16);
+
+    return segments[hash & segmentMask];
+  }
+
+  /**
+   * Gets the segments, e.g., to visit every entry one segment at a time.
+   *
+   * @return The segments.
+   */
+  public List<Segment<K, V>> segments() {
+    return List.of(segments);
+  }
+
+  /**
+   * Gets the number of entries.
+   * <p>
+   * Locks each segment in turn, so the result is not a snapshot.
+   *
+   * @return The number of entries.
+   */
+  public int size() {
+    int size = 0;
+
+    for(final Segment<K, V> segment : segments) {
+      synchronized(segment) {
+        size += segment.size();
+      }
+    }
+
+    return size;
+  }
+
+  // Getters
+  //--------------------------------------------------
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  // Nested
+  //--------------------------------------------------
+
+  /**
+   * A segment: a map in least-recently-used order that evicts its eldest entry once over capacity.
+   *
+   * @param <K> The type of keys.
+   * @param <V> The type of values.
+   */
+  public static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private Segment(final int capacity) {
+      super(16, 0.75f, true);
+
+      this.capacity = capacity;
+    }
+
+    private final int capacity;
+
+    private final List<V> evicted = new ArrayList<>(1);
+
+    private long generation;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+      if(size() > capacity) {
+        evicted.add(eldest.getValue());
+
+        return true;
+      }
+
+      return false;
+    }
+
+    /**
+     * Removes a key's entry and advances the segment's generation, so that a value loaded before cannot be put back with
+     * {@link #putIfCurrent(Object, Object, long)}.
+     *
+     * @param key The key.
+     *
+     * @return The removed value, or {@code null}.
+     */
+    public V invalidate(final Object key) {
+      generation++;
+
+      return remove(key);
+    }
+
+    /**
+     * Removes all entries and advances the segment's generation, like {@link #invalidate(Object)}.
+     */
+    public void invalidateAll() {
+      generation++;
+
+      clear();
+    }
+
+    /**
+     * Puts a value loaded outside of the lock, unless an entry was {@link #invalidate(Object) invalidated} since the load began.
+     *
+     * @param key        The key.
+     * @param value      The value.
+     * @param generation The segment's generation when the load began.
+     *
+     * @return {@code true}, if the value was put; otherwise, {@code false}.
+     */
+    public boolean putIfCurrent(final K key, final V value, final long generation) {
+      if(generation != this.generation) {
+        return false;
+      }
+
+      put(key, value);
+
+      return true;
+    }
+
+    /**
+     * Moves the values evicted since the last drain into a collection.
+     *
+     * @param into The collection.
+     */
+    public void drainEvicted(final Collection<? super V> into) {
+      into.addAll(evicted);
+      evicted.clear();
+    }
+
+    /**
+     * Forgets the values evicted since the last drain, for callers that need not dispose of them.
+     */
+    public void discardEvicted() {
+      evicted.clear();
+    }
+
+    public int getCapacity() {
+      return capacity;
+    }
+
+    /**
+     * Gets the segment's generation, which advances on every {@link #invalidate(Object) invalidation}, e.g., to take before loading a value
+     * outside of the lock.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+      return generation;
+    }
+
+  }
+
+}
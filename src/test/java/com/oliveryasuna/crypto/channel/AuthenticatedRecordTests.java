@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.channel;
+
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.mac.HMAC;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class AuthenticatedRecordTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static HMAC hmac() throws Exception {
+    return new HMAC("key".getBytes(), SHA256.getInstance());
+  }
+
+  /**
+   * Writes messages as records of at most 100 bytes.
+   */
+  private static byte[] write(final byte[]... messages) throws Exception {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try(final AuthenticatedRecordWriter writer = new AuthenticatedRecordWriter(Channels.newChannel(output), hmac(), 100)) {
+      for(final byte[] message : messages) {
+        writer.write(ByteBuffer.wrap(message));
+      }
+    }
+
+    return output.toByteArray();
+  }
+
+  private static byte[] readAll(final byte[] stream) throws Exception {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try(final AuthenticatedRecordReader reader = new AuthenticatedRecordReader(Channels.newChannel(new ByteArrayInputStream(stream)), hmac(), 100)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(37);
+
+      while(reader.read(buffer) >= 0) {
+        output.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+    }
+
+    return output.toByteArray();
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private AuthenticatedRecordTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void records_overPipe() throws Exception {
+    final byte[] data = new byte[100_000];
+
+    new Random(0L).nextBytes(data);
+
+    final Pipe pipe = Pipe.open();
+
+    final CompletableFuture<Void> writing = CompletableFuture.runAsync(() -> {
+      try(final AuthenticatedRecordWriter writer = new AuthenticatedRecordWriter(pipe.sink(), hmac())) {
+        for(int offset = 0; offset < data.length; offset += 7_000) {
+          writer.write(ByteBuffer.wrap(data, offset, Math.min(7_000, data.length - offset)));
+        }
+      } catch(final Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    final ByteBuffer received = ByteBuffer.allocate(data.length);
+
+    try(final AuthenticatedRecordReader reader = new AuthenticatedRecordReader(pipe.source(), hmac())) {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+      while(reader.read(buffer) >= 0) {
+        received.put(buffer.flip());
+        buffer.clear();
+      }
+
+      assertEquals(16L, reader.getSequenceNumber());
+    }
+
+    writing.join();
+
+    assertArrayEquals(data, received.array());
+  }
+
+  @Test
+  final void records_splitLongWrites() throws Exception {
+    final byte[] message = new byte[250];
+
+    Arrays.fill(message, (byte)'a');
+
+    final byte[] stream = write(message);
+
+    // 100 + 100 + 50 bytes, then the closing record, each with a 4-byte length and a 32-byte tag.
+    assertEquals(250 + 4 * (4 + 32), stream.length);
+    assertArrayEquals(message, readAll(stream));
+  }
+
+  @Test
+  final void records_rejectTampering() throws Exception {
+    final byte[] stream = write("Hello, ".getBytes(), "World!".getBytes());
+
+    for(int i = 0; i < stream.length; i++) {
+      final byte[] tampered = stream.clone();
+
+      tampered[i] ^= 1;
+
+      assertThrows(IOException.class, () -> readAll(tampered), "index " + i);
+    }
+  }
+
+  @Test
+  final void records_rejectReorderingAndTruncation() throws Exception {
+    final byte[] stream = write("Hello, ".getBytes(), "World!".getBytes());
+    final int first = 4 + 7 + 32;
+    final int second = 4 + 6 + 32;
+
+    final byte[] reordered = new byte[stream.length];
+
+    System.arraycopy(stream, first, reordered, 0, second);
+    System.arraycopy(stream, 0, reordered, second, first);
+    System.arraycopy(stream, first + second, reordered, first + second, stream.length - first - second);
+
+    assertThrows(IOException.class, () -> readAll(reordered));
+
+    // Truncated at a record boundary, before the closing record.
+    assertThrows(EOFException.class, () -> readAll(Arrays.copyOf(stream, first + second)));
+
+    assertArrayEquals("Hello, World!".getBytes(), readAll(stream));
+  }
+
+}
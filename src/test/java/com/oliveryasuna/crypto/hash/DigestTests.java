@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+final class DigestTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final HashFunction[] HASH_FUNCTIONS = {
+      MD2.getInstance(), MD5.getInstance(), SHA1.getInstance(), SHA224.getInstance(), SHA256.getInstance(), SHA384.getInstance(),
+      SHA512.getInstance(), SHA512_224.getInstance(), SHA512_256.getInstance()
+  };
+
+  // Constructors
+  //--------------------------------------------------
+
+  private DigestTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void digest_matchesCompute() throws Exception {
+    final Random random = new Random(0L);
+
+    for(final HashFunction hashFunction : HASH_FUNCTIONS) {
+      final Digest digest = hashFunction.newDigest();
+
+      // Cover every padding boundary of 64- and 128-byte blocks.
+      for(int length = 0; length <= 300; length++) {
+        final byte[] input = new byte[length];
+
+        random.nextBytes(input);
+
+        digest.update(input);
+
+        assertArrayEquals(hashFunction.compute(input), digest.digest(), hashFunction + " length " + length);
+      }
+    }
+  }
+
+  @Test
+  final void digest_chunkedUpdates() throws Exception {
+    final byte[] input = new byte[1000];
+
+    new Random(1L).nextBytes(input);
+
+    for(final HashFunction hashFunction : HASH_FUNCTIONS) {
+      final Digest digest = hashFunction.newDigest();
+
+      for(int offset = 0; offset < input.length; ) {
+        final int length = Math.min(offset % 67 + 1, input.length - offset);
+
+        if(length == 1) {
+          digest.update(input[offset]);
+        } else {
+          digest.update(input, offset, length);
+        }
+
+        offset += length;
+      }
+
+      assertArrayEquals(hashFunction.compute(input), digest.digest(), hashFunction.toString());
+    }
+  }
+
+  @Test
+  final void digest_byteBufferUpdates() throws Exception {
+    final byte[] input = new byte[1000];
+
+    new Random(3L).nextBytes(input);
+
+    for(final HashFunction hashFunction : HASH_FUNCTIONS) {
+      final Digest digest = hashFunction.newDigest();
+      final ByteBuffer direct = ByteBuffer.allocateDirect(500).put(input, 0, 500).flip();
+      final ByteBuffer heap = ByteBuffer.wrap(input, 500, 300);
+      final ByteBuffer readOnly = ByteBuffer.wrap(input, 800, 200).asReadOnlyBuffer();
+
+      digest.update(direct);
+      digest.update(heap);
+      digest.update(readOnly);
+
+      assertArrayEquals(hashFunction.compute(input), digest.digest(), hashFunction.toString());
+      assertFalse(direct.hasRemaining());
+      assertFalse(heap.hasRemaining());
+      assertFalse(readOnly.hasRemaining());
+    }
+  }
+
+  @Test
+  final void digest_restore() throws Exception {
+    final byte[] prefix = "Hello, ".getBytes();
+    final byte[] suffix = "World!".getBytes();
+
+    for(final HashFunction hashFunction : HASH_FUNCTIONS) {
+      final Digest midstate = hashFunction.newDigest();
+
+      midstate.update(prefix);
+
+      final Digest digest = hashFunction.newDigest();
+
+      // Twice, to check that the midstate is unchanged.
+      for(int i = 0; i < 2; i++) {
+        digest.restore(midstate);
+        digest.update(suffix);
+
+        assertArrayEquals(hashFunction.compute("Hello, World!".getBytes()), digest.digest(), hashFunction.toString());
+      }
+    }
+  }
+
+  @Test
+  final void blockDigests_matchCompute() throws Exception {
+    final Random random = new Random(4L);
+    final HashFunction[] hashFunctions = {
+        SHA1.getInstance(), SHA224.getInstance(), SHA256.getInstance(), SHA384.getInstance(), SHA512.getInstance(), SHA512_224.getInstance(),
+        SHA512_256.getInstance()
+    };
+    final Digest[] digests = {
+        new SHA1Digest(), new SHA256Digest(SHA256Digest.SHA224_IV, SHA224.OUTPUT_SIZE), new SHA256Digest(SHA256Digest.SHA256_IV, SHA256.OUTPUT_SIZE),
+        new SHA512Digest(SHA512Digest.SHA384_IV, SHA384.OUTPUT_SIZE), new SHA512Digest(SHA512Digest.SHA512_IV, SHA512.OUTPUT_SIZE),
+        new SHA512Digest(SHA512Digest.SHA512_224_IV, SHA512_224.OUTPUT_SIZE), new SHA512Digest(SHA512Digest.SHA512_256_IV, SHA512_256.OUTPUT_SIZE)
+    };
+
+    // Restored from a midstate, as HMAC restores its pad states.
+    for(int i = 0; i < digests.length; i++) {
+      final Digest midstate = digests[i].copy();
+
+      for(int length = 0; length <= 300; length++) {
+        final byte[] input = new byte[length];
+
+        random.nextBytes(input);
+
+        digests[i].restore(midstate);
+        digests[i].update(input);
+
+        assertArrayEquals(hashFunctions[i].compute(input), digests[i].digest(), hashFunctions[i] + " length " + length);
+      }
+    }
+  }
+
+  @Test
+  final void keccakSponge_sha3_matchesMessageDigest() throws Exception {
+    final Random random = new Random(2L);
+    final KeccakSponge sponge = new KeccakSponge(136);
+    final byte[] hash = new byte[32];
+
+    for(int length = 0; length <= 300; length++) {
+      final byte[] input = new byte[length];
+
+      random.nextBytes(input);
+
+      sponge.reset();
+      sponge.absorb(input, 0, length);
+      sponge.pad(KeccakSponge.SHA3_SUFFIX);
+      sponge.squeeze(hash, 0, hash.length);
+
+      assertArrayEquals(MessageDigest.getInstance("SHA3-256").digest(input), hash, "length " + length);
+    }
+  }
+
+}
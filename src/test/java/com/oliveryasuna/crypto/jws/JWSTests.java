@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.jws;
+
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.mac.HMAC;
+import com.oliveryasuna.crypto.mac.MACCache;
+import com.oliveryasuna.crypto.util.Base64URL;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class JWSTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] RFC7515_TOKEN = ("eyJ0eXAiOiJKV1QiLA0KICJhbGciOiJIUzI1NiJ9"
+      + ".eyJpc3MiOiJqb2UiLA0KICJleHAiOjEzMDA4MTkzODAsDQogImh0dHA6Ly9leGFtcGxlLmNvbS9pc19yb290Ijp0cnVlfQ"
+      + ".dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk").getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] RFC7515_KEY = Base64.getUrlDecoder()
+      .decode("AyM1SysPpbyDfgZld3umj1qzKObwVMkoqQ-EstJQLr_T-1qS0gZH75aKtMN3Yj0iPS4hcgUuTwjAzZr1Z9CAow");
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] token(final HMAC hmac, final String header) throws Exception {
+    final String signingInput = Base64.getUrlEncoder().withoutPadding().encodeToString(header.getBytes(StandardCharsets.US_ASCII)) + ".e30";
+    final byte[] tag = hmac.sign(signingInput.getBytes(StandardCharsets.US_ASCII));
+
+    return (signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(tag)).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private JWSTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void base64Url_matchesJdk() {
+    for(int length = 0; length < 40; length++) {
+      final byte[] input = new byte[length];
+
+      for(int i = 0; i < length; i++) {
+        input[i] = (byte)(i * 37 + length);
+      }
+
+      final byte[] encoded = Base64URL.encode(input);
+
+      assertArrayEquals(Base64.getUrlEncoder().withoutPadding().encode(input), encoded);
+      assertArrayEquals(input, Base64URL.decode(encoded));
+    }
+
+    assertNull(Base64URL.decode("AB=".getBytes()));
+    assertNull(Base64URL.decode("A+".getBytes()));
+    assertNull(Base64URL.decode("AB".getBytes()));
+    assertNull(Base64URL.decode("A".getBytes()));
+  }
+
+  @Test
+  final void verify_hs256_rfc7515AppendixA1() throws Exception {
+    final JWSVerifier verifier = new JWSVerifier(JWSAlgorithm.HS256, new HMAC(RFC7515_KEY, SHA256.getInstance()));
+
+    assertTrue(verifier.verify(RFC7515_TOKEN));
+
+    final byte[] payload = verifier.verifyPayload(RFC7515_TOKEN);
+
+    assertEquals("{\"iss\":\"joe\",\r\n \"exp\":1300819380,\r\n \"http://example.com/is_root\":true}", new String(payload, StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  final void verify_rejectsTampering() throws Exception {
+    final JWSVerifier verifier = new JWSVerifier(JWSAlgorithm.HS256, new HMAC(RFC7515_KEY, SHA256.getInstance()));
+
+    for(int i = 0; i < RFC7515_TOKEN.length; i++) {
+      if(RFC7515_TOKEN[i] == '.') {
+        continue;
+      }
+
+      final byte[] token = RFC7515_TOKEN.clone();
+
+      token[i] = (byte)(token[i] == 'A' ? 'B' : 'A');
+
+      assertFalse(verifier.verify(token), "index " + i);
+    }
+
+    assertFalse(new JWSVerifier(JWSAlgorithm.HS512, new HMAC(new byte[64], JWSAlgorithm.HS512.getHashFunction())).verify(RFC7515_TOKEN));
+  }
+
+  @Test
+  final void verify_rejectsMalformedHeaders() throws Exception {
+    final byte[] key = new byte[32];
+    final HMAC hmac = new HMAC(key, SHA256.getInstance());
+    final JWSVerifier verifier = new JWSVerifier(JWSAlgorithm.HS256, hmac);
+
+    assertTrue(verifier.verify(token(hmac, "{\"alg\":\"HS256\",\"x\":{\"y\":[1,\"}\",true]}}")));
+    assertFalse(verifier.verify(token(hmac, "{\"alg\":\"none\"}")));
+    assertFalse(verifier.verify(token(hmac, "{\"alg\":\"HS256\",\"alg\":\"HS256\"}")));
+    assertFalse(verifier.verify(token(hmac, "{\"alg\":\"HS256\",\"crit\":[\"exp\"]}")));
+    assertFalse(verifier.verify(token(hmac, "{\"alg\":\"HS\\u0032\\u0035\\u0036\"}")));
+    assertFalse(verifier.verify(token(hmac, "{\"typ\":\"JWT\"}")));
+    assertFalse(verifier.verify(token(hmac, "{\"alg\":\"HS256\"")));
+  }
+
+  @Test
+  final void signAndVerify_withKeyIds() throws Exception {
+    final MACCache<KeyId, HMAC> keys = new MACCache<>(16, keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+    final JWSVerifier verifier = new JWSVerifier(JWSAlgorithm.HS256, keys);
+
+    final JWSSigner signer1 = new JWSSigner(JWSAlgorithm.HS256, new HMAC("key-1".getBytes(), SHA256.getInstance()), KeyId.of("key-1"));
+    final JWSSigner signer2 = new JWSSigner(JWSAlgorithm.HS256, new HMAC("key-2".getBytes(), SHA256.getInstance()), KeyId.of("key-1"));
+
+    final byte[] payload = "{\"sub\":\"1234567890\"}".getBytes(StandardCharsets.US_ASCII);
+    final byte[] buffer = new byte[signer1.tokenLength(payload.length) + 3];
+    final int tokenLength = signer1.sign(payload, 0, payload.length, buffer, 3);
+    final byte[] decoded = new byte[payload.length];
+
+    assertEquals(buffer.length - 3, tokenLength);
+    assertEquals(payload.length, verifier.verify(buffer, 3, tokenLength, decoded, 0));
+    assertArrayEquals(payload, decoded);
+    assertEquals(1, keys.size());
+
+    assertFalse(verifier.verify(signer2.sign(payload)));
+    assertEquals(1, keys.size());
+  }
+
+  @Test
+  final void sign_intoBuffer_doesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+
+    for(final JWSAlgorithm algorithm : JWSAlgorithm.values()) {
+      final JWSSigner signer = new JWSSigner(algorithm, new byte[64], KeyId.of("key-1"));
+      final byte[] payload = "{\"sub\":\"1234567890\"}".getBytes(StandardCharsets.US_ASCII);
+      final byte[] token = new byte[signer.tokenLength(payload.length)];
+      long allocated = -1L;
+
+      // The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+      for(int round = 0; round < 5 && allocated != 0L; round++) {
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+
+        for(int i = 0; i < 10_000; i++) {
+          signer.sign(payload, 0, payload.length, token, 0);
+        }
+
+        allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+      }
+
+      assertEquals(0L, allocated, algorithm.toString());
+    }
+  }
+
+}
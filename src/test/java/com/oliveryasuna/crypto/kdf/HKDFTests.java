@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.kdf;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.util.Bytes;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class HKDFTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] sequence(final int start, final int length) {
+    final byte[] bytes = new byte[length];
+
+    for(int i = 0; i < length; i++) {
+      bytes[i] = (byte)(start + i);
+    }
+
+    return bytes;
+  }
+
+  private static byte[] repeat(final int value, final int length) {
+    final byte[] bytes = new byte[length];
+
+    Arrays.fill(bytes, (byte)value);
+
+    return bytes;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private HKDFTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  // RFC 5869 test cases.
+
+  @Test
+  final void hkdf_sha256_testCase1() throws Exception {
+    final byte[] expectedPrk = "077709362c2e32df0ddc3f0dc47bba6390b6c73bb50f9c3122ec844ad7c2b3e5".getBytes();
+    final byte[] expectedOkm = "3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf34007208d5b887185865".getBytes();
+
+    final HKDF hkdf = HKDF.extract(sequence(0x00, 13), repeat(0x0b, 22), SHA256.getInstance());
+
+    assertArrayEquals(expectedPrk, Bytes.toHex(hkdf.getHMAC().getKey()));
+    assertArrayEquals(expectedOkm, Bytes.toHex(hkdf.expand(sequence(0xf0, 10), 42)));
+  }
+
+  @Test
+  final void hkdf_sha256_testCase3() throws Exception {
+    final byte[] expectedOkm = "8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec3454e5f3c738d2d9d201395faa4b61a96c8".getBytes();
+
+    final byte[] okm = HKDF.derive(null, repeat(0x0b, 22), null, 42, SHA256.getInstance());
+
+    assertArrayEquals(expectedOkm, Bytes.toHex(okm));
+  }
+
+  @Test
+  final void hkdf_sha1_testCase4_expandIntoBuffer() throws Exception {
+    final byte[] expectedOkm = "085a01ea1b10f36933068b56efa5ad81a4f14b822f5b091568a9cdd4f155fda2c22e422478d305f3f896".getBytes();
+
+    final HKDF hkdf = HKDF.extract(sequence(0x00, 13), repeat(0x0b, 11), SHA1.getInstance());
+    final byte[] buffer = new byte[50];
+
+    hkdf.expand(sequence(0xf0, 10), buffer, 4, 42);
+
+    assertArrayEquals(expectedOkm, Bytes.toHex(Arrays.copyOfRange(buffer, 4, 46)));
+  }
+
+  @Test
+  final void hkdf_expand_rejectsTooLong() throws Exception {
+    final HKDF hkdf = HKDF.extract(null, repeat(0x0b, 22), SHA256.getInstance());
+
+    assertThrows(IllegalArgumentException.class, () -> hkdf.expand(null, 255 * 32 + 1));
+  }
+
+  @Test
+  final void hkdf_expand_doesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+    final HKDF hkdf = HKDF.extract("salt".getBytes(), "input keying material".getBytes(), SHA256.getInstance());
+    final byte[] info = "info".getBytes();
+    final byte[] output = new byte[100];
+    long allocated = -1L;
+
+    // The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+    for(int round = 0; round < 5 && allocated != 0L; round++) {
+      final long before = allocations.getThreadAllocatedBytes(threadId);
+
+      for(int i = 0; i < 10_000; i++) {
+        hkdf.expand(info, output, 0, output.length);
+      }
+
+      allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    assertEquals(0L, allocated);
+  }
+
+}
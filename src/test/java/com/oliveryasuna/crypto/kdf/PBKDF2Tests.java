@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.kdf;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.util.Bytes;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class PBKDF2Tests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private PBKDF2Tests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  // RFC 6070 test vectors.
+
+  @Test
+  final void pbkdf2_sha1_1iteration() throws Exception {
+    final byte[] expectedKey = "0c60c80f961f0e71f3a9b524af6012062fe037a6".getBytes();
+
+    final byte[] key = PBKDF2.derive("password".getBytes(), "salt".getBytes(), 1, 20, SHA1.getInstance());
+
+    assertArrayEquals(expectedKey, Bytes.toHex(key));
+  }
+
+  @Test
+  final void pbkdf2_sha1_4096iterations() throws Exception {
+    final byte[] expectedKey = "4b007901b765489abead49d926f721d065a429c1".getBytes();
+
+    final byte[] key = PBKDF2.derive("password".getBytes(), "salt".getBytes(), 4096, 20, SHA1.getInstance());
+
+    assertArrayEquals(expectedKey, Bytes.toHex(key));
+  }
+
+  @Test
+  final void pbkdf2_sha1_multipleBlocks() throws Exception {
+    final byte[] expectedKey = "3d2eec4fe41c849b80c8d83662c0e44a8b291a964cf2f07038".getBytes();
+
+    final byte[] key = PBKDF2.derive("passwordPASSWORDpassword".getBytes(), "saltSALTsaltSALTsaltSALTsaltSALTsalt".getBytes(), 4096, 25,
+        SHA1.getInstance());
+
+    assertArrayEquals(expectedKey, Bytes.toHex(key));
+  }
+
+  @Test
+  final void pbkdf2_sha256_matchesJce() throws Exception {
+    final char[] password = "correct horse battery staple".toCharArray();
+    final byte[] salt = "NaCl".getBytes();
+    final byte[] expectedKey = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+        .generateSecret(new PBEKeySpec(password, salt, 1000, 100 * 8))
+        .getEncoded();
+
+    final byte[] key = new PBKDF2(new String(password).getBytes(), SHA256.getInstance()).derive(salt, 1000, 100);
+
+    assertArrayEquals(expectedKey, key);
+  }
+
+  @Test
+  final void pbkdf2_iterations_doNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+    final PBKDF2 pbkdf2 = new PBKDF2("password".getBytes(), SHA256.getInstance());
+    final byte[] salt = "salt".getBytes();
+    final byte[] output = new byte[32];
+    long allocated = -1L;
+
+    // One block, so that it is derived on this thread. Each derivation allocates its working buffers, but more iterations must not add to
+    // that. The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+    for(int round = 0; round < 5 && allocated != 0L; round++) {
+      long before = allocations.getThreadAllocatedBytes(threadId);
+
+      pbkdf2.derive(salt, 1, output, 0, output.length);
+
+      final long once = allocations.getThreadAllocatedBytes(threadId) - before;
+
+      before = allocations.getThreadAllocatedBytes(threadId);
+
+      pbkdf2.derive(salt, 100_000, output, 0, output.length);
+
+      allocated = allocations.getThreadAllocatedBytes(threadId) - before - once;
+    }
+
+    assertEquals(0L, allocated);
+  }
+
+}
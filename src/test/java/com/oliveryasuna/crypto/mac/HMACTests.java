@@ -21,10 +21,21 @@ package com.oliveryasuna.crypto.mac;
 import com.oliveryasuna.crypto.hash.*;
 import com.oliveryasuna.crypto.util.Bytes;
 import com.oliveryasuna.crypto.util.Keys;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 final class HMACTests {
 
@@ -203,4 +214,111 @@ final class HMACTests {
     assertTrue(hmac.verify(input, tag));
   }
 
+  @Test
+  final void hmac_sha256_signGather() throws Exception {
+    final byte[] header = "header".getBytes();
+    final byte[] body = new byte[300];
+    final byte[] trailer = "trailer".getBytes();
+    final byte[] concatenated = new byte[header.length + body.length + trailer.length];
+
+    System.arraycopy(header, 0, concatenated, 0, header.length);
+    System.arraycopy(body, 0, concatenated, header.length, body.length);
+    System.arraycopy(trailer, 0, concatenated, header.length + body.length, trailer.length);
+
+    final HMAC hmac = new HMAC("key".getBytes(), SHA256.getInstance());
+    final JceMAC jceMac = new JceMAC(new SecretKeySpec("key".getBytes(), "HmacSHA256"), "HmacSHA256");
+    final byte[] expectedTag = hmac.sign(concatenated);
+
+    for(final IMAC mac : new IMAC[] {hmac, jceMac}) {
+      assertArrayEquals(expectedTag, mac.sign(header, body, trailer));
+
+      final ByteBuffer directBody = ByteBuffer.allocateDirect(body.length).put(body).flip();
+
+      assertArrayEquals(expectedTag, mac.sign(ByteBuffer.wrap(header), directBody, ByteBuffer.wrap(trailer).asReadOnlyBuffer()));
+      assertFalse(directBody.hasRemaining());
+    }
+  }
+
+  @Test
+  final void hmac_sha256_truncatedTagTooShort() throws Exception {
+    final HMAC hmac = new HMAC("key".getBytes(), SHA256.getInstance());
+    final byte[] message = "Hello, World!".getBytes();
+    final byte[] tag = new byte[32];
+
+    hmac.sign(message, 0, message.length, tag, 0, 16);
+
+    assertTrue(hmac.verify(message, 0, message.length, tag, 0, 16));
+    assertThrows(IllegalArgumentException.class, () -> hmac.sign(message, 0, message.length, tag, 0, 15));
+    assertThrows(IllegalArgumentException.class, () -> hmac.verify(message, 0, message.length, tag, 0, 0));
+  }
+
+  @Test
+  final void hmac_sign_alternatingHashFunctions() throws Exception {
+    final byte[] key = "key".getBytes();
+    final byte[] message = "Hello, World!".getBytes();
+    final HMAC sha224 = new HMAC(key.clone(), SHA224.getInstance());
+    final HMAC sha256 = new HMAC(key.clone(), SHA256.getInstance());
+    final Mac jce224 = Mac.getInstance("HmacSHA224");
+    final Mac jce256 = Mac.getInstance("HmacSHA256");
+
+    jce224.init(new SecretKeySpec(key, "HmacSHA224"));
+    jce256.init(new SecretKeySpec(key, "HmacSHA256"));
+
+    // SHA-224 and SHA-256 share a digest implementation, but each keeps its own working digest.
+    for(int i = 0; i < 3; i++) {
+      assertArrayEquals(jce224.doFinal(message), sha224.sign(message));
+      assertArrayEquals(jce256.doFinal(message), sha256.sign(message));
+    }
+  }
+
+  @Test
+  final void hmac_sign_doesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+
+    for(final HashFunction hashFunction : new HashFunction[] {SHA1.getInstance(), SHA256.getInstance(), SHA512.getInstance()}) {
+      final HMAC hmac = new HMAC("key".getBytes(), hashFunction);
+      final byte[] buffer = new byte[hashFunction.outputSize()];
+
+      long allocated = -1L;
+
+      // The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+      for(int round = 0; round < 5 && allocated != 0L; round++) {
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+
+        for(int i = 0; i < 100_000; i++) {
+          hmac.sign(buffer, 0, buffer.length, buffer, 0);
+        }
+
+        allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+      }
+
+      assertEquals(0L, allocated, hashFunction.toString());
+    }
+  }
+
+  @Test
+  final void jceMac_destroy_overwritesKeyState() throws Exception {
+    final SecretKeySpec key = new SecretKeySpec("key".getBytes(), "HmacSHA256");
+    final JceMAC jceMac = new JceMAC(key, "HmacSHA256");
+    final byte[] message = "Hello, World!".getBytes();
+
+    jceMac.destroy();
+
+    assertTrue(jceMac.isDestroyed());
+    assertThrows(IllegalStateException.class, () -> jceMac.sign(message));
+
+    // The wrapped Mac now holds a zero key of the same length.
+    final Field field = JceMAC.class.getDeclaredField("mac");
+
+    field.setAccessible(true);
+
+    assertArrayEquals(new HMAC(new byte[3], SHA256.getInstance()).sign(message), ((Mac)field.get(jceMac)).doFinal(message));
+  }
+
 }
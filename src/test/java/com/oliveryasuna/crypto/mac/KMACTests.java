@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.crypto.util.Bytes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class KMACTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] KEY = sequence(0x40, 32);
+
+  private static final byte[] CUSTOMIZATION = "My Tagged Application".getBytes();
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] sequence(final int start, final int length) {
+    final byte[] bytes = new byte[length];
+
+    for(int i = 0; i < length; i++) {
+      bytes[i] = (byte)(start + i);
+    }
+
+    return bytes;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private KMACTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  // NIST SP 800-185 KMAC samples.
+
+  @Test
+  final void kmac128_sample1() {
+    final byte[] expectedTag = "e5780b0d3ea6f7d3a429c5706aa43a00fadbd7d49628839e3187243f456ee14e".getBytes();
+
+    final byte[] tag = new KMAC128(KEY).sign(sequence(0, 4));
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+  }
+
+  @Test
+  final void kmac128_sample2() {
+    final byte[] expectedTag = "3b1fba963cd8b0b59e8c1a6d71888b7143651af8ba0a7070c0979e2811324aa5".getBytes();
+
+    final byte[] tag = new KMAC128(KEY, 32, CUSTOMIZATION).sign(sequence(0, 4));
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+  }
+
+  @Test
+  final void kmac128_sample3() {
+    final byte[] expectedTag = "1f5b4e6cca02209e0dcb5ca635b89a15e271ecc760071dfd805faa38f9729230".getBytes();
+
+    final byte[] tag = new KMAC128(KEY, 32, CUSTOMIZATION).sign(sequence(0, 200));
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+  }
+
+  @Test
+  final void kmac256_sample4() {
+    final byte[] expectedTag = ("20c570c31346f703c9ac36c61c03cb64c3970d0cfc787e9b79599d273a68d2f7"
+        + "f69d4cc3de9d104a351689f27cf6f5951f0103f33f4f24871024d9c27773a8dd").getBytes();
+
+    final byte[] tag = new KMAC256(KEY, 64, CUSTOMIZATION).sign(sequence(0, 4));
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+  }
+
+  @Test
+  final void kmac256_signAndVerify() {
+    final byte[] input = "Hello, World!".getBytes();
+    final KMAC256 kmac = new KMAC256(KEY, 48, CUSTOMIZATION);
+
+    final byte[] tag = kmac.sign(input);
+
+    assertEquals(48, tag.length);
+    assertTrue(kmac.verify(input, tag));
+
+    tag[47] ^= 1;
+
+    assertFalse(kmac.verify(input, tag));
+  }
+
+}
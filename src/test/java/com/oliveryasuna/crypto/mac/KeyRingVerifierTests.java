@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.crypto.hash.SHA256;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class KeyRingVerifierTests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private KeyRingVerifierTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void verify_acceptsCurrentAndPreviousKeys() throws Exception {
+    final HMAC current = new HMAC("current".getBytes(), SHA256.getInstance());
+    final HMAC previous = new HMAC("previous".getBytes(), SHA256.getInstance());
+    final HMAC unknown = new HMAC("unknown".getBytes(), SHA256.getInstance());
+    final KeyRingVerifier verifier = new KeyRingVerifier(List.of(current, previous));
+    final byte[] message = "Hello, World!".getBytes();
+
+    assertTrue(verifier.verify(message, current.sign(message)));
+    assertTrue(verifier.verify(message, previous.sign(message)));
+    assertTrue(verifier.verify(message, previous.sign(message)));
+    assertFalse(verifier.verify(message, unknown.sign(message)));
+    assertFalse(verifier.verify(message, new byte[16]));
+
+    assertEquals(1L, verifier.getHitCount(0));
+    assertEquals(2L, verifier.getHitCount(1));
+    assertEquals(2L, verifier.getMissCount());
+  }
+
+  @Test
+  final void verify_withHint_triesHintedKeyFirst() throws Exception {
+    final HMAC key0 = new HMAC("key-0".getBytes(), SHA256.getInstance());
+    final HMAC key1 = new HMAC("key-1".getBytes(), SHA256.getInstance());
+
+    // The first byte of the message is the key index.
+    final KeyRingVerifier verifier = new KeyRingVerifier(List.of(key0, key1), (message, offset, length) -> (length > 0 ? message[offset] : -1));
+
+    final byte[] message = {1, 'a', 'b', 'c'};
+    final byte[] tag = new byte[40];
+
+    key1.sign(message, 0, message.length, tag, 8);
+
+    assertEquals(1, verifier.verify(message, 0, message.length, tag, 8));
+
+    assertEquals(1L, verifier.getHitCount(1));
+
+    // A stale hint falls back to the other keys.
+    message[0] = 0;
+    key1.sign(message, 0, message.length, tag, 8);
+
+    assertEquals(1, verifier.verify(message, 0, message.length, tag, 8));
+
+    message[0] = 1;
+    key0.sign(message, 0, message.length, tag, 8);
+
+    assertEquals(0, verifier.verify(message, 0, message.length, tag, 8));
+
+    tag[8] ^= 1;
+
+    assertEquals(-1, verifier.verify(message, 0, message.length, tag, 8));
+    assertEquals(1L, verifier.getMissCount());
+
+    // Out of range, so every key is tried.
+    message[0] = 9;
+    key1.sign(message, 0, message.length, tag, 8);
+
+    assertEquals(1, verifier.verify(message, 0, message.length, tag, 8));
+  }
+
+  @Test
+  final void rotate_keepsHitCountsAndDropsOldestKey() throws Exception {
+    final HMAC key0 = new HMAC("key-0".getBytes(), SHA256.getInstance());
+    final HMAC key1 = new HMAC("key-1".getBytes(), SHA256.getInstance());
+    final HMAC key2 = new HMAC("key-2".getBytes(), SHA256.getInstance());
+    final byte[] message = "Hello, World!".getBytes();
+
+    final KeyRingVerifier verifier = new KeyRingVerifier(List.of(key1, key0));
+
+    assertTrue(verifier.verify(message, key1.sign(message)));
+
+    final KeyRingVerifier rotated = verifier.rotate(key2, 2);
+
+    assertEquals(List.of(key2, key1), rotated.getKeys());
+    assertEquals(0L, rotated.getHitCount(0));
+    assertEquals(1L, rotated.getHitCount(1));
+    assertTrue(rotated.verify(message, key2.sign(message)));
+    assertFalse(rotated.verify(message, key0.sign(message)));
+  }
+
+  @Test
+  final void constructor_rejectsMixedMacLengths() throws Exception {
+    final HMAC hmac = new HMAC("key".getBytes(), SHA256.getInstance());
+    final TruncatedHMAC truncated = new TruncatedHMAC(hmac, 16);
+
+    assertThrows(IllegalArgumentException.class, () -> new KeyRingVerifier(List.of(hmac, truncated)));
+  }
+
+  @Test
+  final void verify_withoutHint_selectsFirstMatchingKey() throws Exception {
+    final HMAC key = new HMAC("key".getBytes(), SHA256.getInstance());
+    final HMAC other = new HMAC("other".getBytes(), SHA256.getInstance());
+    // The same key twice, e.g., as it was re-added during a rotation.
+    final KeyRingVerifier verifier = new KeyRingVerifier(List.of(other, key, key));
+    final byte[] message = "Hello, World!".getBytes();
+    final byte[] tag = key.sign(message);
+
+    assertEquals(1, verifier.verify(message, 0, message.length, tag, 0));
+    assertEquals(1L, verifier.getHitCount(1));
+    assertEquals(0L, verifier.getHitCount(2));
+  }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.util.Lease;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class MACCacheTests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private MACCacheTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void macCache_get_loadsOnceThenHits() throws Exception {
+    final AtomicInteger loads = new AtomicInteger();
+    final MACCache<String, HMAC> cache = new MACCache<>(4, keyId -> {
+      loads.incrementAndGet();
+
+      return new HMAC(keyId.getBytes(), SHA256.getInstance());
+    });
+
+    final HMAC first = cache.get("tenant-1");
+    final HMAC second = cache.get("tenant-1");
+
+    assertSame(first, second);
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  final void macCache_acquire_evictsAndDestroysLeastRecentlyUsed() throws Exception {
+    final MACCache<String, HMAC> cache = new MACCache<>(1, keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+
+    final HMAC first;
+
+    try(final Lease<HMAC> lease = cache.acquire("tenant-1")) {
+      first = lease.get();
+    }
+
+    cache.acquire("tenant-2").close();
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertTrue(first.isDestroyed());
+    assertArrayEquals(new byte[first.getKey().length], first.getKey());
+    assertThrows(IllegalStateException.class, () -> first.sign("Hello, World!".getBytes()));
+  }
+
+  @Test
+  final void macCache_acquire_destroysEvictedOnlyAfterLastLease() throws Exception {
+    final MACCache<String, HMAC> cache = new MACCache<>(1, keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+
+    final Lease<HMAC> first = cache.acquire("tenant-1");
+    final Lease<HMAC> second = cache.acquire("tenant-1");
+
+    assertSame(first.get(), second.get());
+
+    cache.acquire("tenant-2").close();
+
+    assertFalse(first.get().isDestroyed());
+
+    assertNotNull(first.get().sign("Hello, World!".getBytes()));
+
+    first.close();
+    first.close();
+
+    assertFalse(second.get().isDestroyed());
+
+    final HMAC mac = second.get();
+
+    second.close();
+
+    assertTrue(mac.isDestroyed());
+    assertThrows(IllegalStateException.class, second::get);
+  }
+
+  @Test
+  final void macCache_get_doesNotDestroyEvicted() throws Exception {
+    final MACCache<String, HMAC> cache = new MACCache<>(1, keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+
+    final HMAC first = cache.get("tenant-1");
+
+    cache.get("tenant-2");
+
+    assertEquals(1, cache.getEvictionCount());
+    assertFalse(first.isDestroyed());
+    assertNotNull(first.sign("Hello, World!".getBytes()));
+  }
+
+  @Test
+  final void macCache_acquire_reloadsExpired() throws Exception {
+    final MACCache<String, HMAC> cache = new MACCache<>(4, Duration.ofNanos(1L), keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+
+    final HMAC first;
+
+    try(final Lease<HMAC> lease = cache.acquire("tenant-1")) {
+      first = lease.get();
+    }
+
+    Thread.sleep(1L);
+
+    try(final Lease<HMAC> lease = cache.acquire("tenant-1")) {
+      assertNotSame(first, lease.get());
+    }
+
+    assertTrue(first.isDestroyed());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  final void macCache_invalidate_destroys() throws Exception {
+    final MACCache<String, HMAC> cache = new MACCache<>(4, keyId -> new HMAC(keyId.getBytes(), SHA256.getInstance()));
+
+    final Lease<HMAC> lease = cache.acquire("tenant-1");
+
+    cache.invalidate("tenant-1");
+
+    assertFalse(lease.get().isDestroyed());
+    assertNull(cache.getIfPresent("tenant-1"));
+    assertEquals(0, cache.getEvictionCount());
+
+    final HMAC mac = lease.get();
+
+    lease.close();
+
+    assertTrue(mac.isDestroyed());
+  }
+
+  @Test
+  final void macCache_invalidate_duringLoad() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch invalidated = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final MACCache<String, HMAC> cache = new MACCache<>(4, keyId -> {
+      if(loads.incrementAndGet() == 1) {
+        loading.countDown();
+        invalidated.await();
+      }
+
+      return new HMAC(keyId.getBytes(), SHA256.getInstance());
+    });
+
+    final HMAC[] stale = new HMAC[1];
+    final Thread thread = new Thread(() -> {
+      try(final Lease<HMAC> lease = cache.acquire("tenant-1")) {
+        stale[0] = lease.get();
+      } catch(final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+
+    thread.start();
+    loading.await();
+    cache.invalidate("tenant-1");
+    invalidated.countDown();
+    thread.join();
+
+    // The MAC loaded before the invalidation was not cached, so it was destroyed with its lease.
+    assertTrue(stale[0].isDestroyed());
+    assertEquals(0, cache.size());
+
+    cache.get("tenant-1");
+
+    assertEquals(2, loads.get());
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.crypto.util.Bytes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class Poly1305Tests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] fromHex(final String hex) {
+    final byte[] bytes = new byte[hex.length() / 2];
+
+    for(int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+    }
+
+    return bytes;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private Poly1305Tests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void poly1305_rfc8439Section252() {
+    final byte[] key = fromHex("85d6be7857556d337f4452fe42d506a80103808afb0db2fd4abff6af4149f51b");
+    final byte[] input = "Cryptographic Forum Research Group".getBytes();
+    final byte[] expectedTag = "a8061dc1305136c6c22b8baf0c0127a9".getBytes();
+
+    final Poly1305 poly1305 = new Poly1305(key);
+    final byte[] tag = poly1305.sign(input);
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+    assertTrue(poly1305.verify(input, tag));
+
+    tag[15] ^= 1;
+
+    assertFalse(poly1305.verify(input, tag));
+  }
+
+  @Test
+  final void poly1305_rfc8439AppendixA3Vector1() {
+    final Poly1305 poly1305 = new Poly1305(new byte[32]);
+
+    assertArrayEquals(new byte[16], poly1305.sign(new byte[64]));
+  }
+
+  @Test
+  final void poly1305Aes_referenceVector() throws Exception {
+    final byte[] key = fromHex("ec074c835580741701425b623235add6" + "851fc40c3467ac0be05cc20404f3f700");
+    final byte[] nonce = fromHex("fb447350c4e868c52ac3275cf9d4327e");
+    final byte[] input = fromHex("f3f6");
+    final byte[] expectedTag = "f4c633c3044fc145f84f335cb81953de".getBytes();
+
+    final Poly1305AES poly1305 = new Poly1305AES(key);
+    final byte[] tag = poly1305.sign(nonce, input);
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+    assertTrue(poly1305.verify(nonce, input, tag));
+    assertFalse(poly1305.verify(new byte[16], input, tag));
+  }
+
+}
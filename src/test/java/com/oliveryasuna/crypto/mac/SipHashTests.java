@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class SipHashTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] KEY = sequence(16);
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] sequence(final int length) {
+    final byte[] bytes = new byte[length];
+
+    for(int i = 0; i < length; i++) {
+      bytes[i] = (byte)i;
+    }
+
+    return bytes;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private SipHashTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void sipHash24_hash_referenceVectors() {
+    final SipHash24 sipHash = new SipHash24(KEY);
+
+    assertEquals(0x726fdb47dd0e0e31L, sipHash.hash(new byte[0], 0, 0));
+    assertEquals(0xa129ca6149be45e5L, sipHash.hash(sequence(15), 0, 15));
+  }
+
+  @Test
+  final void sipHash24_signAndVerify() {
+    final byte[] input = sequence(15);
+    final SipHash24 sipHash = new SipHash24(KEY);
+
+    final byte[] tag = sipHash.sign(input);
+
+    assertArrayEquals(new byte[] {(byte)0xe5, 0x45, (byte)0xbe, 0x49, 0x61, (byte)0xca, 0x29, (byte)0xa1}, tag);
+    assertTrue(sipHash.verify(input, tag));
+
+    tag[0] ^= 1;
+
+    assertFalse(sipHash.verify(input, tag));
+  }
+
+  @Test
+  final void sipHash13_hash_referenceVectors() {
+    final SipHash13 sipHash = new SipHash13(KEY);
+
+    assertEquals(0xabac0158050fc4dcL, sipHash.hash(new byte[0], 0, 0));
+    assertEquals(0xc9f49bf37d57ca93L, sipHash.hash(sequence(1), 0, 1));
+    assertEquals(0xd3927d989bb11140L, sipHash.hash(sequence(7), 0, 7));
+    assertEquals(0x369095118d299a8eL, sipHash.hash(sequence(8), 0, 8));
+    assertEquals(0xd320d86d2a519956L, sipHash.hash(sequence(15), 0, 15));
+    assertEquals(0x9d199062b7bbb3a8L, sipHash.hash(sequence(63), 0, 63));
+  }
+
+  @Test
+  final void sipHash13_differsFromSipHash24() {
+    final byte[] input = "Hello, World!".getBytes();
+    final SipHash13 sipHash = new SipHash13(KEY);
+
+    assertNotEquals(new SipHash24(KEY).hash(input, 0, input.length), sipHash.hash(input, 0, input.length));
+    assertTrue(sipHash.verify(input, sipHash.sign(input)));
+  }
+
+}
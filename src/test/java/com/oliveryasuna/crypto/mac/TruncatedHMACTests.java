@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.mac;
+
+import com.oliveryasuna.crypto.hash.MD5;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.hash.SHA512;
+import com.oliveryasuna.crypto.util.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class TruncatedHMACTests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private TruncatedHMACTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void truncatedHmac_sha256_128_rfc4231TestCase5() throws Exception {
+    final byte[] key = new byte[20];
+
+    Arrays.fill(key, (byte)0x0c);
+
+    final byte[] input = "Test With Truncation".getBytes();
+    final byte[] expectedTag = "a3b6167473100ee06e0c796c2955552b".getBytes();
+
+    final TruncatedHMAC hmac = new TruncatedHMAC(key, SHA256.getInstance(), 128 / 8);
+    final byte[] tag = hmac.sign(input);
+
+    assertArrayEquals(expectedTag, Bytes.toHex(tag));
+    assertTrue(hmac.verify(input, tag));
+  }
+
+  @Test
+  final void truncatedHmac_sha512_256_signIntoBufferAndVerify() throws Exception {
+    final byte[] input = "Hello, World!".getBytes();
+    final TruncatedHMAC hmac = new TruncatedHMAC("key".getBytes(), SHA512.getInstance(), 256 / 8);
+    final byte[] fullTag = new HMAC("key".getBytes(), SHA512.getInstance()).sign(input);
+    final byte[] buffer = new byte[40];
+
+    hmac.sign(input, 0, input.length, buffer, 8);
+
+    assertArrayEquals(Arrays.copyOf(fullTag, 32), Arrays.copyOfRange(buffer, 8, 40));
+    assertTrue(hmac.verify(input, 0, input.length, buffer, 8));
+
+    buffer[39] ^= 1;
+
+    assertFalse(hmac.verify(input, 0, input.length, buffer, 8));
+  }
+
+  @Test
+  final void truncatedHmac_verify_rejectsWrongLength() throws Exception {
+    final byte[] input = "Hello, World!".getBytes();
+    final TruncatedHMAC hmac = new TruncatedHMAC("key".getBytes(), SHA256.getInstance(), 16);
+
+    assertFalse(hmac.verify(input, Arrays.copyOf(hmac.sign(input), 15)));
+  }
+
+  @Test
+  final void truncatedHmac_tagLength_validated() {
+    assertThrows(IllegalArgumentException.class, () -> new TruncatedHMAC("key".getBytes(), SHA256.getInstance(), 15));
+    assertThrows(IllegalArgumentException.class, () -> new TruncatedHMAC("key".getBytes(), SHA256.getInstance(), 33));
+    assertThrows(IllegalArgumentException.class, () -> new TruncatedHMAC("key".getBytes(), MD5.getInstance(), 9));
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class AttemptLimiterTests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private AttemptLimiterTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void limiter_locksOutAndDecays() {
+    final AtomicLong now = new AtomicLong(1_000_000L);
+    final AttemptLimiter limiter = new AttemptLimiter(3, Duration.ofMinutes(1L), 100, now::get);
+
+    for(int i = 0; i < 3; i++) {
+      assertTrue(limiter.isAllowed(7L));
+
+      limiter.recordFailure(7L);
+    }
+
+    assertFalse(limiter.isAllowed(7L));
+    assertEquals(3, limiter.getFailures(7L));
+    assertTrue(limiter.isAllowed(8L));
+
+    now.addAndGet(60_000L);
+
+    assertTrue(limiter.isAllowed(7L));
+    assertEquals(0, limiter.getFailures(7L));
+
+    limiter.recordFailure(7L);
+    limiter.recordSuccess(7L);
+
+    assertEquals(0, limiter.getFailures(7L));
+  }
+
+  @Test
+  final void limiter_concurrentFailuresAreCounted() {
+    final AttemptLimiter limiter = new AttemptLimiter(1_000_000, Duration.ofMinutes(1L), 1_000);
+
+    IntStream.range(0, 80_000).parallel().forEach(i -> limiter.recordFailure(i % 8));
+
+    for(long userId = 0; userId < 8; userId++) {
+      assertEquals(10_000, limiter.getFailures(userId));
+    }
+  }
+
+  @Test
+  final void limiter_failsClosedWhenFull() {
+    final AtomicLong now = new AtomicLong(1_000_000L);
+    final AttemptLimiter limiter = new AttemptLimiter(3, Duration.ofMinutes(1L), 16, now::get);
+
+    for(int i = 0; i < 3; i++) {
+      limiter.recordFailure(0L);
+    }
+
+    for(long userId = 1; userId < 10_000; userId++) {
+      limiter.recordFailure(userId);
+    }
+
+    // Colliding users cannot take over the lockout.
+    assertFalse(limiter.isAllowed(0L));
+    assertEquals(3, limiter.getFailures(0L));
+
+    // Untracked users are refused, rather than forgotten.
+    assertFalse(limiter.isAllowed(9_999L));
+    assertFalse(limiter.tryAcquire(9_999L));
+
+    // Once the window ends, slots are idle and can be reused.
+    now.addAndGet(60_000L);
+
+    assertTrue(limiter.tryAcquire(9_999L));
+    assertEquals(1, limiter.getFailures(9_999L));
+  }
+
+  @Test
+  final void limiter_tryAcquire_countsParallelAttempts() {
+    final AttemptLimiter limiter = new AttemptLimiter(5, Duration.ofMinutes(1L), 100);
+    final long acquired = IntStream.range(0, 10_000).parallel().filter(i -> limiter.tryAcquire(7L)).count();
+
+    assertEquals(5L, acquired);
+    assertFalse(limiter.isAllowed(7L));
+
+    limiter.recordSuccess(7L);
+
+    assertTrue(limiter.tryAcquire(7L));
+  }
+
+  @Test
+  final void limiter_isAllowed_doesNotAllocate() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final AttemptLimiter limiter = new AttemptLimiter(5, Duration.ofMinutes(1L), 1_000);
+    final long threadId = Thread.currentThread().getId();
+    int allowed = 0;
+
+    for(long userId = 0; userId < 1_000; userId++) {
+      limiter.recordFailure(userId);
+    }
+
+    final long before = allocations.getThreadAllocatedBytes(threadId);
+
+    for(long userId = 0; userId < 100_000; userId++) {
+      if(limiter.isAllowed(userId % 2_000)) {
+        allowed++;
+      }
+
+      limiter.recordFailure(userId % 2_000);
+    }
+
+    final long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(allocated < 1_000, "allocated " + allocated + " bytes (" + allowed + ").");
+  }
+
+  @Test
+  final void totp_verify_withLimiter() throws Exception {
+    final TOTP totp = new TOTP(6, Duration.ofSeconds(30L), Instant.EPOCH, "12345678901234567890".getBytes(), SHA1.getInstance());
+    final AttemptLimiter limiter = new AttemptLimiter(2, Duration.ofMinutes(5L), 100);
+    final long now = System.currentTimeMillis();
+    final int password = totp.compute(now);
+
+    assertEquals(-1L, totp.verify(password + 1, now, 0, 0, 1L, limiter));
+    assertEquals(-1L, totp.verify(password + 1, now, 0, 0, 1L, limiter));
+
+    // Locked out, even with the right password.
+    assertEquals(-1L, totp.verify(password, now, 0, 0, 1L, limiter));
+    assertEquals(totp.computeCounter(now), totp.verify(password, now, 0, 0, 2L, limiter));
+  }
+
+}
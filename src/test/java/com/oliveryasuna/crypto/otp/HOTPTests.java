@@ -18,10 +18,18 @@
 
 package com.oliveryasuna.crypto.otp;
 
+import com.oliveryasuna.crypto.hash.HashFunction;
 import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.hash.SHA512;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 final class HOTPTests {
 
@@ -115,4 +123,127 @@ final class HOTPTests {
     assertEquals(otp, 520489);
   }
 
+  @Test
+  final void hotp_verify_lookAhead() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+
+    assertEquals(7L, hotp.verifyCounter(162583, 0L, 9));
+    assertEquals(7L, hotp.verifyCounter(162583, 7L, 0));
+    assertEquals(-1L, hotp.verifyCounter(162583, 0L, 6));
+    assertEquals(-1L, hotp.verifyCounter(162583, 8L, 100));
+  }
+
+  @Test
+  final void hotp_resynchronize() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+
+    assertEquals(5L, hotp.resynchronize(new int[] {254676, 287922, 162583}, 0L, 1_000));
+    assertEquals(-1L, hotp.resynchronize(new int[] {254676, 162583}, 0L, 1_000));
+  }
+
+  @Test
+  final void hotp_resynchronize_largeWindow() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+    final int[] passwords = {hotp.compute(3_000L), hotp.compute(3_001L)};
+
+    assertEquals(3_000L, hotp.resynchronize(passwords, 100L, 5_000));
+    assertEquals(3_000L, hotp.resynchronize(passwords, 2_999L, 1));
+    assertEquals(-1L, hotp.resynchronize(passwords, 3_001L, 5_000));
+  }
+
+  @Test
+  final void hotp_compute_doesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+
+    for(final HashFunction hashFunction : new HashFunction[] {SHA1.getInstance(), SHA256.getInstance(), SHA512.getInstance()}) {
+      final HOTP hotp = new HOTP(8, "12345678901234567890".getBytes(), hashFunction);
+      long allocated = -1L;
+      int sink = 0;
+
+      // The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+      for(int round = 0; round < 5 && allocated != 0L; round++) {
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+
+        for(long counter = 0; counter < 100_000; counter++) {
+          sink += hotp.compute(counter);
+        }
+
+        allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+      }
+
+      assertEquals(0L, allocated, hashFunction + " (" + sink + ")");
+    }
+  }
+
+  @Test
+  final void hotp_formatsAndParsesCodes() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+    final byte[] bytes = new byte[8];
+    final char[] chars = new char[7];
+
+    assertEquals(6, hotp.formatInto(4_207, bytes, 1));
+    assertEquals("004207", new String(bytes, 1, 6, StandardCharsets.US_ASCII));
+    assertEquals(6, hotp.formatInto(755_224, chars, 0));
+    assertEquals("755224", new String(chars, 0, 6));
+    assertThrows(IllegalArgumentException.class, () -> hotp.formatInto(1_000_000, chars, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> hotp.formatInto(1, chars, 2));
+
+    assertEquals(4_207, hotp.parseCode("004207"));
+    assertEquals(-1, hotp.parseCode("4207"));
+    assertEquals(-1, hotp.parseCode("00420x"));
+
+    assertTrue(hotp.matches("004207", 4_207));
+    assertFalse(hotp.matches("4207", 4_207));
+    assertFalse(hotp.matches("0042070", 4_207));
+    assertFalse(hotp.matches("004208", 4_207));
+    assertFalse(hotp.matches("", 0));
+
+    final HOTP odd = new HOTP(7, "12345678901234567890".getBytes(), SHA1.getInstance());
+
+    odd.formatInto(1_234_567, chars, 0);
+
+    assertEquals("1234567", new String(chars));
+  }
+
+  @Test
+  final void hotp_computeRange() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+    final int[] small = new int[12];
+
+    hotp.computeRange(0L, 10, small, 1);
+
+    assertArrayEquals(new int[] {0, 755224, 287082, 359152, 969429, 338314, 254676, 287922, 162583, 399871, 520489, 0}, small);
+
+    // Above the parallel threshold.
+    final int[] large = new int[20_000];
+
+    hotp.computeRange(1_000L, large.length, large);
+
+    for(int i = 0; i < large.length; i += 997) {
+      assertEquals(hotp.compute(1_000L + i), large[i]);
+    }
+
+    assertEquals(hotp.compute(1_000L + large.length - 1), large[large.length - 1]);
+    assertThrows(IndexOutOfBoundsException.class, () -> hotp.computeRange(0L, 12, small, 1));
+  }
+
+  @Test
+  final void hotp_matches_rejectsOutOfRangePasswords() throws Exception {
+    final HOTP hotp = new HOTP(6, "12345678901234567890".getBytes(), SHA1.getInstance());
+
+    assertFalse(hotp.matches("00000/", -1));
+    assertFalse(hotp.matches("0000/0", -10));
+    assertFalse(hotp.matches("000000", -1_000_000));
+    assertFalse(hotp.matches("000000", 1_000_000));
+    assertFalse(hotp.matches("000000", Integer.MIN_VALUE));
+    assertTrue(hotp.matches("000000", 0));
+    assertTrue(hotp.matches("999999", 999_999));
+  }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class InMemoryUsedCodeStoreTests {
+
+  // Constructors
+  //--------------------------------------------------
+
+  private InMemoryUsedCodeStoreTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void markUsed_rejectsReuseUntilExpiry() {
+    final AtomicLong now = new AtomicLong(1_000L);
+    final InMemoryUsedCodeStore store = new InMemoryUsedCodeStore(100, now::get);
+
+    assertTrue(store.markUsed(1L, 10L, 2_000L));
+    assertFalse(store.markUsed(1L, 10L, 2_000L));
+    assertTrue(store.markUsed(1L, 11L, 2_000L));
+    assertTrue(store.markUsed(2L, 10L, 2_000L));
+    assertEquals(3, store.size());
+
+    now.set(2_000L);
+
+    assertEquals(0, store.size());
+    assertTrue(store.markUsed(1L, 10L, 3_000L));
+  }
+
+  @Test
+  final void markUsed_failsClosedWhenFull() {
+    final AtomicLong now = new AtomicLong(1_000L);
+    final InMemoryUsedCodeStore store = new InMemoryUsedCodeStore(1_000, now::get);
+    int marked = 0;
+
+    for(long userId = 0; userId < 100_000; userId++) {
+      if(store.markUsed(userId, 1L, 2_000L)) {
+        marked++;
+      }
+    }
+
+    assertTrue(marked >= 1_000, "marked " + marked);
+    assertEquals(100_000 - marked, store.getOverflowCount());
+
+    // Once expired, entries are purged to make room.
+    now.set(2_000L);
+
+    for(long userId = 0; userId < 1_000; userId++) {
+      assertTrue(store.markUsed(userId, 2L, 3_000L));
+    }
+  }
+
+  @Test
+  final void markUsed_concurrent_exactlyOneWins() throws Exception {
+    final InMemoryUsedCodeStore store = new InMemoryUsedCodeStore(100_000);
+    final int threads = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger wins = new AtomicInteger();
+
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+
+      for(int thread = 0; thread < threads; thread++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+
+          for(long userId = 0; userId < 10_000; userId++) {
+            if(store.markUsed(userId, 7L, Long.MAX_VALUE)) {
+              wins.incrementAndGet();
+            }
+          }
+
+          return null;
+        }));
+      }
+
+      start.countDown();
+
+      for(final Future<?> future : futures) {
+        future.get(30L, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(10_000, wins.get());
+    assertEquals(10_000, store.size());
+  }
+
+}
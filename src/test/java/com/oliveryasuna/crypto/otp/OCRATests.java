@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class OCRATests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] SEED = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SEED_32 = "12345678901234567890123456789012".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SEED_64 = "1234567890123456789012345678901234567890123456789012345678901234".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * SHA-1 of {@code "1234"}.
+   */
+  private static final byte[] PIN_HASH = hex("7110eda4d09e062aa5e4a390b0a572ac0d2c0220");
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] hex(final String hex) {
+    final byte[] bytes = new BigInteger("10" + hex, 16).toByteArray();
+    final byte[] result = new byte[hex.length() / 2];
+
+    System.arraycopy(bytes, 1, result, 0, result.length);
+
+    return result;
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OCRATests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void ocra_rfc6287_oneWayChallengeResponse() throws Exception {
+    final OCRA ocra = new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA1-6:QN08"), SEED);
+    final OCRADataInput input = ocra.getSuite().newDataInput();
+    final int[] expected = {237653, 243178, 653583, 740991, 608993, 388898, 816933, 224598, 750600, 294470};
+
+    for(int i = 0; i < expected.length; i++) {
+      input.setQuestion(String.valueOf(i).repeat(8));
+
+      assertEquals(expected[i], ocra.compute(input));
+    }
+  }
+
+  @Test
+  final void ocra_rfc6287_counterAndPin() throws Exception {
+    final OCRA ocra = new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA256-8:C-QN08-PSHA1"), SEED_32);
+    final OCRADataInput input = ocra.getSuite().newDataInput();
+
+    input.setQuestion("12345678");
+    input.setPasswordHash(PIN_HASH);
+
+    final int[] expected = {65347737, 86775851, 78192410, 71565254, 10104329, 65983500, 70069104, 91771096, 75011558, 8522129};
+
+    for(int counter = 0; counter < expected.length; counter++) {
+      input.setCounter(counter);
+
+      assertEquals(expected[counter], ocra.compute(input));
+    }
+  }
+
+  @Test
+  final void ocra_rfc6287_sha512CounterAndTimestamp() throws Exception {
+    final OCRA counterOcra = new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA512-8:C-QN08"), SEED_64);
+    final OCRADataInput counterInput = counterOcra.getSuite().newDataInput();
+
+    counterInput.setCounter(0L);
+    counterInput.setQuestion("00000000");
+
+    assertEquals(7016083, counterOcra.compute(counterInput));
+
+    counterInput.setCounter(1L);
+    counterInput.setQuestion("11111111");
+
+    assertEquals(63947962, counterOcra.compute(counterInput));
+
+    final OCRASuite suite = OCRASuite.parse("OCRA-1:HOTP-SHA512-8:QN08-T1M");
+    final OCRA timeOcra = new OCRA(suite, SEED_64);
+    final OCRADataInput timeInput = suite.newDataInput();
+
+    assertEquals(0x132d0b6L, suite.computeTimestamp(0x132d0b6L * 60_000L + 59_999L));
+
+    timeInput.setTimestamp(0x132d0b6L);
+    timeInput.setQuestion("00000000");
+
+    assertEquals(95209754, timeOcra.compute(timeInput));
+
+    timeInput.setQuestion("11111111");
+
+    assertEquals(55907591, timeOcra.compute(timeInput));
+  }
+
+  @Test
+  final void ocra_rfc6287_mutualChallengeResponse() throws Exception {
+    final OCRA ocra = new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA256-8:QA08"), SEED_32);
+    final OCRADataInput input = ocra.getSuite().newDataInput();
+
+    input.setQuestion("CLI22220SRV11110");
+
+    assertEquals(28247970, ocra.compute(input));
+  }
+
+  @Test
+  final void ocra_batchVerify() throws Exception {
+    final OCRA ocra = new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA1-6:QN08"), SEED);
+    final OCRA[] ocras = new OCRA[1_000];
+    final OCRADataInput[] inputs = new OCRADataInput[ocras.length];
+    final int[] responses = new int[ocras.length];
+
+    for(int i = 0; i < ocras.length; i++) {
+      ocras[i] = ocra;
+      inputs[i] = ocra.getSuite().newDataInput();
+      inputs[i].setQuestion(String.valueOf(10_000_000 + i));
+      responses[i] = ocra.compute(inputs[i]) ^ (i % 3 == 0 ? 1 : 0);
+    }
+
+    final boolean[] results = OCRA.verify(ocras, inputs, responses);
+
+    for(int i = 0; i < results.length; i++) {
+      assertEquals(i % 3 != 0, results[i]);
+    }
+  }
+
+  @Test
+  final void suite_rejectsMalformedSuites() {
+    final String[] suites = {
+        "OCRA-2:HOTP-SHA1-6:QN08", "OCRA-1:HOTP-MD5-6:QN08", "OCRA-1:HOTP-SHA1-3:QN08", "OCRA-1:HOTP-SHA1-6:C", "OCRA-1:HOTP-SHA1-6:QX08",
+        "OCRA-1:HOTP-SHA1-6:QN08-C", "OCRA-1:HOTP-SHA1-6:QN65", "OCRA-1:HOTP-SHA1-6:QN08-T1X", "OCRA-1:HOTP-SHA1-6"
+    };
+
+    for(final String suite : suites) {
+      assertThrows(IllegalArgumentException.class, () -> OCRASuite.parse(suite), suite);
+    }
+
+    final OCRADataInput input = OCRASuite.parse("OCRA-1:HOTP-SHA1-6:QN08").newDataInput();
+
+    assertThrows(IllegalArgumentException.class, () -> input.setQuestion("12345678901234567"));
+    assertThrows(IllegalArgumentException.class, () -> input.setQuestion("1234567a"));
+    assertThrows(IllegalArgumentException.class, () -> input.setCounter(0L));
+  }
+
+  @Test
+  final void ocra_compute_doesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+
+    final ThreadMXBean allocations = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+    final long threadId = Thread.currentThread().getId();
+    final OCRA[] ocras = {
+        new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA1-6:QN08"), SEED), new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA256-8:C-QN08-PSHA1"), SEED_32),
+        new OCRA(OCRASuite.parse("OCRA-1:HOTP-SHA512-8:C-QN08"), SEED_64)
+    };
+
+    for(final OCRA ocra : ocras) {
+      final OCRADataInput input = ocra.getSuite().newDataInput();
+      long allocated = -1L;
+      int sink = 0;
+
+      input.setQuestion("12345678");
+
+      if(ocra.getSuite().getPasswordHashFunction() != null) {
+        input.setPasswordHash(PIN_HASH);
+      }
+
+      // The first rounds create per-thread scratch, and may allocate while the loop is compiled, so take the last of a few.
+      for(int round = 0; round < 5 && allocated != 0L; round++) {
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+
+        for(int i = 1; i <= 10_000; i++) {
+          if(ocra.getSuite().hasCounter()) {
+            input.setCounter(i);
+          }
+
+          sink += ocra.compute(input);
+        }
+
+        allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+      }
+
+      assertEquals(0L, allocated, ocra.getSuite().getSuite() + " (" + sink + ")");
+    }
+  }
+
+}
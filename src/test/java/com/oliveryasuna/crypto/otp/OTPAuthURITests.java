@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.util.Base32;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class OTPAuthURITests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static byte[] ascii(final String string) {
+    return string.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OTPAuthURITests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void base32_rfc4648Vectors() {
+    final String[][] vectors = {
+        {"", ""}, {"f", "MY"}, {"fo", "MZXQ"}, {"foo", "MZXW6"}, {"foob", "MZXW6YQ"}, {"fooba", "MZXW6YTB"}, {"foobar", "MZXW6YTBOI"}
+    };
+
+    for(final String[] vector : vectors) {
+      assertArrayEquals(ascii(vector[1]), Base32.encode(ascii(vector[0])));
+      assertArrayEquals(ascii(vector[0]), Base32.decode(ascii(vector[1])));
+      assertArrayEquals(ascii(vector[0]), Base32.decode(ascii(vector[1].toLowerCase())));
+      assertArrayEquals(ascii(vector[0]), Base32.decode(vector[1], 0, vector[1].length()));
+    }
+
+    assertArrayEquals(ascii("foobar"), Base32.decode(ascii("MZXW6YTBOI======")));
+    assertNull(Base32.decode(ascii("MZXW6YTBOI=")));
+    assertNull(Base32.decode(ascii("MZXW6YQ1")));
+    assertNull(Base32.decode(ascii("MZ=XW6YQ")));
+    assertNull(Base32.decode(ascii("MZXW6YR")));
+    assertNull(Base32.decode(ascii("MZX")));
+  }
+
+  @Test
+  final void base32_roundTripsThroughArraysAndBuffers() {
+    final Random random = new Random(45L);
+
+    for(int length = 0; length < 64; length++) {
+      final byte[] input = new byte[length];
+
+      random.nextBytes(input);
+
+      final byte[] encoded = Base32.encode(input);
+
+      assertArrayEquals(input, Base32.decode(encoded));
+
+      final ByteBuffer directInput = ByteBuffer.allocateDirect(length).put(input).flip();
+      final ByteBuffer directEncoded = ByteBuffer.allocateDirect(encoded.length);
+
+      assertEquals(encoded.length, Base32.encode(directInput, directEncoded));
+      assertFalse(directInput.hasRemaining());
+      assertEquals(ByteBuffer.wrap(encoded), directEncoded.flip());
+
+      final ByteBuffer decoded = ByteBuffer.allocateDirect(length);
+
+      assertEquals(length, Base32.decode(directEncoded, decoded));
+      assertEquals(ByteBuffer.wrap(input), decoded.flip());
+
+      final ByteBuffer heapDecoded = ByteBuffer.allocate(length);
+
+      assertEquals(length, Base32.decode(ByteBuffer.wrap(encoded), heapDecoded));
+      assertArrayEquals(input, heapDecoded.array());
+    }
+  }
+
+  @Test
+  final void parse_totp() throws Exception {
+    final OTPAuthURI uri = OTPAuthURI.parse(
+        "otpauth://totp/ACME%20Co:john.doe@email.com?secret=GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ&issuer=ACME%20Co&algorithm=SHA1&digits=8&period=30");
+
+    assertEquals(OTPAuthURI.Type.TOTP, uri.getType());
+    assertEquals("ACME Co:john.doe@email.com", uri.getLabel());
+    assertEquals("ACME Co", uri.getIssuer());
+    assertArrayEquals(ascii("12345678901234567890"), uri.getSecret());
+    assertEquals(8, uri.getDigits());
+    assertEquals(94287082, uri.toTOTP().compute(Instant.ofEpochSecond(59L)));
+    assertEquals(uri, OTPAuthURI.parse(uri.toURIString()));
+  }
+
+  @Test
+  final void parse_hotp() throws Exception {
+    final OTPAuthURI uri = OTPAuthURI.parse("otpauth://hotp/alice?secret=gezdgnbvgy3tqojqgezdgnbvgy3tqojq&counter=1&image=x");
+
+    assertEquals(OTPAuthURI.Type.HOTP, uri.getType());
+    assertNull(uri.getIssuer());
+    assertEquals(1L, uri.getCounter());
+    assertEquals(287082, uri.toHOTP().compute(uri.getCounter()));
+    assertEquals("otpauth://hotp/alice?secret=GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ&counter=1", uri.toURIString());
+  }
+
+  @Test
+  final void parse_rejectsMalformedUris() {
+    final String[] uris = {
+        "http://totp/a?secret=GEZDGNBV", "otpauth://xotp/a?secret=GEZDGNBV", "otpauth://totp/a?issuer=b", "otpauth://hotp/a?secret=GEZDGNBV",
+        "otpauth://totp/a?secret=GEZDGNB1", "otpauth://totp/a?secret=GEZDGNBV&digits=x", "otpauth://totp/a?secret=GEZDGNBV&algorithm=MD5",
+        "otpauth://totp/a?secret=GEZDGNBV&digits=9", "otpauth://totp/a?secret"
+    };
+
+    for(final String uri : uris) {
+      assertThrows(IllegalArgumentException.class, () -> OTPAuthURI.parse(uri), uri);
+    }
+  }
+
+  @Test
+  final void of_buildsFromOtps() throws Exception {
+    final TOTP totp = new TOTP(6, Duration.ofSeconds(60L), Instant.EPOCH, ascii("12345678901234567890"), SHA256.getInstance());
+    final String uri = OTPAuthURI.of(totp, "Example:alice", "Example").toURIString();
+
+    assertEquals("otpauth://totp/Example:alice?secret=GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ&issuer=Example&algorithm=SHA256&period=60", uri);
+    assertEquals(totp.compute(1_000_000L), OTPAuthURI.parse(uri).toTOTP().compute(1_000_000L));
+
+    final HOTP hotp = new HOTP(6, ascii("12345678901234567890"), SHA1.getInstance());
+
+    assertEquals(OTPAuthURI.Type.HOTP, OTPAuthURI.of(hotp, "a", null, 5L).getType());
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.mac.HMAC;
+import com.oliveryasuna.crypto.util.Lease;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class OTPKeyDeriverTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] MASTER_KEY = "an example master key, 32 bytes".getBytes(StandardCharsets.US_ASCII);
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OTPKeyDeriverTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void deriveKey_isHMACOfUserIdAndEpoch() throws Exception {
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(MASTER_KEY, SHA1.getInstance());
+    final byte[] expected = new HMAC(MASTER_KEY, SHA1.getInstance()).sign(ByteBuffer.allocate(16).putLong(42L).putLong(3L).array());
+
+    assertArrayEquals(expected, deriver.deriveKey(42L, 3L));
+    assertEquals(20, deriver.getKeyLength());
+    assertFalse(Arrays.equals(expected, deriver.deriveKey(42L, 4L)));
+    assertFalse(Arrays.equals(expected, deriver.deriveKey(43L, 3L)));
+
+    final TOTP totp = new TOTP(6, Duration.ofSeconds(30L), Instant.EPOCH, expected, SHA1.getInstance());
+
+    assertEquals(totp.compute(59_000L), deriver.deriveTOTP(42L, 3L, 6, Duration.ofSeconds(30L), Instant.EPOCH).compute(59_000L));
+    assertEquals(new HOTP(6, expected, SHA1.getInstance()).compute(1L), deriver.deriveHOTP(42L, 3L, 6).compute(1L));
+  }
+
+  @Test
+  final void cache_derivesOnceAndEvicts() throws Exception {
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(MASTER_KEY, SHA1.getInstance());
+    final DerivedTOTPCache cache = new DerivedTOTPCache(deriver, 6, Duration.ofSeconds(30L), Instant.EPOCH, 1);
+
+    final TOTP totp = cache.get(42L, 3L);
+
+    assertSame(totp, cache.get(42L, 3L));
+    assertEquals(deriver.deriveTOTP(42L, 3L, 6, Duration.ofSeconds(30L), Instant.EPOCH).compute(59_000L), totp.compute(59_000L));
+
+    cache.get(43L, 3L);
+
+    assertNotSame(totp, cache.get(42L, 3L));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(3L, cache.getMissCount());
+  }
+
+  @Test
+  final void cache_acquire_destroysEvictedAfterLastLease() throws Exception {
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(MASTER_KEY, SHA1.getInstance());
+    final DerivedTOTPCache cache = new DerivedTOTPCache(deriver, 6, Duration.ofSeconds(30L), Instant.EPOCH, 1);
+    final TOTP escaped = cache.get(41L, 3L);
+    final Lease<TOTP> lease = cache.acquire(42L, 3L);
+    final TOTP totp = lease.get();
+
+    cache.acquire(43L, 3L).close();
+
+    // Evicted, but still leased.
+    assertFalse(totp.isDestroyed());
+    assertEquals(deriver.deriveTOTP(42L, 3L, 6, Duration.ofSeconds(30L), Instant.EPOCH).compute(59_000L), totp.compute(59_000L));
+
+    lease.close();
+
+    assertTrue(totp.isDestroyed());
+    assertArrayEquals(new byte[totp.getKey().length], totp.getKey());
+
+    // Handed out without a lease, so never destroyed.
+    assertFalse(escaped.isDestroyed());
+  }
+
+  @Test
+  final void cache_rejectsInvalidLength() throws Exception {
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(MASTER_KEY, SHA1.getInstance());
+
+    assertThrows(IllegalArgumentException.class, () -> new DerivedTOTPCache(deriver, 9, Duration.ofSeconds(30L), Instant.EPOCH, 1));
+    assertThrows(IllegalArgumentException.class, () -> new DerivedTOTPCache(deriver, -1, Duration.ofSeconds(30L), Instant.EPOCH, 1));
+  }
+
+  @Test
+  final void cache_keysByEpoch() throws Exception {
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(MASTER_KEY, SHA1.getInstance());
+    final DerivedTOTPCache cache = new DerivedTOTPCache(deriver, 6, Duration.ofSeconds(30L), Instant.EPOCH, 1_000);
+    final TOTP current = cache.get(42L, 3L);
+    final TOTP reEnrolled = cache.get(42L, 4L);
+
+    assertNotSame(current, reEnrolled);
+    assertEquals(deriver.deriveTOTP(42L, 4L, 6, Duration.ofSeconds(30L), Instant.EPOCH).compute(59_000L), reEnrolled.compute(59_000L));
+    assertSame(current, cache.get(42L, 3L));
+
+    cache.invalidate(42L, 3L);
+
+    assertNotSame(current, cache.get(42L, 3L));
+    assertSame(reEnrolled, cache.get(42L, 4L));
+  }
+
+  @Test
+  final void deriver_destroy_zeroesMasterKey() throws Exception {
+    final byte[] masterKey = MASTER_KEY.clone();
+    final OTPKeyDeriver deriver = new OTPKeyDeriver(masterKey, SHA1.getInstance());
+    final byte[] derived = deriver.deriveKey(42L, 3L);
+
+    deriver.destroy();
+
+    assertTrue(deriver.isDestroyed());
+    assertArrayEquals(new byte[masterKey.length], masterKey);
+    assertThrows(IllegalStateException.class, () -> deriver.deriveKey(42L, 3L));
+    // Keys already derived are the caller's.
+    assertFalse(Arrays.equals(new byte[derived.length], derived));
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import com.oliveryasuna.crypto.util.Keys;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class OTPSecretStoreTests {
+
+  // Static fields
+  //--------------------------------------------------
+
+  private static final byte[] KEY = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+  private static final SecretKey MASTER_KEY = new SecretKeySpec(new byte[32], "AES");
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OTPSecretStoreTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void store_roundTripsAndSurvivesRestart() throws Exception {
+    final Path file = Files.createTempFile("otp", ".store");
+
+    try {
+      try(final OTPSecretStore store = new OTPSecretStore(file, 16, MASTER_KEY)) {
+        store.put(3L, KEY, SHA1.getInstance(), 8, Duration.ofSeconds(30L), Instant.EPOCH);
+
+        assertEquals(94287082, store.loadTOTP(3L).compute(Instant.ofEpochSecond(59L)));
+        assertEquals(84755224, store.loadHOTP(3L).compute(0L));
+        assertNull(store.loadTOTP(4L));
+      }
+
+      try(final OTPSecretStore store = new OTPSecretStore(file, 16, MASTER_KEY)) {
+        assertEquals(94287082, store.loadTOTP(3L).compute(Instant.ofEpochSecond(59L)));
+
+        store.remove(3L);
+
+        assertNull(store.loadTOTP(3L));
+      }
+
+      assertThrows(IOException.class, () -> new OTPSecretStore(file, 32, MASTER_KEY));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  final void store_rejectsTamperedRecords() throws Exception {
+    final Path file = Files.createTempFile("otp", ".store");
+
+    try {
+      try(final OTPSecretStore store = new OTPSecretStore(file, 4, MASTER_KEY)) {
+        store.put(1L, KEY, SHA256.getInstance(), 6, Duration.ofSeconds(30L), Instant.EPOCH);
+      }
+
+      try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        // The record's length byte.
+        channel.write(ByteBuffer.wrap(new byte[] {8}), 64L + 128L + 2L);
+      }
+
+      try(final OTPSecretStore store = new OTPSecretStore(file, 4, MASTER_KEY)) {
+        assertThrows(GeneralSecurityException.class, () -> store.loadTOTP(1L));
+      }
+
+      try(final OTPSecretStore store = new OTPSecretStore(file, 4, new SecretKeySpec(Keys.generate("AES"), "AES"))) {
+        assertThrows(GeneralSecurityException.class, () -> store.loadHOTP(1L));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  final void store_offHeap() throws Exception {
+    try(final OTPSecretStore store = new OTPSecretStore(8, MASTER_KEY)) {
+      store.put(7L, KEY, SHA1.getInstance(), 6, Duration.ofSeconds(30L), Instant.EPOCH);
+
+      assertEquals(287082, store.loadTOTP(7L).compute(Instant.ofEpochSecond(59L)));
+      assertThrows(IllegalArgumentException.class, () -> store.loadTOTP(8L));
+      assertThrows(IllegalArgumentException.class, () -> store.put(0L, new byte[65], SHA1.getInstance(), 6, Duration.ofSeconds(30L),
+          Instant.EPOCH));
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class TOTPBatchVerifierTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  /**
+   * Creates the TOTP for a handle: odd handles use SHA-256 and 8 digits, and handles over 1,000 are unknown.
+   */
+  private static TOTP totp(final long handle) throws Exception {
+    if(handle > 1_000) {
+      return null;
+    }
+
+    final byte[] key = ByteBuffer.allocate(32).putLong(handle).array();
+
+    return ((handle & 1) == 0
+        ? new TOTP(6, Duration.ofSeconds(30L), Instant.EPOCH, key, SHA1.getInstance())
+        : new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, key, SHA256.getInstance()));
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private TOTPBatchVerifierTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void verify_batch() throws Exception {
+    final AtomicInteger loads = new AtomicInteger();
+    final TOTPBatchVerifier verifier = new TOTPBatchVerifier(10_000, 2, 1, handle -> {
+      loads.incrementAndGet();
+
+      return totp(handle);
+    });
+
+    final int size = 1_001;
+    final long now = 1_700_000_000_000L;
+    final long[] handles = new long[size];
+    final int[] passwords = new int[size];
+    final long[] times = new long[size];
+
+    for(int i = 0; i < size; i++) {
+      handles[i] = (i == size - 1 ? 5_000L : i);
+      times[i] = now;
+
+      // Clocks drift between 3 steps behind and 1 ahead; every 10th password is wrong.
+      final int drift = i % 5 - 3;
+      final TOTP totp = totp(i);
+
+      passwords[i] = (totp == null ? 0 : totp.compute(now + drift * 30_000L) + (i % 10 == 9 ? 1 : 0));
+    }
+
+    final byte[] results = verifier.verify(handles, passwords, times);
+
+    for(int i = 0; i < size - 1; i++) {
+      final int drift = i % 5 - 3;
+      final byte expected = (drift < -2 || i % 10 == 9 ? TOTPBatchVerifier.REJECTED : (byte)drift);
+
+      assertEquals(expected, results[i], "index " + i);
+    }
+
+    assertEquals(TOTPBatchVerifier.UNKNOWN, results[size - 1]);
+    assertEquals(size, loads.get());
+
+    // Secrets are cached across batches.
+    verifier.verify(handles, passwords, times);
+
+    assertEquals(size + 1, loads.get());
+    assertEquals(size - 1, verifier.getHitCount());
+  }
+
+  @Test
+  final void verify_loadFailed() throws Exception {
+    final TOTPBatchVerifier verifier = new TOTPBatchVerifier(16, 1, 1, handle -> {
+      if(handle == 2L) {
+        throw new IllegalStateException("Unavailable.");
+      }
+
+      return totp(handle);
+    });
+
+    final byte[] results = verifier.verify(new long[] {2L, 5_000L}, new int[2], new long[2]);
+
+    assertEquals(TOTPBatchVerifier.LOAD_FAILED, results[0]);
+    assertEquals(TOTPBatchVerifier.UNKNOWN, results[1]);
+  }
+
+  @Test
+  final void invalidate_duringLoad() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch invalidated = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final TOTPBatchVerifier verifier = new TOTPBatchVerifier(16, 1, 1, handle -> {
+      if(loads.incrementAndGet() == 1) {
+        loading.countDown();
+        invalidated.await();
+      }
+
+      return totp(handle);
+    });
+
+    final Thread thread = new Thread(() -> verifier.verify(new long[] {2L}, new int[1], new long[1]));
+
+    thread.start();
+    loading.await();
+    verifier.invalidate(2L);
+    invalidated.countDown();
+    thread.join();
+
+    // The TOTP loaded before the invalidation is not cached.
+    verifier.verify(new long[] {2L}, new int[1], new long[1]);
+
+    assertEquals(2, loads.get());
+    assertEquals(0L, verifier.getHitCount());
+  }
+
+  @Test
+  final void verify_destroysEvictedAndInvalidated() throws Exception {
+    final List<TOTP> loaded = new CopyOnWriteArrayList<>();
+    final TOTPBatchVerifier verifier = new TOTPBatchVerifier(1, 1, 1, handle -> {
+      final TOTP totp = totp(handle);
+
+      loaded.add(totp);
+
+      return totp;
+    });
+
+    verifier.verify(new long[] {2L}, new int[1], new long[1]);
+    verifier.verify(new long[] {4L}, new int[1], new long[1]);
+
+    // Evicted by the second batch.
+    assertTrue(loaded.get(0).isDestroyed());
+    assertFalse(loaded.get(1).isDestroyed());
+
+    verifier.invalidate(4L);
+
+    assertTrue(loaded.get(1).isDestroyed());
+  }
+
+}
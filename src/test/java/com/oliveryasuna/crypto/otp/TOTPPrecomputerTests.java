@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class TOTPPrecomputerTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static TOTP totp(final long handle, final Duration timeStep) throws Exception {
+    return new TOTP(6, timeStep, Instant.EPOCH, ByteBuffer.allocate(20).putLong(handle).array(), SHA1.getInstance());
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private TOTPPrecomputerTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void verify_fromPrecomputedTable() throws Exception {
+    final Duration timeStep = Duration.ofSeconds(30L);
+    final TOTPPrecomputer precomputer = new TOTPPrecomputer(timeStep, Instant.EPOCH, 1, 1, 100, 2, handle -> totp(handle, timeStep));
+    final long now = 1_700_000_000_000L;
+    final long step = now / 30_000L;
+
+    // Unknown to the table, so verified live, which makes the secrets active.
+    for(long handle = 0; handle < 10; handle++) {
+      assertEquals(step, precomputer.verify(handle, totp(handle, timeStep).compute(now), now));
+    }
+
+    assertEquals(10L, precomputer.getTableMissCount());
+    assertEquals(10, precomputer.activeCount());
+
+    precomputer.precompute(step + 1);
+
+    final long later = now + 30_000L;
+
+    for(long handle = 0; handle < 10; handle++) {
+      final TOTP totp = totp(handle, timeStep);
+
+      assertEquals(step + 1, precomputer.verify(handle, totp.compute(later), later));
+      assertEquals(step, precomputer.verify(handle, totp.compute(now), later));
+      assertEquals(step + 2, precomputer.verify(handle, totp.compute(later + 30_000L), later));
+      assertEquals(-1L, precomputer.verify(handle, totp.compute(later + 60_000L), later));
+    }
+
+    assertEquals(40L, precomputer.getTableHitCount());
+
+    // Idle for more than 2 steps, so no longer active.
+    precomputer.precompute(step + 5);
+
+    assertEquals(0, precomputer.activeCount());
+  }
+
+  @Test
+  final void start_precomputesBeforeEachStep() throws Exception {
+    final Duration timeStep = Duration.ofSeconds(1L);
+
+    try(final TOTPPrecomputer precomputer = new TOTPPrecomputer(timeStep, Instant.EPOCH, 1, 0, 100, 10, handle -> totp(handle, timeStep))) {
+      final TOTP totp = totp(1L, timeStep);
+
+      precomputer.verify(1L, totp.compute(System.currentTimeMillis()), System.currentTimeMillis());
+      precomputer.start(Duration.ofMillis(300L));
+
+      final long deadline = System.currentTimeMillis() + 10_000L;
+
+      while(precomputer.getTableHitCount() == 0 && System.currentTimeMillis() < deadline) {
+        final long now = System.currentTimeMillis();
+
+        assertNotEquals(-1L, precomputer.verify(1L, totp.compute(now), now));
+
+        Thread.sleep(50L);
+      }
+
+      assertTrue(precomputer.getTableHitCount() > 0);
+    }
+  }
+
+  @Test
+  final void invalidate_dropsRotatedSecret() throws Exception {
+    final Duration timeStep = Duration.ofSeconds(30L);
+    final long[] rotation = {0L};
+    final TOTPPrecomputer precomputer = new TOTPPrecomputer(timeStep, Instant.EPOCH, 1, 1, 100, 2,
+        handle -> totp(handle + rotation[0], timeStep));
+    final long now = 1_700_000_000_000L;
+    final long step = now / 30_000L;
+    final int oldPassword = totp(1L, timeStep).compute(now);
+
+    assertEquals(step, precomputer.verify(1L, oldPassword, now));
+
+    precomputer.precompute(step);
+
+    assertEquals(step, precomputer.verify(1L, oldPassword, now));
+    assertEquals(1L, precomputer.getTableHitCount());
+
+    rotation[0] = 1_000L;
+    precomputer.invalidate(1L);
+
+    assertEquals(0, precomputer.activeCount());
+    assertEquals(-1L, precomputer.verify(1L, oldPassword, now));
+    assertEquals(step, precomputer.verify(1L, totp(1_001L, timeStep).compute(now), now));
+    assertEquals(1L, precomputer.getTableHitCount());
+  }
+
+  @Test
+  final void verify_concurrently_respectsMaximumActive() throws Exception {
+    final Duration timeStep = Duration.ofSeconds(30L);
+    final TOTPPrecomputer precomputer = new TOTPPrecomputer(timeStep, Instant.EPOCH, 1, 1, 10, 2, handle -> totp(handle, timeStep));
+    final long now = 1_700_000_000_000L;
+
+    IntStream.range(0, 1_000).parallel().forEach(handle -> {
+      try {
+        precomputer.verify(handle, 0, now);
+      } catch(final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+
+    assertEquals(10, precomputer.activeCount());
+  }
+
+}
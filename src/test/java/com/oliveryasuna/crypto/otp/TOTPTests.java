@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.otp;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.hash.SHA256;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class TOTPTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static TOTP totp() throws Exception {
+    return new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, "12345678901234567890".getBytes(), SHA1.getInstance());
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private TOTPTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void totp_sha1_rfc6238() throws Exception {
+    final TOTP totp = totp();
+
+    assertEquals(94287082, totp.compute(59_000L));
+    assertEquals(7081804, totp.compute(1_111_111_109_000L));
+    assertEquals(14050471, totp.compute(1_111_111_111_000L));
+    assertEquals(89005924, totp.compute(1_234_567_890_000L));
+  }
+
+  @Test
+  final void totp_sha256_rfc6238() throws Exception {
+    final TOTP totp = new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, "12345678901234567890123456789012".getBytes(), SHA256.getInstance());
+
+    assertEquals(46119246, totp.compute(59_000L));
+    assertEquals(91819424, totp.compute(1_234_567_890_000L));
+    assertEquals(90698825, totp.compute(2_000_000_000_000L));
+  }
+
+  @Test
+  final void totp_verify_returnsMatchedStep() throws Exception {
+    final TOTP totp = totp();
+    final long now = 1_111_111_109_000L;
+    final long step = totp.computeCounter(now);
+
+    assertEquals(step, totp.verify(totp.compute(now), now, 0, 0));
+
+    // A client clock 2 steps behind.
+    final int behind = totp.compute(now - 60_000L);
+
+    assertEquals(step - 2, totp.verify(behind, now, 2, 1));
+    assertEquals(-1L, totp.verify(behind, now, 1, 1));
+
+    // A client clock 1 step ahead.
+    final int ahead = totp.compute(now + 30_000L);
+
+    assertEquals(step + 1, totp.verify(ahead, now, 0, 1));
+    assertEquals(-1L, totp.verify(ahead, now, 5, 0));
+  }
+
+  @Test
+  final void totp_verify_nearStartTime() throws Exception {
+    final TOTP totp = totp();
+
+    assertEquals(0L, totp.verify(totp.compute(0L), 0L, 10, 0));
+  }
+
+  @Test
+  final void totp_verify_rejectsReplay() throws Exception {
+    final TOTP totp = totp();
+    final long now = 1_111_111_109_000L;
+    final AtomicLong clock = new AtomicLong(now);
+    final UsedCodeStore store = new InMemoryUsedCodeStore(100, clock::get);
+    final int password = totp.compute(now);
+
+    assertEquals(totp.computeCounter(now), totp.verify(password, now, 1, 0, 42L, store));
+    assertEquals(-1L, totp.verify(password, now + 30_000L, 1, 0, 42L, store));
+    assertEquals(totp.computeCounter(now), totp.verify(password, now, 1, 0, 43L, store));
+  }
+
+  @Test
+  final void totp_usesItsClock() throws Exception {
+    final AtomicLong now = new AtomicLong(59_000L);
+    final TOTP totp = new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, "12345678901234567890".getBytes(), SHA1.getInstance(), now::get);
+
+    assertEquals(94287082, totp.compute());
+    assertEquals(1L, totp.currentCounter());
+    assertEquals(1L, totp.verify(94287082, 0, 0));
+
+    now.set(1111111109_000L);
+
+    assertEquals(7081804, totp.compute());
+    assertEquals(-1L, totp.verify(94287082, 1, 1));
+
+    final TOTP started = new TOTP(6, Duration.ofSeconds(30L), "12345678901234567890".getBytes(), SHA1.getInstance(), now::get);
+
+    assertEquals(Instant.ofEpochMilli(now.get()), started.getStartTime());
+    assertEquals(0L, started.currentCounter());
+  }
+
+  @Test
+  final void cachedClock_lagsItsSourceUntilTicked() throws Exception {
+    final AtomicLong source = new AtomicLong(59_000L);
+
+    try(final CachedClock clock = new CachedClock(Duration.ofHours(1L), source::get)) {
+      final TOTP totp = new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, "12345678901234567890".getBytes(), SHA1.getInstance(), clock);
+
+      source.set(1111111109_000L);
+
+      assertEquals(59_000L, clock.getAsLong());
+      assertEquals(94287082, totp.compute());
+
+      clock.tick();
+
+      assertEquals(7081804, totp.compute());
+
+      source.set(0L);
+      clock.tick();
+
+      assertEquals(1111111109_000L, clock.getAsLong());
+    }
+
+    try(final CachedClock clock = new CachedClock(Duration.ofMillis(1L))) {
+      final long start = clock.getAsLong();
+
+      Thread.sleep(50L);
+
+      assertTrue(clock.getAsLong() > start);
+    }
+  }
+
+  @Test
+  final void totp_computeRange() throws Exception {
+    final TOTP totp = totp();
+    final int[] passwords = new int[3];
+
+    totp.computeRange(59_000L, passwords.length, passwords);
+
+    assertEquals(94287082, passwords[0]);
+    assertEquals(totp.compute(89_000L), passwords[1]);
+    assertEquals(totp.compute(119_000L), passwords[2]);
+
+    totp.computeRange(Instant.ofEpochSecond(1111111109L), 1, passwords);
+
+    assertEquals(7081804, passwords[0]);
+  }
+
+}
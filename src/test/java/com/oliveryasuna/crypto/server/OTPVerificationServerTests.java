@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Oliver Yasuna
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.oliveryasuna.crypto.server;
+
+import com.oliveryasuna.crypto.hash.SHA1;
+import com.oliveryasuna.crypto.otp.HOTP;
+import com.oliveryasuna.crypto.otp.TOTP;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class OTPVerificationServerTests {
+
+  // Static methods
+  //--------------------------------------------------
+
+  private static OTPVerificationServer server() throws Exception {
+    final byte[] key = "12345678901234567890".getBytes();
+    final TOTP totp = new TOTP(8, Duration.ofSeconds(30L), Instant.EPOCH, key, SHA1.getInstance(), () -> 59_000L);
+    final HOTP hotp = new HOTP(6, key, SHA1.getInstance());
+
+    return new OTPVerificationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), id -> (id == 1L ? totp : null),
+        id -> (id == 1L ? hotp : null), 1, 1);
+  }
+
+  private static URI uri(final OTPVerificationServer server, final String path) {
+    return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+  }
+
+  private static HttpResponse<String> get(final OTPVerificationServer server, final String path) throws Exception {
+    return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri(server, path)).build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  // Constructors
+  //--------------------------------------------------
+
+  private OTPVerificationServerTests() {
+    super();
+  }
+
+  // Test methods
+  //--------------------------------------------------
+
+  @Test
+  final void server_verifiesOtps() throws Exception {
+    try(final OTPVerificationServer server = server()) {
+      HttpResponse<String> response = get(server, "/totp?id=1&code=94287082");
+
+      assertEquals(200, response.statusCode());
+      assertEquals("1\n", response.body());
+
+      assertEquals(403, get(server, "/totp?id=1&code=94287083").statusCode());
+      assertEquals(404, get(server, "/totp?id=2&code=94287082").statusCode());
+      assertEquals(400, get(server, "/totp?id=1&code=9428708").statusCode());
+      assertEquals(400, get(server, "/totp?id=x&code=94287082").statusCode());
+      assertEquals(400, get(server, "/totp").statusCode());
+
+      response = get(server, "/hotp?id=1&code=969429&counter=2");
+
+      assertEquals(200, response.statusCode());
+      assertEquals("3\n", response.body());
+      assertEquals(403, get(server, "/hotp?id=1&code=969429&counter=4").statusCode());
+      assertEquals(400, get(server, "/hotp?id=1&code=969429").statusCode());
+
+      assertEquals(2L, server.getAcceptedCount());
+      assertEquals(2L, server.getRejectedCount());
+    }
+  }
+
+  @Test
+  final void loadGenerator_reportsEveryRequest() throws Exception {
+    try(final OTPVerificationServer server = server()) {
+      final OTPLoadGenerator.Report report = new OTPLoadGenerator(uri(server, ""), 200, Duration.ofMillis(500L),
+          i -> (i % 2 == 0 ? "/totp?id=1&code=94287082" : "/totp?id=1&code=00000000")).run();
+
+      assertEquals(100L, report.getRequestCount());
+      assertEquals(50L, report.getAcceptedCount());
+      assertEquals(50L, report.getRejectedCount());
+      assertEquals(0L, report.getErrorCount());
+      assertTrue(report.getLatency(50.0).compareTo(report.getLatency(100.0)) <= 0);
+      assertTrue(report.getThroughput() > 0.0);
+      assertTrue(report.format().contains("p99.9"));
+    }
+  }
+
+  @Test
+  final void server_reportsLoaderFailures() throws Exception {
+    final OTPVerificationServer.Loader<TOTP> failing = id -> {
+      throw new IllegalStateException("Unavailable.");
+    };
+
+    try(final OTPVerificationServer server = new OTPVerificationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), failing,
+        null, 1, 1)) {
+      assertEquals(500, get(server, "/totp?id=1&code=94287082").statusCode());
+      assertEquals(1L, server.getErrorCount());
+      assertEquals(0L, server.getRejectedCount());
+    }
+  }
+
+}